@@ -4,12 +4,14 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 
 import com.c4_soft.springaddons.security.oauth2.config.synchronised.OAuth2AuthenticationFactory;
@@ -35,6 +37,10 @@ public class SecurityConfig {
 
 	static final class ProxiesMethodSecurityExpressionRoot extends C4MethodSecurityExpressionRoot {
 
+		public ProxiesMethodSecurityExpressionRoot(Supplier<Authentication> authentication) {
+			super(authentication);
+		}
+
 		public boolean is(String preferredUsername) {
 			return Objects.equals(preferredUsername, getAuthentication().getName());
 		}
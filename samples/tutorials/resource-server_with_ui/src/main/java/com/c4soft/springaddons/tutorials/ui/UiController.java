@@ -119,7 +119,7 @@ public class UiController {
 
 		log.info("Remove authorized client with ID {} for {}", clientRegistrationId, userSubject);
 		this.authorizedClientRepo.removeAuthorizedClient(clientRegistrationId, auth, request, response);
-		if (userIds.isEmpty()) {
+		if (authorizedClientRepo.getOAuth2UsersBySession(request.getSession()).isEmpty()) {
 			request.getSession().invalidate();
 		}
 
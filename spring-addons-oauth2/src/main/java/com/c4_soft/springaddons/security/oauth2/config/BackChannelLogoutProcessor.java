@@ -0,0 +1,228 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex.InvalidationListener;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>
+ * Processes verified back-channel logout tokens asynchronously, so that the end-point can acknowledge the OP without waiting for sessions to be invalidated:
+ * </p>
+ * <ul>
+ * <li>logouts are queued in a bounded queue. When it is full, submissions are rejected (the end-point should then answer with a status inviting the OP to
+ * retry later) rather than piling up in memory</li>
+ * <li>a pool of "concurrency" workers invalidates sessions in parallel. Each worker waits for the invalidation it started to complete (even if it is
+ * asynchronous) before taking the next one</li>
+ * <li>the "jti" of the tokens already accepted are retained for some time: a replayed logout token is acknowledged without being processed again. The "jti" of
+ * a logout which processing failed is forgotten, so that a retry from the OP is processed</li>
+ * </ul>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@CommonsLog
+public class BackChannelLogoutProcessor implements AutoCloseable {
+
+	public static enum Submission {
+		/** The logout was queued and will be processed */
+		ACCEPTED,
+		/** A token with the same issuer and jti was already accepted: nothing to do */
+		REPLAYED,
+		/** The queue is full: the logout was not queued */
+		REJECTED
+	}
+
+	/**
+	 * Invalidates the sessions of a user, possibly asynchronously
+	 */
+	public static interface SessionsInvalidator {
+		/**
+		 * @param  issuer  OP issuer URI
+		 * @param  subject user subject for this OP
+		 * @return         completed when the sessions are invalidated (exceptionally if the invalidation failed)
+		 */
+		CompletionStage<Void> invalidate(String issuer, String subject);
+	}
+
+	private final SessionsInvalidator sessionsInvalidator;
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final int replayCacheSize;
+	private final long replayCacheTtlMillis;
+	private final LinkedHashMap<String, Long> acceptedJtis = new LinkedHashMap<>();
+
+	private final AtomicLong processedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong replayedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+	/**
+	 * @param sessionsInvalidator synchronously invalidates the sessions of a user on a given OP
+	 * @param properties          queue, concurrency and replay cache configuration
+	 */
+	public BackChannelLogoutProcessor(
+			InvalidationListener sessionsInvalidator,
+			SpringAddonsOAuth2ClientProperties.BackChannelLogoutProperties properties) {
+		this((SessionsInvalidator) (issuer, subject) -> {
+			sessionsInvalidator.invalidate(issuer, subject);
+			return CompletableFuture.completedFuture(null);
+		}, properties);
+	}
+
+	/**
+	 * @param sessionsInvalidator invalidates the sessions of a user on a given OP
+	 * @param properties          queue, concurrency and replay cache configuration
+	 */
+	public BackChannelLogoutProcessor(SessionsInvalidator sessionsInvalidator, SpringAddonsOAuth2ClientProperties.BackChannelLogoutProperties properties) {
+		this.sessionsInvalidator = sessionsInvalidator;
+		this.queueCapacity = Math.max(1, properties.getQueueCapacity());
+		this.replayCacheSize = Math.max(0, properties.getReplayCacheSize());
+		this.replayCacheTtlMillis = properties.getReplayCacheTtl().toMillis();
+
+		final var concurrency = Math.max(1, properties.getConcurrency());
+		final var threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+			final var thread = new Thread(runnable, "backchannel-logout-%d".formatted(threadCount.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * @param  issuer  the (verified) issuer of the logout token
+	 * @param  subject the (verified) subject of the logout token
+	 * @param  jti     the (verified) ID of the logout token. Might be null, in which case replays are not detected.
+	 * @return         what was done with the logout
+	 */
+	public Submission submit(String issuer, String subject, String jti) {
+		final var replayKey = jti == null ? null : "%s#%s".formatted(issuer, jti);
+		if (replayKey != null && !markAccepted(replayKey)) {
+			replayedCount.incrementAndGet();
+			return Submission.REPLAYED;
+		}
+
+		final var submittedAt = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				try {
+					sessionsInvalidator.invalidate(issuer, subject).toCompletableFuture().join();
+					processedCount.incrementAndGet();
+				} catch (RuntimeException e) {
+					// forget the jti so that a retry from the OP is processed
+					forget(replayKey);
+					failedCount.incrementAndGet();
+					log.warn(
+							"Failed to invalidate sessions of %s on %s".formatted(subject, issuer),
+							e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				} finally {
+					totalLatencyNanos.addAndGet(System.nanoTime() - submittedAt);
+				}
+			});
+			return Submission.ACCEPTED;
+		} catch (RejectedExecutionException e) {
+			// forget the jti so that a retry from the OP is processed
+			forget(replayKey);
+			rejectedCount.incrementAndGet();
+			return Submission.REJECTED;
+		}
+	}
+
+	private void forget(String replayKey) {
+		if (replayKey != null) {
+			synchronized (acceptedJtis) {
+				acceptedJtis.remove(replayKey);
+			}
+		}
+	}
+
+	private boolean markAccepted(String replayKey) {
+		if (replayCacheSize == 0) {
+			return true;
+		}
+		final var now = System.currentTimeMillis();
+		synchronized (acceptedJtis) {
+			final var expiresAt = acceptedJtis.get(replayKey);
+			if (expiresAt != null && expiresAt > now) {
+				return false;
+			}
+			acceptedJtis.remove(replayKey);
+			// entries are ordered by insertion and all have the same TTL: expired ones are at the head
+			final var it = acceptedJtis.values().iterator();
+			while (it.hasNext()) {
+				final var exp = it.next();
+				if (exp > now && acceptedJtis.size() < replayCacheSize) {
+					break;
+				}
+				it.remove();
+			}
+			acceptedJtis.put(replayKey, now + replayCacheTtlMillis);
+			return true;
+		}
+	}
+
+	/**
+	 * @return count of logouts waiting for a worker
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @return count of logouts which sessions invalidation completed (successfully or not)
+	 */
+	public long getCompletedCount() {
+		return processedCount.get() + failedCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	public long getReplayedCount() {
+		return replayedCount.get();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return cumulated time between logouts submission and the completion of sessions invalidation
+	 */
+	public Duration getTotalLatency() {
+		return Duration.ofNanos(totalLatencyNanos.get());
+	}
+
+	/**
+	 * Stops accepting logouts and waits (a bit) for the queued ones to be processed
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
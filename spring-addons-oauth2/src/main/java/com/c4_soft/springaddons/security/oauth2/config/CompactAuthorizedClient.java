@@ -0,0 +1,64 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+
+/**
+ * <p>
+ * Session representation of an {@link OAuth2AuthorizedClient}: only the registration ID, issuer, principal name and tokens (values, expiries and scopes) are
+ * kept. The {@link ClientRegistration} (and provider metadata) is not serialized with each session, it is resolved from the client registration repository
+ * when the authorized client is loaded.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public record CompactAuthorizedClient(
+		String registrationId,
+		String issuer,
+		String principalName,
+		String accessTokenValue,
+		Instant accessTokenIssuedAt,
+		Instant accessTokenExpiresAt,
+		Set<String> scopes,
+		String refreshTokenValue,
+		Instant refreshTokenIssuedAt,
+		Instant refreshTokenExpiresAt) implements Serializable {
+
+	public static CompactAuthorizedClient from(OAuth2AuthorizedClient authorizedClient) {
+		final var registration = authorizedClient.getClientRegistration();
+		final var accessToken = authorizedClient.getAccessToken();
+		final var refreshToken = authorizedClient.getRefreshToken();
+		return new CompactAuthorizedClient(
+				registration.getRegistrationId(),
+				registration.getProviderDetails().getIssuerUri(),
+				authorizedClient.getPrincipalName(),
+				accessToken.getTokenValue(),
+				accessToken.getIssuedAt(),
+				accessToken.getExpiresAt(),
+				Set.copyOf(accessToken.getScopes()),
+				refreshToken == null ? null : refreshToken.getTokenValue(),
+				refreshToken == null ? null : refreshToken.getIssuedAt(),
+				refreshToken == null ? null : refreshToken.getExpiresAt());
+	}
+
+	/**
+	 * @param  registration the client registration with {@link #registrationId()} as ID
+	 * @return              the rehydrated authorized client
+	 */
+	public OAuth2AuthorizedClient toAuthorizedClient(ClientRegistration registration) {
+		final var accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessTokenValue, accessTokenIssuedAt, accessTokenExpiresAt, scopes);
+		final var refreshToken = refreshTokenValue == null ? null : new OAuth2RefreshToken(refreshTokenValue, refreshTokenIssuedAt, refreshTokenExpiresAt);
+		return new OAuth2AuthorizedClient(registration, principalName, accessToken, refreshToken);
+	}
+
+	public boolean matches(String issuer, String subject) {
+		return Objects.equals(this.issuer, issuer) && Objects.equals(this.principalName, subject);
+	}
+}
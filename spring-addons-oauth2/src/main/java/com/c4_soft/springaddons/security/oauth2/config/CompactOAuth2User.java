@@ -0,0 +1,74 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+/**
+ * <p>
+ * Session representation of an {@link OAuth2User}: only the claims required to identify the user (issuer, subject and name attribute) are kept, plus the ID
+ * token value and expiry for OIDC users (used as hint for RP-Initiated Logout).
+ * </p>
+ * <p>
+ * Authorities are not kept: these are in the security context.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public record CompactOAuth2User(
+		String issuer,
+		String subject,
+		String nameAttributeKey,
+		String name,
+		String idTokenValue,
+		Instant idTokenIssuedAt,
+		Instant idTokenExpiresAt) implements Serializable {
+
+	public static CompactOAuth2User from(String issuer, OAuth2User user) {
+		final var subject = Objects.toString(user.getAttributes().get(IdTokenClaimNames.SUB), null);
+		final var name = user.getName();
+		final var nameAttributeKey = Objects.equals(name, subject)
+				? IdTokenClaimNames.SUB
+				: user.getAttributes().entrySet().stream().filter(e -> Objects.equals(name, Objects.toString(e.getValue(), null))).map(Map.Entry::getKey)
+						.findFirst().orElse(IdTokenClaimNames.SUB);
+		final var idToken = user instanceof OidcUser oidcUser ? oidcUser.getIdToken() : null;
+		return new CompactOAuth2User(
+				issuer,
+				subject,
+				nameAttributeKey,
+				name,
+				idToken == null ? null : idToken.getTokenValue(),
+				idToken == null ? null : idToken.getIssuedAt(),
+				idToken == null ? null : idToken.getExpiresAt());
+	}
+
+	/**
+	 * @return an {@link OidcUser} if an ID token was kept, an {@link OAuth2User} otherwise. In both cases, with no authorities and minimal claims.
+	 */
+	public OAuth2User toOAuth2User() {
+		final var claims = new HashMap<String, Object>();
+		if (issuer != null) {
+			claims.put(IdTokenClaimNames.ISS, issuer);
+		}
+		if (subject != null) {
+			claims.put(IdTokenClaimNames.SUB, subject);
+		}
+		if (name != null) {
+			claims.put(nameAttributeKey, name);
+		}
+		if (idTokenValue != null) {
+			return new DefaultOidcUser(List.of(), new OidcIdToken(idTokenValue, idTokenIssuedAt, idTokenExpiresAt, claims), nameAttributeKey);
+		}
+		return new DefaultOAuth2User(List.of(), claims, nameAttributeKey);
+	}
+}
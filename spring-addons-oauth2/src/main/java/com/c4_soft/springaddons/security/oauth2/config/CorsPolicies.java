@@ -0,0 +1,160 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
+
+/**
+ * <p>
+ * CORS configuration built once from {@link CorsProperties} and shared by servlet and reactive security configurations:
+ * </p>
+ * <ul>
+ * <li>{@link #getConfigurations()} feeds Spring's UrlBasedCorsConfigurationSource (servlet or reactive)</li>
+ * <li>{@link #preflight(PathContainer, HttpHeaders)} answers preflight requests with headers precomputed for each path, so that preflights can be
+ * short-circuited before the rest of the security filter chain</li>
+ * </ul>
+ * <p>
+ * As with UrlBasedCorsConfigurationSource, the first entry with a path matching the request applies.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class CorsPolicies {
+	private static final List<String> PREFLIGHT_VARY_HEADERS = List.of(
+			HttpHeaders.ORIGIN,
+			HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD,
+			HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+
+	private final Map<String, CorsConfiguration> configurations;
+	private final List<Policy> policies;
+
+	public CorsPolicies(CorsProperties[] corsProperties) {
+		final var configs = new LinkedHashMap<String, CorsConfiguration>();
+		for (final var corsProps : corsProperties) {
+			configs.put(corsProps.getPath(), toCorsConfiguration(corsProps));
+		}
+		this.configurations = Collections.unmodifiableMap(configs);
+		this.policies = configs.entrySet().stream().map(e -> new Policy(PathPatternParser.defaultInstance.parse(e.getKey()), e.getValue())).toList();
+	}
+
+	/**
+	 * @return CORS configurations by path pattern, in properties order
+	 */
+	public Map<String, CorsConfiguration> getConfigurations() {
+		return configurations;
+	}
+
+	public boolean isEmpty() {
+		return configurations.isEmpty();
+	}
+
+	/**
+	 * @param  path           the request path within application
+	 * @param  requestHeaders the preflight request headers (only Origin, Access-Control-Request-Method and Access-Control-Request-Headers are used)
+	 * @return                the headers of a successful preflight response, or null if no entry matches the path or if the matching entry rejects the request
+	 *                        (in which case the request should continue down the filter chain for Spring's CorsFilter to reject it)
+	 */
+	public HttpHeaders preflight(PathContainer path, HttpHeaders requestHeaders) {
+		for (final var policy : policies) {
+			if (policy.pattern.matches(path)) {
+				return policy.preflight(requestHeaders);
+			}
+		}
+		return null;
+	}
+
+	public static CorsConfiguration toCorsConfiguration(CorsProperties corsProps) {
+		final var configuration = new CorsConfiguration();
+		if (corsProps.isAllowCredentials()) {
+			// echoing any origin along with credentials would let any site send authenticated requests
+			if (Arrays.stream(corsProps.getAllowedOrigins()).anyMatch(origin -> CorsConfiguration.ALL.equals(origin.trim()))) {
+				throw new IllegalArgumentException(
+						"CORS configuration for %s allows credentials: allowed-origins must list explicit origins (or patterns like https://*.example.com), not \"*\""
+								.formatted(corsProps.getPath()));
+			}
+			// patterns (like https://*.example.com) are accepted with credentials: the matching request origin is echoed
+			configuration.setAllowedOriginPatterns(Arrays.asList(corsProps.getAllowedOrigins()));
+			configuration.setAllowCredentials(true);
+		} else {
+			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
+		}
+		configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
+		configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
+		configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
+		if (corsProps.getMaxAge() != null) {
+			configuration.setMaxAge(corsProps.getMaxAge());
+		}
+		return configuration;
+	}
+
+	private static class Policy {
+		private final PathPattern pattern;
+		private final CorsConfiguration configuration;
+
+		// null when the value depends on the request ("*" is echoed as requested)
+		private final String allowMethods;
+		private final String allowHeaders;
+		private final String maxAge;
+
+		Policy(PathPattern pattern, CorsConfiguration configuration) {
+			this.pattern = pattern;
+			this.configuration = configuration;
+			this.allowMethods = joinIfNoWildcard(configuration.getAllowedMethods());
+			this.allowHeaders = joinIfNoWildcard(configuration.getAllowedHeaders());
+			this.maxAge = configuration.getMaxAge() == null ? null : configuration.getMaxAge().toString();
+		}
+
+		HttpHeaders preflight(HttpHeaders requestHeaders) {
+			final var allowOrigin = configuration.checkOrigin(requestHeaders.getOrigin());
+			if (allowOrigin == null) {
+				return null;
+			}
+			final HttpMethod requestMethod = requestHeaders.getAccessControlRequestMethod();
+			if (configuration.checkHttpMethod(requestMethod) == null) {
+				return null;
+			}
+			final var requestedHeaders = requestHeaders.getAccessControlRequestHeaders();
+			final var allowedHeaders = configuration.checkHeaders(requestedHeaders);
+			if (!requestedHeaders.isEmpty() && allowedHeaders == null) {
+				return null;
+			}
+
+			final var responseHeaders = new HttpHeaders();
+			responseHeaders.setVary(PREFLIGHT_VARY_HEADERS);
+			responseHeaders.setAccessControlAllowOrigin(allowOrigin);
+			responseHeaders.set(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, allowMethods == null ? requestMethod.name() : allowMethods);
+			if (!requestedHeaders.isEmpty()) {
+				responseHeaders.set(
+						HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS,
+						allowHeaders == null ? StringUtils.collectionToCommaDelimitedString(allowedHeaders) : allowHeaders);
+			}
+			if (Boolean.TRUE.equals(configuration.getAllowCredentials())) {
+				responseHeaders.setAccessControlAllowCredentials(true);
+			}
+			if (maxAge != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_MAX_AGE, maxAge);
+			}
+			return responseHeaders;
+		}
+
+		private static String joinIfNoWildcard(List<String> values) {
+			if (CollectionUtils.isEmpty(values) || values.contains(CorsConfiguration.ALL)) {
+				return null;
+			}
+			return String.join(", ", values);
+		}
+	}
+}
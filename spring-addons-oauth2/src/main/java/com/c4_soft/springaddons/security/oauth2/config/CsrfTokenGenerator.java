@@ -0,0 +1,43 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * <p>
+ * Generates CSRF token values with the same format as Spring's cookie CSRF token repositories (random UUID), but from a {@link SecureRandom} instance per
+ * thread.
+ * </p>
+ * <p>
+ * {@link UUID#randomUUID()} draws from a single shared {@link SecureRandom} which, with the default NativePRNG on Linux, serializes all callers on a global
+ * lock. DRBG instances have no shared state once seeded, so per-thread instances do not contend.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public final class CsrfTokenGenerator {
+	private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(CsrfTokenGenerator::newSecureRandom);
+
+	private CsrfTokenGenerator() {
+	}
+
+	public static String generate() {
+		final var bytes = new byte[16];
+		RANDOM.get().nextBytes(bytes);
+		// version 4 and IETF variant, as in UUID.randomUUID()
+		bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+		bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+		final var buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong()).toString();
+	}
+
+	private static SecureRandom newSecureRandom() {
+		try {
+			return SecureRandom.getInstance("DRBG");
+		} catch (NoSuchAlgorithmException e) {
+			return new SecureRandom();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * Turns a {@link Serializable} value into cookie values and back:
+ * </p>
+ * <ul>
+ * <li>the value is serialized and compressed</li>
+ * <li>then encrypted with AES-GCM, the cookie name being used as associated data (a value can't be moved from a cookie to another)</li>
+ * <li>and finally Base64URL encoded and split in chunks small enough for browsers cookie size limit</li>
+ * </ul>
+ * <p>
+ * Decoding is done only after the authentication tag was checked: only values encoded with the same key are deserialized (and deserialization is further
+ * restricted to a few JDK collections and value types, Spring Security and spring-addons classes).
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class EncryptedCookieCodec {
+	private static final byte VERSION = 1;
+	private static final int IV_LENGTH = 12;
+	private static final int TAG_LENGTH_BITS = 128;
+	private static final int MAX_CHUNKS = 16;
+	/* the JDK types are those used by StatelessClientState and OAuth2AuthorizationRequest (arrays are matched on their component type) */
+	private static final ObjectInputFilter DESERIALIZATION_FILTER = ObjectInputFilter.Config.createFilter(
+			String.join(
+					";",
+					"maxdepth=32",
+					"java.lang.Object",
+					"java.lang.String",
+					"java.lang.Boolean",
+					"java.lang.Number",
+					"java.lang.Integer",
+					"java.lang.Long",
+					"java.time.Instant",
+					"java.time.Ser",
+					"java.util.ArrayList",
+					"java.util.HashMap",
+					"java.util.HashSet",
+					"java.util.LinkedHashMap",
+					"java.util.LinkedHashSet",
+					"java.util.Map$Entry",
+					"java.util.CollSer",
+					"java.util.ImmutableCollections$*",
+					"java.util.Collections$UnmodifiableCollection",
+					"java.util.Collections$UnmodifiableMap",
+					"java.util.Collections$UnmodifiableSet",
+					"org.springframework.security.**",
+					"com.c4_soft.springaddons.**",
+					"!*"));
+
+	private final SecretKey key;
+	private final int maxChunkSize;
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * @param base64Key    Base64 encoded AES key (128, 192 or 256 bits)
+	 * @param maxChunkSize maximum length of each cookie value
+	 */
+	public EncryptedCookieCodec(String base64Key, int maxChunkSize) {
+		if (base64Key == null || base64Key.isBlank()) {
+			throw new IllegalArgumentException("An AES key is required to encrypt cookies");
+		}
+		final var keyBytes = Base64.getDecoder().decode(base64Key.trim());
+		if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+			throw new IllegalArgumentException("Cookies encryption key must be 128, 192 or 256 bits long (got %d)".formatted(keyBytes.length * 8));
+		}
+		this.key = new SecretKeySpec(keyBytes, "AES");
+		this.maxChunkSize = Math.max(256, maxChunkSize);
+	}
+
+	/**
+	 * @param  cookieName name of the (first) cookie
+	 * @param  index      chunk index
+	 * @return            the name of the cookie holding the chunk: the cookie name itself for the first chunk, the cookie name suffixed with "_" and the
+	 *                    index for the next ones
+	 */
+	public static String chunkName(String cookieName, int index) {
+		return index == 0 ? cookieName : "%s_%d".formatted(cookieName, index);
+	}
+
+	/**
+	 * @return maximum number of chunks a value can be split into
+	 */
+	public static int getMaxChunks() {
+		return MAX_CHUNKS;
+	}
+
+	/**
+	 * @param  cookieName name of the (first) cookie, used as associated data
+	 * @param  value      the value to encode
+	 * @return            the values of the cookies to set, in order
+	 */
+	public List<String> encode(String cookieName, Serializable value) {
+		try {
+			final var iv = new byte[IV_LENGTH];
+			random.nextBytes(iv);
+			final var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+			cipher.updateAAD(cookieName.getBytes(StandardCharsets.UTF_8));
+			final var encrypted = cipher.doFinal(serialize(value));
+
+			final var bytes = ByteBuffer.allocate(1 + IV_LENGTH + encrypted.length).put(VERSION).put(iv).put(encrypted).array();
+			final var encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+			final var chunks = new ArrayList<String>(encoded.length() / maxChunkSize + 1);
+			for (int start = 0; start < encoded.length(); start += maxChunkSize) {
+				chunks.add(encoded.substring(start, Math.min(encoded.length(), start + maxChunkSize)));
+			}
+			if (chunks.size() > MAX_CHUNKS) {
+				throw new IllegalStateException("Encrypted value for %s is too big for cookies (%d chars)".formatted(cookieName, encoded.length()));
+			}
+			return chunks;
+		} catch (GeneralSecurityException | IOException e) {
+			throw new IllegalStateException("Failed to encrypt %s cookie".formatted(cookieName), e);
+		}
+	}
+
+	/**
+	 * @param  <T>        expected value type
+	 * @param  cookieName name of the (first) cookie, used as associated data
+	 * @param  chunks     the values of the cookies, in order
+	 * @param  type       expected value type
+	 * @return            the decoded value, or empty if the chunks are missing, were tampered with, were encrypted with another key or do not contain a value
+	 *                    of the expected type
+	 */
+	public <T> Optional<T> decode(String cookieName, List<String> chunks, Class<T> type) {
+		if (chunks == null || chunks.isEmpty()) {
+			return Optional.empty();
+		}
+		try {
+			final var bytes = Base64.getUrlDecoder().decode(String.join("", chunks));
+			if (bytes.length <= 1 + IV_LENGTH || bytes[0] != VERSION) {
+				return Optional.empty();
+			}
+			final var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, bytes, 1, IV_LENGTH));
+			cipher.updateAAD(cookieName.getBytes(StandardCharsets.UTF_8));
+			final var decrypted = cipher.doFinal(bytes, 1 + IV_LENGTH, bytes.length - 1 - IV_LENGTH);
+
+			final var value = deserialize(decrypted);
+			return type.isInstance(value) ? Optional.of(type.cast(value)) : Optional.empty();
+		} catch (GeneralSecurityException | IOException | ClassNotFoundException | IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static byte[] serialize(Serializable value) throws IOException {
+		final var bytes = new ByteArrayOutputStream();
+		try (var out = new ObjectOutputStream(new DeflaterOutputStream(bytes))) {
+			out.writeObject(value);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (var in = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+			in.setObjectInputFilter(DESERIALIZATION_FILTER);
+			return in.readObject();
+		}
+	}
+}
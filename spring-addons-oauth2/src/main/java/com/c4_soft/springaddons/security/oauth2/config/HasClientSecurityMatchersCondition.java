@@ -0,0 +1,28 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Matches if "com.c4-soft.springaddons.security.client.security-matchers" has at least one non-empty entry, be it set as a comma separated value or with
+ * indexed keys. Unlike the SpEL expression it replaces, it needs no reflection to be evaluated (and is evaluated at build time with Spring AOT).
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class HasClientSecurityMatchersCondition extends SpringBootCondition {
+	static final String SECURITY_MATCHERS_PROPERTY = "com.c4-soft.springaddons.security.client.security-matchers";
+
+	@Override
+	public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+		final var securityMatchers = Binder.get(context.getEnvironment()).bind(SECURITY_MATCHERS_PROPERTY, String[].class).orElse(new String[] {});
+		for (final var matcher : securityMatchers) {
+			if (matcher != null && !matcher.isBlank()) {
+				return ConditionOutcome.match("%s is not empty".formatted(SECURITY_MATCHERS_PROPERTY));
+			}
+		}
+		return ConditionOutcome.noMatch("%s is empty".formatted(SECURITY_MATCHERS_PROPERTY));
+	}
+}
@@ -0,0 +1,98 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>
+ * Default {@link SessionIndex}: the index is kept in memory and invalidations are "broadcasted" to the listeners registered on this node only.
+ * </p>
+ * <p>
+ * This works as long as the logout token is received by the node holding the user sessions (single instance or sticky sessions). For horizontally scaled
+ * clients, provide with a {@link SessionIndex} bean backed by a shared store.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class InMemorySessionIndex implements SessionIndex {
+	private final Map<UserId, Set<String>> sessionIdsByUserId = new ConcurrentHashMap<>();
+	private final Map<String, Set<UserId>> userIdsBySessionId = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<InvalidationListener> invalidationListeners = new ConcurrentLinkedQueue<>();
+
+	@Override
+	public void add(String issuer, String subject, String sessionId) {
+		final var userId = new UserId(issuer, subject);
+		// add within compute: a set emptied (and unmapped) by a concurrent remove must not be the one receiving the session
+		sessionIdsByUserId.compute(userId, (id, sessionIds) -> {
+			final var ids = sessionIds == null ? ConcurrentHashMap.<String>newKeySet() : sessionIds;
+			ids.add(sessionId);
+			return ids;
+		});
+		userIdsBySessionId.compute(sessionId, (id, userIds) -> {
+			final var ids = userIds == null ? ConcurrentHashMap.<UserId>newKeySet() : userIds;
+			ids.add(userId);
+			return ids;
+		});
+	}
+
+	@Override
+	public void remove(String issuer, String subject, String sessionId) {
+		final var userId = new UserId(issuer, subject);
+		sessionIdsByUserId.computeIfPresent(userId, (id, sessionIds) -> {
+			sessionIds.remove(sessionId);
+			return sessionIds.isEmpty() ? null : sessionIds;
+		});
+		userIdsBySessionId.computeIfPresent(sessionId, (id, userIds) -> {
+			userIds.remove(userId);
+			return userIds.isEmpty() ? null : userIds;
+		});
+	}
+
+	@Override
+	public Set<String> getSessionIds(String issuer, String subject) {
+		return Set.copyOf(sessionIdsByUserId.getOrDefault(new UserId(issuer, subject), Set.of()));
+	}
+
+	@Override
+	public Set<UserId> getUserIds(String sessionId) {
+		return Set.copyOf(userIdsBySessionId.getOrDefault(sessionId, Set.of()));
+	}
+
+	@Override
+	public void removeSession(String sessionId) {
+		final var userIds = userIdsBySessionId.remove(sessionId);
+		if (userIds == null) {
+			return;
+		}
+		for (var userId : userIds) {
+			sessionIdsByUserId.computeIfPresent(userId, (id, sessionIds) -> {
+				sessionIds.remove(sessionId);
+				return sessionIds.isEmpty() ? null : sessionIds;
+			});
+		}
+	}
+
+	@Override
+	public void changeSessionId(String oldSessionId, String newSessionId) {
+		if (oldSessionId == null || oldSessionId.equals(newSessionId)) {
+			return;
+		}
+		final var userIds = getUserIds(oldSessionId);
+		removeSession(oldSessionId);
+		for (var userId : userIds) {
+			add(userId.iss(), userId.sub(), newSessionId);
+		}
+	}
+
+	@Override
+	public void addInvalidationListener(InvalidationListener listener) {
+		invalidationListeners.add(listener);
+	}
+
+	@Override
+	public void broadcastInvalidation(String issuer, String subject) {
+		invalidationListeners.forEach(l -> l.invalidate(issuer, subject));
+	}
+}
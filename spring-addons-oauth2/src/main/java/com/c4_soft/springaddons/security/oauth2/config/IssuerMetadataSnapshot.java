@@ -0,0 +1,117 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.util.JSONObjectUtils;
+
+/**
+ * What a resource server needs to know about an issuer to validate its tokens without a network call: the OpenID discovery document (empty if the JWK set
+ * URI is configured explicitly) and the JWK set, as fetched at a given instant. It is persisted as JSON by {@link IssuerMetadataSnapshotStore}.
+ *
+ * @param issuer    the issuer URI, as configured (and as found in the "iss" claim of access tokens)
+ * @param jwkSetUri where the JWK set was fetched from
+ * @param discovery the OpenID discovery document
+ * @param jwkSet    the JWK set JSON document
+ * @param fetchedAt when the JWK set was fetched
+ * @author          Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public record IssuerMetadataSnapshot(String issuer, String jwkSetUri, Map<String, Object> discovery, String jwkSet, Instant fetchedAt) {
+
+	public IssuerMetadataSnapshot {
+		discovery = discovery == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(discovery));
+	}
+
+	/**
+	 * @param  jwkSet  a fresher version of the JWK set (keys rotation)
+	 * @param  fetched when the new JWK set was fetched
+	 * @return         a copy of this snapshot with the provided JWK set
+	 */
+	public IssuerMetadataSnapshot withJwkSet(String jwkSet, Instant fetched) {
+		return new IssuerMetadataSnapshot(issuer, jwkSetUri, discovery, jwkSet, fetched);
+	}
+
+	/**
+	 * @param  other another version of the JWK set JSON document
+	 * @return       true if it holds the same keys as the snapshot one, whatever the formatting (false if it can't be parsed)
+	 */
+	public boolean hasSameJwkSet(String other) {
+		if (jwkSet.equals(other)) {
+			return true;
+		}
+		try {
+			return other != null && JWKSet.parse(other).equals(parseJwkSet());
+		} catch (ParseException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Same algorithms selection as Spring Security when building a decoder from an issuer location: the "alg" of the keys when provided, the whole RSA or EC
+	 * family otherwise.
+	 *
+	 * @return                       the signature algorithms of the keys in the JWK set
+	 * @throws IllegalStateException if the JWK set can't be parsed
+	 */
+	public Set<SignatureAlgorithm> signatureAlgorithms() {
+		final var algorithms = new LinkedHashSet<SignatureAlgorithm>();
+		for (final var key : parseJwkSet().getKeys()) {
+			if (key.getAlgorithm() != null) {
+				Optional.ofNullable(SignatureAlgorithm.from(key.getAlgorithm().getName())).ifPresent(algorithms::add);
+			} else if (KeyType.RSA.equals(key.getKeyType())) {
+				JWSAlgorithm.Family.RSA.stream().map(alg -> SignatureAlgorithm.from(alg.getName())).filter(alg -> alg != null).forEach(algorithms::add);
+			} else if (KeyType.EC.equals(key.getKeyType())) {
+				JWSAlgorithm.Family.EC.stream().map(alg -> SignatureAlgorithm.from(alg.getName())).filter(alg -> alg != null).forEach(algorithms::add);
+			}
+		}
+		return algorithms;
+	}
+
+	/**
+	 * @return                       the parsed JWK set
+	 * @throws IllegalStateException if the JWK set can't be parsed
+	 */
+	public JWKSet parseJwkSet() {
+		try {
+			return JWKSet.parse(jwkSet);
+		} catch (ParseException e) {
+			throw new IllegalStateException("Invalid JWK set for %s".formatted(issuer), e);
+		}
+	}
+
+	String toJson() {
+		final var json = new LinkedHashMap<String, Object>();
+		json.put("issuer", issuer);
+		json.put("jwks_uri", jwkSetUri);
+		json.put("fetched_at", fetchedAt.getEpochSecond());
+		json.put("discovery", discovery);
+		try {
+			json.put("jwks", JSONObjectUtils.parse(jwkSet));
+		} catch (ParseException e) {
+			throw new IllegalStateException("Invalid JWK set for %s".formatted(issuer), e);
+		}
+		return JSONObjectUtils.toJSONString(json);
+	}
+
+	static IssuerMetadataSnapshot fromJson(String json) throws ParseException {
+		final var parsed = JSONObjectUtils.parse(json);
+		final var fetchedAt = JSONObjectUtils.getLong(parsed, "fetched_at");
+		return new IssuerMetadataSnapshot(
+				JSONObjectUtils.getString(parsed, "issuer"),
+				JSONObjectUtils.getString(parsed, "jwks_uri"),
+				JSONObjectUtils.getJSONObject(parsed, "discovery"),
+				JSONObjectUtils.toJSONString(JSONObjectUtils.getJSONObject(parsed, "jwks")),
+				Instant.ofEpochSecond(fetchedAt));
+	}
+}
@@ -0,0 +1,147 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestOperations;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>
+ * Keeps on disk, in a file per issuer, the last {@link IssuerMetadataSnapshot} (OpenID discovery document and JWK set) fetched from each authorization
+ * server.
+ * </p>
+ * <p>
+ * This allows resource servers to build their JWT decoders at startup without any network call (and so without waiting for, or even needing, the
+ * authorization server to be reachable), the snapshot being revalidated asynchronously. Files are written atomically (to a temporary file which is then
+ * moved), so that a crash or a concurrent restart never leaves a truncated snapshot.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@CommonsLog
+public class IssuerMetadataSnapshotStore {
+	private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT = new ParameterizedTypeReference<>() {
+	};
+
+	private final Path directory;
+	private final RestOperations restOperations;
+
+	/**
+	 * @param directory where to read and write snapshots. Created on first write if it does not exist.
+	 */
+	public IssuerMetadataSnapshotStore(Path directory) {
+		this(directory, new RestTemplate());
+	}
+
+	/**
+	 * @param directory      where to read and write snapshots. Created on first write if it does not exist.
+	 * @param restOperations used to fetch discovery documents and JWK sets
+	 */
+	public IssuerMetadataSnapshotStore(Path directory, RestOperations restOperations) {
+		this.directory = directory;
+		this.restOperations = restOperations;
+	}
+
+	/**
+	 * @param  issuer the issuer URI
+	 * @return        the last snapshot saved for this issuer, if any. Unreadable or corrupted files are ignored (and logged).
+	 */
+	public Optional<IssuerMetadataSnapshot> load(String issuer) {
+		final var file = file(issuer);
+		if (!Files.isRegularFile(file)) {
+			return Optional.empty();
+		}
+		try {
+			final var snapshot = IssuerMetadataSnapshot.fromJson(Files.readString(file, StandardCharsets.UTF_8));
+			if (!Objects.equals(issuer, snapshot.issuer()) || !StringUtils.hasText(snapshot.jwkSetUri())) {
+				log.warn("Ignoring %s: it is not a valid snapshot for %s".formatted(file, issuer));
+				return Optional.empty();
+			}
+			return Optional.of(snapshot);
+		} catch (IOException | ParseException | RuntimeException e) {
+			log.warn("Ignoring unreadable issuer metadata snapshot %s".formatted(file), e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @param  snapshot    what to persist (replacing the previous snapshot for the same issuer, if any)
+	 * @throws IOException if the snapshot can't be written
+	 */
+	public void save(IssuerMetadataSnapshot snapshot) throws IOException {
+		Files.createDirectories(directory);
+		final var file = file(snapshot.issuer());
+		final var tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			Files.writeString(tmp, snapshot.toJson(), StandardCharsets.UTF_8);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Fetches the OpenID discovery document (unless the JWK set URI is configured explicitly) and the JWK set from the authorization server.
+	 *
+	 * @param  issuer                the issuer properties
+	 * @return                       a fresh snapshot (which is not saved)
+	 * @throws IllegalStateException if the discovery document is not valid for this issuer or has no JWK set URI
+	 */
+	public IssuerMetadataSnapshot fetch(IssuerProperties issuer) {
+		final var issuerUri = issuer.getLocation().toString();
+		final Map<String, Object> discovery;
+		final String jwkSetUri;
+		if (issuer.getJwkSetUri() != null && StringUtils.hasLength(issuer.getJwkSetUri().toString())) {
+			discovery = Map.of();
+			jwkSetUri = issuer.getJwkSetUri().toString();
+		} else {
+			discovery = fetchDiscovery(issuer.getLocation());
+			if (!Objects.equals(issuerUri, discovery.get("issuer"))) {
+				throw new IllegalStateException("The issuer in %s discovery document is %s".formatted(issuerUri, discovery.get("issuer")));
+			}
+			jwkSetUri = Optional.ofNullable(discovery.get("jwks_uri")).map(Object::toString)
+					.orElseThrow(() -> new IllegalStateException("No jwks_uri in %s discovery document".formatted(issuerUri)));
+		}
+		return new IssuerMetadataSnapshot(issuerUri, jwkSetUri, discovery, fetchJwkSet(jwkSetUri), Instant.now());
+	}
+
+	/**
+	 * @param  jwkSetUri where to fetch the JWK set from
+	 * @return           the JWK set JSON document
+	 */
+	public String fetchJwkSet(String jwkSetUri) {
+		return restOperations.getForObject(jwkSetUri, String.class);
+	}
+
+	/**
+	 * @param  issuer the issuer URI
+	 * @return        the file holding the snapshot for this issuer (not necessarily existing)
+	 */
+	public Path file(String issuer) {
+		return directory.resolve(issuer.replaceAll("[^A-Za-z0-9.-]", "_") + ".json");
+	}
+
+	private Map<String, Object> fetchDiscovery(URI issuer) {
+		final var uri = UriComponentsBuilder.fromUri(issuer).path("/.well-known/openid-configuration").build().toUri();
+		return Optional.ofNullable(restOperations.exchange(uri, HttpMethod.GET, null, JSON_OBJECT).getBody())
+				.orElseThrow(() -> new IllegalStateException("Empty discovery document at %s".formatted(uri)));
+	}
+}
@@ -0,0 +1,96 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * <p>
+ * Path patterns (with {@link PathPatternParser} syntax, as used for permit-all and security-matchers properties) compiled into a trie indexed by their
+ * leading literal segments.
+ * </p>
+ * <p>
+ * To decide if a path matches, the trie is walked down along the path segments and only the patterns registered on visited nodes (those with a literal
+ * prefix which is also a prefix of the path) are evaluated. With routes sharing a few common prefixes, this is proportional to the path depth rather than to
+ * the number of patterns. As the final decision is taken by {@link PathPattern#matches(PathContainer)}, results are the same as with a linear chain of
+ * path-pattern matchers.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class PathPatternTrie {
+	private final String[] patterns;
+	private final Node root = new Node();
+
+	public PathPatternTrie(String... patterns) {
+		this.patterns = patterns == null ? new String[] {} : patterns.clone();
+		for (final var pattern : this.patterns) {
+			var node = root;
+			for (final var segment : StringUtils.tokenizeToStringArray(pattern, "/")) {
+				if (!isLiteral(segment)) {
+					break;
+				}
+				node = node.children.computeIfAbsent(segment, s -> new Node());
+			}
+			node.patterns.add(PathPatternParser.defaultInstance.parse(pattern));
+		}
+	}
+
+	public boolean matches(PathContainer path) {
+		var node = root;
+		if (node.matches(path)) {
+			return true;
+		}
+		for (final var element : path.elements()) {
+			if (element instanceof PathContainer.PathSegment segment) {
+				node = node.children.get(segment.valueToMatch());
+				if (node == null) {
+					return false;
+				}
+				if (node.matches(path)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return patterns.length == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "PathPatternTrie %s".formatted(Arrays.toString(patterns));
+	}
+
+	static boolean isLiteral(String segment) {
+		for (final var c : segment.toCharArray()) {
+			if (c == '*' || c == '?' || c == '{' || c == '}') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private final List<PathPattern> patterns = new ArrayList<>();
+
+		boolean matches(PathContainer path) {
+			for (final var pattern : patterns) {
+				if (pattern.matches(path)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
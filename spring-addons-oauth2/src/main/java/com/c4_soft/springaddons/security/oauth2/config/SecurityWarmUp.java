@@ -0,0 +1,192 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.Expression;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.WarmUpProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>
+ * What resource servers need to warm-up their security before accepting traffic: synthetic access tokens signed with an ephemeral key (generated for each
+ * warm-up and never exposed) and the method-security expressions to evaluate with the authentications built from these tokens.
+ * </p>
+ * <p>
+ * The synthetic tokens have no "kid" header: submitted to the decoder of an issuer, a token triggers the fetch of its JWK set if it was not fetched yet, but
+ * no new fetch if the decoder already has RSA keys (from a snapshot for instance). Its signature is then rejected.
+ * </p>
+ * <p>
+ * So that the authorities converter and expressions run the same code as with actual tokens, synthetic tokens contain a "warm-up" authority at each of the
+ * authorities JSON paths configured for the issuer, and a "warm-up" user name at its username-claim path. Paths with a wildcard ($.resource_access.*.roles)
+ * use "warm-up" as key. Paths with filters, deep scans or array indexes are ignored.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@CommonsLog
+public class SecurityWarmUp {
+	private static final Duration TOKEN_VALIDITY = Duration.ofMinutes(10);
+	private static final String WARM_UP = "warm-up";
+	private static final Pattern JSON_PATH_SEGMENT = Pattern.compile("\\.([^.\\[\\]]+)|\\['([^']+)'\\]|\\[\"([^\"]+)\"\\]|\\[(\\*)\\]");
+
+	private final WarmUpProperties properties;
+	private final RSAKey key;
+	private final MethodSecurityExpressionHandler expressionHandler;
+	private final List<Expression> expressions;
+	private final MethodInvocation invocation;
+
+	/**
+	 * @param properties        the warm-up configuration
+	 * @param expressionHandler the handler to evaluate method-security expressions with. If null, the Spring Security default one is used.
+	 */
+	public SecurityWarmUp(WarmUpProperties properties, MethodSecurityExpressionHandler expressionHandler) {
+		this.properties = properties;
+		try {
+			this.key = new RSAKeyGenerator(2048).generate();
+		} catch (JOSEException e) {
+			throw new IllegalStateException("Failed to generate warm-up key", e);
+		}
+		this.expressionHandler = expressionHandler == null ? new DefaultMethodSecurityExpressionHandler() : expressionHandler;
+		this.expressions = Stream.of(properties.getExpressions()).map(this.expressionHandler.getExpressionParser()::parseExpression).toList();
+		try {
+			this.invocation = new SimpleMethodInvocation(this, Object.class.getMethod("toString"));
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public int getIterations() {
+		return Math.max(0, properties.getIterations());
+	}
+
+	/**
+	 * @return the public key to verify synthetic tokens with
+	 */
+	public RSAPublicKey getPublicKey() {
+		try {
+			return key.toRSAPublicKey();
+		} catch (JOSEException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param  issuer the "iss" claim value
+	 * @return        a serialized JWT signed with the ephemeral key
+	 */
+	public String syntheticToken(String issuer) {
+		return syntheticToken(issuer, Map.of());
+	}
+
+	/**
+	 * @param  issuer the issuer properties: its location is the "iss" claim value and its authorities and username-claim JSON paths are populated
+	 * @return        a serialized JWT signed with the ephemeral key
+	 */
+	public String syntheticToken(IssuerProperties issuer) {
+		final var claims = new LinkedHashMap<String, Object>();
+		for (final var authorities : issuer.getAuthorities()) {
+			putAtPath(claims, authorities.getPath(), List.of(WARM_UP));
+		}
+		putAtPath(claims, issuer.getUsernameClaim(), WARM_UP);
+		return syntheticToken(issuer.getLocation().toString(), claims);
+	}
+
+	private String syntheticToken(String issuer, Map<String, Object> privateClaims) {
+		final var now = Instant.now();
+		final var builder = new JWTClaimsSet.Builder();
+		// set first, so that registered claims take precedence
+		privateClaims.forEach(builder::claim);
+		final var claims = builder.issuer(issuer).subject(WARM_UP).jwtID(UUID.randomUUID().toString()).issueTime(Date.from(now))
+				.expirationTime(Date.from(now.plus(TOKEN_VALIDITY))).claim("scope", WARM_UP).build();
+		final var jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+		try {
+			jwt.sign(new RSASSASigner(key));
+		} catch (JOSEException e) {
+			throw new IllegalStateException("Failed to sign warm-up token", e);
+		}
+		return jwt.serialize();
+	}
+
+	/**
+	 * @param claims where to add the value
+	 * @param path   a claim name or a JSON path like $.realm_access.roles, $.resource_access.*.roles or $['https://c4-soft.com/user']['roles']
+	 * @param value  the value to set at this path, unless something is there already
+	 */
+	@SuppressWarnings("unchecked")
+	static void putAtPath(Map<String, Object> claims, String path, Object value) {
+		if (path == null || path.isBlank()) {
+			return;
+		}
+		final var keys = new ArrayList<String>();
+		if (path.startsWith("$")) {
+			final var matcher = JSON_PATH_SEGMENT.matcher(path);
+			var position = 1;
+			while (position < path.length()) {
+				if (!matcher.find(position) || matcher.start() != position) {
+					log.debug("Unsupported JSON path for warm-up tokens: %s".formatted(path));
+					return;
+				}
+				final var key = Stream.of(matcher.group(1), matcher.group(2), matcher.group(3), matcher.group(4)).filter(g -> g != null).findFirst().get();
+				keys.add("*".equals(key) ? WARM_UP : key);
+				position = matcher.end();
+			}
+		} else {
+			keys.add(path);
+		}
+		if (keys.isEmpty()) {
+			return;
+		}
+		var node = claims;
+		for (final var key : keys.subList(0, keys.size() - 1)) {
+			final var child = node.computeIfAbsent(key, k -> new LinkedHashMap<String, Object>());
+			if (!(child instanceof Map)) {
+				return;
+			}
+			node = (Map<String, Object>) child;
+		}
+		node.putIfAbsent(keys.get(keys.size() - 1), value);
+	}
+
+	/**
+	 * Evaluates each of the configured method-security expressions with the provided authentication. Evaluation failures (expression referencing a bean or
+	 * method parameter, for instance) are logged and ignored.
+	 *
+	 * @param authentication an authentication built from a synthetic token
+	 */
+	public void evaluateExpressions(Authentication authentication) {
+		for (final var expression : expressions) {
+			try {
+				ExpressionUtils.evaluateAsBoolean(expression, expressionHandler.createEvaluationContext(() -> authentication, invocation));
+			} catch (RuntimeException e) {
+				log.debug("Failed to evaluate %s during warm-up".formatted(expression.getExpressionString()), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * <p>
+ * Many to many relation between users (identified by an issuer and a subject) and the IDs of the sessions they are logged in with. This is what back-channel
+ * logout needs to find the sessions to invalidate when receiving a logout token (which contains an issuer and a subject, but no session token).
+ * </p>
+ * <p>
+ * Implementations are free to keep this index in memory (only the node which holds a session can then find it) or in a store shared by all the instances of a
+ * horizontally scaled client. In the later case, {@link #broadcastInvalidation(String, String)} must reach all the nodes, so that the logout token can be
+ * received by any of it.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public interface SessionIndex {
+
+	/**
+	 * @param issuer    OP issuer URI
+	 * @param subject   user subject for this OP
+	 * @param sessionId ID of a session in which the user is logged in with this OP
+	 */
+	void add(String issuer, String subject, String sessionId);
+
+	/**
+	 * @param issuer    OP issuer URI
+	 * @param subject   user subject for this OP
+	 * @param sessionId ID of a session in which the user is not logged in with this OP anymore
+	 */
+	void remove(String issuer, String subject, String sessionId);
+
+	/**
+	 * @param  issuer  OP issuer URI
+	 * @param  subject user subject for this OP
+	 * @return         the IDs of all the sessions in which this user is logged in with this OP
+	 */
+	Set<String> getSessionIds(String issuer, String subject);
+
+	/**
+	 * @param  sessionId a session ID
+	 * @return           all the (issuer, subject) pairs logged in this session
+	 */
+	Set<UserId> getUserIds(String sessionId);
+
+	/**
+	 * Drops all the entries referencing a session (called when a session is invalidated or expired)
+	 *
+	 * @param sessionId the ID of the removed session
+	 */
+	void removeSession(String sessionId);
+
+	/**
+	 * Called when a session ID is renewed (on login for instance, to prevent session fixation)
+	 *
+	 * @param oldSessionId previous session ID
+	 * @param newSessionId new session ID
+	 */
+	void changeSessionId(String oldSessionId, String newSessionId);
+
+	/**
+	 * @param listener notified when an invalidation is broadcasted for an (issuer, subject) pair
+	 */
+	void addInvalidationListener(InvalidationListener listener);
+
+	/**
+	 * Notifies all the registered {@link InvalidationListener listeners}, on all the nodes sharing this index, that the sessions of a user should be
+	 * invalidated for an OP.
+	 *
+	 * @param issuer  OP issuer URI
+	 * @param subject user subject for this OP
+	 */
+	void broadcastInvalidation(String issuer, String subject);
+
+	public static interface InvalidationListener {
+		void invalidate(String issuer, String subject);
+	}
+
+	public static record UserId(String iss, String sub) implements Serializable {
+	}
+}
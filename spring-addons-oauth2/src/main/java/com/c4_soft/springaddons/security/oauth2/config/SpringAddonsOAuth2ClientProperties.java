@@ -1,6 +1,7 @@
 package com.c4_soft.springaddons.security.oauth2.config;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -56,6 +57,12 @@ public class SpringAddonsOAuth2ClientProperties {
 	 */
 	private boolean backChannelLogoutEnabled = false;
 
+	/**
+	 * Asynchronous processing of back-channel logout tokens (used only if backChannelLogoutEnabled is true)
+	 */
+	@NestedConfigurationProperty
+	private BackChannelLogoutProperties backChannelLogout = new BackChannelLogoutProperties();
+
 	/**
 	 * Path matchers for the routes secured with the auto-configured client filter-chain
 	 */
@@ -92,6 +99,24 @@ public class SpringAddonsOAuth2ClientProperties {
 	@NestedConfigurationProperty
 	private CorsProperties[] cors = {};
 
+	/**
+	 * Configuration of the in-memory WebSessionStore auto-configured for reactive applications (ignored by servlets)
+	 */
+	@NestedConfigurationProperty
+	private WebSessionStoreProperties webSessionStore = new WebSessionStoreProperties();
+
+	/**
+	 * Background refresh of the access tokens of the authorized clients held in sessions, shortly before they expire
+	 */
+	@NestedConfigurationProperty
+	private RefreshAheadProperties refreshAhead = new RefreshAheadProperties();
+
+	/**
+	 * Keep the authentication and authorized clients in encrypted cookies instead of server-side sessions
+	 */
+	@NestedConfigurationProperty
+	private StatelessProperties stateless = new StatelessProperties();
+
 	@Data
 	public static class OAuth2LogoutProperties {
 		/**
@@ -120,6 +145,133 @@ public class SpringAddonsOAuth2ClientProperties {
 		private Optional<String> idTokenHintRequestParam = Optional.empty();
 	}
 
+	@Data
+	public static class WebSessionStoreProperties {
+		/**
+		 * Maximum number of sessions in the store. Once reached, expired sessions are removed and, if still full, new sessions are rejected.
+		 */
+		private int maxSessions = 10000;
+
+		/**
+		 * Number of maps sessions are spread across to reduce contention
+		 */
+		private int shards = 16;
+
+		/**
+		 * Interval between two scans of the store to remove expired sessions (and notify session listeners)
+		 */
+		private Duration expirationCheckInterval = Duration.ofSeconds(60);
+
+		/**
+		 * If true, session attributes are serialized in direct buffers (outside of the Java heap) and, when the max number of sessions is reached, the least
+		 * recently used sessions are evicted. All session attributes must then be serializable. Sharding is ignored.
+		 */
+		private boolean offHeap = false;
+	}
+
+	@Data
+	public static class RefreshAheadProperties {
+		/**
+		 * If true, a background task refreshes access tokens before they expire, so that user requests do not wait for the token endpoint. In servlet
+		 * applications with sessions shared by several instances, Spring Session must be configured: refreshed tokens are then written to the shared
+		 * sessions right away.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Interval between two scans of the sessions for access tokens to refresh
+		 */
+		private Duration interval = Duration.ofSeconds(10);
+
+		/**
+		 * How long before expiry an access token is refreshed
+		 */
+		private Duration advance = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum random extra advance, to spread refresh requests to the authorization server over time
+		 */
+		private Duration jitter = Duration.ofSeconds(10);
+
+		/**
+		 * Tokens of sessions idle for longer than that are not refreshed (they will be on next user request)
+		 */
+		private Duration maxIdle = Duration.ofMinutes(5);
+	}
+
+	@Data
+	public static class BackChannelLogoutProperties {
+		/**
+		 * Maximum number of logouts waiting to be processed. Once reached, the back-channel logout end-point answers with 503 until some are processed.
+		 */
+		private int queueCapacity = 1000;
+
+		/**
+		 * Number of logouts processed in parallel
+		 */
+		private int concurrency = 4;
+
+		/**
+		 * Maximum number of logout token IDs ("jti" claim) retained to detect replays. 0 disables replay detection.
+		 */
+		private int replayCacheSize = 10000;
+
+		/**
+		 * How long a logout token ID is retained to detect replays. Should be greater than logout tokens time to live.
+		 */
+		private Duration replayCacheTtl = Duration.ofMinutes(10);
+	}
+
+	@Data
+	public static class StatelessProperties {
+		/**
+		 * <p>
+		 * If true, the authentication, OAuth2 users and authorized clients are kept in AEAD-encrypted cookies (as well as authorization requests during login)
+		 * instead of server-side sessions: any instance can serve any request and instances can be restarted without users being logged out.
+		 * </p>
+		 * <p>
+		 * Back-channel logout and refresh-ahead are not available in this mode (there are no sessions to act on server-side), and CSRF should be set to one of
+		 * the cookie options.
+		 * </p>
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Base64 encoded AES key (128, 192 or 256 bits) to encrypt cookies with. Must be the same for all the instances and kept secret.
+		 */
+		private String cookieKey;
+
+		/**
+		 * Name of the cookie holding the authentication and authorized clients (suffixed with "_1", "_2", ... for the next chunks)
+		 */
+		private String cookieName = "SPRING_ADDONS_CLIENT";
+
+		/**
+		 * How long the browser should keep the authentication and authorized clients cookie. Should be close to the refresh tokens time to live.
+		 */
+		private Duration cookieMaxAge = Duration.ofHours(8);
+
+		/**
+		 * Name of the cookie holding the authorization request between the redirection to the authorization server and the callback
+		 */
+		private String authorizationRequestCookieName = "SPRING_ADDONS_AUTHORIZATION_REQUEST";
+
+		/**
+		 * How long the browser should keep the authorization request cookie (time for the user to login on the authorization server)
+		 */
+		private Duration authorizationRequestMaxAge = Duration.ofMinutes(5);
+
+		/**
+		 * Maximum length of a cookie value: bigger values are split in several cookies (browsers limit each cookie to 4KB, name and attributes included)
+		 */
+		private int maxCookieSize = 3800;
+
+		/**
+		 * Whether to set the "Secure" attribute on the cookies. Should be disabled only for local development over plain HTTP.
+		 */
+		private boolean cookieSecure = true;
+	}
+
 	public URI getPostLogoutRedirectUri() {
 		return UriComponentsBuilder.fromUri(clientUri).path(postLogoutRedirectPath).build(Map.of());
 	}
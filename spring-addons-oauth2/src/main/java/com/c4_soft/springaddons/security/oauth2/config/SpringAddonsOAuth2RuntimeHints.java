@@ -0,0 +1,72 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+
+import com.c4_soft.springaddons.security.oauth2.ModifiableClaimSet;
+import com.c4_soft.springaddons.security.oauth2.OAuthentication;
+import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
+import com.c4_soft.springaddons.security.oauth2.UnmodifiableClaimSet;
+import com.c4_soft.springaddons.security.oauth2.spring.C4MethodSecurityExpressionRoot;
+
+/**
+ * <p>
+ * Native image hints for spring-addons auto-configurations (registered in META-INF/spring/aot.factories, so that it applies to all modules depending on this
+ * one):
+ * </p>
+ * <ul>
+ * <li>binding of {@link SpringAddonsSecurityProperties} and {@link SpringAddonsOAuth2ClientProperties}</li>
+ * <li>Java serialization of what {@link EncryptedCookieCodec} writes to cookies ({@link StatelessClientState} and the types it references, including the JDK
+ * internal types immutable collections and {@link java.time.Instant} are replaced with when serialized) and of {@link OAuthentication} with its claim-sets
+ * (sessions)</li>
+ * <li>reflection on the types spring-addons SpEL expressions are evaluated against ({@link C4MethodSecurityExpressionRoot} and claim-sets accessors)</li>
+ * </ul>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class SpringAddonsOAuth2RuntimeHints implements RuntimeHintsRegistrar {
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		BindableRuntimeHintsRegistrar.forTypes(SpringAddonsSecurityProperties.class, SpringAddonsOAuth2ClientProperties.class).registerHints(hints, classLoader);
+
+		final var serialization = hints.serialization();
+		serialization.registerType(StatelessClientState.class);
+		serialization.registerType(CompactOAuth2User.class);
+		serialization.registerType(CompactAuthorizedClient.class);
+		serialization.registerType(SessionIndex.UserId.class);
+		serialization.registerType(OAuthentication.class);
+		serialization.registerType(OpenidClaimSet.class);
+		serialization.registerType(UnmodifiableClaimSet.class);
+		serialization.registerType(ModifiableClaimSet.class);
+		serialization.registerType(HashMap.class);
+		serialization.registerType(LinkedHashMap.class);
+		serialization.registerType(HashSet.class);
+		serialization.registerType(LinkedHashSet.class);
+		serialization.registerType(ArrayList.class);
+		serialization.registerType(TypeReference.of("java.util.CollSer"));
+		serialization.registerType(TypeReference.of("java.util.Collections$UnmodifiableMap"));
+		serialization.registerType(TypeReference.of("java.util.Collections$UnmodifiableRandomAccessList"));
+		serialization.registerType(TypeReference.of("java.util.Collections$UnmodifiableCollection"));
+		serialization.registerType(TypeReference.of("java.util.Collections$UnmodifiableList"));
+		serialization.registerType(TypeReference.of("java.time.Ser"));
+		serialization.registerType(Object[].class);
+		serialization.registerType(String[].class);
+
+		final var reflection = hints.reflection();
+		reflection.registerType(C4MethodSecurityExpressionRoot.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+		reflection.registerType(OAuthentication.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+		reflection.registerType(OpenidClaimSet.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+		reflection.registerType(UnmodifiableClaimSet.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+		reflection.registerType(ModifiableClaimSet.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+	}
+}
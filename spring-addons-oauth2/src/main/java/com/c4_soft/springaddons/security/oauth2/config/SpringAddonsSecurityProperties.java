@@ -1,6 +1,7 @@
 package com.c4_soft.springaddons.security.oauth2.config;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -84,6 +85,20 @@ public class SpringAddonsSecurityProperties {
 	 */
 	private Csrf csrf = Csrf.DEFAULT;
 
+	/**
+	 * Directory where to keep a snapshot of each issuer OpenID discovery document and JWK set. If set, JWT decoders are built from the snapshots at startup
+	 * (without waiting for the authorization servers) and snapshots are revalidated in the background. If empty (default), decoders are built from the
+	 * authorization servers at startup.
+	 */
+	private String issuerMetadataSnapshotsDirectory;
+
+	/**
+	 * Opt-in warm-up of JWT decoding, authentication conversion and method-security expressions, run before the application reports it is ready to accept
+	 * traffic
+	 */
+	@NestedConfigurationProperty
+	private WarmUpProperties warmUp = new WarmUpProperties();
+
 	/**
 	 * @param  iss                                              the issuer URI string
 	 * @return                                                  configuration properties associated with the provided issuer URI
@@ -134,6 +149,18 @@ public class SpringAddonsSecurityProperties {
 		 * Default is "*" which exposes all headers
 		 */
 		private String[] exposedHeaders = { "*" };
+
+		/**
+		 * Whether browsers may send credentials (cookies, Authorization header) with cross-origin requests. When true, allowed-origins must list explicit origins
+		 * (startup fails with "*"). Its entries are used as origin patterns (like https://*.example.com) and the matching request origin is echoed.
+		 */
+		private boolean allowCredentials = false;
+
+		/**
+		 * How long browsers may cache preflight responses. Without it, most browsers send a preflight before almost each cross-origin request. Null to omit the
+		 * Access-Control-Max-Age header.
+		 */
+		private Duration maxAge = Duration.ofMinutes(30);
 	}
 
 	@Data
@@ -186,6 +213,25 @@ public class SpringAddonsSecurityProperties {
 		private Case caze = Case.UNCHANGED;
 	}
 
+	@Data
+	public static class WarmUpProperties {
+		/**
+		 * If true, synthetic tokens signed with an ephemeral key are decoded, converted to authentications and used to evaluate method-security expressions
+		 * at startup, and the JWK set of each issuer is fetched, before the application readiness state switches to ACCEPTING_TRAFFIC
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * How many synthetic tokens to process per issuer (enough for the JIT compiler to kick in)
+		 */
+		private int iterations = 2000;
+
+		/**
+		 * Method-security expressions to evaluate with the authentications built from synthetic tokens
+		 */
+		private String[] expressions = { "isAuthenticated()", "hasAuthority('warm-up')" };
+	}
+
 	public static enum Case {
 		UNCHANGED, UPPER, LOWER
 	}
@@ -0,0 +1,118 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+
+/**
+ * <p>
+ * Everything an OAuth2 client (BFF) needs to know about a user agent when it has no server-side session: the {@link CompactOAuth2User} for each issuer, the
+ * {@link CompactAuthorizedClient authorized clients} and the authentication (registration ID, issuer and authorities). It is immutable and designed to be
+ * kept in an encrypted cookie (see {@link EncryptedCookieCodec}).
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public record StatelessClientState(
+		Map<String, CompactOAuth2User> oauth2Users,
+		Set<CompactAuthorizedClient> authorizedClients,
+		String authenticationRegistrationId,
+		String authenticationIssuer,
+		Set<String> authorities) implements Serializable {
+
+	public static final StatelessClientState EMPTY = new StatelessClientState(Map.of(), Set.of(), null, null, Set.of());
+
+	public StatelessClientState {
+		oauth2Users = oauth2Users == null ? Map.of() : Map.copyOf(oauth2Users);
+		authorizedClients = authorizedClients == null ? Set.of() : Set.copyOf(authorizedClients);
+		authorities = authorities == null ? Set.of() : Set.copyOf(authorities);
+	}
+
+	public boolean isEmpty() {
+		return oauth2Users.isEmpty() && authorizedClients.isEmpty() && authenticationRegistrationId == null;
+	}
+
+	public Optional<CompactAuthorizedClient> getAuthorizedClient(String registrationId) {
+		return authorizedClients.stream().filter(ac -> Objects.equals(registrationId, ac.registrationId())).findAny();
+	}
+
+	/**
+	 * @param  user             the user the authorized client was granted for. If null, the user already in the state for the authorized client issuer is kept.
+	 * @param  authorizedClient the authorized client to add. It replaces any authorized client with the same registration ID, as well as those for the same
+	 *                          issuer but another user.
+	 * @return                  a copy of this state with the new authorized client
+	 */
+	public StatelessClientState withAuthorizedClient(CompactOAuth2User user, CompactAuthorizedClient authorizedClient) {
+		final var clients = authorizedClients.stream()
+				.filter(ac -> !Objects.equals(authorizedClient.registrationId(), ac.registrationId()))
+				.filter(ac -> !Objects.equals(authorizedClient.issuer(), ac.issuer()) || Objects.equals(authorizedClient.principalName(), ac.principalName()));
+		final var users = new HashMap<>(oauth2Users);
+		if (user != null && authorizedClient.issuer() != null) {
+			users.put(authorizedClient.issuer(), user);
+		}
+		return new StatelessClientState(
+				users,
+				Stream.concat(clients, Stream.of(authorizedClient)).collect(Collectors.toSet()),
+				authenticationRegistrationId,
+				authenticationIssuer,
+				authorities);
+	}
+
+	/**
+	 * @param  registrationId the registration ID of the authorized client to remove
+	 * @return                a copy of this state without the authorized client (and without the user for its issuer, if it was the last authorized client for
+	 *                        this issuer)
+	 */
+	public StatelessClientState withoutAuthorizedClient(String registrationId) {
+		final var removed = getAuthorizedClient(registrationId);
+		if (removed.isEmpty()) {
+			return this;
+		}
+		final var clients = authorizedClients.stream().filter(ac -> !Objects.equals(registrationId, ac.registrationId())).collect(Collectors.toSet());
+		final var users = new HashMap<>(oauth2Users);
+		final var issuer = removed.get().issuer();
+		if (issuer != null && clients.stream().noneMatch(ac -> Objects.equals(issuer, ac.issuer()))) {
+			users.remove(issuer);
+		}
+		return new StatelessClientState(users, clients, authenticationRegistrationId, authenticationIssuer, authorities);
+	}
+
+	/**
+	 * @param  authentication the authentication resulting from a successful OAuth2 login
+	 * @param  issuer         the issuer of the client registration used to login
+	 * @return                a copy of this state with the given authentication
+	 */
+	public StatelessClientState withAuthentication(OAuth2AuthenticationToken authentication, String issuer) {
+		final var users = new HashMap<>(oauth2Users);
+		users.put(issuer, CompactOAuth2User.from(issuer, authentication.getPrincipal()));
+		return new StatelessClientState(
+				users,
+				authorizedClients,
+				authentication.getAuthorizedClientRegistrationId(),
+				issuer,
+				authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * @return the authentication rebuilt from this state, if any. Its principal has minimal claims only (see {@link CompactOAuth2User#toOAuth2User()}).
+	 */
+	public Optional<OAuth2AuthenticationToken> toAuthentication() {
+		if (authenticationRegistrationId == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(oauth2Users.get(authenticationIssuer)).map(
+				user -> new OAuth2AuthenticationToken(
+						user.toOAuth2User(),
+						authorities.stream().map(SimpleGrantedAuthority::new).toList(),
+						authenticationRegistrationId));
+	}
+}
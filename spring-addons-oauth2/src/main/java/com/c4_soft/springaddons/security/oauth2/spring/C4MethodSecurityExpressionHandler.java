@@ -1,23 +1,68 @@
 package com.c4_soft.springaddons.security.oauth2.spring;
 
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.aopalliance.intercept.MethodInvocation;
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.MethodClassKey;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
 import org.springframework.security.core.Authentication;
 
-import lombok.RequiredArgsConstructor;
-
-@RequiredArgsConstructor
+/**
+ * <p>
+ * Method-security expression handler evaluating expressions against a custom {@link C4MethodSecurityExpressionRoot}.
+ * </p>
+ * <p>
+ * As it is called for each secured method invocation:
+ * </p>
+ * <ul>
+ * <li>expressions are parsed only once (per expression string) and compiled to byte-code by SpEL (in {@link SpelCompilerMode#MIXED} mode by default:
+ * compiled after a few interpreted evaluations, and interpreted again if a compiled evaluation fails)</li>
+ * <li>the most specific method for an invocation is resolved only once per method and target class</li>
+ * <li>the authentication supplier provided by Spring Security is passed to the root object, which calls it only if the expression needs it</li>
+ * </ul>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
 public class C4MethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
-    private final Supplier<C4MethodSecurityExpressionRoot> expressionRootSupplier;
+    private final Function<Supplier<Authentication>, ? extends C4MethodSecurityExpressionRoot> expressionRootFactory;
+    private final Map<MethodClassKey, Method> specificMethods = new ConcurrentHashMap<>();
+
+    /**
+     * @param expressionRootFactory creates a new root object for each evaluation, from the (lazy) authentication supplier provided by Spring Security
+     */
+    public C4MethodSecurityExpressionHandler(Function<Supplier<Authentication>, ? extends C4MethodSecurityExpressionRoot> expressionRootFactory) {
+        this(expressionRootFactory, SpelCompilerMode.MIXED);
+    }
+
+    /**
+     * @param expressionRootFactory creates a new root object for each evaluation, from the (lazy) authentication supplier provided by Spring Security
+     * @param compilerMode          SpEL compiler mode. {@link SpelCompilerMode#OFF} to interpret expressions (as Spring Security does by default).
+     */
+    public C4MethodSecurityExpressionHandler(
+            Function<Supplier<Authentication>, ? extends C4MethodSecurityExpressionRoot> expressionRootFactory,
+            SpelCompilerMode compilerMode) {
+        this.expressionRootFactory = expressionRootFactory;
+        setExpressionParser(
+                new CachingExpressionParser(
+                        new SpelExpressionParser(new SpelParserConfiguration(compilerMode, C4MethodSecurityExpressionHandler.class.getClassLoader()))));
+    }
 
     /**
      * Creates the root object for expression evaluation.
@@ -31,14 +76,14 @@ public class C4MethodSecurityExpressionHandler extends DefaultMethodSecurityExpr
     @Override
     public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
         var root = createSecurityExpressionRoot(authentication, mi);
-        var ctx = new C4MethodSecurityEvaluationContext(root, mi, getParameterNameDiscoverer());
+        var ctx = new C4MethodSecurityEvaluationContext(root, getSpecificMethod(mi), mi.getArguments(), getParameterNameDiscoverer());
         ctx.setBeanResolver(getBeanResolver());
         return ctx;
     }
 
     private MethodSecurityExpressionOperations createSecurityExpressionRoot(Supplier<Authentication> authentication,
             MethodInvocation invocation) {
-        final var root = expressionRootSupplier.get();
+        final var root = expressionRootFactory.apply(authentication);
         root.setThis(invocation.getThis());
         root.setPermissionEvaluator(getPermissionEvaluator());
         root.setTrustResolver(getTrustResolver());
@@ -47,17 +92,48 @@ public class C4MethodSecurityExpressionHandler extends DefaultMethodSecurityExpr
         return root;
     }
 
+    private Method getSpecificMethod(MethodInvocation mi) {
+        final var targetClass = AopProxyUtils.ultimateTargetClass(mi.getThis());
+        return specificMethods.computeIfAbsent(
+                new MethodClassKey(mi.getMethod(), targetClass),
+                key -> AopUtils.getMostSpecificMethod(mi.getMethod(), targetClass));
+    }
+
     static class C4MethodSecurityEvaluationContext extends MethodBasedEvaluationContext {
 
-        C4MethodSecurityEvaluationContext(MethodSecurityExpressionOperations root, MethodInvocation mi,
+        C4MethodSecurityEvaluationContext(MethodSecurityExpressionOperations root, Method specificMethod, Object[] arguments,
                 ParameterNameDiscoverer parameterNameDiscoverer) {
-            super(root, getSpecificMethod(mi), mi.getArguments(), parameterNameDiscoverer);
+            super(root, specificMethod, arguments, parameterNameDiscoverer);
         }
 
-        private static Method getSpecificMethod(MethodInvocation mi) {
-            return AopUtils.getMostSpecificMethod(mi.getMethod(), AopProxyUtils.ultimateTargetClass(mi.getThis()));
+    }
+
+    /**
+     * Keeps parsed expressions (and so SpEL compiled state) per expression string, whoever asks the handler parser for it.
+     */
+    private static class CachingExpressionParser implements ExpressionParser {
+        private final ExpressionParser delegate;
+        private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+        CachingExpressionParser(ExpressionParser delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Expression parseExpression(String expressionString) throws ParseException {
+            final var cached = expressions.get(expressionString);
+            if (cached != null) {
+                return cached;
+            }
+            final var parsed = delegate.parseExpression(expressionString);
+            expressions.putIfAbsent(expressionString, parsed);
+            return parsed;
         }
 
+        @Override
+        public Expression parseExpression(String expressionString, ParserContext context) throws ParseException {
+            return delegate.parseExpression(expressionString, context);
+        }
     }
 
 }
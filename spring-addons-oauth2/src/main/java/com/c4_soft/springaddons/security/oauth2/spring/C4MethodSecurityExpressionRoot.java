@@ -1,14 +1,21 @@
 package com.c4_soft.springaddons.security.oauth2.spring;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import org.springframework.security.access.expression.SecurityExpressionRoot;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
+ * <p>
  * org.springframework.security.access.expression.method.MethodSecurityExpressionRoot is protected.
+ * </p>
+ * <p>
+ * The authentication is resolved lazily, only if an expression needs it, and at most once per evaluation: the supplier is the one provided by Spring
+ * Security to the {@link C4MethodSecurityExpressionHandler} (and not a read of the {@link org.springframework.security.core.context.SecurityContextHolder}
+ * thread-local, which might not be the one of the secured invocation).
+ * </p>
  *
  * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
  */
@@ -18,13 +25,21 @@ public class C4MethodSecurityExpressionRoot extends SecurityExpressionRoot imple
 	private Object returnObject;
 	private Object target;
 
-	public C4MethodSecurityExpressionRoot() {
-		super(SecurityContextHolder.getContext().getAuthentication());
+	/**
+	 * @param authentication supplies the authentication of the secured invocation. Called at most once, the first time an expression needs it.
+	 */
+	public C4MethodSecurityExpressionRoot(Supplier<Authentication> authentication) {
+		super(authentication);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * @param  <T>              expected {@link Authentication} implementation
+	 * @param  expectedAuthType expected {@link Authentication} implementation
+	 * @return                  the authentication, if it is an instance of the expected type (sub-types included)
+	 */
 	protected <T extends Authentication> Optional<T> get(Class<T> expectedAuthType) {
-		return Optional.ofNullable(getAuthentication()).map(a -> a.getClass().isAssignableFrom(expectedAuthType) ? (T) a : null).flatMap(Optional::ofNullable);
+		final var authentication = getAuthentication();
+		return expectedAuthType.isInstance(authentication) ? Optional.of(expectedAuthType.cast(authentication)) : Optional.empty();
 	}
 
 	@Override
@@ -0,0 +1,114 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.c4_soft.springaddons.security.oauth2.config.BackChannelLogoutProcessor.SessionsInvalidator;
+import com.c4_soft.springaddons.security.oauth2.config.BackChannelLogoutProcessor.Submission;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex.UserId;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties.BackChannelLogoutProperties;
+
+public class BackChannelLogoutProcessorTest {
+
+	@Test
+	public void givenTokenWasAlreadyAccepted_whenSubmittedAgain_thenItIsNotProcessedTwice() throws Exception {
+		final var invalidated = new ConcurrentLinkedQueue<UserId>();
+		final var done = new CountDownLatch(2);
+		try (var processor = new BackChannelLogoutProcessor((iss, sub) -> {
+			invalidated.add(new UserId(iss, sub));
+			done.countDown();
+		}, new BackChannelLogoutProperties())) {
+			assertThat(processor.submit("https://issuer-a", "ch4mp", "jti-1")).isEqualTo(Submission.ACCEPTED);
+			assertThat(processor.submit("https://issuer-a", "ch4mp", "jti-1")).isEqualTo(Submission.REPLAYED);
+			assertThat(processor.submit("https://issuer-b", "ch4mp", "jti-1")).isEqualTo(Submission.ACCEPTED);
+
+			assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(invalidated).containsExactlyInAnyOrder(new UserId("https://issuer-a", "ch4mp"), new UserId("https://issuer-b", "ch4mp"));
+			assertThat(processor.getReplayedCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void givenQueueIsFull_whenSubmitting_thenLogoutIsRejectedAndCanBeRetried() throws Exception {
+		final var properties = new BackChannelLogoutProperties();
+		properties.setConcurrency(1);
+		properties.setQueueCapacity(1);
+		final var release = new CountDownLatch(1);
+		final var started = new CountDownLatch(1);
+		try (var processor = new BackChannelLogoutProcessor((iss, sub) -> {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, properties)) {
+			assertThat(processor.submit("https://issuer-a", "user-1", "jti-1")).isEqualTo(Submission.ACCEPTED);
+			assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(processor.submit("https://issuer-a", "user-2", "jti-2")).isEqualTo(Submission.ACCEPTED);
+			assertThat(processor.getQueueSize()).isEqualTo(1);
+
+			assertThat(processor.submit("https://issuer-a", "user-3", "jti-3")).isEqualTo(Submission.REJECTED);
+			assertThat(processor.getRejectedCount()).isEqualTo(1);
+
+			release.countDown();
+			while (processor.getCompletedCount() < 2) {
+				Thread.sleep(10);
+			}
+			assertThat(processor.submit("https://issuer-a", "user-3", "jti-3")).isEqualTo(Submission.ACCEPTED);
+		}
+	}
+
+	@Test
+	public void givenAsynchronousInvalidation_whenSubmitting_thenWorkerWaitsForItsCompletion() throws Exception {
+		final var properties = new BackChannelLogoutProperties();
+		properties.setConcurrency(1);
+		final var pending = new CompletableFuture<Void>();
+		try (var processor = new BackChannelLogoutProcessor((SessionsInvalidator) (iss, sub) -> pending, properties)) {
+			assertThat(processor.submit("https://issuer-a", "user-1", "jti-1")).isEqualTo(Submission.ACCEPTED);
+			assertThat(processor.submit("https://issuer-a", "user-2", "jti-2")).isEqualTo(Submission.ACCEPTED);
+			Thread.sleep(100);
+
+			assertThat(processor.getCompletedCount()).isZero();
+			assertThat(processor.getQueueSize()).isEqualTo(1);
+
+			pending.complete(null);
+			while (processor.getCompletedCount() < 2) {
+				Thread.sleep(10);
+			}
+			assertThat(processor.getFailedCount()).isZero();
+			assertThat(processor.getTotalLatency().toMillis()).isGreaterThanOrEqualTo(100);
+		}
+	}
+
+	@Test
+	public void givenInvalidationFailed_whenOpRetries_thenLogoutIsProcessedAgain() throws Exception {
+		final var attempts = new AtomicInteger();
+		try (var processor = new BackChannelLogoutProcessor(
+				(SessionsInvalidator) (iss, sub) -> attempts.incrementAndGet() == 1
+						? CompletableFuture.failedFuture(new IllegalStateException("session store not reachable"))
+						: CompletableFuture.completedFuture(null),
+				new BackChannelLogoutProperties())) {
+			assertThat(processor.submit("https://issuer-a", "ch4mp", "jti-1")).isEqualTo(Submission.ACCEPTED);
+			while (processor.getCompletedCount() < 1) {
+				Thread.sleep(10);
+			}
+			assertThat(processor.getFailedCount()).isEqualTo(1);
+
+			assertThat(processor.submit("https://issuer-a", "ch4mp", "jti-1")).isEqualTo(Submission.ACCEPTED);
+			while (processor.getCompletedCount() < 2) {
+				Thread.sleep(10);
+			}
+			assertThat(processor.getFailedCount()).isEqualTo(1);
+			assertThat(processor.getReplayedCount()).isZero();
+			assertThat(attempts).hasValue(2);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+public class CompactAuthorizedClientTest {
+	private static final String ISSUER = "https://oidc.c4-soft.com/auth/realms/spring-addons";
+	private static final Instant IAT = Instant.parse("2023-06-01T10:00:00Z");
+	private static final Instant EXP = Instant.parse("2023-06-01T10:05:00Z");
+
+	@Test
+	public void givenOidcAuthorizedClient_whenCompactedAndRehydrated_thenTokensAndIdentityArePreserved() {
+		final var registration = registration();
+		final var authorizedClient = authorizedClient(registration);
+
+		final var rehydrated = CompactAuthorizedClient.from(authorizedClient).toAuthorizedClient(registration);
+
+		assertThat(rehydrated.getClientRegistration()).isSameAs(registration);
+		assertThat(rehydrated.getPrincipalName()).isEqualTo("ch4mp");
+		assertThat(rehydrated.getAccessToken().getTokenValue()).isEqualTo(authorizedClient.getAccessToken().getTokenValue());
+		assertThat(rehydrated.getAccessToken().getExpiresAt()).isEqualTo(EXP);
+		assertThat(rehydrated.getAccessToken().getScopes()).containsExactlyInAnyOrder("openid", "profile", "email");
+		assertThat(rehydrated.getRefreshToken().getTokenValue()).isEqualTo("refresh-token");
+		assertThat(CompactAuthorizedClient.from(authorizedClient).matches(ISSUER, "ch4mp")).isTrue();
+
+		final var user = CompactOAuth2User.from(ISSUER, oidcUser()).toOAuth2User();
+		assertThat(user).isInstanceOf(OidcUser.class);
+		assertThat(user.getName()).isEqualTo("ch4mp");
+		assertThat(((OidcUser) user).getIdToken().getTokenValue()).isEqualTo("id-token");
+		assertThat(((OidcUser) user).getSubject()).isEqualTo("ch4mp");
+	}
+
+	@Test
+	public void givenSessionWithOneAuthorizedClient_whenSerialized_thenCompactRepresentationIsAtLeastFourTimesSmaller() throws IOException {
+		final var authorizedClient = authorizedClient(registration());
+		final var user = oidcUser();
+
+		final var fullSize = serializedSize(new HashSet<>(Set.of(authorizedClient)), new HashMap<>(Map.of(ISSUER, user)));
+		final var compactSize =
+				serializedSize(new HashSet<>(Set.of(CompactAuthorizedClient.from(authorizedClient))), new HashMap<>(Map.of(ISSUER, CompactOAuth2User.from(ISSUER, user))));
+
+		// the client registration (and its provider metadata) is by far the biggest part of the full representation
+		assertThat(compactSize).as("compact representation size (full one is %d bytes)", fullSize).isLessThan(fullSize / 4);
+		assertThat(fullSize - compactSize).isGreaterThan(4 * 1024);
+	}
+
+	private static int serializedSize(Serializable authorizedClients, Serializable users) throws IOException {
+		final var bytes = new ByteArrayOutputStream();
+		try (var out = new ObjectOutputStream(bytes)) {
+			out.writeObject(authorizedClients);
+			out.writeObject(users);
+		}
+		return bytes.size();
+	}
+
+	private static ClientRegistration registration() {
+		final var metadata = new HashMap<String, Object>();
+		metadata.put("issuer", ISSUER);
+		metadata.put("authorization_endpoint", ISSUER + "/protocol/openid-connect/auth");
+		metadata.put("token_endpoint", ISSUER + "/protocol/openid-connect/token");
+		metadata.put("introspection_endpoint", ISSUER + "/protocol/openid-connect/token/introspect");
+		metadata.put("userinfo_endpoint", ISSUER + "/protocol/openid-connect/userinfo");
+		metadata.put("end_session_endpoint", ISSUER + "/protocol/openid-connect/logout");
+		metadata.put("jwks_uri", ISSUER + "/protocol/openid-connect/certs");
+		metadata.put("grant_types_supported", List.of("authorization_code", "implicit", "refresh_token", "password", "client_credentials"));
+		metadata.put("response_types_supported", List.of("code", "none", "id_token", "token", "id_token token", "code id_token", "code token"));
+		metadata.put("subject_types_supported", List.of("public", "pairwise"));
+		metadata.put("id_token_signing_alg_values_supported", List.of("PS384", "ES384", "RS384", "HS256", "HS512", "ES256", "RS256", "HS384", "ES512"));
+		metadata.put("scopes_supported", List.of("openid", "profile", "email", "address", "phone", "offline_access", "roles", "web-origins", "microprofile-jwt"));
+		metadata.put("claims_supported", List.of("aud", "sub", "iss", "auth_time", "name", "given_name", "family_name", "preferred_username", "email", "acr"));
+
+		return ClientRegistration.withRegistrationId("spring-addons-confidential").clientId("spring-addons-confidential").clientSecret("change-me")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+				.scope("openid", "profile", "email", "offline_access").authorizationUri(ISSUER + "/protocol/openid-connect/auth")
+				.tokenUri(ISSUER + "/protocol/openid-connect/token").userInfoUri(ISSUER + "/protocol/openid-connect/userinfo").userNameAttributeName("sub")
+				.jwkSetUri(ISSUER + "/protocol/openid-connect/certs").issuerUri(ISSUER).providerConfigurationMetadata(metadata).clientName("Spring Addons")
+				.build();
+	}
+
+	private static OAuth2AuthorizedClient authorizedClient(ClientRegistration registration) {
+		return new OAuth2AuthorizedClient(
+				registration,
+				"ch4mp",
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", IAT, EXP, Set.of("openid", "profile", "email")),
+				new OAuth2RefreshToken("refresh-token", IAT, IAT.plusSeconds(1800)));
+	}
+
+	private static OAuth2User oidcUser() {
+		final var claims = new HashMap<String, Object>();
+		claims.put("iss", ISSUER);
+		claims.put("sub", "ch4mp");
+		claims.put("aud", List.of("spring-addons-confidential"));
+		claims.put("iat", IAT);
+		claims.put("exp", EXP);
+		claims.put("auth_time", IAT);
+		claims.put("name", "Jerome Wacongne");
+		claims.put("preferred_username", "ch4mp");
+		claims.put("given_name", "Jerome");
+		claims.put("family_name", "Wacongne");
+		claims.put("email", "ch4mp@c4-soft.com");
+		claims.put("email_verified", true);
+		claims.put("realm_access", Map.of("roles", List.of("NICE", "AUTHOR", "offline_access", "uma_authorization")));
+		return new DefaultOidcUser(
+				List.of(new SimpleGrantedAuthority("NICE"), new SimpleGrantedAuthority("AUTHOR")),
+				new OidcIdToken("id-token", IAT, EXP, claims),
+				"sub");
+	}
+}
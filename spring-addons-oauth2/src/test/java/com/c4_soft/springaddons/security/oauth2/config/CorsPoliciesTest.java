@@ -0,0 +1,99 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
+
+public class CorsPoliciesTest {
+
+	@Test
+	public void givenDefaultProperties_whenPreflight_thenRequestedMethodAndHeadersAreEchoedWithMaxAge() {
+		final var policies = new CorsPolicies(new CorsProperties[] { new CorsProperties() });
+
+		final var actual = policies.preflight(PathContainer.parsePath("/greet"), preflightHeaders("https://localhost:4200", "PUT", "Authorization"));
+
+		assertThat(actual.getAccessControlAllowOrigin()).isEqualTo("*");
+		assertThat(actual.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS)).isEqualTo("PUT");
+		assertThat(actual.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS)).isEqualTo("Authorization");
+		assertThat(actual.getAccessControlMaxAge()).isEqualTo(1800);
+		assertThat(actual.getAccessControlAllowCredentials()).isFalse();
+		assertThat(actual.getVary()).contains(HttpHeaders.ORIGIN);
+	}
+
+	@Test
+	public void givenExplicitValuesAndCredentials_whenPreflight_thenPrecomputedHeadersAndOriginAreReturned() {
+		final var props = new CorsProperties();
+		props.setPath("/api/**");
+		props.setAllowedOrigins(new String[] { "https://*.c4-soft.com" });
+		props.setAllowedMethods(new String[] { "GET", "POST" });
+		props.setAllowedHeaders(new String[] { "Authorization", "Content-Type" });
+		props.setAllowCredentials(true);
+		props.setMaxAge(Duration.ofHours(1));
+		final var policies = new CorsPolicies(new CorsProperties[] { props });
+
+		final var actual = policies.preflight(PathContainer.parsePath("/api/greet"), preflightHeaders("https://app.c4-soft.com", "POST", "Authorization"));
+
+		assertThat(actual.getAccessControlAllowOrigin()).isEqualTo("https://app.c4-soft.com");
+		assertThat(actual.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS)).isEqualTo("GET, POST");
+		assertThat(actual.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS)).isEqualTo("Authorization, Content-Type");
+		assertThat(actual.getAccessControlAllowCredentials()).isTrue();
+		assertThat(actual.getAccessControlMaxAge()).isEqualTo(3600);
+	}
+
+	@Test
+	public void givenCredentialsAllowedWithWildcardOrigin_whenBuildingPolicies_thenStartupFails() {
+		final var props = new CorsProperties();
+		props.setPath("/api/**");
+		props.setAllowedOrigins(new String[] { "https://localhost:4200", "*" });
+		props.setAllowCredentials(true);
+
+		assertThatThrownBy(() -> new CorsPolicies(new CorsProperties[] { props })).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("/api/**").hasMessageContaining("explicit origins");
+	}
+
+	@Test
+	public void givenRejectedOriginMethodOrPath_whenPreflight_thenNull() {
+		final var props = new CorsProperties();
+		props.setPath("/api/**");
+		props.setAllowedOrigins(new String[] { "https://localhost:4200" });
+		props.setAllowedMethods(new String[] { "GET" });
+		final var policies = new CorsPolicies(new CorsProperties[] { props });
+
+		assertThat(policies.preflight(PathContainer.parsePath("/api/greet"), preflightHeaders("https://evil.com", "GET", null))).isNull();
+		assertThat(policies.preflight(PathContainer.parsePath("/api/greet"), preflightHeaders("https://localhost:4200", "DELETE", null))).isNull();
+		assertThat(policies.preflight(PathContainer.parsePath("/other"), preflightHeaders("https://localhost:4200", "GET", null))).isNull();
+		assertThat(policies.preflight(PathContainer.parsePath("/api/greet"), preflightHeaders("https://localhost:4200", "GET", null))).isNotNull();
+	}
+
+	@Test
+	public void givenSeveralEntries_whenGetConfigurations_thenOrderIsPreserved() {
+		final var api = new CorsProperties();
+		api.setPath("/api/**");
+		final var maxAgeOmitted = new CorsProperties();
+		maxAgeOmitted.setMaxAge(null);
+		final var policies = new CorsPolicies(new CorsProperties[] { api, maxAgeOmitted });
+
+		assertThat(policies.getConfigurations()).containsOnlyKeys("/api/**", "/**");
+		assertThat(policies.getConfigurations().keySet()).containsExactly("/api/**", "/**");
+		assertThat(policies.getConfigurations().get("/**").getMaxAge()).isNull();
+		assertThat(policies.preflight(PathContainer.parsePath("/greet"), preflightHeaders("https://localhost:4200", "GET", null))
+				.containsKey(HttpHeaders.ACCESS_CONTROL_MAX_AGE)).isFalse();
+	}
+
+	private static HttpHeaders preflightHeaders(String origin, String method, String requestHeaders) {
+		final var headers = new HttpHeaders();
+		headers.setOrigin(origin);
+		headers.set(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, method);
+		if (requestHeaders != null) {
+			headers.set(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS, requestHeaders);
+		}
+		return headers;
+	}
+}
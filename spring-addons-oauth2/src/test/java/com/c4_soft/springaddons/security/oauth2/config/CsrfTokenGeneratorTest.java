@@ -0,0 +1,29 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class CsrfTokenGeneratorTest {
+
+	@Test
+	public void whenGenerate_thenValueIsARandomUuid() {
+		final var uuid = UUID.fromString(CsrfTokenGenerator.generate());
+
+		assertThat(uuid.version()).isEqualTo(4);
+		assertThat(uuid.variant()).isEqualTo(2);
+	}
+
+	@Test
+	public void givenSeveralThreads_whenGenerate_thenValuesAreUnique() {
+		final var values = ConcurrentHashMap.<String>newKeySet();
+
+		IntStream.range(0, 10000).parallel().forEach(i -> values.add(CsrfTokenGenerator.generate()));
+
+		assertThat(values).hasSize(10000);
+	}
+}
@@ -0,0 +1,90 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+
+public class EncryptedCookieCodecTest {
+	private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+	private static final String OTHER_KEY = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+	private static String randomToken(int length) {
+		final var bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return Base64.getUrlEncoder().encodeToString(bytes).substring(0, length);
+	}
+
+	private static StatelessClientState state() {
+		final var now = Instant.now();
+		final var client = new CompactAuthorizedClient(
+				"keycloak",
+				"https://issuer-a",
+				"ch4mp",
+				randomToken(1500),
+				now,
+				now.plusSeconds(300),
+				Set.of("openid", "profile"),
+				randomToken(800),
+				now,
+				now.plusSeconds(1800));
+		final var user = new CompactOAuth2User("https://issuer-a", "ch4mp", "sub", "ch4mp", randomToken(1200), now, now.plusSeconds(300));
+		return new StatelessClientState(Map.of("https://issuer-a", user), Set.of(client), "keycloak", "https://issuer-a", Set.of("NICE"));
+	}
+
+	@Test
+	public void givenStateIsBiggerThanMaxChunkSize_whenEncodedAndDecoded_thenItIsSplitAndRestored() {
+		final var codec = new EncryptedCookieCodec(KEY, 1000);
+		final var state = state();
+
+		final var chunks = codec.encode("BFF", state);
+
+		assertThat(chunks).hasSizeGreaterThan(1).allMatch(chunk -> chunk.length() <= 1000 && chunk.matches("[A-Za-z0-9_-]+"));
+		assertThat(codec.decode("BFF", chunks, StatelessClientState.class)).contains(state);
+		assertThat(codec.decode("BFF", chunks, StatelessClientState.class).flatMap(StatelessClientState::toAuthentication).get().getName()).isEqualTo("ch4mp");
+	}
+
+	@Test
+	public void givenCookieWasTamperedWithOrRenamedOrEncryptedWithAnotherKey_whenDecoded_thenEmpty() {
+		final var codec = new EncryptedCookieCodec(KEY, 3800);
+		final var chunks = codec.encode("BFF", state());
+		final var tampered = chunks.get(0).substring(0, 40) + (chunks.get(0).charAt(40) == 'A' ? 'B' : 'A') + chunks.get(0).substring(41);
+
+		assertThat(codec.decode("BFF", List.of(tampered), StatelessClientState.class)).isEmpty();
+		assertThat(codec.decode("OTHER", chunks, StatelessClientState.class)).isEmpty();
+		assertThat(new EncryptedCookieCodec(OTHER_KEY, 3800).decode("BFF", chunks, StatelessClientState.class)).isEmpty();
+		assertThat(codec.decode("BFF", chunks, String.class)).isEmpty();
+	}
+
+	@Test
+	public void givenAuthorizationRequest_whenEncodedAndDecoded_thenItIsRestored() {
+		final var codec = new EncryptedCookieCodec(KEY, 3800);
+		final var authorizationRequest = OAuth2AuthorizationRequest.authorizationCode().authorizationUri("https://issuer-a/auth").clientId("bff")
+				.redirectUri("https://bff/login/oauth2/code/keycloak").scopes(Set.of("openid", "profile")).state("state")
+				.additionalParameters(Map.of("nonce", "nonce-hash")).attributes(Map.of("registration_id", "keycloak", "nonce", "nonce")).build();
+
+		final var decoded = codec.decode("AUTHZ", codec.encode("AUTHZ", authorizationRequest), OAuth2AuthorizationRequest.class);
+
+		assertThat(decoded).isPresent();
+		assertThat(decoded.get().getState()).isEqualTo("state");
+		assertThat(decoded.get().getScopes()).containsExactlyInAnyOrder("openid", "profile");
+		assertThat(decoded.get().<String>getAttribute("registration_id")).isEqualTo("keycloak");
+	}
+
+	@Test
+	public void givenJdkTypeNotUsedByClientState_whenDecoded_thenItIsNotDeserialized() {
+		final var codec = new EncryptedCookieCodec(KEY, 3800);
+
+		final var chunks = codec.encode("BFF", new TreeMap<>(Map.of("foo", "bar")));
+
+		assertThat(codec.decode("BFF", chunks, Map.class)).isEmpty();
+	}
+}
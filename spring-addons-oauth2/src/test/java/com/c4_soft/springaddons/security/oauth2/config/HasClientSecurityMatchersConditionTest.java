@@ -0,0 +1,37 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+public class HasClientSecurityMatchersConditionTest {
+
+	@Test
+	public void givenNoOrBlankSecurityMatchers_whenEvaluating_thenNoMatch() {
+		assertThat(matches(Map.of())).isFalse();
+		assertThat(matches(Map.of(HasClientSecurityMatchersCondition.SECURITY_MATCHERS_PROPERTY, ""))).isFalse();
+		assertThat(matches(Map.of(HasClientSecurityMatchersCondition.SECURITY_MATCHERS_PROPERTY + "[0]", " "))).isFalse();
+	}
+
+	@Test
+	public void givenCommaSeparatedOrIndexedSecurityMatchers_whenEvaluating_thenMatch() {
+		assertThat(matches(Map.of(HasClientSecurityMatchersCondition.SECURITY_MATCHERS_PROPERTY, "/login/**,/oauth2/**"))).isTrue();
+		assertThat(matches(Map.of(HasClientSecurityMatchersCondition.SECURITY_MATCHERS_PROPERTY + "[0]", "/login/**"))).isTrue();
+	}
+
+	private static boolean matches(Map<String, Object> properties) {
+		final var environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+		final var context = mock(ConditionContext.class);
+		when(context.getEnvironment()).thenReturn(environment);
+		return new HasClientSecurityMatchersCondition().getMatchOutcome(context, mock(AnnotatedTypeMetadata.class)).isMatch();
+	}
+}
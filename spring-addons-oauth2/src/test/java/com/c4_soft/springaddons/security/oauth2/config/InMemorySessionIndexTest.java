@@ -0,0 +1,87 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.Test;
+
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex.UserId;
+
+public class InMemorySessionIndexTest {
+
+	@Test
+	public void givenUserIsLoggedInTwoSessions_whenOneSessionIsRemoved_thenOnlyTheOtherOneIsIndexed() {
+		final var index = new InMemorySessionIndex();
+		index.add("https://issuer-a", "ch4mp", "session-1");
+		index.add("https://issuer-a", "ch4mp", "session-2");
+		index.add("https://issuer-b", "ch4mp", "session-1");
+
+		assertThat(index.getSessionIds("https://issuer-a", "ch4mp")).containsExactlyInAnyOrder("session-1", "session-2");
+		assertThat(index.getUserIds("session-1")).containsExactlyInAnyOrder(new UserId("https://issuer-a", "ch4mp"), new UserId("https://issuer-b", "ch4mp"));
+
+		index.removeSession("session-1");
+
+		assertThat(index.getSessionIds("https://issuer-a", "ch4mp")).containsExactly("session-2");
+		assertThat(index.getSessionIds("https://issuer-b", "ch4mp")).isEmpty();
+		assertThat(index.getUserIds("session-1")).isEmpty();
+	}
+
+	@Test
+	public void givenUserIsLoggedIn_whenSessionIdChanges_thenEntriesAreMovedToNewId() {
+		final var index = new InMemorySessionIndex();
+		index.add("https://issuer-a", "ch4mp", "old-id");
+
+		index.changeSessionId("old-id", "new-id");
+
+		assertThat(index.getSessionIds("https://issuer-a", "ch4mp")).isEqualTo(Set.of("new-id"));
+		assertThat(index.getUserIds("old-id")).isEmpty();
+	}
+
+	@Test
+	public void givenUserLogsOutOfASession_whenLoggingInAnotherSessionConcurrently_thenTheNewSessionIsIndexed() throws Exception {
+		final var index = new InMemorySessionIndex();
+		final var barrier = new CyclicBarrier(2);
+		for (var i = 0; i < 2000; ++i) {
+			final var previous = "session-%d".formatted(i);
+			final var next = "session-%d".formatted(i + 1);
+			index.add("https://issuer-a", "ch4mp", previous);
+
+			final var logout = CompletableFuture.runAsync(() -> {
+				await(barrier);
+				index.removeSession(previous);
+			});
+			final var login = CompletableFuture.runAsync(() -> {
+				await(barrier);
+				index.add("https://issuer-a", "ch4mp", next);
+			});
+			CompletableFuture.allOf(logout, login).get();
+
+			assertThat(index.getSessionIds("https://issuer-a", "ch4mp")).containsExactly(next);
+			index.removeSession(next);
+		}
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void whenInvalidationIsBroadcasted_thenAllListenersAreNotified() {
+		final var index = new InMemorySessionIndex();
+		final var notified = new ArrayList<UserId>();
+		index.addInvalidationListener((iss, sub) -> notified.add(new UserId(iss, sub)));
+		index.addInvalidationListener((iss, sub) -> notified.add(new UserId(iss, sub)));
+
+		index.broadcastInvalidation("https://issuer-a", "ch4mp");
+
+		assertThat(notified).containsExactly(new UserId("https://issuer-a", "ch4mp"), new UserId("https://issuer-a", "ch4mp"));
+	}
+}
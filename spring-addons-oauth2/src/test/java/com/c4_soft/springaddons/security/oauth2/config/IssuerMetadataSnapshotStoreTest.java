@@ -0,0 +1,136 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.web.client.RestOperations;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+
+public class IssuerMetadataSnapshotStoreTest {
+	static final String ISSUER = "https://localhost:8443/realms/master";
+	static final String JWK_SET_URI = ISSUER + "/protocol/openid-connect/certs";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void givenSnapshotWasSaved_whenLoading_thenSameSnapshotIsReturnedWithoutNetworkCall() throws Exception {
+		final var rest = mock(RestOperations.class);
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath().resolve("snapshots"), rest);
+		final var snapshot = snapshot(rsaJwkSet());
+
+		store.save(snapshot);
+		final var actual = store.load(ISSUER);
+
+		assertThat(actual).isPresent();
+		assertThat(actual.get().issuer()).isEqualTo(ISSUER);
+		assertThat(actual.get().jwkSetUri()).isEqualTo(JWK_SET_URI);
+		assertThat(actual.get().discovery()).isEqualTo(snapshot.discovery());
+		assertThat(actual.get().parseJwkSet().getKeys()).isEqualTo(snapshot.parseJwkSet().getKeys());
+		assertThat(actual.get().fetchedAt()).isEqualTo(snapshot.fetchedAt());
+		verifyNoInteractions(rest);
+	}
+
+	@Test
+	public void givenNoSnapshot_whenLoading_thenEmpty() {
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath());
+
+		assertThat(store.load(ISSUER)).isEmpty();
+	}
+
+	@Test
+	public void givenSnapshotFileIsCorrupted_whenLoading_thenItIsIgnored() throws Exception {
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath());
+		Files.writeString(store.file(ISSUER), "{\"issuer\":");
+
+		assertThat(store.load(ISSUER)).isEmpty();
+	}
+
+	@Test
+	public void givenSnapshotIsForAnotherIssuer_whenLoading_thenItIsIgnored() throws Exception {
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath());
+		final var other = new IssuerMetadataSnapshot("https://other", JWK_SET_URI, Map.of(), rsaJwkSet(), Instant.now());
+		Files.writeString(store.file(ISSUER), other.toJson());
+
+		assertThat(store.load(ISSUER)).isEmpty();
+	}
+
+	@Test
+	public void givenKeysHaveNoAlg_whenGettingSignatureAlgorithms_thenWholeFamilyIsReturned() throws Exception {
+		final var jwkSet = new JWKSet(new ECKeyGenerator(Curve.P_256).generate()).toString(true);
+
+		assertThat(snapshot(jwkSet).signatureAlgorithms()).containsExactlyInAnyOrder(SignatureAlgorithm.ES256, SignatureAlgorithm.ES384, SignatureAlgorithm.ES512);
+		assertThat(snapshot(rsaJwkSet()).signatureAlgorithms()).containsExactly(SignatureAlgorithm.RS256);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void givenAuthorizationServerIsReachable_whenFetching_thenDiscoveryAndJwkSetAreRetrieved() throws Exception {
+		final var rest = mock(RestOperations.class);
+		final var jwkSet = rsaJwkSet();
+		when(rest.exchange(eq(URI.create(ISSUER + "/.well-known/openid-configuration")), eq(HttpMethod.GET), any(), any(ParameterizedTypeReference.class)))
+				.thenReturn(ResponseEntity.ok(Map.of("issuer", ISSUER, "jwks_uri", JWK_SET_URI)));
+		when(rest.getForObject(JWK_SET_URI, String.class)).thenReturn(jwkSet);
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath(), rest);
+
+		final var actual = store.fetch(issuer());
+
+		assertThat(actual.issuer()).isEqualTo(ISSUER);
+		assertThat(actual.jwkSetUri()).isEqualTo(JWK_SET_URI);
+		assertThat(actual.jwkSet()).isEqualTo(jwkSet);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void givenDiscoveryDocumentIsForAnotherIssuer_whenFetching_thenIllegalState() {
+		final var rest = mock(RestOperations.class);
+		when(rest.exchange(any(URI.class), eq(HttpMethod.GET), any(), any(ParameterizedTypeReference.class)))
+				.thenReturn(ResponseEntity.ok(Map.of("issuer", "https://other", "jwks_uri", JWK_SET_URI)));
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath(), rest);
+
+		assertThatThrownBy(() -> store.fetch(issuer())).isInstanceOf(IllegalStateException.class);
+	}
+
+	static IssuerProperties issuer() {
+		final var issuer = new IssuerProperties();
+		issuer.setLocation(URI.create(ISSUER));
+		return issuer;
+	}
+
+	static IssuerMetadataSnapshot snapshot(String jwkSet) {
+		return new IssuerMetadataSnapshot(
+				ISSUER,
+				JWK_SET_URI,
+				Map.of("issuer", ISSUER, "jwks_uri", JWK_SET_URI),
+				jwkSet,
+				Instant.now().truncatedTo(ChronoUnit.SECONDS));
+	}
+
+	static String rsaJwkSet() throws Exception {
+		return new JWKSet(new RSAKeyGenerator(2048).keyID("key-1").algorithm(JWSAlgorithm.RS256).generate()).toString(true);
+	}
+}
@@ -0,0 +1,95 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * <p>
+ * Time to match request paths against a few hundred permit-all routes (like a gateway would have) with {@link PathPatternTrie} compared to a linear chain of
+ * {@link PathPattern}s (what OrServerWebExchangeMatcher over PathPatternParserServerWebExchangeMatcher does). Skipped unless run with -Dbenchmark=true, for
+ * instance:
+ * </p>
+ *
+ * <pre>
+ * mvn test -Dtest=PathPatternTrieBenchmark -Dbenchmark=true -Dbenchmark.routes=1000 -Dbenchmark.iterations=200000
+ * </pre>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class PathPatternTrieBenchmark {
+	static final int ROUTES = Integer.getInteger("benchmark.routes", 500);
+	static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 100000);
+
+	String[] patterns;
+	List<PathContainer> paths;
+
+	@Before
+	public void setUp() {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		patterns = IntStream.range(0, ROUTES).mapToObj(i -> "/api/service-%d/v%d/resources-%d/**".formatted(i % 50, i % 3, i)).toArray(String[]::new);
+		// half of the paths match one of the routes, the other half are restricted ones (which is the worst case for a linear chain)
+		paths = IntStream.range(0, 1000).mapToObj(i -> {
+			final var route = i % ROUTES;
+			return PathContainer.parsePath("/api/service-%d/v%d/%s-%d/42".formatted(route % 50, route % 3, i % 2 == 0 ? "resources" : "private", route));
+		}).toList();
+	}
+
+	@Test
+	public void linearChain() {
+		final var linear = Stream.of(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+		run("linear chain", path -> {
+			for (final var pattern : linear) {
+				if (pattern.matches(path)) {
+					return true;
+				}
+			}
+			return false;
+		});
+	}
+
+	@Test
+	public void trie() {
+		final var trie = new PathPatternTrie(patterns);
+		run("trie", trie::matches);
+	}
+
+	void run(String scenario, Predicate<PathContainer> matcher) {
+		count(matcher, ITERATIONS / 10);
+
+		final var start = System.nanoTime();
+		final var matched = count(matcher, ITERATIONS);
+		final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertThat(matched).isPositive();
+		// printed to the console: there is no logging implementation on the test classpath of this module
+		System.out.printf(
+				"%s: %d matches against %d routes in %d ms (%d ns/match)%n",
+				scenario,
+				ITERATIONS,
+				ROUTES,
+				elapsed.toMillis(),
+				elapsed.toNanos() / ITERATIONS);
+	}
+
+	long count(Predicate<PathContainer> matcher, int iterations) {
+		long matched = 0;
+		for (var i = 0; i < iterations; ++i) {
+			if (matcher.test(paths.get(i % paths.size()))) {
+				++matched;
+			}
+		}
+		return matched;
+	}
+}
@@ -0,0 +1,77 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+public class PathPatternTrieTest {
+	static final String[] PATTERNS = {
+			"/login/**",
+			"/oauth2/**",
+			"/actuator/health/{group}",
+			"/api/v1/greet",
+			"/api/v1/users/{id}",
+			"/api/v1/users/{id}/avatar.png",
+			"/api/*/public/**",
+			"/assets/*.js",
+			"/{lang:en|fr}/index.html",
+			"/" };
+
+	static final String[] PATHS = {
+			"/",
+			"/login",
+			"/login/",
+			"/login/options",
+			"/oauth2/authorization/keycloak",
+			"/oauth2",
+			"/actuator/health",
+			"/actuator/health/readiness",
+			"/actuator/health/readiness/more",
+			"/api/v1/greet",
+			"/api/v1/greet/",
+			"/api/v1/greeting",
+			"/api/v1/users/42",
+			"/api/v1/users/42/avatar.png",
+			"/api/v1/users/42/avatar.jpg",
+			"/api/v2/public/docs/index.html",
+			"/api/v2/private/docs",
+			"/assets/main.js",
+			"/assets/main.css",
+			"/fr/index.html",
+			"/de/index.html",
+			"/Login",
+			"/api/v1/users/a%20b",
+			"/api/v1/users;jsessionid=123/42" };
+
+	@Test
+	public void givenMixedPatterns_whenMatches_thenSameResultAsLinearPathPatternMatching() {
+		final var trie = new PathPatternTrie(PATTERNS);
+		final var linear = Stream.of(PATTERNS).map(PathPatternParser.defaultInstance::parse).toList();
+
+		for (final var path : PATHS) {
+			final var container = PathContainer.parsePath(path);
+			assertThat(trie.matches(container)).as(path).isEqualTo(linear.stream().anyMatch(pattern -> pattern.matches(container)));
+		}
+	}
+
+	@Test
+	public void givenCatchAllPattern_whenMatches_thenAnyPathMatches() {
+		final var trie = new PathPatternTrie("/api/**", "/**");
+
+		assertThat(trie.matches(PathContainer.parsePath("/"))).isTrue();
+		assertThat(trie.matches(PathContainer.parsePath("/whatever/deep/path"))).isTrue();
+	}
+
+	@Test
+	public void givenNoPattern_whenMatches_thenNoPathMatches() {
+		final var trie = new PathPatternTrie();
+
+		assertThat(trie.isEmpty()).isTrue();
+		assertThat(trie.matches(PathContainer.parsePath("/"))).isFalse();
+		assertThat(trie.matches(PathContainer.parsePath("/api"))).isFalse();
+	}
+}
@@ -0,0 +1,79 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.Case;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.SimpleAuthoritiesMappingProperties;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.WarmUpProperties;
+import com.nimbusds.jwt.SignedJWT;
+
+public class SecurityWarmUpTest {
+	static final String ISSUER = "https://localhost:8443/realms/master";
+
+	@Test
+	public void givenWarmUp_whenMintingSyntheticToken_thenItHasNoKeyIdAndIsVerifiedWithPublicKey() throws Exception {
+		final var warmUp = new SecurityWarmUp(new WarmUpProperties(), null);
+
+		final var token = warmUp.syntheticToken(ISSUER);
+
+		assertThat(SignedJWT.parse(token).getHeader().getKeyID()).isNull();
+		final var jwt = NimbusJwtDecoder.withPublicKey(warmUp.getPublicKey()).build().decode(token);
+		assertThat(jwt.getIssuer()).hasToString(ISSUER);
+		assertThat(jwt.getSubject()).isEqualTo("warm-up");
+	}
+
+	@Test
+	public void givenIssuerWithAuthoritiesAndUsernamePaths_whenMintingSyntheticToken_thenClaimsAreFoundAtTheConfiguredPaths() {
+		final var issuer = new IssuerProperties();
+		issuer.setLocation(URI.create(ISSUER));
+		issuer.setUsernameClaim("$.preferred_username");
+		issuer.setAuthorities(
+				new SimpleAuthoritiesMappingProperties[] {
+						new SimpleAuthoritiesMappingProperties("$.realm_access.roles", "ROLE_", Case.UNCHANGED),
+						new SimpleAuthoritiesMappingProperties("$.resource_access.*.roles", "", Case.UNCHANGED),
+						new SimpleAuthoritiesMappingProperties("$['https://c4-soft.com/user']['roles']", "USER_", Case.UNCHANGED),
+						new SimpleAuthoritiesMappingProperties("$.cognito:groups", "GROUP_", Case.UNCHANGED),
+						new SimpleAuthoritiesMappingProperties("$.groups[0]", "INDEXED_", Case.UNCHANGED) });
+		final var properties = new SpringAddonsSecurityProperties();
+		properties.setIssuers(new IssuerProperties[] { issuer });
+		final var warmUp = new SecurityWarmUp(new WarmUpProperties(), null);
+
+		final var jwt = NimbusJwtDecoder.withPublicKey(warmUp.getPublicKey()).build().decode(warmUp.syntheticToken(issuer));
+
+		assertThat(jwt.getClaimAsString("preferred_username")).isEqualTo("warm-up");
+		assertThat(new ConfigurableClaimSet2AuthoritiesConverter(properties).convert(jwt.getClaims())).extracting(GrantedAuthority::getAuthority)
+				.containsExactlyInAnyOrder("ROLE_warm-up", "warm-up", "USER_warm-up", "GROUP_warm-up");
+	}
+
+	@Test
+	public void givenExpressionsWhichCanNotBeEvaluated_whenEvaluating_thenOtherExpressionsAreStillEvaluated() {
+		final var properties = new WarmUpProperties();
+		properties.setExpressions(new String[] { "@missingBean.check()", "isAuthenticated()" });
+		final var evaluations = new AtomicInteger();
+		final var warmUp = new SecurityWarmUp(properties, new DefaultMethodSecurityExpressionHandler() {
+			@Override
+			public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+				evaluations.incrementAndGet();
+				return super.createEvaluationContext(authentication, mi);
+			}
+		});
+
+		warmUp.evaluateExpressions(new TestingAuthenticationToken("warm-up", null, "warm-up"));
+
+		assertThat(evaluations).hasValue(2);
+	}
+}
@@ -0,0 +1,58 @@
+package com.c4_soft.springaddons.security.oauth2.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+
+import com.c4_soft.springaddons.security.oauth2.OAuthentication;
+import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
+import com.c4_soft.springaddons.security.oauth2.spring.C4MethodSecurityExpressionRoot;
+
+public class SpringAddonsOAuth2RuntimeHintsTest {
+
+	@Test
+	public void whenLoadingAotFactories_thenRegistrarIsFound() {
+		final var registrars = SpringFactoriesLoader.forResourceLocation("META-INF/spring/aot.factories").load(RuntimeHintsRegistrar.class);
+
+		assertThat(registrars).hasAtLeastOneElementOfType(SpringAddonsOAuth2RuntimeHints.class);
+	}
+
+	@Test
+	public void whenRegisteringHints_thenCookieStateAndSessionTypesAreSerializable() {
+		final var hints = registerHints();
+
+		assertThat(RuntimeHintsPredicates.serialization().onType(StatelessClientState.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(CompactOAuth2User.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(CompactAuthorizedClient.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(SessionIndex.UserId.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(OAuthentication.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(OpenidClaimSet.class)).accepts(hints);
+
+		// what immutable collections and instants are replaced with when serialized
+		assertThat(RuntimeHintsPredicates.serialization().onType(TypeReference.of(Instant.class.getPackageName() + ".Ser"))).accepts(hints);
+		assertThat(RuntimeHintsPredicates.serialization().onType(TypeReference.of(Map.of().getClass().getPackageName() + ".CollSer"))).accepts(hints);
+	}
+
+	@Test
+	public void whenRegisteringHints_thenPropertiesCanBeBoundAndExpressionRootMethodsInvoked() {
+		final var hints = registerHints();
+
+		assertThat(RuntimeHintsPredicates.reflection().onType(SpringAddonsSecurityProperties.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(SpringAddonsOAuth2ClientProperties.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(C4MethodSecurityExpressionRoot.class)).accepts(hints);
+	}
+
+	private static RuntimeHints registerHints() {
+		final var hints = new RuntimeHints();
+		new SpringAddonsOAuth2RuntimeHints().registerHints(hints, SpringAddonsOAuth2RuntimeHintsTest.class.getClassLoader());
+		return hints;
+	}
+}
@@ -0,0 +1,94 @@
+package com.c4_soft.springaddons.security.oauth2.spring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.time.Duration;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+/**
+ * <p>
+ * Overhead of a &#64;PreAuthorize expression evaluation (evaluation context creation and expression evaluation, as done by Spring Security for each secured
+ * method invocation) with:
+ * </p>
+ * <ul>
+ * <li>Spring Security default handler</li>
+ * <li>{@link C4MethodSecurityExpressionHandler} with interpreted expressions ({@link SpelCompilerMode#OFF})</li>
+ * <li>{@link C4MethodSecurityExpressionHandler} with compiled expressions ({@link SpelCompilerMode#MIXED}, the default)</li>
+ * </ul>
+ * <p>
+ * Skipped unless run with -Dbenchmark=true, for instance:
+ * </p>
+ *
+ * <pre>
+ * mvn test -Dtest=C4MethodSecurityExpressionHandlerBenchmark -Dbenchmark=true -Dbenchmark.iterations=2000000
+ * </pre>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class C4MethodSecurityExpressionHandlerBenchmark {
+	static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 500000);
+	static final String EXPRESSION = "isAuthenticated() and hasAnyAuthority('NICE', 'AUTHOR') and #name == principal";
+
+	final Authentication authentication = new TestingAuthenticationToken("ch4mp", null, "NICE");
+	MethodInvocation invocation;
+
+	@Before
+	public void setUp() throws Exception {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		invocation = new SimpleMethodInvocation(
+				new C4MethodSecurityExpressionHandlerTest.GreetingServiceImpl(),
+				C4MethodSecurityExpressionHandlerTest.GreetingService.class.getMethod("greet", String.class),
+				"ch4mp");
+	}
+
+	@Test
+	public void springSecurityDefault() {
+		run("Spring Security default", new DefaultMethodSecurityExpressionHandler());
+	}
+
+	@Test
+	public void interpreted() {
+		run("C4 interpreted", new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new, SpelCompilerMode.OFF));
+	}
+
+	@Test
+	public void compiled() {
+		run("C4 compiled", new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new));
+	}
+
+	void run(String scenario, MethodSecurityExpressionHandler handler) {
+		// Spring Security parses each expression once per secured method and keeps it
+		final var expression = handler.getExpressionParser().parseExpression(EXPRESSION);
+		count(handler, expression, ITERATIONS / 10);
+
+		final var start = System.nanoTime();
+		final var granted = count(handler, expression, ITERATIONS);
+		final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertThat(granted).isEqualTo(ITERATIONS);
+		// printed to the console: there is no logging implementation on the test classpath of this module
+		System.out.printf("%s: %d evaluations in %d ms (%d ns/evaluation)%n", scenario, ITERATIONS, elapsed.toMillis(), elapsed.toNanos() / ITERATIONS);
+	}
+
+	long count(MethodSecurityExpressionHandler handler, Expression expression, int iterations) {
+		long granted = 0;
+		for (var i = 0; i < iterations; ++i) {
+			if (ExpressionUtils.evaluateAsBoolean(expression, handler.createEvaluationContext(() -> authentication, invocation))) {
+				++granted;
+			}
+		}
+		return granted;
+	}
+}
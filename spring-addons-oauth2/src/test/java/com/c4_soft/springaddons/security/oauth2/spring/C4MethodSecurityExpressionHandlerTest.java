@@ -0,0 +1,86 @@
+package com.c4_soft.springaddons.security.oauth2.spring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+public class C4MethodSecurityExpressionHandlerTest {
+	final TestingAuthenticationToken authentication = new TestingAuthenticationToken("ch4mp", null, "NICE");
+
+	@Test
+	public void givenSameExpressionString_whenParsedTwice_thenSameExpressionIsReturned() {
+		final var handler = new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new);
+
+		assertThat(handler.getExpressionParser().parseExpression("hasAuthority('NICE')"))
+				.isSameAs(handler.getExpressionParser().parseExpression("hasAuthority('NICE')"));
+	}
+
+	@Test
+	public void givenMixedCompilerMode_whenEvaluatingRepeatedly_thenResultIsStableAndExpressionIsCompilable() throws Exception {
+		final var handler = new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new, SpelCompilerMode.MIXED);
+		final var expression = handler.getExpressionParser().parseExpression("hasAuthority('NICE') and #name == 'ch4mp'");
+		final var invocation = new SimpleMethodInvocation(new GreetingServiceImpl(), GreetingService.class.getMethod("greet", String.class), "ch4mp");
+
+		for (var i = 0; i < 500; ++i) {
+			assertThat(ExpressionUtils.evaluateAsBoolean(expression, handler.createEvaluationContext(() -> authentication, invocation))).isTrue();
+		}
+		assertThat(((SpelExpression) expression).compileExpression()).isTrue();
+	}
+
+	@Test
+	public void givenInterfaceMethod_whenCreatingEvaluationContext_thenParametersAreResolvedFromImplementation() throws Exception {
+		final var handler = new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new);
+		final var expression = handler.getExpressionParser().parseExpression("#name");
+		final var invocation = new SimpleMethodInvocation(new GreetingServiceImpl(), GreetingService.class.getMethod("greet", String.class), "ch4mp");
+
+		assertThat(expression.getValue(handler.createEvaluationContext(() -> authentication, invocation))).isEqualTo("ch4mp");
+		assertThat(expression.getValue(handler.createEvaluationContext(() -> authentication, invocation))).isEqualTo("ch4mp");
+	}
+
+	@Test
+	public void givenExpressionDoesNotNeedAuthentication_whenEvaluating_thenAuthenticationIsNotResolved() throws Exception {
+		final var handler = new C4MethodSecurityExpressionHandler(C4MethodSecurityExpressionRoot::new);
+		final var invocation = new SimpleMethodInvocation(new GreetingServiceImpl(), GreetingService.class.getMethod("greet", String.class), "ch4mp");
+		final var resolutions = new AtomicInteger();
+
+		final var ctx = handler.createEvaluationContext(() -> {
+			resolutions.incrementAndGet();
+			return authentication;
+		}, invocation);
+
+		assertThat(ExpressionUtils.evaluateAsBoolean(handler.getExpressionParser().parseExpression("#name == 'ch4mp'"), ctx)).isTrue();
+		assertThat(resolutions).hasValue(0);
+		assertThat(ExpressionUtils.evaluateAsBoolean(handler.getExpressionParser().parseExpression("isAuthenticated() and hasAuthority('NICE')"), ctx))
+				.isTrue();
+		assertThat(resolutions).hasValue(1);
+	}
+
+	@Test
+	public void givenAuthenticationIsASubType_whenGettingItWithSuperType_thenItIsReturned() {
+		final var root = new C4MethodSecurityExpressionRoot(() -> authentication);
+
+		assertThat(root.get(Authentication.class)).containsSame(authentication);
+		assertThat(root.get(TestingAuthenticationToken.class)).containsSame(authentication);
+		assertThat(root.get(AnonymousAuthenticationToken.class)).isEmpty();
+	}
+
+	static interface GreetingService {
+		String greet(String name);
+	}
+
+	static class GreetingServiceImpl implements GreetingService {
+		@Override
+		public String greet(String name) {
+			return "Hi %s!".formatted(name);
+		}
+	}
+}
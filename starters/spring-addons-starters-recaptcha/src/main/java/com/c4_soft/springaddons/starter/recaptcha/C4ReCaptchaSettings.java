@@ -1,6 +1,8 @@
 package com.c4_soft.springaddons.starter.recaptcha;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -16,4 +18,64 @@ public class C4ReCaptchaSettings {
 	@Value("${siteverify-url:https://www.google.com/recaptcha/api/siteverify}")
 	private URL siteverifyUrl;
 	private double v3Threshold = .5;
+
+	/**
+	 * Maximum time to wait for the siteverify response (including retries)
+	 */
+	private Duration timeout = Duration.ofSeconds(5);
+
+	/**
+	 * Number of retries when the connection to siteverify end-point fails (the request was not sent, so the token was not consumed)
+	 */
+	private int maxRetries = 1;
+
+	/**
+	 * Share a single siteverify request between concurrent submissions of the same token. Results are never reused once the request completed: a replayed
+	 * token is sent to siteverify again (which rejects it as a duplicate).
+	 */
+	private boolean dedupInFlight = true;
+
+	private FilterProperties filter = new FilterProperties();
+
+	/**
+	 * Configuration for the filters enforcing reCAPTCHA verification on matching routes, before requests reach controllers
+	 *
+	 * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+	 */
+	@Data
+	public static class FilterProperties {
+		/**
+		 * Register a filter (servlet or reactive, depending on the application type)
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Path patterns (like /users/** or /signup) of the requests to verify
+		 */
+		private List<String> paths = List.of();
+
+		/**
+		 * HTTP methods of the requests to verify. All methods if empty.
+		 */
+		private List<String> methods = List.of("POST", "PUT", "PATCH");
+
+		/**
+		 * Name of the header containing the reCAPTCHA token, evaluated first
+		 */
+		private String headerName = "X-ReCaptcha-Token";
+
+		/**
+		 * Name of the request parameter (query or form data) containing the reCAPTCHA token, evaluated if the header is absent
+		 */
+		private String parameterName = "g-recaptcha-response";
+
+		/**
+		 * Verify tokens as V3 (score must reach v3-threshold) or V2 (success is enough)
+		 */
+		private ReCaptchaVersion version = ReCaptchaVersion.V3;
+	}
+
+	public static enum ReCaptchaVersion {
+		V2, V3
+	}
 }
@@ -1,35 +1,60 @@
 package com.c4_soft.springaddons.starter.recaptcha;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 
 import com.c4_soft.springaddons.starter.webclient.C4WebClientBuilderFactoryService;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 /**
+ * <p>
  * Usage:
+ * </p>
  *
  * <pre>
  * if (Boolean.FALSE.equals(captcha.checkV2(reCaptcha).block())) {
  * 	throw new RuntimeException("Are you a robot?");
  * }
  * </pre>
+ * <p>
+ * A single WebClient, using the connection pool shared by {@link C4WebClientBuilderFactoryService}, is used for all verifications. Requests time out after
+ * the configured {@code timeout} and are retried only if the connection could not be established. Concurrent submissions of the same token share
+ * the same siteverify request (see {@code dedup-in-flight}), but results are not kept once this request completed, so that a replayed
+ * token is always rejected by siteverify.
+ * </p>
  *
  * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class C4ReCaptchaValidationService {
 
 	private final C4ReCaptchaSettings settings;
-	private final C4WebClientBuilderFactoryService webClientBuilder;
+	private final WebClient webClient;
+	private final Optional<ReCaptchaValidationListener> listener;
+	private final Map<String, Mono<V3ValidationResponseDto>> inFlightVerifications = new ConcurrentHashMap<>();
+
+	public C4ReCaptchaValidationService(
+			C4ReCaptchaSettings settings,
+			C4WebClientBuilderFactoryService webClientBuilder,
+			Optional<ReCaptchaValidationListener> listener) {
+		this.settings = settings;
+		this.webClient = webClientBuilder.get(settings.getSiteverifyUrl()).build();
+		this.listener = listener;
+	}
 
 	/**
 	 * Checks a reCaptcha V2 challenge response
@@ -38,7 +63,7 @@ public class C4ReCaptchaValidationService {
 	 * @return          true / false
 	 */
 	public Mono<Boolean> checkV2(String response) {
-		return response(response, V2ValidationResponseDto.class).map(dto -> {
+		return verify(response).map(dto -> {
 			log.debug("reCaptcha result : {}", dto);
 			return dto.isSuccess();
 		});
@@ -52,14 +77,14 @@ public class C4ReCaptchaValidationService {
 	 * @throws ReCaptchaValidationException if response wasn't a valid reCAPTCHA token for your site or score is below configured threshold
 	 */
 	public Mono<Double> checkV3(String response) throws ReCaptchaValidationException {
-		return response(response, V3ValidationResponseDto.class).map(dto -> {
+		return verify(response).map(dto -> {
 			log.debug("reCaptcha result : {}", dto);
 			if (!dto.isSuccess()) {
 				throw new ReCaptchaValidationException(
 						String.format(
 								"Failed to validate reCaptcha: %s %s",
 								response,
-								dto.getErrorCodes().stream().collect(Collectors.joining("[", ", ", "]"))));
+								Optional.ofNullable(dto.getErrorCodes()).orElse(List.of()).stream().collect(Collectors.joining(", ", "[", "]"))));
 			}
 			if (dto.getScore() < settings.getV3Threshold()) {
 				throw new ReCaptchaValidationException(String.format("Failed to validate reCaptcha: %s. Score is %f", response, dto.getScore()));
@@ -68,8 +93,23 @@ public class C4ReCaptchaValidationService {
 		});
 	}
 
-	private <T> Mono<T> response(String response, Class<T> dtoType) {
-		return webClientBuilder.get(settings.getSiteverifyUrl()).build().post().contentType(MediaType.APPLICATION_FORM_URLENCODED)
-				.body(BodyInserters.fromFormData("secret", settings.getSecretKey()).with("response", response)).retrieve().bodyToMono(dtoType);
+	private Mono<V3ValidationResponseDto> verify(String response) {
+		if (!settings.isDedupInFlight() || response == null) {
+			return siteverify(response);
+		}
+		return inFlightVerifications.computeIfAbsent(response, token -> siteverify(token).doOnTerminate(() -> inFlightVerifications.remove(token)).cache());
+	}
+
+	private Mono<V3ValidationResponseDto> siteverify(String response) {
+		return Mono.defer(() -> {
+			final var start = System.nanoTime();
+			return webClient.post().contentType(MediaType.APPLICATION_FORM_URLENCODED)
+					.body(BodyInserters.fromFormData("secret", settings.getSecretKey()).with("response", response)).retrieve()
+					.bodyToMono(V3ValidationResponseDto.class)
+					.retryWhen(Retry.backoff(settings.getMaxRetries(), Duration.ofMillis(50)).filter(WebClientRequestException.class::isInstance))
+					.timeout(settings.getTimeout())
+					.doOnNext(dto -> listener.ifPresent(l -> l.onVerified(Duration.ofNanos(System.nanoTime() - start), dto)))
+					.doOnError(e -> listener.ifPresent(l -> l.onError(Duration.ofNanos(System.nanoTime() - start), e)));
+		});
 	}
 }
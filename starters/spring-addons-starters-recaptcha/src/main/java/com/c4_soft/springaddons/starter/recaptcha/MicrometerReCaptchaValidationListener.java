@@ -0,0 +1,49 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes siteverify latency (timer) and scores (distribution summary) with percentile histograms:
+ * <ul>
+ * <li>{@code spring.addons.recaptcha.siteverify} tagged with {@code outcome} (success, failure or error)</li>
+ * <li>{@code spring.addons.recaptcha.score}, reCAPTCHA V3 scores</li>
+ * </ul>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class MicrometerReCaptchaValidationListener implements ReCaptchaValidationListener {
+	private final Timer successTimer;
+	private final Timer failureTimer;
+	private final Timer errorTimer;
+	private final DistributionSummary scores;
+
+	public MicrometerReCaptchaValidationListener(MeterRegistry registry) {
+		this.successTimer = timer(registry, "success");
+		this.failureTimer = timer(registry, "failure");
+		this.errorTimer = timer(registry, "error");
+		this.scores = DistributionSummary.builder("spring.addons.recaptcha.score").description("reCAPTCHA V3 scores").publishPercentileHistogram()
+				.minimumExpectedValue(.01).maximumExpectedValue(1.).register(registry);
+	}
+
+	@Override
+	public void onVerified(Duration latency, V3ValidationResponseDto response) {
+		(response.isSuccess() ? successTimer : failureTimer).record(latency);
+		if (response.isSuccess() && response.getAction() != null) {
+			scores.record(response.getScore());
+		}
+	}
+
+	@Override
+	public void onError(Duration latency, Throwable error) {
+		errorTimer.record(latency);
+	}
+
+	private static Timer timer(MeterRegistry registry, String outcome) {
+		return Timer.builder("spring.addons.recaptcha.siteverify").description("Latency of reCAPTCHA siteverify requests").tag("outcome", outcome)
+				.publishPercentileHistogram().register(registry);
+	}
+}
@@ -0,0 +1,71 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Route matching and verification logic shared by {@link ReCaptchaWebFilter} and {@link ReCaptchaServletFilter}
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+class ReCaptchaFilterSupport {
+	private final C4ReCaptchaSettings.FilterProperties settings;
+	private final C4ReCaptchaValidationService validationService;
+	private final List<PathPattern> paths;
+	private final Set<String> methods;
+
+	ReCaptchaFilterSupport(C4ReCaptchaSettings.FilterProperties settings, C4ReCaptchaValidationService validationService) {
+		this.settings = settings;
+		this.validationService = validationService;
+		this.paths = settings.getPaths().stream().map(PathPatternParser.defaultInstance::parse).toList();
+		this.methods = settings.getMethods().stream().map(String::toUpperCase).collect(Collectors.toSet());
+	}
+
+	String getHeaderName() {
+		return settings.getHeaderName();
+	}
+
+	String getParameterName() {
+		return settings.getParameterName();
+	}
+
+	boolean matches(String method, String path) {
+		if (!methods.isEmpty() && !methods.contains(method)) {
+			return false;
+		}
+		final var pathContainer = PathContainer.parsePath(path);
+		return paths.stream().anyMatch(p -> p.matches(pathContainer));
+	}
+
+	/**
+	 * @param  token reCAPTCHA token from the request
+	 * @return       OK if the request should proceed, or the status to short-circuit it with: BAD_REQUEST if the token is missing, FORBIDDEN if it is rejected
+	 *               (or score is below threshold) and SERVICE_UNAVAILABLE if siteverify could not be reached
+	 */
+	Mono<HttpStatus> verify(String token) {
+		if (!StringUtils.hasText(token)) {
+			return Mono.just(HttpStatus.BAD_REQUEST);
+		}
+		final Mono<Boolean> isHuman = settings.getVersion() == C4ReCaptchaSettings.ReCaptchaVersion.V2 ? validationService.checkV2(token)
+				: validationService.checkV3(token).map(score -> true);
+		return isHuman.map(accepted -> Boolean.TRUE.equals(accepted) ? HttpStatus.OK : HttpStatus.FORBIDDEN).onErrorResume(e -> {
+			if (e instanceof ReCaptchaValidationException) {
+				log.debug("reCaptcha rejected: {}", e.getMessage());
+				return Mono.just(HttpStatus.FORBIDDEN);
+			}
+			log.warn("reCaptcha verification failed: {}", e.getMessage());
+			return Mono.just(HttpStatus.SERVICE_UNAVAILABLE);
+		}).defaultIfEmpty(HttpStatus.SERVICE_UNAVAILABLE);
+	}
+}
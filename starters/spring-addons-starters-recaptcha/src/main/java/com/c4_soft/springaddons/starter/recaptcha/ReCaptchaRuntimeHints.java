@@ -0,0 +1,20 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+
+/**
+ * Native image hints for the reCAPTCHA starter: settings binding and JSON deserialization of siteverify responses.
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class ReCaptchaRuntimeHints implements RuntimeHintsRegistrar {
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		BindableRuntimeHintsRegistrar.forTypes(C4ReCaptchaSettings.class).registerHints(hints, classLoader);
+		new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), V2ValidationResponseDto.class, V3ValidationResponseDto.class);
+	}
+}
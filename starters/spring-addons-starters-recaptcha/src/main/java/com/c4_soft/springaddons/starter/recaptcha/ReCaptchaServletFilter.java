@@ -0,0 +1,58 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * <p>
+ * Servlet filter verifying the reCAPTCHA token of the requests matching {@link C4ReCaptchaSettings.FilterProperties}, without parking a request thread while
+ * siteverify responds: the request is put in async mode and, once the token is verified, either dispatched again to the rest of the chain (on a container
+ * thread) or completed with a 4xx status.
+ * </p>
+ * <p>
+ * The token is read from the configured header or, if absent, from the configured request parameter (query or form data).
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class ReCaptchaServletFilter extends OncePerRequestFilter {
+	private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+	private final ReCaptchaFilterSupport support;
+
+	public ReCaptchaServletFilter(C4ReCaptchaSettings settings, C4ReCaptchaValidationService validationService) {
+		this(new ReCaptchaFilterSupport(settings.getFilter(), validationService));
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !support.matches(request.getMethod(), URL_PATH_HELPER.getPathWithinApplication(request));
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		final var token = Optional.ofNullable(request.getHeader(support.getHeaderName())).orElseGet(() -> request.getParameter(support.getParameterName()));
+		final var asyncContext = request.startAsync(request, response);
+		// the async dispatch, if any, goes through this filter again: OncePerRequestFilter skips it, see shouldNotFilterAsyncDispatch()
+		support.verify(token).subscribe(status -> {
+			if (status == HttpStatus.OK) {
+				asyncContext.dispatch();
+			} else {
+				((HttpServletResponse) asyncContext.getResponse()).setStatus(status.value());
+				asyncContext.complete();
+			}
+		});
+	}
+}
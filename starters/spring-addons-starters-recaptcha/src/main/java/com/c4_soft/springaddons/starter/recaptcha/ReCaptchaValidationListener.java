@@ -0,0 +1,24 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import java.time.Duration;
+
+/**
+ * Notified of each request sent to the siteverify end-point (de-duplicated verifications are not). A Micrometer implementation is registered when
+ * micrometer-core is on the classpath.
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public interface ReCaptchaValidationListener {
+
+	/**
+	 * @param latency  time spent waiting for siteverify response
+	 * @param response siteverify response
+	 */
+	void onVerified(Duration latency, V3ValidationResponseDto response);
+
+	/**
+	 * @param latency time spent before the error occurred
+	 * @param error   the error (timeout, connection failure, 5xx, ...)
+	 */
+	void onError(Duration latency, Throwable error);
+}
@@ -0,0 +1,62 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Reactive filter verifying the reCAPTCHA token of the requests matching {@link C4ReCaptchaSettings.FilterProperties}, without blocking: requests without a
+ * valid token (or with a V3 score below threshold) are short-circuited with a 4xx status.
+ * </p>
+ * <p>
+ * The token is read from the configured header or, if absent, from the configured query or form-data parameter.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class ReCaptchaWebFilter implements WebFilter {
+	private final ReCaptchaFilterSupport support;
+
+	public ReCaptchaWebFilter(C4ReCaptchaSettings settings, C4ReCaptchaValidationService validationService) {
+		this(new ReCaptchaFilterSupport(settings.getFilter(), validationService));
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		final var request = exchange.getRequest();
+		if (!support.matches(request.getMethod().name(), request.getPath().pathWithinApplication().value())) {
+			return chain.filter(exchange);
+		}
+		return token(exchange).defaultIfEmpty("").flatMap(support::verify).flatMap(status -> {
+			if (status == HttpStatus.OK) {
+				return chain.filter(exchange);
+			}
+			exchange.getResponse().setStatusCode(status);
+			return exchange.getResponse().setComplete();
+		});
+	}
+
+	private Mono<String> token(ServerWebExchange exchange) {
+		final var request = exchange.getRequest();
+		final var header = request.getHeaders().getFirst(support.getHeaderName());
+		if (header != null) {
+			return Mono.just(header);
+		}
+		final var queryParam = request.getQueryParams().getFirst(support.getParameterName());
+		if (queryParam != null) {
+			return Mono.just(queryParam);
+		}
+		if (MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(request.getHeaders().getContentType())) {
+			return exchange.getFormData().mapNotNull(form -> form.getFirst(support.getParameterName()));
+		}
+		return Mono.empty();
+	}
+}
@@ -1,10 +1,75 @@
 package com.c4_soft.springaddons.starter.recaptcha;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
-@AutoConfiguration
+import io.micrometer.core.instrument.MeterRegistry;
+
+@AutoConfiguration(afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @Import({ C4ReCaptchaSettings.class, C4ReCaptchaValidationService.class })
 public class SpringBootAutoConfiguration {
 
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(MeterRegistry.class)
+	static class ReCaptchaMetricsConfiguration {
+
+		/**
+		 * Siteverify latency and reCAPTCHA V3 scores histograms
+		 *
+		 * @param  registry
+		 * @return          a listener publishing to Micrometer
+		 */
+		@ConditionalOnBean(MeterRegistry.class)
+		@ConditionalOnMissingBean
+		@Bean
+		ReCaptchaValidationListener reCaptchaValidationListener(MeterRegistry registry) {
+			return new MicrometerReCaptchaValidationListener(registry);
+		}
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnWebApplication(type = Type.REACTIVE)
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.recaptcha.filter", name = "enabled", havingValue = "true")
+	static class ReactiveReCaptchaFilterConfiguration {
+
+		/**
+		 * Verifies reCAPTCHA tokens of the requests matching com.c4-soft.springaddons.recaptcha.filter.paths
+		 *
+		 * @param  settings
+		 * @param  validationService
+		 * @return                   a WebFilter short-circuiting requests which failed reCAPTCHA verification
+		 */
+		@ConditionalOnMissingBean
+		@Bean
+		ReCaptchaWebFilter reCaptchaWebFilter(C4ReCaptchaSettings settings, C4ReCaptchaValidationService validationService) {
+			return new ReCaptchaWebFilter(settings, validationService);
+		}
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnWebApplication(type = Type.SERVLET)
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.recaptcha.filter", name = "enabled", havingValue = "true")
+	static class ServletReCaptchaFilterConfiguration {
+
+		/**
+		 * Verifies reCAPTCHA tokens of the requests matching com.c4-soft.springaddons.recaptcha.filter.paths, using async dispatch
+		 *
+		 * @param  settings
+		 * @param  validationService
+		 * @return                   a servlet filter short-circuiting requests which failed reCAPTCHA verification
+		 */
+		@ConditionalOnMissingBean
+		@Bean
+		ReCaptchaServletFilter reCaptchaServletFilter(C4ReCaptchaSettings settings, C4ReCaptchaValidationService validationService) {
+			return new ReCaptchaServletFilter(settings, validationService);
+		}
+	}
 }
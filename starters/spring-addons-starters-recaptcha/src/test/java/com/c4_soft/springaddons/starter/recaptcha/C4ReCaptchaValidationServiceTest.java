@@ -0,0 +1,79 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.MalformedURLException;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.c4_soft.springaddons.starter.webclient.C4ProxySettings;
+import com.c4_soft.springaddons.starter.webclient.C4WebClientBuilderFactoryService;
+import com.c4_soft.springaddons.starter.webclient.C4WebClientSettings;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+class C4ReCaptchaValidationServiceTest {
+	SiteverifyStandIn siteverify;
+	C4WebClientBuilderFactoryService webClientBuilderFactory;
+	SimpleMeterRegistry registry;
+	C4ReCaptchaValidationService service;
+
+	@BeforeEach
+	void setUp() throws MalformedURLException {
+		siteverify = new SiteverifyStandIn(0, Duration.ofMillis(50));
+
+		final var proxySettings = new C4ProxySettings();
+		proxySettings.setEnabled(false);
+		webClientBuilderFactory = new C4WebClientBuilderFactoryService(proxySettings, new C4WebClientSettings());
+
+		final var settings = new C4ReCaptchaSettings();
+		settings.setSecretKey("machin");
+		settings.setSiteverifyUrl(siteverify.getSiteverifyUrl());
+		settings.setV3Threshold(.5);
+
+		registry = new SimpleMeterRegistry();
+		service = new C4ReCaptchaValidationService(settings, webClientBuilderFactory, Optional.of(new MicrometerReCaptchaValidationListener(registry)));
+	}
+
+	@AfterEach
+	void tearDown() {
+		webClientBuilderFactory.destroy();
+		siteverify.close();
+	}
+
+	@Test
+	void givenSameTokenIsSubmittedConcurrently_whenCheckingV3_thenSiteverifyIsCalledOnce() {
+		final var scores = Flux.range(0, 50).flatMap(i -> service.checkV3("human")).collectList().block(Duration.ofSeconds(10));
+
+		assertEquals(50, scores.size());
+		assertEquals(1, siteverify.getRequestsCount());
+	}
+
+	@Test
+	void givenTokenWasAlreadyVerified_whenSubmittedAgain_thenSiteverifyIsCalledAgain() {
+		service.checkV3("human").block(Duration.ofSeconds(10));
+		service.checkV3("human").block(Duration.ofSeconds(10));
+
+		assertEquals(2, siteverify.getRequestsCount());
+	}
+
+	@Test
+	void givenScoreIsBelowThreshold_whenCheckingV3_thenValidationException() {
+		assertThrows(ReCaptchaValidationException.class, () -> service.checkV3("score-0.1").block(Duration.ofSeconds(10)));
+	}
+
+	@Test
+	void whenCheckingV3_thenLatencyAndScoreAreRecorded() {
+		service.checkV3("human").block(Duration.ofSeconds(10));
+		service.checkV2("other-human").block(Duration.ofSeconds(10));
+
+		assertEquals(2, registry.get("spring.addons.recaptcha.siteverify").tag("outcome", "success").timer().count());
+		assertEquals(2, registry.get("spring.addons.recaptcha.score").summary().count());
+	}
+}
@@ -0,0 +1,141 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.MalformedURLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.c4_soft.springaddons.starter.webclient.C4ProxySettings;
+import com.c4_soft.springaddons.starter.webclient.C4WebClientBuilderFactoryService;
+import com.c4_soft.springaddons.starter.webclient.C4WebClientSettings;
+
+import reactor.core.publisher.Mono;
+
+class ReCaptchaFiltersTest {
+	SiteverifyStandIn siteverify;
+	C4WebClientBuilderFactoryService webClientBuilderFactory;
+	C4ReCaptchaSettings settings;
+	C4ReCaptchaValidationService service;
+
+	@BeforeEach
+	void setUp() throws MalformedURLException {
+		siteverify = new SiteverifyStandIn(0, Duration.ofMillis(10));
+
+		final var proxySettings = new C4ProxySettings();
+		proxySettings.setEnabled(false);
+		webClientBuilderFactory = new C4WebClientBuilderFactoryService(proxySettings, new C4WebClientSettings());
+
+		settings = new C4ReCaptchaSettings();
+		settings.setSecretKey("machin");
+		settings.setSiteverifyUrl(siteverify.getSiteverifyUrl());
+		settings.setV3Threshold(.5);
+		settings.getFilter().setPaths(List.of("/signup/**"));
+
+		service = new C4ReCaptchaValidationService(settings, webClientBuilderFactory, Optional.empty());
+	}
+
+	@AfterEach
+	void tearDown() {
+		webClientBuilderFactory.destroy();
+		siteverify.close();
+	}
+
+	@Test
+	void givenReactiveRequestWithLowScore_whenFiltering_thenForbidden() {
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/signup").header("X-ReCaptcha-Token", "score-0.1"));
+		final var isChainCalled = new AtomicBoolean(false);
+
+		new ReCaptchaWebFilter(settings, service).filter(exchange, ex -> Mono.fromRunnable(() -> isChainCalled.set(true))).block(Duration.ofSeconds(10));
+
+		assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+		assertFalse(isChainCalled.get());
+	}
+
+	@Test
+	void givenReactiveRequestWithFormToken_whenFiltering_thenChainIsCalled() {
+		final var exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.post("/signup").contentType(MediaType.APPLICATION_FORM_URLENCODED).body("username=ch4mp&g-recaptcha-response=human"));
+		final var isChainCalled = new AtomicBoolean(false);
+
+		new ReCaptchaWebFilter(settings, service).filter(exchange, ex -> Mono.fromRunnable(() -> isChainCalled.set(true))).block(Duration.ofSeconds(10));
+
+		assertTrue(isChainCalled.get());
+		assertEquals(1, siteverify.getRequestsCount());
+	}
+
+	@Test
+	void givenReactiveRequestWithoutToken_whenFiltering_thenBadRequest() {
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/signup"));
+
+		new ReCaptchaWebFilter(settings, service).filter(exchange, ex -> Mono.empty()).block(Duration.ofSeconds(10));
+
+		assertEquals(HttpStatus.BAD_REQUEST, exchange.getResponse().getStatusCode());
+	}
+
+	@Test
+	void givenReactiveRequestNotMatchingRoutes_whenFiltering_thenChainIsCalledWithoutVerification() {
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/signup"));
+		final var isChainCalled = new AtomicBoolean(false);
+
+		new ReCaptchaWebFilter(settings, service).filter(exchange, ex -> Mono.fromRunnable(() -> isChainCalled.set(true))).block(Duration.ofSeconds(10));
+
+		assertTrue(isChainCalled.get());
+		assertEquals(0, siteverify.getRequestsCount());
+	}
+
+	@Test
+	void givenServletRequestWithValidToken_whenFiltering_thenRequestIsDispatchedAsynchronously() throws Exception {
+		final var request = new MockHttpServletRequest("POST", "/signup");
+		request.setAsyncSupported(true);
+		request.addHeader("X-ReCaptcha-Token", "human");
+		final var response = new MockHttpServletResponse();
+		final var chain = new MockFilterChain();
+
+		new ReCaptchaServletFilter(settings, service).doFilter(request, response, chain);
+
+		// the filter returned without calling the chain: the request thread is released while siteverify responds
+		assertTrue(request.isAsyncStarted());
+		assertNull(chain.getRequest());
+		awaitAsyncEnd(request);
+		assertEquals("/signup", ((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+	}
+
+	@Test
+	void givenServletRequestWithInvalidToken_whenFiltering_thenForbidden() throws Exception {
+		final var request = new MockHttpServletRequest("POST", "/signup");
+		request.setAsyncSupported(true);
+		request.addParameter("g-recaptcha-response", "invalid");
+		final var response = new MockHttpServletResponse();
+
+		new ReCaptchaServletFilter(settings, service).doFilter(request, response, new MockFilterChain());
+
+		awaitAsyncEnd(request);
+		assertNull(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+		assertEquals(HttpStatus.FORBIDDEN.value(), response.getStatus());
+	}
+
+	static void awaitAsyncEnd(MockHttpServletRequest request) throws InterruptedException {
+		final var asyncContext = (MockAsyncContext) request.getAsyncContext();
+		for (var i = 0; i < 100 && request.isAsyncStarted() && asyncContext.getDispatchedPath() == null; ++i) {
+			Thread.sleep(50);
+		}
+	}
+}
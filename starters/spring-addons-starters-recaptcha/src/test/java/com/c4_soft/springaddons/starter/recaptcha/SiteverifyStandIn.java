@@ -0,0 +1,74 @@
+package com.c4_soft.springaddons.starter.recaptcha;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * <p>
+ * Local stand-in for Google siteverify end-point, for tests and load tests (point com.c4-soft.springaddons.recaptcha.siteverify-url to it). Responses
+ * depend on the submitted token:
+ * </p>
+ * <ul>
+ * <li>"invalid": success is false</li>
+ * <li>"score-0.3": success with a score of 0.3</li>
+ * <li>anything else: success with a score of 0.9</li>
+ * </ul>
+ * <p>
+ * Run it standalone with {@code SiteverifyStandIn [port] [latency in ms]}.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class SiteverifyStandIn implements AutoCloseable {
+	private final DisposableServer server;
+	private final AtomicInteger requestsCount = new AtomicInteger();
+
+	public SiteverifyStandIn(int port, Duration latency) {
+		this.server = HttpServer.create().host("localhost").port(port).route(routes -> routes.post("/siteverify", (request, response) -> {
+			requestsCount.incrementAndGet();
+			return request.receive().aggregate().asString().map(SiteverifyStandIn::body).delayElement(latency)
+					.flatMap(body -> response.header("Content-Type", "application/json").sendString(Mono.just(body)).then());
+		})).bindNow();
+	}
+
+	public URL getSiteverifyUrl() throws MalformedURLException {
+		return new URL("http://localhost:%d/siteverify".formatted(server.port()));
+	}
+
+	public int getRequestsCount() {
+		return requestsCount.get();
+	}
+
+	@Override
+	public void close() {
+		server.disposeNow();
+	}
+
+	static String body(String form) {
+		final var token = Arrays.stream(form.split("&")).map(param -> param.split("=", 2)).filter(kv -> kv.length == 2 && "response".equals(kv[0]))
+				.map(kv -> URLDecoder.decode(kv[1], StandardCharsets.UTF_8)).findAny().orElse("");
+		if ("invalid".equals(token)) {
+			return "{\"success\":false,\"error-codes\":[\"invalid-input-response\"]}";
+		}
+		final var score = token.startsWith("score-") ? Double.parseDouble(token.substring("score-".length())) : .9;
+		return "{\"success\":true,\"score\":%s,\"action\":\"submit\",\"hostname\":\"localhost\"}".formatted(score);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		final var port = args.length > 0 ? Integer.parseInt(args[0]) : 8090;
+		final var latency = Duration.ofMillis(args.length > 1 ? Long.parseLong(args[1]) : 100);
+		try (var standIn = new SiteverifyStandIn(port, latency)) {
+			System.out.println("siteverify stand-in listening on http://localhost:%d/siteverify".formatted(port));
+			Thread.currentThread().join();
+		}
+	}
+}
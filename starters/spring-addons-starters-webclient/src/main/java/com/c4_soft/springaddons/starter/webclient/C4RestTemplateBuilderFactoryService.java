@@ -0,0 +1,162 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.transport.ProxyProvider;
+
+/**
+ * <p>
+ * Blocking counterpart of {@link C4WebClientBuilderFactoryService}: factory for {@link RestTemplateBuilder} instances using a single JDK {@link HttpClient},
+ * which pools connections, and configured with the same {@link C4ProxySettings}.
+ * </p>
+ * <p>
+ * Builders are derived from the auto-configured {@link RestTemplateBuilder} when there is one (servlet applications), so that Boot customizers and message
+ * converters still apply. RestTemplateBuilder being immutable, a builder is cached and returned as is for each base URL.
+ * </p>
+ * <p>
+ * Proxy credentials are provided with an {@link Authenticator}. For HTTPS targets, the JDK HttpClient does not send Basic credentials when establishing the
+ * tunnel (CONNECT request) unless Basic is removed from the "jdk.http.auth.tunneling.disabledSchemes" system property, which must be set when the JVM starts:
+ * {@code -Djdk.http.auth.tunneling.disabledSchemes=""}.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@Service
+@Slf4j
+public class C4RestTemplateBuilderFactoryService implements DisposableBean {
+	private final Optional<ExecutorService> executor;
+	private final JdkClientHttpRequestFactory requestFactory;
+	private final RestTemplateBuilder restTemplateBuilder;
+	private final Map<String, RestTemplateBuilder> builders = new ConcurrentHashMap<>();
+
+	public C4RestTemplateBuilderFactoryService(
+			C4ProxySettings settings,
+			C4WebClientSettings webClientSettings,
+			ObjectProvider<RestTemplateBuilder> restTemplateBuilder) {
+		this.restTemplateBuilder = restTemplateBuilder.getIfAvailable(RestTemplateBuilder::new);
+		this.executor = webClientSettings.getBlocking().isVirtualThreads() ? virtualThreadPerTaskExecutor() : Optional.empty();
+		this.requestFactory = new JdkClientHttpRequestFactory(
+				httpClient(settings, webClientSettings, executor),
+				webClientSettings.getBlocking().getRequestTimeout());
+	}
+
+	public RestTemplateBuilder get() {
+		return get(null);
+	}
+
+	public RestTemplateBuilder get(URL baseUrl) {
+		final var key = Optional.ofNullable(baseUrl).map(URL::toString).orElse("");
+		return builders.computeIfAbsent(key, k -> {
+			final var builder = restTemplateBuilder.requestFactory(() -> requestFactory);
+			return StringUtils.hasText(k) ? builder.rootUri(k) : builder;
+		});
+	}
+
+	@Override
+	public void destroy() {
+		executor.ifPresent(ExecutorService::shutdown);
+	}
+
+	static HttpClient httpClient(C4ProxySettings settings, C4WebClientSettings webClientSettings, Optional<ExecutorService> executor) {
+		final var isHttp2 = webClientSettings.getProtocols().stream().anyMatch(p -> p == HttpProtocol.H2 || p == HttpProtocol.H2C);
+		final var builder = HttpClient.newBuilder().version(isHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+				.connectTimeout(webClientSettings.getBlocking().getConnectTimeout()).followRedirects(HttpClient.Redirect.NORMAL);
+		executor.ifPresent(builder::executor);
+		if (Boolean.FALSE.equals(settings.getEnabled()) || !StringUtils.hasText(settings.getHostname())) {
+			return builder.build();
+		}
+		if (settings.getType() != ProxyProvider.Proxy.HTTP) {
+			log.warn("{} proxies are not supported by the JDK HttpClient, blocking clients will connect directly", settings.getType());
+			return builder.build();
+		}
+		log.debug("Configuring JDK HttpClient proxy with {}", settings);
+		builder.proxy(new C4ProxySelector(InetSocketAddress.createUnresolved(settings.getHostname(), settings.getPort()), settings.getNoProxy()));
+		if (StringUtils.hasText(settings.getUsername())) {
+			if (isBasicTunnelingDisabled()) {
+				log.warn(
+						"Proxy credentials will not be sent for HTTPS targets unless the JVM is started with -Djdk.http.auth.tunneling.disabledSchemes=\"\" (current value: {})",
+						System.getProperty("jdk.http.auth.tunneling.disabledSchemes"));
+			}
+			builder.authenticator(new ProxyAuthenticator(settings.getUsername(), settings.getPassword()));
+		}
+		return builder.build();
+	}
+
+	static boolean isBasicTunnelingDisabled() {
+		// the JDK default (in net.properties) is "Basic"
+		final var disabledSchemes = System.getProperty("jdk.http.auth.tunneling.disabledSchemes", "Basic");
+		return List.of(disabledSchemes.split(",")).stream().map(String::trim).anyMatch("Basic"::equalsIgnoreCase);
+	}
+
+	static Optional<ExecutorService> virtualThreadPerTaskExecutor() {
+		try {
+			return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+		} catch (ReflectiveOperationException e) {
+			log.warn("Virtual threads are not available on Java {}, blocking clients will use platform threads", Runtime.version().feature());
+			return Optional.empty();
+		}
+	}
+
+	static class C4ProxySelector extends ProxySelector {
+		private final List<Proxy> proxy;
+		private final Optional<Pattern> nonProxyHostsPattern;
+
+		C4ProxySelector(InetSocketAddress proxyAddress, String nonProxyHostsPattern) {
+			this.proxy = List.of(new Proxy(Proxy.Type.HTTP, proxyAddress));
+			this.nonProxyHostsPattern = StringUtils.hasText(nonProxyHostsPattern) ? Optional.of(Pattern.compile(nonProxyHostsPattern)) : Optional.empty();
+		}
+
+		@Override
+		public List<Proxy> select(URI uri) {
+			final var host = uri.getHost();
+			if (host != null && nonProxyHostsPattern.map(p -> p.matcher(host).matches()).orElse(false)) {
+				return List.of(Proxy.NO_PROXY);
+			}
+			return proxy;
+		}
+
+		@Override
+		public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+			log.debug("Failed to connect to proxy {} for {}: {}", sa, uri, ioe.getMessage());
+		}
+	}
+
+	static class ProxyAuthenticator extends Authenticator {
+		private final String username;
+		private final char[] password;
+
+		ProxyAuthenticator(String username, String password) {
+			this.username = username;
+			this.password = password == null ? new char[0] : password.toCharArray();
+		}
+
+		@Override
+		protected PasswordAuthentication getPasswordAuthentication() {
+			return getRequestorType() == RequestorType.PROXY ? new PasswordAuthentication(username, password) : null;
+		}
+	}
+}
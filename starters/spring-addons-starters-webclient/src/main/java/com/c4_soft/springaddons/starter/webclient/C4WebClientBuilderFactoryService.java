@@ -1,44 +1,121 @@
 package com.c4_soft.springaddons.starter.webclient;
 
 import java.net.URL;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import lombok.RequiredArgsConstructor;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
 import lombok.extern.slf4j.Slf4j;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.HttpResources;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
+ * <p>
+ * Factory for {@link WebClient.Builder} instances sharing a single reactor-netty {@link ConnectionProvider} (and proxy configuration): connections (and TLS
+ * sessions) are reused across all the WebClient instances built from this service, even if each call to {@link #get(URL)} returns a new builder.
+ * </p>
+ * <p>
+ * A builder template is cached for each base URL and a clone of it is returned, so that callers are free to further customize it.
+ * </p>
+ * <p>
+ * Protocols (HTTP/1.1, h2, h2c), compression, native transport, DNS caching and timeouts are configured with {@link C4WebClientSettings}.
+ * </p>
+ *
  * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
-public class C4WebClientBuilderFactoryService {
+public class C4WebClientBuilderFactoryService implements DisposableBean {
+	private static final boolean IS_MICROMETER_PRESENT = ClassUtils.isPresent("io.micrometer.core.instrument.Metrics", null);
 
-	private final C4ProxySettings settings;
+	private final ConnectionProvider connectionProvider;
+	private final ReactorClientHttpConnector connector;
+	private final Map<String, WebClient.Builder> builders = new ConcurrentHashMap<>();
+
+	public C4WebClientBuilderFactoryService(C4ProxySettings settings, C4WebClientSettings webClientSettings) {
+		this.connectionProvider = connectionProvider(webClientSettings.getPool());
+		this.connector = new ReactorClientHttpConnector(httpClient(connectionProvider, settings, webClientSettings));
+	}
 
 	public WebClient.Builder get() {
 		return get(null);
 	}
 
 	public WebClient.Builder get(URL baseUrl) {
-		final var builder = WebClient.builder();
-		Optional.ofNullable(baseUrl).map(URL::toString).ifPresent(builder::baseUrl);
-		if (Boolean.FALSE.equals(settings.getEnabled()) || !StringUtils.hasText(settings.getHostname())) {
+		final var key = Optional.ofNullable(baseUrl).map(URL::toString).orElse("");
+		return builders.computeIfAbsent(key, k -> {
+			final var builder = WebClient.builder().clientConnector(connector);
+			if (StringUtils.hasText(k)) {
+				builder.baseUrl(k);
+			}
 			return builder;
+		}).clone();
+	}
+
+	@Override
+	public void destroy() {
+		connectionProvider.dispose();
+	}
+
+	static ConnectionProvider connectionProvider(C4WebClientSettings.PoolProperties pool) {
+		final var builder = ConnectionProvider.builder(pool.getName()).maxConnections(pool.getMaxConnections())
+				.pendingAcquireMaxCount(pool.getPendingAcquireMaxCount()).pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+				.maxIdleTime(pool.getMaxIdleTime()).maxLifeTime(pool.getMaxLifeTime());
+		if (!pool.getEvictionInterval().isZero()) {
+			builder.evictInBackground(pool.getEvictionInterval());
+		}
+		if (pool.isMetricsEnabled() && IS_MICROMETER_PRESENT) {
+			builder.metrics(true);
+		}
+		log.debug("Building shared ConnectionProvider with {}", pool);
+		return builder.build();
+	}
+
+	static HttpClient httpClient(ConnectionProvider connectionProvider, C4ProxySettings settings, C4WebClientSettings webClientSettings) {
+		log.debug("Building HttpClient with {}", webClientSettings);
+		var client = HttpClient.create(connectionProvider).runOn(HttpResources.get(), webClientSettings.isNativeTransport())
+				.protocol(webClientSettings.getProtocols().toArray(HttpProtocol[]::new)).compress(webClientSettings.isCompress());
+		if (webClientSettings.getDns().isEnabled()) {
+			final var dns = webClientSettings.getDns();
+			client = client.resolver(
+					spec -> spec.cacheMinTimeToLive(dns.getCacheMinTimeToLive()).cacheMaxTimeToLive(dns.getCacheMaxTimeToLive())
+							.cacheNegativeTimeToLive(dns.getCacheNegativeTimeToLive()).queryTimeout(dns.getQueryTimeout()));
+		}
+		if (webClientSettings.getResponseTimeout() != null) {
+			client = client.responseTimeout(webClientSettings.getResponseTimeout());
+		}
+		final var readTimeout = webClientSettings.getReadTimeout();
+		final var writeTimeout = webClientSettings.getWriteTimeout();
+		if (readTimeout != null || writeTimeout != null) {
+			// handlers added to the connection are removed when it is released to the pool: add them for each request, not just once when connected
+			client = client.doOnRequest((request, connection) -> {
+				if (readTimeout != null) {
+					connection.addHandlerLast("c4ReadTimeout", new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS));
+				}
+				if (writeTimeout != null) {
+					connection.addHandlerLast("c4WriteTimeout", new WriteTimeoutHandler(writeTimeout.toMillis(), TimeUnit.MILLISECONDS));
+				}
+			});
+		}
+		if (Boolean.FALSE.equals(settings.getEnabled()) || !StringUtils.hasText(settings.getHostname())) {
+			return client;
 		}
-		log.debug("Building ReactorClientHttpConnector with {}", settings);
-		final var connector = new ReactorClientHttpConnector(
-				HttpClient.create().proxy(
-						proxy -> proxy.type(settings.getType()).host(settings.getHostname()).port(settings.getPort()).username(settings.getUsername())
-								.password(username -> settings.getPassword()).nonProxyHosts(settings.getNoProxy())
-								.connectTimeoutMillis(settings.getConnectTimeoutMillis())));
-
-		return builder.clientConnector(connector);
+		log.debug("Configuring HttpClient proxy with {}", settings);
+		return client.proxy(
+				proxy -> proxy.type(settings.getType()).host(settings.getHostname()).port(settings.getPort()).username(settings.getUsername())
+						.password(username -> settings.getPassword()).nonProxyHosts(settings.getNoProxy())
+						.connectTimeoutMillis(settings.getConnectTimeoutMillis()));
 	}
 }
@@ -0,0 +1,211 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+import reactor.netty.http.HttpProtocol;
+
+/**
+ * <p>
+ * Configuration for the reactor-netty HTTP client shared by all the {@link org.springframework.web.reactive.function.client.WebClient.Builder WebClient
+ * builders} handed out by {@link C4WebClientBuilderFactoryService}.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "com.c4-soft.springaddons.webclient")
+public class C4WebClientSettings {
+	private PoolProperties pool = new PoolProperties();
+
+	/**
+	 * Protocols the client may use. With both HTTP11 and H2, the protocol is negotiated with ALPN over TLS. With both HTTP11 and H2C, an upgrade is attempted on
+	 * plain text connections. H2C alone requires the remote server to accept HTTP/2 with prior knowledge.
+	 */
+	private List<HttpProtocol> protocols = List.of(HttpProtocol.HTTP11);
+
+	/**
+	 * Send "Accept-Encoding: gzip" and decompress responses accordingly
+	 */
+	private boolean compress = false;
+
+	/**
+	 * Use the native transport (epoll on Linux) when available on the classpath, NIO otherwise
+	 */
+	private boolean nativeTransport = true;
+
+	/**
+	 * Maximum time to wait for the response headers after the request was sent. Null for no timeout.
+	 */
+	private Duration responseTimeout;
+
+	/**
+	 * Maximum time without any data read from the connection while a request is in progress. Null for no timeout.
+	 */
+	private Duration readTimeout;
+
+	/**
+	 * Maximum time for a write operation to complete while a request is in progress. Null for no timeout.
+	 */
+	private Duration writeTimeout;
+
+	private DnsProperties dns = new DnsProperties();
+
+	private BlockingProperties blocking = new BlockingProperties();
+
+	private ClientCredentialsProperties clientCredentials = new ClientCredentialsProperties();
+
+	private TokenExchangeProperties tokenExchange = new TokenExchangeProperties();
+
+	/**
+	 * Connection pool shared by all the WebClient instances built by {@link C4WebClientBuilderFactoryService}. Limits apply per remote host.
+	 *
+	 * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+	 */
+	@Data
+	public static class PoolProperties {
+		/**
+		 * Name of the pool, used as tag for metrics
+		 */
+		private String name = "c4-webclient";
+
+		/**
+		 * Maximum number of connections opened to a remote host
+		 */
+		private int maxConnections = 500;
+
+		/**
+		 * Maximum number of requests waiting for a connection to be released. -1 for unbounded queue.
+		 */
+		private int pendingAcquireMaxCount = 1000;
+
+		/**
+		 * Maximum time a request waits for a connection before failing
+		 */
+		private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+
+		/**
+		 * Idle connections are closed after this delay. Should be lower than the keep-alive timeout of remote servers and intermediate load-balancers.
+		 */
+		private Duration maxIdleTime = Duration.ofSeconds(30);
+
+		/**
+		 * Connections are closed after this delay, even if active recently, so that DNS changes and load-balancer re-routing are eventually taken into account
+		 */
+		private Duration maxLifeTime = Duration.ofMinutes(10);
+
+		/**
+		 * Interval at which idle and expired connections are evicted in background. Zero to evict only when connections are acquired or released.
+		 */
+		private Duration evictionInterval = Duration.ofSeconds(30);
+
+		/**
+		 * Publish pool metrics (active, idle and pending connections) to Micrometer global registry. Ignored if micrometer-core is not on the classpath.
+		 */
+		private boolean metricsEnabled = true;
+	}
+
+	/**
+	 * Asynchronous DNS resolution (instead of the JDK blocking resolver) with caching of resolved addresses
+	 *
+	 * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+	 */
+	@Data
+	public static class DnsProperties {
+		/**
+		 * Resolve host names with the asynchronous (and caching) resolver
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Minimum time resolved addresses are cached, whatever the TTL returned by DNS servers
+		 */
+		private Duration cacheMinTimeToLive = Duration.ZERO;
+
+		/**
+		 * Maximum time resolved addresses are cached, whatever the TTL returned by DNS servers
+		 */
+		private Duration cacheMaxTimeToLive = Duration.ofMinutes(5);
+
+		/**
+		 * Time failed resolutions are cached
+		 */
+		private Duration cacheNegativeTimeToLive = Duration.ofSeconds(5);
+
+		/**
+		 * Timeout for each DNS query
+		 */
+		private Duration queryTimeout = Duration.ofSeconds(5);
+	}
+
+	/**
+	 * Configuration for the JDK HttpClient behind the RestTemplate builders handed out by {@link C4RestTemplateBuilderFactoryService}. HTTP/2 is used if
+	 * {@link C4WebClientSettings#protocols} contains H2 or H2C.
+	 *
+	 * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+	 */
+	@Data
+	public static class BlockingProperties {
+		/**
+		 * Maximum time to establish a connection
+		 */
+		private Duration connectTimeout = Duration.ofSeconds(10);
+
+		/**
+		 * Maximum time to wait for the response headers after the request was sent. Null for no timeout.
+		 */
+		private Duration requestTimeout;
+
+		/**
+		 * Run the HTTP client tasks on virtual threads. Requires a Java runtime supporting it (21+): ignored with a warning otherwise.
+		 */
+		private boolean virtualThreads = false;
+	}
+
+	/**
+	 * Configuration for the client-credentials tokens shared by all the outbound requests authorized with {@link ClientCredentialsTokenCache}
+	 *
+	 * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+	 */
+	@Data
+	public static class ClientCredentialsProperties {
+		/**
+		 * Tokens expiring within this delay are refreshed in background, while still in use for outbound requests
+		 */
+		private Duration refreshAhead = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum time a blocking request waits for a token (default timeout of {@link ClientCredentialsClientHttpRequestInterceptor})
+		 */
+		private Duration timeout = Duration.ofSeconds(10);
+	}
+
+	/**
+	 * Configuration for the tokens obtained with OAuth2 token exchange (RFC 8693) and cached by {@link TokenExchangeCache}
+	 *
+	 * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
+	 */
+	@Data
+	public static class TokenExchangeProperties {
+		/**
+		 * Exchanged tokens expiring within this delay are not served from cache, so that they do not expire before reaching the downstream service
+		 */
+		private Duration clockSkew = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum number of exchanged tokens in cache (one per subject token, client registration and audience). Expired ones are purged first when it is
+		 * reached.
+		 */
+		private int maxCacheSize = 10000;
+
+		/**
+		 * Maximum time a blocking request waits for a token (default timeout of {@link TokenExchangeClientHttpRequestInterceptor})
+		 */
+		private Duration timeout = Duration.ofSeconds(10);
+	}
+}
@@ -0,0 +1,53 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+
+/**
+ * <p>
+ * Sets a client-credentials access token from {@link ClientCredentialsTokenCache} as Bearer authorization header of RestTemplate requests. For instance:
+ * </p>
+ *
+ * <pre>
+ * restTemplateBuilderFactory.get(baseUrl).additionalInterceptors(new ClientCredentialsClientHttpRequestInterceptor(tokenCache, "machin-client")).build();
+ * </pre>
+ * <p>
+ * The calling thread blocks only when no valid token is cached (first request, or token expired before it could be refreshed ahead), at most for the timeout
+ * of the cache ("com.c4-soft.springaddons.webclient.client-credentials.timeout") unless another one is provided.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class ClientCredentialsClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+	private final ClientCredentialsTokenCache tokenCache;
+	private final String registrationId;
+	private final Duration timeout;
+
+	public ClientCredentialsClientHttpRequestInterceptor(ClientCredentialsTokenCache tokenCache, String registrationId, Duration timeout) {
+		this.tokenCache = tokenCache;
+		this.registrationId = registrationId;
+		this.timeout = timeout;
+	}
+
+	public ClientCredentialsClientHttpRequestInterceptor(ClientCredentialsTokenCache tokenCache, String registrationId) {
+		this(tokenCache, registrationId, tokenCache.getTimeout());
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		final var token = tokenCache.get(registrationId).block(timeout);
+		if (token == null) {
+			throw new OAuth2AuthorizationException(
+					new OAuth2Error("invalid_token_response", "No client-credentials access token was obtained for %s".formatted(registrationId), null));
+		}
+		request.getHeaders().setBearerAuth(token.getTokenValue());
+		return execution.execute(request, body);
+	}
+}
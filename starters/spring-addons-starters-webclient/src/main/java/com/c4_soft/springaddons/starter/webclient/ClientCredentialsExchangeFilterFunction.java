@@ -0,0 +1,33 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Sets a client-credentials access token from {@link ClientCredentialsTokenCache} as Bearer authorization header of WebClient requests. For instance:
+ * </p>
+ *
+ * <pre>
+ * webClientBuilderFactory.get(baseUrl).filter(new ClientCredentialsExchangeFilterFunction(tokenCache, "machin-client")).build();
+ * </pre>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class ClientCredentialsExchangeFilterFunction implements ExchangeFilterFunction {
+	private final ClientCredentialsTokenCache tokenCache;
+	private final String registrationId;
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return tokenCache.get(registrationId)
+				.map(token -> ClientRequest.from(request).headers(headers -> headers.setBearerAuth(token.getTokenValue())).build())
+				.flatMap(next::exchange);
+	}
+}
@@ -0,0 +1,104 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.endpoint.ReactiveOAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Cache for client-credentials access tokens, shared by all the threads (and WebClient or RestTemplate instances) sending requests on behalf of a client
+ * registration:
+ * </p>
+ * <ul>
+ * <li>a single token request is in flight at a time for a given registration: concurrent callers wait for the same token response</li>
+ * <li>tokens expiring within the refresh-ahead delay are refreshed in background while still handed out</li>
+ * </ul>
+ * <p>
+ * Use it with {@link ClientCredentialsExchangeFilterFunction} (WebClient) or {@link ClientCredentialsClientHttpRequestInterceptor} (RestTemplate).
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ClientCredentialsTokenCache {
+	private final ReactiveClientRegistrationRepository clientRegistrationRepository;
+	private final ReactiveOAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenResponseClient;
+	private final Duration refreshAhead;
+	private final Map<String, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+	private final Map<String, Mono<OAuth2AccessToken>> pendingRequests = new ConcurrentHashMap<>();
+
+	@Setter
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Maximum time blocking callers (like {@link ClientCredentialsClientHttpRequestInterceptor}) wait for a token
+	 */
+	@Getter
+	@Setter
+	private Duration timeout = Duration.ofSeconds(10);
+
+	/**
+	 * @param  registrationId ID of a client registration with client_credentials authorization-grant-type
+	 * @return                a valid access token, from cache if available
+	 */
+	public Mono<OAuth2AccessToken> get(String registrationId) {
+		final var token = tokens.get(registrationId);
+		final var now = clock.instant();
+		if (token == null || isExpired(token, now)) {
+			return fetch(registrationId);
+		}
+		if (token.getExpiresAt() != null && now.plus(refreshAhead).isAfter(token.getExpiresAt())) {
+			fetch(registrationId).subscribe(refreshed -> {
+			}, e -> log.warn("Failed to refresh client-credentials token for {}: {}", registrationId, e.getMessage()));
+		}
+		return Mono.just(token);
+	}
+
+	/**
+	 * Removes a token from cache, for instance because it was rejected by a resource server: next requests will trigger a new token request.
+	 *
+	 * @param registrationId ID of the client registration for which the token should be evicted
+	 */
+	public void evict(String registrationId) {
+		tokens.remove(registrationId);
+	}
+
+	private Mono<OAuth2AccessToken> fetch(String registrationId) {
+		return pendingRequests.computeIfAbsent(
+				registrationId,
+				id -> clientRegistrationRepository.findByRegistrationId(id)
+						.switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No client registration with ID %s".formatted(id))))
+						.map(OAuth2ClientCredentialsGrantRequest::new).flatMap(tokenResponseClient::getTokenResponse).map(OAuth2AccessTokenResponse::getAccessToken)
+						// an empty response must not stay cached as the pending request: turn it into an error, which removes it
+						.switchIfEmpty(
+								Mono.error(
+										() -> new OAuth2AuthorizationException(
+												new OAuth2Error("invalid_token_response", "The token endpoint returned no access token for %s".formatted(id), null))))
+						.doOnNext(token -> {
+							// cache the token before removing the pending request so that concurrent callers get one or the other
+							tokens.put(id, token);
+							pendingRequests.remove(id);
+						}).doOnError(e -> pendingRequests.remove(id)).cache());
+	}
+
+	private static boolean isExpired(OAuth2AccessToken token, Instant now) {
+		return token.getExpiresAt() != null && !now.isBefore(token.getExpiresAt());
+	}
+}
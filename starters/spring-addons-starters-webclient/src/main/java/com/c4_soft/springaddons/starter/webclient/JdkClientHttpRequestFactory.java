@@ -0,0 +1,144 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * <p>
+ * {@link ClientHttpRequestFactory} on top of a (shared) JDK {@link HttpClient}: connections are pooled by the HttpClient instance and reused across all the
+ * RestTemplate instances using this factory.
+ * </p>
+ * <p>
+ * Request bodies are buffered, response bodies are streamed.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class JdkClientHttpRequestFactory implements ClientHttpRequestFactory {
+	/* headers set by the HttpClient itself and which it refuses to be set by user code */
+	private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+	static {
+		RESTRICTED_HEADERS.addAll(Set.of(HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, HttpHeaders.EXPECT, HttpHeaders.HOST, HttpHeaders.UPGRADE));
+	}
+
+	private final HttpClient httpClient;
+	private final Duration requestTimeout;
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+		return new JdkClientHttpRequest(uri, httpMethod);
+	}
+
+	@RequiredArgsConstructor
+	private class JdkClientHttpRequest extends AbstractClientHttpRequest {
+		private final URI uri;
+		private final HttpMethod method;
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(HttpHeaders headers) {
+			return body;
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+			final var bytes = body.toByteArray();
+			final var builder = HttpRequest.newBuilder(uri).method(
+					method.name(),
+					bytes.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(bytes));
+			headers.forEach((name, values) -> {
+				if (!RESTRICTED_HEADERS.contains(name)) {
+					values.forEach(value -> builder.header(name, value));
+				}
+			});
+			if (requestTimeout != null) {
+				builder.timeout(requestTimeout);
+			}
+			try {
+				return new JdkClientHttpResponse(httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for %s %s response".formatted(method, uri));
+			}
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class JdkClientHttpResponse implements ClientHttpResponse {
+		private final HttpResponse<InputStream> response;
+		private HttpHeaders headers;
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatusCode.valueOf(response.statusCode());
+		}
+
+		@Override
+		@Deprecated(since = "6.0")
+		public int getRawStatusCode() {
+			return response.statusCode();
+		}
+
+		@Override
+		public String getStatusText() {
+			final var status = HttpStatus.resolve(response.statusCode());
+			return status == null ? "" : status.getReasonPhrase();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				final var tmp = new HttpHeaders();
+				response.headers().map().forEach(tmp::addAll);
+				headers = HttpHeaders.readOnlyHttpHeaders(tmp);
+			}
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.body();
+		}
+
+		@Override
+		public void close() {
+			try {
+				response.body().close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
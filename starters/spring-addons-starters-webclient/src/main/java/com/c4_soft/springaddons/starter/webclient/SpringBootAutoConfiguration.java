@@ -1,9 +1,88 @@
 package com.c4_soft.springaddons.starter.webclient;
 
+import java.util.Optional;
+
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.security.oauth2.client.endpoint.WebClientReactiveClientCredentialsTokenResponseClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+
+import reactor.core.publisher.Mono;
 
-@AutoConfiguration
-@Import({ C4ProxySettings.class, C4WebClientBuilderFactoryService.class })
+@AutoConfiguration(
+		afterName = {
+				"org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration",
+				"org.springframework.boot.autoconfigure.security.oauth2.client.reactive.ReactiveOAuth2ClientAutoConfiguration" })
+@Import({ C4ProxySettings.class, C4WebClientSettings.class, C4WebClientBuilderFactoryService.class, C4RestTemplateBuilderFactoryService.class })
 public class SpringBootAutoConfiguration {
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(ReactiveClientRegistrationRepository.class)
+	static class OAuth2ClientConfiguration {
+
+		/**
+		 * Client-credentials tokens cache, with token requests sent using the shared (pooled) HTTP client. Client registrations are resolved from the
+		 * {@link ReactiveClientRegistrationRepository} in reactive applications and from the {@link ClientRegistrationRepository} in servlet ones.
+		 *
+		 * @param  reactiveClientRegistrationRepository
+		 * @param  clientRegistrationRepository
+		 * @param  webClientBuilderFactory
+		 * @param  settings
+		 * @return                                      a token cache to use with {@link ClientCredentialsExchangeFilterFunction} or
+		 *                                              {@link ClientCredentialsClientHttpRequestInterceptor}
+		 */
+		@ConditionalOnMissingBean
+		@Bean
+		ClientCredentialsTokenCache clientCredentialsTokenCache(
+				Optional<ReactiveClientRegistrationRepository> reactiveClientRegistrationRepository,
+				Optional<ClientRegistrationRepository> clientRegistrationRepository,
+				C4WebClientBuilderFactoryService webClientBuilderFactory,
+				C4WebClientSettings settings) {
+			final var registrations = clientRegistrations(reactiveClientRegistrationRepository, clientRegistrationRepository);
+			final var tokenResponseClient = new WebClientReactiveClientCredentialsTokenResponseClient();
+			tokenResponseClient.setWebClient(webClientBuilderFactory.get().build());
+			final var tokenCache = new ClientCredentialsTokenCache(registrations, tokenResponseClient, settings.getClientCredentials().getRefreshAhead());
+			tokenCache.setTimeout(settings.getClientCredentials().getTimeout());
+			return tokenCache;
+		}
+
+		/**
+		 * OAuth2 token exchange cache, with token requests sent using the shared (pooled) HTTP client. Client registrations are resolved as for
+		 * {@link ClientCredentialsTokenCache}.
+		 *
+		 * @param  reactiveClientRegistrationRepository
+		 * @param  clientRegistrationRepository
+		 * @param  webClientBuilderFactory
+		 * @param  settings
+		 * @return                                      a token exchange cache to use with {@link TokenExchangeExchangeFilterFunction} or
+		 *                                              {@link TokenExchangeClientHttpRequestInterceptor}
+		 */
+		@ConditionalOnMissingBean
+		@Bean
+		TokenExchangeCache tokenExchangeCache(
+				Optional<ReactiveClientRegistrationRepository> reactiveClientRegistrationRepository,
+				Optional<ClientRegistrationRepository> clientRegistrationRepository,
+				C4WebClientBuilderFactoryService webClientBuilderFactory,
+				C4WebClientSettings settings) {
+			final var tokenExchangeCache = new TokenExchangeCache(
+					clientRegistrations(reactiveClientRegistrationRepository, clientRegistrationRepository),
+					webClientBuilderFactory.get().build(),
+					settings.getTokenExchange().getClockSkew(),
+					settings.getTokenExchange().getMaxCacheSize());
+			tokenExchangeCache.setTimeout(settings.getTokenExchange().getTimeout());
+			return tokenExchangeCache;
+		}
+
+		private static ReactiveClientRegistrationRepository clientRegistrations(
+				Optional<ReactiveClientRegistrationRepository> reactiveClientRegistrationRepository,
+				Optional<ClientRegistrationRepository> clientRegistrationRepository) {
+			return reactiveClientRegistrationRepository.orElse(
+					registrationId -> clientRegistrationRepository.map(repo -> Mono.justOrEmpty(repo.findByRegistrationId(registrationId))).orElse(Mono.empty()));
+		}
+	}
 }
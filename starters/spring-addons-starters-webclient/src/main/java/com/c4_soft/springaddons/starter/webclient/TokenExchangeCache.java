@@ -0,0 +1,171 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.web.reactive.function.OAuth2BodyExtractors;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Trades the access token of the current user for a token with a downstream audience, using OAuth2 token exchange (RFC 8693), and caches the result:
+ * </p>
+ * <ul>
+ * <li>exchanged tokens are cached per client registration, subject token (SHA-256 hash of it) and audience, until they are about to expire</li>
+ * <li>a single token exchange request is in flight at a time for a given key: concurrent callers wait for the same response</li>
+ * <li>non 2xx responses from the authorization server are turned into {@link OAuth2AuthorizationException}</li>
+ * </ul>
+ * <p>
+ * Use it with {@link TokenExchangeExchangeFilterFunction} (WebClient) or {@link TokenExchangeClientHttpRequestInterceptor} (RestTemplate).
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class TokenExchangeCache {
+	public static final String GRANT_TYPE = "urn:ietf:params:oauth:grant-type:token-exchange";
+	public static final String ACCESS_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:access_token";
+	private static final ParameterizedTypeReference<Map<String, Object>> ERROR_RESPONSE_TYPE = new ParameterizedTypeReference<>() {
+	};
+
+	private final ReactiveClientRegistrationRepository clientRegistrationRepository;
+	private final WebClient webClient;
+	private final Duration clockSkew;
+	private final int maxCacheSize;
+	private final Map<CacheKey, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+	private final Map<CacheKey, Mono<OAuth2AccessToken>> pendingRequests = new ConcurrentHashMap<>();
+
+	@Setter
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Maximum time blocking callers (like {@link TokenExchangeClientHttpRequestInterceptor}) wait for a token
+	 */
+	@Getter
+	@Setter
+	private Duration timeout = Duration.ofSeconds(10);
+
+	/**
+	 * @param  registrationId ID of the client registration to authenticate the token exchange request with
+	 * @param  subjectToken   the access token to exchange (usually, the one of the current request)
+	 * @param  audience       the downstream service the token is requested for
+	 * @return                a token for the requested audience, from cache if one was already obtained for the same subject token
+	 */
+	public Mono<OAuth2AccessToken> exchange(String registrationId, String subjectToken, String audience) {
+		final var key = new CacheKey(registrationId, hash(subjectToken), audience);
+		final var token = tokens.get(key);
+		if (token != null && isValid(token)) {
+			return Mono.just(token);
+		}
+		return pendingRequests.computeIfAbsent(
+				key,
+				k -> clientRegistrationRepository.findByRegistrationId(registrationId)
+						.switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No client registration with ID %s".formatted(registrationId))))
+						.flatMap(registration -> request(registration, subjectToken, audience)).doOnNext(exchanged -> {
+							// cache the token before removing the pending request so that concurrent callers get one or the other
+							put(k, exchanged);
+							pendingRequests.remove(k);
+						}).doOnError(e -> pendingRequests.remove(k)).cache());
+	}
+
+	int size() {
+		return tokens.size();
+	}
+
+	private Mono<OAuth2AccessToken> request(ClientRegistration registration, String subjectToken, String audience) {
+		final var form = new LinkedMultiValueMap<String, String>();
+		form.add(OAuth2ParameterNames.GRANT_TYPE, GRANT_TYPE);
+		form.add("subject_token", subjectToken);
+		form.add("subject_token_type", ACCESS_TOKEN_TYPE);
+		form.add("requested_token_type", ACCESS_TOKEN_TYPE);
+		form.add("audience", audience);
+		if (!CollectionUtils.isEmpty(registration.getScopes())) {
+			form.add(OAuth2ParameterNames.SCOPE, String.join(" ", registration.getScopes()));
+		}
+		final var isSecretPost = ClientAuthenticationMethod.CLIENT_SECRET_POST.equals(registration.getClientAuthenticationMethod());
+		if (isSecretPost) {
+			form.add(OAuth2ParameterNames.CLIENT_ID, registration.getClientId());
+			form.add(OAuth2ParameterNames.CLIENT_SECRET, registration.getClientSecret());
+		}
+		return webClient.post().uri(registration.getProviderDetails().getTokenUri()).accept(MediaType.APPLICATION_JSON).headers(headers -> {
+			if (!isSecretPost) {
+				headers.setBasicAuth(
+						URLEncoder.encode(registration.getClientId(), StandardCharsets.UTF_8),
+						URLEncoder.encode(registration.getClientSecret(), StandardCharsets.UTF_8));
+			}
+		}).body(BodyInserters.fromFormData(form)).exchangeToMono(TokenExchangeCache::readTokenResponse)
+				.map(OAuth2AccessTokenResponse::getAccessToken);
+	}
+
+	private static Mono<OAuth2AccessTokenResponse> readTokenResponse(ClientResponse response) {
+		if (response.statusCode().is2xxSuccessful()) {
+			return response.body(OAuth2BodyExtractors.oauth2AccessTokenResponse());
+		}
+		// RFC 6749 section 5.2 error response, if the body can be parsed as such
+		return response.bodyToMono(ERROR_RESPONSE_TYPE).onErrorResume(e -> Mono.empty()).defaultIfEmpty(Map.of()).flatMap(body -> {
+			final var errorCode = body.get(OAuth2ParameterNames.ERROR) instanceof String code ? code : OAuth2ErrorCodes.INVALID_REQUEST;
+			final var description = body.get(OAuth2ParameterNames.ERROR_DESCRIPTION) instanceof String desc ? desc : null;
+			return Mono.error(
+					new OAuth2AuthorizationException(
+							new OAuth2Error(errorCode, description, null),
+							"Token exchange failed with status %d".formatted(response.statusCode().value())));
+		});
+	}
+
+	/*
+	 * Synchronized so that concurrent insertions can't overflow maxCacheSize (reads stay lock free).
+	 */
+	private synchronized void put(CacheKey key, OAuth2AccessToken token) {
+		if (!tokens.containsKey(key) && tokens.size() >= maxCacheSize) {
+			tokens.values().removeIf(t -> !isValid(t));
+			final var it = tokens.keySet().iterator();
+			while (tokens.size() >= maxCacheSize && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		tokens.put(key, token);
+	}
+
+	private boolean isValid(OAuth2AccessToken token) {
+		return token.getExpiresAt() == null || clock.instant().plus(clockSkew).isBefore(token.getExpiresAt());
+	}
+
+	private static String hash(String token) {
+		try {
+			return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static record CacheKey(String registrationId, String subjectTokenHash, String audience) {
+	}
+}
@@ -0,0 +1,61 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+
+/**
+ * <p>
+ * Exchanges the access token of the authenticated user for one with a downstream audience (OAuth2 token exchange) and sets it as Bearer authorization header
+ * of RestTemplate requests. For instance:
+ * </p>
+ *
+ * <pre>
+ * restTemplateBuilderFactory.get(baseUrl)
+ * 		.additionalInterceptors(new TokenExchangeClientHttpRequestInterceptor(tokenExchangeCache, "machin-client", "bidule-api")).build();
+ * </pre>
+ * <p>
+ * Requests are sent unchanged when the security context does not contain a token (anonymous request, for instance). The calling thread waits for the exchanged
+ * token at most for the timeout of the cache ("com.c4-soft.springaddons.webclient.token-exchange.timeout") unless another one is provided.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class TokenExchangeClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+	private final TokenExchangeCache tokenExchangeCache;
+	private final String registrationId;
+	private final String audience;
+	private final Duration timeout;
+
+	public TokenExchangeClientHttpRequestInterceptor(TokenExchangeCache tokenExchangeCache, String registrationId, String audience, Duration timeout) {
+		this.tokenExchangeCache = tokenExchangeCache;
+		this.registrationId = registrationId;
+		this.audience = audience;
+		this.timeout = timeout;
+	}
+
+	public TokenExchangeClientHttpRequestInterceptor(TokenExchangeCache tokenExchangeCache, String registrationId, String audience) {
+		this(tokenExchangeCache, registrationId, audience, tokenExchangeCache.getTimeout());
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		final var subjectToken = TokenExchangeExchangeFilterFunction.getTokenValue(SecurityContextHolder.getContext().getAuthentication());
+		if (subjectToken != null) {
+			final var token = tokenExchangeCache.exchange(registrationId, subjectToken, audience).block(timeout);
+			if (token == null) {
+				throw new OAuth2AuthorizationException(
+						new OAuth2Error("invalid_token_response", "No token was obtained from the exchange for %s".formatted(audience), null));
+			}
+			request.getHeaders().setBearerAuth(token.getTokenValue());
+		}
+		return execution.execute(request, body);
+	}
+}
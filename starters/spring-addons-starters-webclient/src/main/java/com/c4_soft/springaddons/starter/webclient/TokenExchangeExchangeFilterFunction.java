@@ -0,0 +1,60 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Exchanges the access token of the authenticated user for one with a downstream audience (OAuth2 token exchange) and sets it as Bearer authorization header
+ * of WebClient requests. For instance:
+ * </p>
+ *
+ * <pre>
+ * webClientBuilderFactory.get(baseUrl).filter(new TokenExchangeExchangeFilterFunction(tokenExchangeCache, "machin-client", "bidule-api")).build();
+ * </pre>
+ * <p>
+ * Requests are sent unchanged when the security context does not contain a token (anonymous request, for instance).
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class TokenExchangeExchangeFilterFunction implements ExchangeFilterFunction {
+	private final TokenExchangeCache tokenExchangeCache;
+	private final String registrationId;
+	private final String audience;
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return ReactiveSecurityContextHolder.getContext().map(SecurityContext::getAuthentication).flatMap(auth -> Mono.justOrEmpty(getTokenValue(auth)))
+				.flatMap(subjectToken -> tokenExchangeCache.exchange(registrationId, subjectToken, audience))
+				.map(token -> ClientRequest.from(request).headers(headers -> headers.setBearerAuth(token.getTokenValue())).build()).defaultIfEmpty(request)
+				.flatMap(next::exchange);
+	}
+
+	/**
+	 * @param  auth an authentication instance
+	 * @return      the token string from the credentials of an OAuthentication, JwtAuthenticationToken or BearerTokenAuthentication, null otherwise
+	 */
+	static String getTokenValue(Authentication auth) {
+		if (auth == null) {
+			return null;
+		}
+		if (auth.getCredentials() instanceof AbstractOAuth2Token token) {
+			return token.getTokenValue();
+		}
+		if (auth.getCredentials() instanceof String token && !token.isBlank()) {
+			return token;
+		}
+		return null;
+	}
+}
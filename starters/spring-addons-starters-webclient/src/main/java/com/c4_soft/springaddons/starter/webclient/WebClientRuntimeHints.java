@@ -0,0 +1,42 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+
+import reactor.netty.http.HttpProtocol;
+
+/**
+ * <p>
+ * Native image hints for the web-client starter: settings binding and the reflective lookup of {@link Executors} virtual threads factory (see
+ * {@link C4RestTemplateBuilderFactoryService}), which is not known at compile time on Java 17.
+ * </p>
+ * <p>
+ * {@link C4WebClientSettings} is not passed to {@link BindableRuntimeHintsRegistrar}: it inspects the {@link HttpProtocol} elements of the protocols list as
+ * a constructor-bound type and fails because reactor-netty is not compiled with -parameters. Its hints are registered by hand instead, its nested properties
+ * and the enum included.
+ * </p>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+public class WebClientRuntimeHints implements RuntimeHintsRegistrar {
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		BindableRuntimeHintsRegistrar.forTypes(
+				C4ProxySettings.class,
+				C4WebClientSettings.PoolProperties.class,
+				C4WebClientSettings.DnsProperties.class,
+				C4WebClientSettings.BlockingProperties.class,
+				C4WebClientSettings.ClientCredentialsProperties.class,
+				C4WebClientSettings.TokenExchangeProperties.class).registerHints(hints, classLoader);
+		hints.reflection().registerType(C4WebClientSettings.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+		hints.reflection().registerType(HttpProtocol.class, MemberCategory.PUBLIC_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+		hints.reflection().registerType(Executors.class, type -> type.withMethod("newVirtualThreadPerTaskExecutor", List.of(), ExecutableMode.INVOKE));
+	}
+}
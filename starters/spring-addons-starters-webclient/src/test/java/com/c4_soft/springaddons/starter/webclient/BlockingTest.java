@@ -0,0 +1,103 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.HttpClientErrorException;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+@SpringBootTest
+@ActiveProfiles("blocking")
+class BlockingTest {
+
+	@Autowired
+	C4WebClientSettings settings;
+
+	@Autowired
+	C4RestTemplateBuilderFactoryService service;
+
+	DisposableServer server;
+
+	@BeforeEach
+	void startServer() {
+		server = HttpServer.create().host("localhost").port(0)
+				.route(
+						routes -> routes.get("/greeting", (request, response) -> response.sendString(Mono.just("Hello!")))
+								.post("/echo", (request, response) -> response.send(request.receive().retain()))
+								.get("/missing", (request, response) -> response.status(404).send())
+								.get("/header", (request, response) -> response.sendString(Mono.justOrEmpty(request.requestHeaders().get("X-Customized")))))
+				.bindNow();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.disposeNow();
+	}
+
+	@Test
+	void testSettings() {
+		assertEquals(Duration.ofSeconds(2), settings.getBlocking().getConnectTimeout());
+		assertEquals(Duration.ofSeconds(5), settings.getBlocking().getRequestTimeout());
+		assertTrue(settings.getBlocking().isVirtualThreads());
+	}
+
+	@Test
+	void givenServerIsUp_whenCallingIt_thenResponseIsReturned() throws MalformedURLException {
+		final var restTemplate = service.get(new URL("http://localhost:%d".formatted(server.port()))).build();
+
+		assertEquals("Hello!", restTemplate.getForObject("/greeting", String.class));
+		assertEquals("ping", restTemplate.postForObject("/echo", "ping", String.class));
+		final var e = assertThrows(HttpClientErrorException.class, () -> restTemplate.getForObject("/missing", String.class));
+		assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+	}
+
+	@Test
+	void givenRestTemplateBuilderBean_whenGettingBuilder_thenItsCustomizationsAreKept() throws MalformedURLException {
+		final var restTemplate = service.get(new URL("http://localhost:%d".formatted(server.port()))).build();
+
+		assertEquals("yes", restTemplate.getForObject("/header", String.class));
+	}
+
+	@Test
+	void givenNonProxyHostsPattern_whenSelectingProxy_thenMatchingHostsAreReachedDirectly() {
+		final var proxyAddress = InetSocketAddress.createUnresolved("corp-proxy", 8080);
+		final var selector = new C4RestTemplateBuilderFactoryService.C4ProxySelector(proxyAddress, "(localhost)|(.*\\.corporate\\-domain\\.com)");
+
+		assertEquals(List.of(Proxy.NO_PROXY), selector.select(URI.create("http://localhost:8080/greeting")));
+		assertEquals(List.of(Proxy.NO_PROXY), selector.select(URI.create("https://api.corporate-domain.com/greeting")));
+		assertEquals(List.of(new Proxy(Proxy.Type.HTTP, proxyAddress)), selector.select(URI.create("https://c4-soft.com/greeting")));
+	}
+
+	/**
+	 * Stands for the RestTemplateBuilder auto-configured (with customizers) in servlet applications
+	 */
+	@TestConfiguration
+	static class RestTemplateBuilderConfiguration {
+		@Bean
+		RestTemplateBuilder restTemplateBuilder() {
+			return new RestTemplateBuilder().defaultHeader("X-Customized", "yes");
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.endpoint.ReactiveOAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class ClientCredentialsTokenCacheTest {
+	static final ClientRegistration REGISTRATION = ClientRegistration.withRegistrationId("machin-client").clientId("machin").clientSecret("secret")
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS).tokenUri("https://localhost:8443/token").build();
+
+	AtomicInteger tokenRequestsCount;
+	Instant now;
+	ClientCredentialsTokenCache cache;
+
+	@BeforeEach
+	void setUp() {
+		tokenRequestsCount = new AtomicInteger();
+		now = Instant.parse("2023-06-01T00:00:00Z");
+		final ReactiveOAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenResponseClient = request -> Mono.fromSupplier(() -> {
+			final var count = tokenRequestsCount.incrementAndGet();
+			return OAuth2AccessTokenResponse.withToken("token-%d".formatted(count)).tokenType(OAuth2AccessToken.TokenType.BEARER).expiresIn(300).build();
+		}).delayElement(Duration.ofMillis(50));
+		cache = new ClientCredentialsTokenCache(new InMemoryReactiveClientRegistrationRepository(REGISTRATION), tokenResponseClient, Duration.ofSeconds(30));
+		cache.setClock(Clock.fixed(now, ZoneOffset.UTC));
+	}
+
+	@Test
+	void givenNoTokenIsCached_whenManyConcurrentRequests_thenOnlyOneTokenRequestIsSent() {
+		final var tokens = Flux.range(0, 1000).parallel(8).runOn(Schedulers.parallel()).flatMap(i -> cache.get("machin-client"))
+				.map(OAuth2AccessToken::getTokenValue).sequential().distinct().collectList().block(Duration.ofSeconds(10));
+
+		assertEquals(1, tokenRequestsCount.get());
+		assertEquals(1, tokens.size());
+	}
+
+	@Test
+	void givenTokenIsCached_whenItIsAboutToExpire_thenItIsStillReturnedAndRefreshedInBackground() throws InterruptedException {
+		assertEquals("token-1", cache.get("machin-client").block().getTokenValue());
+
+		// the token response client uses "real" time to set issuedAt and expiresAt
+		cache.setClock(Clock.fixed(Instant.now().plusSeconds(280), ZoneOffset.UTC));
+		assertEquals("token-1", cache.get("machin-client").block().getTokenValue());
+		Thread.sleep(500);
+
+		assertEquals(2, tokenRequestsCount.get());
+		assertEquals("token-2", cache.get("machin-client").block().getTokenValue());
+	}
+
+	@Test
+	void givenTokenIsExpired_whenRequested_thenNewTokenIsFetched() {
+		assertEquals("token-1", cache.get("machin-client").block().getTokenValue());
+
+		cache.setClock(Clock.fixed(Instant.now().plusSeconds(301), ZoneOffset.UTC));
+
+		assertEquals("token-2", cache.get("machin-client").block().getTokenValue());
+		assertEquals(2, tokenRequestsCount.get());
+	}
+
+	@Test
+	void givenTokenWasEvicted_whenRequested_thenNewTokenIsFetched() {
+		assertEquals("token-1", cache.get("machin-client").block().getTokenValue());
+
+		cache.evict("machin-client");
+
+		assertEquals("token-2", cache.get("machin-client").block().getTokenValue());
+	}
+
+	@Test
+	void givenUnknownRegistration_whenRequested_thenError() {
+		assertThrows(IllegalArgumentException.class, () -> cache.get("unknown").block());
+	}
+
+	@Test
+	void givenTokenResponseClientReturnsNothing_whenRequestedAgain_thenNewTokenRequestIsSent() {
+		final var responses = new AtomicInteger();
+		final var flakyCache = new ClientCredentialsTokenCache(
+				new InMemoryReactiveClientRegistrationRepository(REGISTRATION),
+				request -> responses.incrementAndGet() == 1
+						? Mono.empty()
+						: Mono.just(OAuth2AccessTokenResponse.withToken("token").tokenType(OAuth2AccessToken.TokenType.BEARER).expiresIn(300).build()),
+				Duration.ofSeconds(30));
+
+		final var e = assertThrows(OAuth2AuthorizationException.class, () -> flakyCache.get("machin-client").block());
+		assertEquals("invalid_token_response", e.getError().getErrorCode());
+
+		assertEquals("token", flakyCache.get("machin-client").block().getTokenValue());
+		assertEquals(2, responses.get());
+	}
+
+	@Test
+	void givenTokenResponseClientReturnsNothing_whenIntercepting_thenAuthorizationExceptionInsteadOfNpe() {
+		final var emptyCache = new ClientCredentialsTokenCache(new InMemoryReactiveClientRegistrationRepository(REGISTRATION), request -> Mono.empty(), Duration.ofSeconds(30));
+		emptyCache.setTimeout(Duration.ofSeconds(1));
+		final var interceptor = new ClientCredentialsClientHttpRequestInterceptor(emptyCache, "machin-client");
+
+		final var request = new MockClientHttpRequest();
+		final var e = assertThrows(OAuth2AuthorizationException.class, () -> interceptor.intercept(request, new byte[0], (req, body) -> null));
+		assertEquals("invalid_token_response", e.getError().getErrorCode());
+	}
+}
@@ -0,0 +1,51 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("pool")
+class PoolTest {
+
+	@Autowired
+	C4WebClientSettings settings;
+
+	@Autowired
+	C4WebClientBuilderFactoryService service;
+
+	@Test
+	void testSettings() {
+		assertEquals("test-pool", settings.getPool().getName());
+		assertEquals(42, settings.getPool().getMaxConnections());
+		assertEquals(84, settings.getPool().getPendingAcquireMaxCount());
+		assertEquals(Duration.ofSeconds(5), settings.getPool().getMaxIdleTime());
+		assertEquals(Duration.ofMinutes(1), settings.getPool().getMaxLifeTime());
+		assertEquals(Duration.ZERO, settings.getPool().getEvictionInterval());
+	}
+
+	@Test
+	void testConnectionProvider() {
+		final var provider = C4WebClientBuilderFactoryService.connectionProvider(settings.getPool());
+		try {
+			assertEquals(42, provider.maxConnections());
+		} finally {
+			provider.dispose();
+		}
+	}
+
+	@Test
+	void testService() throws MalformedURLException {
+		final var baseUrl = new URL("http://localhost:8080");
+		assertNotSame(service.get(baseUrl), service.get(baseUrl));
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+class TokenExchangeCacheTest {
+	DisposableServer server;
+	ConcurrentLinkedQueue<Map<String, String>> tokenRequests;
+	TokenExchangeCache cache;
+
+	@BeforeEach
+	void setUp() {
+		tokenRequests = new ConcurrentLinkedQueue<>();
+		server = HttpServer.create().host("localhost").port(0).route(routes -> routes.post("/token", (request, response) -> {
+			final var authorization = request.requestHeaders().get("Authorization");
+			return request.receive().aggregate().asString().map(TokenExchangeCacheTest::parseForm).flatMap(form -> {
+				form.put("authorization", authorization);
+				tokenRequests.add(form);
+				if ("forbidden-api".equals(form.get("audience"))) {
+					return Mono.just("""
+							{"error":"invalid_target","error_description":"forbidden-api is not a valid audience"}""");
+				}
+				return Mono.just("""
+						{"access_token":"%s-for-%s","token_type":"Bearer","expires_in":300,"issued_token_type":"%s"}""".formatted(
+						form.get("subject_token"),
+						form.get("audience"),
+						TokenExchangeCache.ACCESS_TOKEN_TYPE));
+			}).delayElement(Duration.ofMillis(50))
+					.flatMap(body -> response.status(body.contains("\"error\"") ? 400 : 200).header("Content-Type", "application/json").sendString(Mono.just(body)).then());
+		})).bindNow();
+
+		final var registration = ClientRegistration.withRegistrationId("machin-client").clientId("machin").clientSecret("secret")
+				.authorizationGrantType(new AuthorizationGrantType(TokenExchangeCache.GRANT_TYPE))
+				.tokenUri("http://localhost:%d/token".formatted(server.port())).build();
+		cache = new TokenExchangeCache(new InMemoryReactiveClientRegistrationRepository(registration), WebClient.create(), Duration.ofSeconds(30), 3);
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.disposeNow();
+	}
+
+	@Test
+	void whenExchangingToken_thenRfc8693RequestIsSent() {
+		final var actual = cache.exchange("machin-client", "user-token", "bidule-api").block(Duration.ofSeconds(10));
+
+		assertEquals("user-token-for-bidule-api", actual.getTokenValue());
+		assertEquals(1, tokenRequests.size());
+		final var form = tokenRequests.peek();
+		assertEquals(TokenExchangeCache.GRANT_TYPE, form.get("grant_type"));
+		assertEquals(TokenExchangeCache.ACCESS_TOKEN_TYPE, form.get("subject_token_type"));
+		assertEquals("user-token", form.get("subject_token"));
+		assertEquals("bidule-api", form.get("audience"));
+		assertTrue(form.get("authorization").startsWith("Basic "));
+	}
+
+	@Test
+	void givenManyConcurrentCallsForSameSubjectAndAudience_whenExchangingToken_thenOnlyOneRequestIsSent() {
+		final var tokens = Flux.range(0, 500).parallel(8).runOn(Schedulers.parallel())
+				.flatMap(i -> cache.exchange("machin-client", "user-token", i % 2 == 0 ? "bidule-api" : "chose-api"))
+				.map(OAuth2AccessToken::getTokenValue).sequential().distinct().collectList().block(Duration.ofSeconds(10));
+
+		assertEquals(2, tokenRequests.size());
+		assertEquals(2, tokens.size());
+	}
+
+	@Test
+	void givenTokenIsAboutToExpire_whenExchangingToken_thenNewRequestIsSent() {
+		cache.exchange("machin-client", "user-token", "bidule-api").block(Duration.ofSeconds(10));
+		cache.exchange("machin-client", "user-token", "bidule-api").block(Duration.ofSeconds(10));
+		assertEquals(1, tokenRequests.size());
+
+		cache.setClock(Clock.fixed(Instant.now().plusSeconds(280), ZoneOffset.UTC));
+		cache.exchange("machin-client", "user-token", "bidule-api").block(Duration.ofSeconds(10));
+
+		assertEquals(2, tokenRequests.size());
+	}
+
+	@Test
+	void givenCacheIsFull_whenExchangingToken_thenSizeDoesNotExceedMax() {
+		for (var i = 0; i < 5; ++i) {
+			cache.exchange("machin-client", "user-token-%d".formatted(i), "bidule-api").block(Duration.ofSeconds(10));
+		}
+
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	void givenManyConcurrentCallsForDistinctSubjects_whenExchangingToken_thenSizeDoesNotExceedMax() {
+		Flux.range(0, 50).parallel(8).runOn(Schedulers.parallel()).flatMap(i -> cache.exchange("machin-client", "user-token-%d".formatted(i), "bidule-api"))
+				.sequential().blockLast(Duration.ofSeconds(10));
+
+		assertEquals(50, tokenRequests.size());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	void givenAuthorizationServerReturnsAnError_whenExchangingToken_thenOAuth2AuthorizationException() {
+		final var e = assertThrows(
+				OAuth2AuthorizationException.class,
+				() -> cache.exchange("machin-client", "user-token", "forbidden-api").block(Duration.ofSeconds(10)));
+
+		assertEquals("invalid_target", e.getError().getErrorCode());
+		assertEquals("forbidden-api is not a valid audience", e.getError().getDescription());
+		assertEquals(0, cache.size());
+	}
+
+	static Map<String, String> parseForm(String body) {
+		return Arrays.stream(body.split("&")).map(param -> param.split("=", 2)).collect(
+				Collectors.toMap(
+						kv -> URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+						kv -> URLDecoder.decode(kv[1], StandardCharsets.UTF_8),
+						(a, b) -> b,
+						HashMap::new));
+	}
+}
@@ -0,0 +1,70 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+@SpringBootTest
+@ActiveProfiles("transport")
+class TransportTest {
+
+	@Autowired
+	C4WebClientSettings settings;
+
+	@Autowired
+	C4WebClientBuilderFactoryService service;
+
+	DisposableServer server;
+
+	@BeforeEach
+	void startServer() {
+		server = HttpServer.create().host("localhost").port(0).protocol(HttpProtocol.HTTP11, HttpProtocol.H2C).compress(true)
+				.route(routes -> routes.get("/protocol", (request, response) -> {
+					// HTTP/2 frames are converted to HTTP/1.1 requests: the stream channel is the only reliable hint
+					final var protocol = new StringBuilder();
+					request.withConnection(connection -> protocol.append(connection.channel() instanceof Http2StreamChannel ? "h2c" : "http/1.1"));
+					return response.sendString(Mono.just(protocol.toString()));
+				})).bindNow();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.disposeNow();
+	}
+
+	@Test
+	void testSettings() {
+		assertEquals(List.of(HttpProtocol.H2C), settings.getProtocols());
+		assertTrue(settings.isCompress());
+		assertTrue(settings.isNativeTransport());
+		assertTrue(settings.getDns().isEnabled());
+		assertEquals(Duration.ofSeconds(5), settings.getResponseTimeout());
+		assertEquals(Duration.ofSeconds(5), settings.getReadTimeout());
+		assertEquals(Duration.ofSeconds(5), settings.getWriteTimeout());
+	}
+
+	@Test
+	void givenH2cIsEnabled_whenCallingH2cServer_thenHttp2IsUsed() throws MalformedURLException {
+		final var actual = service.get(new URL("http://localhost:%d".formatted(server.port()))).build().get().uri("/protocol").retrieve()
+				.bodyToMono(String.class).block(Duration.ofSeconds(10));
+		assertEquals("h2c", actual);
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * <p>
+ * Throughput of high fan-out calls to a local stand-in server (HTTP/1.1 and h2c, with gzip compression) for a few client configurations. Skipped unless
+ * run with -Dbenchmark=true, for instance:
+ * </p>
+ *
+ * <pre>
+ * mvn test -Dtest=WebClientBenchmark -Dbenchmark=true -Dbenchmark.requests=20000 -Dbenchmark.concurrency=128
+ * </pre>
+ *
+ * @author Jérôme Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WebClientBenchmark {
+	static final int REQUESTS = Integer.getInteger("benchmark.requests", 10000);
+	static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 64);
+	static final String PAYLOAD = "{\"greeting\":\"%s\"}".formatted("Hello!".repeat(500));
+
+	static DisposableServer server;
+	static URL baseUrl;
+
+	@BeforeAll
+	static void startServer() throws MalformedURLException {
+		server = HttpServer.create().host("localhost").port(0).protocol(HttpProtocol.HTTP11, HttpProtocol.H2C).compress(true)
+				.route(routes -> routes.get("/greeting", (request, response) -> response.sendString(Mono.just(PAYLOAD)))).bindNow();
+		baseUrl = new URL("http://localhost:%d".formatted(server.port()));
+	}
+
+	@AfterAll
+	static void stopServer() {
+		server.disposeNow();
+	}
+
+	@Test
+	void newConnectionPerRequest() {
+		final var client = WebClient.builder().baseUrl(baseUrl.toString())
+				.clientConnector(new ReactorClientHttpConnector(HttpClient.create(ConnectionProvider.newConnection()))).build();
+		run("new connection per request", client);
+	}
+
+	@Test
+	void pooledHttp11() {
+		run("pooled HTTP/1.1", settings -> {
+		});
+	}
+
+	@Test
+	void pooledHttp11WithCompression() {
+		run("pooled HTTP/1.1 + gzip", settings -> settings.setCompress(true));
+	}
+
+	@Test
+	void pooledH2c() {
+		run("pooled h2c", settings -> settings.setProtocols(List.of(HttpProtocol.H2C)));
+	}
+
+	@Test
+	void pooledH2cWithCompression() {
+		run("pooled h2c + gzip", settings -> {
+			settings.setProtocols(List.of(HttpProtocol.H2C));
+			settings.setCompress(true);
+		});
+	}
+
+	@Test
+	void pooledHttp11WithNioTransport() {
+		run("pooled HTTP/1.1 on NIO", settings -> settings.setNativeTransport(false));
+	}
+
+	static void run(String scenario, Consumer<C4WebClientSettings> configurer) {
+		final var proxySettings = new C4ProxySettings();
+		proxySettings.setEnabled(false);
+		final var settings = new C4WebClientSettings();
+		configurer.accept(settings);
+		final var service = new C4WebClientBuilderFactoryService(proxySettings, settings);
+		try {
+			run(scenario, service.get(baseUrl).build());
+		} finally {
+			service.destroy();
+		}
+	}
+
+	static void run(String scenario, WebClient client) {
+		call(client, REQUESTS / 10);
+
+		final var start = System.nanoTime();
+		final var count = call(client, REQUESTS);
+		final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertEquals(REQUESTS, count);
+		log.info(
+				"{}: {} requests with concurrency {} in {} ms ({} req/s)",
+				scenario,
+				REQUESTS,
+				CONCURRENCY,
+				elapsed.toMillis(),
+				REQUESTS * 1000L / Math.max(1L, elapsed.toMillis()));
+	}
+
+	static long call(WebClient client, int requests) {
+		return Flux.range(0, requests).flatMap(i -> client.get().uri("/greeting").retrieve().bodyToMono(String.class), CONCURRENCY).count()
+				.block(Duration.ofMinutes(5));
+	}
+}
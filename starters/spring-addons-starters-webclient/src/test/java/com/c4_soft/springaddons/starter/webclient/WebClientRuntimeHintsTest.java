@@ -0,0 +1,31 @@
+package com.c4_soft.springaddons.starter.webclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import reactor.netty.http.HttpProtocol;
+
+class WebClientRuntimeHintsTest {
+
+	@Test
+	void whenRegisteringHints_thenSettingsCanBeBoundAndVirtualThreadsFactoryInvoked() {
+		final var hints = new RuntimeHints();
+		new WebClientRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+		assertThat(RuntimeHintsPredicates.reflection().onType(C4WebClientSettings.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(C4ProxySettings.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(C4WebClientSettings.PoolProperties.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(C4WebClientSettings.class, "setProtocols")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(HttpProtocol.class)).accepts(hints);
+		final var executorsHint = hints.reflection().getTypeHint(TypeReference.of(Executors.class));
+		assertThat(executorsHint.methods())
+				.anyMatch(m -> m.getName().equals("newVirtualThreadPerTaskExecutor") && m.getParameterTypes().isEmpty() && m.getMode() == ExecutableMode.INVOKE);
+	}
+}
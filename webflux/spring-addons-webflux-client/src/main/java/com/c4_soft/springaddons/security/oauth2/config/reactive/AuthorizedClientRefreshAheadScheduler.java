@@ -0,0 +1,142 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.client.OAuth2AuthorizationContext;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProvider;
+import org.springframework.security.oauth2.client.RefreshTokenReactiveOAuth2AuthorizedClientProvider;
+import org.springframework.web.server.WebSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties.RefreshAheadProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Periodically scans the sessions held by this node (as tracked by {@link SpringAddonsServerOAuth2AuthorizedClientRepository}) and refreshes the access tokens
+ * which are about to expire, so that user requests do not pay the round-trip to the token endpoint.
+ * </p>
+ * <p>
+ * Each authorized client is refreshed at a stable random time within the "jitter" window before "advance", to spread the load on the authorization server.
+ * Sessions idle for longer than "max-idle" are skipped: the tokens will be refreshed on next user request, as usual.
+ * </p>
+ * <p>
+ * Refreshes go through the {@link SingleFlightReactiveOAuth2AuthorizedClientManager} used by requests, so that a refresh-ahead never runs concurrently with
+ * a request-time refresh of the same authorized client.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class AuthorizedClientRefreshAheadScheduler implements SmartLifecycle, AutoCloseable {
+	private final SpringAddonsServerOAuth2AuthorizedClientRepository authorizedClientRepository;
+	private final SingleFlightReactiveOAuth2AuthorizedClientManager authorizedClientManager;
+	private final ReactiveOAuth2AuthorizedClientProvider refreshTokenProvider;
+	private final RefreshAheadProperties properties;
+	private volatile Disposable schedule;
+
+	public AuthorizedClientRefreshAheadScheduler(
+			SpringAddonsServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+			SingleFlightReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+			RefreshAheadProperties properties) {
+		this(authorizedClientRepository, authorizedClientManager, properties, refreshTokenProvider(properties));
+	}
+
+	public AuthorizedClientRefreshAheadScheduler(
+			SpringAddonsServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+			SingleFlightReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+			RefreshAheadProperties properties,
+			ReactiveOAuth2AuthorizedClientProvider refreshTokenProvider) {
+		this.authorizedClientRepository = authorizedClientRepository;
+		this.authorizedClientManager = authorizedClientManager;
+		this.refreshTokenProvider = refreshTokenProvider;
+		this.properties = properties;
+		schedule();
+	}
+
+	/**
+	 * @return completes when the tokens about to expire in all the non-idle sessions held by this node are refreshed
+	 */
+	public Mono<Void> refreshAll() {
+		final var now = Instant.now();
+		return authorizedClientRepository.getLocalSessions().filter(session -> !now.minus(properties.getMaxIdle()).isAfter(session.getLastAccessTime()))
+				.concatMap(session -> authorizedClientRepository.loadAuthorizedClients(session).filter(ac -> isAboutToExpire(session, ac, now))
+						.concatMap(ac -> refresh(session, ac)).onErrorResume(e -> {
+							log.warn("Failed to refresh authorized clients of a session ahead of expiry", e);
+							return Mono.empty();
+						}))
+				.then();
+	}
+
+	private Mono<Void> refresh(WebSession session, OAuth2AuthorizedClient authorizedClient) {
+		// there is no request, and so no security context: only the principal name is known
+		final var principal = UsernamePasswordAuthenticationToken.unauthenticated(authorizedClient.getPrincipalName(), null);
+		final var context = OAuth2AuthorizationContext.withAuthorizedClient(authorizedClient).principal(principal).build();
+		final var refresh = refreshTokenProvider.authorize(context)
+				.flatMap(refreshed -> authorizedClientRepository.updateAuthorizedClient(session, refreshed).thenReturn(refreshed));
+		return authorizedClientManager.singleFlight(session.getId(), authorizedClient.getClientRegistration().getRegistrationId(), refresh).then();
+	}
+
+	private boolean isAboutToExpire(WebSession session, OAuth2AuthorizedClient authorizedClient, Instant now) {
+		final var expiresAt = authorizedClient.getAccessToken().getExpiresAt();
+		if (authorizedClient.getRefreshToken() == null || expiresAt == null) {
+			return false;
+		}
+		final var jitterMillis = properties.getJitter().toMillis();
+		final var jitter = jitterMillis > 0
+				? Duration.ofMillis(Math.floorMod((session.getId() + authorizedClient.getClientRegistration().getRegistrationId()).hashCode(), jitterMillis))
+				: Duration.ZERO;
+		return now.isAfter(expiresAt.minus(properties.getAdvance()).minus(jitter));
+	}
+
+	private static ReactiveOAuth2AuthorizedClientProvider refreshTokenProvider(RefreshAheadProperties properties) {
+		final var provider = new RefreshTokenReactiveOAuth2AuthorizedClientProvider();
+		// tokens selected by this scheduler must be considered as expired by the provider
+		provider.setClockSkew(properties.getAdvance().plus(properties.getJitter()));
+		return provider;
+	}
+
+	/**
+	 * (Re)starts the periodic refresh. It is started on construction, and stopped then restarted by Spring around a CRaC checkpoint and restore.
+	 */
+	@Override
+	public void start() {
+		schedule();
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (schedule != null) {
+			schedule.dispose();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		final var current = schedule;
+		return current != null && !current.isDisposed();
+	}
+
+	@Override
+	public void close() {
+		stop();
+	}
+
+	private synchronized void schedule() {
+		if (!isRunning()) {
+			schedule = Flux.interval(properties.getInterval(), properties.getInterval(), Schedulers.parallel()).onBackpressureDrop()
+					.concatMap(tick -> refreshAll().onErrorResume(e -> {
+						log.warn("Failed to refresh authorized clients ahead of expiry", e);
+						return Mono.empty();
+					})).subscribe();
+		}
+	}
+}
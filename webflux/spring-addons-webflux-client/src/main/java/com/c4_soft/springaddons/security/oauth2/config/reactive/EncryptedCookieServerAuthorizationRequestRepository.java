@@ -0,0 +1,61 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.springframework.security.oauth2.client.web.server.ServerAuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * A {@link ServerAuthorizationRequestRepository} keeping the authorization request in an encrypted cookie rather than in the session: the authorization code
+ * callback can be handled by any instance, and no session is created during login.
+ * </p>
+ * <p>
+ * Only the last authorization request is kept: if a user starts several logins concurrently (in different tabs), only the last one can complete.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class EncryptedCookieServerAuthorizationRequestRepository implements ServerAuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+	private final ServerEncryptedCookies cookies;
+	private final String cookieName;
+	private final Duration maxAge;
+
+	public EncryptedCookieServerAuthorizationRequestRepository(ServerEncryptedCookies cookies, String cookieName, Duration maxAge) {
+		this.cookies = cookies;
+		this.cookieName = cookieName;
+		this.maxAge = maxAge;
+	}
+
+	@Override
+	public Mono<OAuth2AuthorizationRequest> loadAuthorizationRequest(ServerWebExchange exchange) {
+		final var state = exchange.getRequest().getQueryParams().getFirst(OAuth2ParameterNames.STATE);
+		if (state == null) {
+			return Mono.empty();
+		}
+		return Mono.justOrEmpty(
+				cookies.read(exchange, cookieName, OAuth2AuthorizationRequest.class)
+						.filter(authorizationRequest -> Objects.equals(state, authorizationRequest.getState())));
+	}
+
+	@Override
+	public Mono<Void> saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest, ServerWebExchange exchange) {
+		return Mono.fromRunnable(() -> {
+			if (authorizationRequest == null) {
+				cookies.delete(exchange, cookieName);
+			} else {
+				cookies.write(exchange, cookieName, authorizationRequest, maxAge);
+			}
+		});
+	}
+
+	@Override
+	public Mono<OAuth2AuthorizationRequest> removeAuthorizationRequest(ServerWebExchange exchange) {
+		return loadAuthorizationRequest(exchange).doOnNext(authorizationRequest -> cookies.delete(exchange, cookieName));
+	}
+}
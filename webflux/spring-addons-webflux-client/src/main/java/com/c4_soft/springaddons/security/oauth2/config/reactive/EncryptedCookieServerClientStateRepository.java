@@ -0,0 +1,139 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.authentication.OAuth2LoginAuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.StatelessClientState;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Keeps a {@link StatelessClientState} (authentication, OAuth2 users and authorized clients) in encrypted cookies, for OAuth2 clients without server-side
+ * sessions. It serves both as {@link ServerOAuth2AuthorizedClientRepository} and {@link ServerSecurityContextRepository}, so that the authentication and the
+ * tokens are written in the same cookie(s).
+ * </p>
+ * <p>
+ * Tokens refreshed by the {@link org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager} are saved here too: the cookies are updated
+ * in the response, which must not be committed yet (which is the case when authorizing clients before proxying a request with the gateway TokenRelay filter
+ * for instance).
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class EncryptedCookieServerClientStateRepository implements ServerOAuth2AuthorizedClientRepository, ServerSecurityContextRepository {
+	private static final String STATE_ATTRIBUTE = EncryptedCookieServerClientStateRepository.class.getName() + ".state";
+
+	private final ReactiveClientRegistrationRepository clientRegistrationRepository;
+	private final ServerEncryptedCookies cookies;
+	private final String cookieName;
+	private final Duration cookieMaxAge;
+
+	public EncryptedCookieServerClientStateRepository(
+			ReactiveClientRegistrationRepository clientRegistrationRepository,
+			ServerEncryptedCookies cookies,
+			String cookieName,
+			Duration cookieMaxAge) {
+		this.clientRegistrationRepository = clientRegistrationRepository;
+		this.cookies = cookies;
+		this.cookieName = cookieName;
+		this.cookieMaxAge = cookieMaxAge;
+	}
+
+	/**
+	 * @param  exchange current exchange
+	 * @return          the state read from the request cookies (decrypted once per exchange)
+	 */
+	public StatelessClientState loadState(ServerWebExchange exchange) {
+		if (exchange.getAttribute(STATE_ATTRIBUTE) instanceof StatelessClientState state) {
+			return state;
+		}
+		final var state = cookies.read(exchange, cookieName, StatelessClientState.class).orElse(StatelessClientState.EMPTY);
+		exchange.getAttributes().put(STATE_ATTRIBUTE, state);
+		return state;
+	}
+
+	/**
+	 * Writes the state cookies, if it changed
+	 *
+	 * @param exchange current exchange (the response must not be committed)
+	 * @param state    the new state
+	 */
+	public void saveState(ServerWebExchange exchange, StatelessClientState state) {
+		if (Objects.equals(state, loadState(exchange))) {
+			return;
+		}
+		exchange.getAttributes().put(STATE_ATTRIBUTE, state);
+		if (state.isEmpty()) {
+			cookies.delete(exchange, cookieName);
+		} else {
+			cookies.write(exchange, cookieName, state, cookieMaxAge);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends OAuth2AuthorizedClient> Mono<T> loadAuthorizedClient(String clientRegistrationId, Authentication principal, ServerWebExchange exchange) {
+		return Mono.justOrEmpty(loadState(exchange).getAuthorizedClient(clientRegistrationId)).flatMap(
+				ac -> clientRegistrationRepository.findByRegistrationId(ac.registrationId()).map(registration -> (T) ac.toAuthorizedClient(registration)));
+	}
+
+	@Override
+	public Mono<Void> saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal, ServerWebExchange exchange) {
+		return Mono.fromRunnable(() -> {
+			final var registration = authorizedClient.getClientRegistration();
+			final var issuer = registration.getProviderDetails().getIssuerUri();
+			final var isLoginForThisRegistration = principal instanceof OAuth2LoginAuthenticationToken login
+					&& Objects.equals(registration.getRegistrationId(), login.getClientRegistration().getRegistrationId())
+					|| principal instanceof OAuth2AuthenticationToken oauth
+							&& Objects.equals(registration.getRegistrationId(), oauth.getAuthorizedClientRegistrationId());
+			final var user =
+					isLoginForThisRegistration && principal.getPrincipal() instanceof OAuth2User oauth2User ? CompactOAuth2User.from(issuer, oauth2User) : null;
+
+			saveState(exchange, loadState(exchange).withAuthorizedClient(user, CompactAuthorizedClient.from(authorizedClient)));
+		});
+	}
+
+	@Override
+	public Mono<Void> removeAuthorizedClient(String clientRegistrationId, Authentication principal, ServerWebExchange exchange) {
+		return Mono.fromRunnable(() -> saveState(exchange, loadState(exchange).withoutAuthorizedClient(clientRegistrationId)));
+	}
+
+	@Override
+	public Mono<SecurityContext> load(ServerWebExchange exchange) {
+		return Mono.justOrEmpty(loadState(exchange).toAuthentication()).map(SecurityContextImpl::new);
+	}
+
+	@Override
+	public Mono<Void> save(ServerWebExchange exchange, SecurityContext context) {
+		final var authentication = context == null ? null : context.getAuthentication();
+		if (authentication instanceof OAuth2AuthenticationToken oauth) {
+			return clientRegistrationRepository.findByRegistrationId(oauth.getAuthorizedClientRegistrationId())
+					.doOnNext(registration -> saveState(exchange, loadState(exchange).withAuthentication(oauth, registration.getProviderDetails().getIssuerUri())))
+					.then();
+		}
+		if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+			// logout: drop the authorized clients too
+			return Mono.fromRunnable(() -> saveState(exchange, StatelessClientState.EMPTY));
+		}
+		log.debug("Only OAuth2AuthenticationToken can be saved in {} cookie, got {}", cookieName, authentication.getClass());
+		return Mono.empty();
+	}
+}
@@ -0,0 +1,534 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.IdGenerator;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
+
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.ListenableWebSessionStore;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.WebSessionListener;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * A {@link WebSessionStore} keeping session attributes serialized in direct (off-heap) buffers. Only a small index entry (ID, timestamps and a reference to
+ * the buffer) is kept on the Java heap for each session, which keeps heap size (and GC pauses) flat when hundreds of thousands of sessions, each holding
+ * authorized clients, are stored.
+ * </p>
+ * <p>
+ * Attributes are deserialized in a new {@link WebSession} instance each time a session is retrieved and serialized back when it is saved. As a consequence,
+ * all session attributes must be {@link java.io.Serializable}. Do not forget to size the direct memory (-XX:MaxDirectMemorySize) accordingly. A new direct
+ * buffer is allocated only when the serialized attributes changed: saving an unchanged session just updates its timestamps.
+ * </p>
+ * <p>
+ * Saving a retrieved session only replaces the stored entry: a session invalidated or evicted while a request was using a copy of it is not resurrected.
+ * When the entry was saved by another request after this copy was retrieved (for instance when a token was refreshed concurrently), only the attributes this
+ * copy added, replaced or removed are written over the stored ones: a request which did not modify an attribute does not restore the stale value it read. If
+ * both requests modified the same attribute, the last save wins.
+ * </p>
+ * <p>
+ * Sessions are evicted:
+ * </p>
+ * <ul>
+ * <li>when idle for longer than their max idle time (lazily when accessed and by a periodic sweep)</li>
+ * <li>when the max number of sessions is reached, least recently used first</li>
+ * </ul>
+ * <p>
+ * In both cases, registered {@link WebSessionListener session listeners} are notified.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class OffHeapWebSessionStore implements ListenableWebSessionStore, SmartLifecycle, AutoCloseable {
+	private static final IdGenerator idGenerator = new AlternativeJdkIdGenerator();
+
+	private final ConcurrentLinkedQueue<WebSessionListener> webSessionListeners = new ConcurrentLinkedQueue<WebSessionListener>();
+
+	/* access ordered, for LRU eviction. Guarded by itself */
+	private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, .75f, true);
+
+	/* same content as index, for lookups which should not change the LRU order. Guarded by index */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	private final AtomicLong expiredSessionCount = new AtomicLong();
+	private final AtomicLong offHeapBytes = new AtomicLong();
+	private final Serializer<Object> serializer = new DefaultSerializer();
+	private final Deserializer<Object> deserializer = new DefaultDeserializer(ClassUtils.getDefaultClassLoader());
+	private final Duration timeout;
+	private final int maxSessions;
+	private final Duration expirationCheckInterval;
+	private volatile Disposable expirationSweep;
+
+	public OffHeapWebSessionStore(Duration timeout, int maxSessions, Duration expirationCheckInterval) {
+		Assert.isTrue(maxSessions > 0, "maxSessions must be positive");
+		this.timeout = timeout;
+		this.maxSessions = maxSessions;
+		this.expirationCheckInterval = expirationCheckInterval;
+		scheduleExpirationSweep();
+	}
+
+	@Override
+	public void addWebSessionListener(WebSessionListener listener) {
+		webSessionListeners.add(listener);
+	}
+
+	@Override
+	public Mono<WebSession> createWebSession() {
+		final var now = Instant.now();
+		final var session = new OffHeapWebSession(idGenerator.generateId().toString(), now, now, timeout, Map.of(), State.NEW, null);
+		webSessionListeners.forEach(l -> l.sessionCreated(session));
+		return Mono.just(session);
+	}
+
+	@Override
+	public Mono<WebSession> retrieveSession(String sessionId) {
+		final Entry entry;
+		synchronized (index) {
+			entry = index.get(sessionId);
+		}
+		if (entry == null) {
+			return Mono.empty();
+		}
+		final var now = Instant.now();
+		if (entry.isExpired(now)) {
+			evict(sessionId, entry);
+			return Mono.empty();
+		}
+		entry.lastAccessTime = now;
+		return Mono.just(new OffHeapWebSession(sessionId, entry.creationTime, now, entry.maxIdleTime, read(entry.data), State.STARTED, entry));
+	}
+
+	@Override
+	public Mono<WebSession> peekSession(String sessionId) {
+		final Entry entry;
+		synchronized (index) {
+			entry = entries.get(sessionId);
+		}
+		if (entry == null || entry.isExpired(Instant.now())) {
+			return Mono.empty();
+		}
+		return Mono.just(new OffHeapWebSession(sessionId, entry.creationTime, entry.lastAccessTime, entry.maxIdleTime, read(entry.data), State.STARTED, entry));
+	}
+
+	@Override
+	public Mono<Void> removeSession(String sessionId) {
+		final Entry removed;
+		synchronized (index) {
+			removed = index.remove(sessionId);
+			entries.remove(sessionId);
+		}
+		if (removed != null) {
+			release(removed);
+			webSessionListeners.forEach(l -> l.sessionRemoved(sessionId));
+		}
+		return Mono.empty();
+	}
+
+	@Override
+	public Mono<WebSession> updateLastAccessTime(WebSession webSession) {
+		final var now = Instant.now();
+		if (webSession instanceof OffHeapWebSession session) {
+			session.lastAccessTime = now;
+		}
+		final Entry entry;
+		synchronized (index) {
+			entry = index.get(webSession.getId());
+		}
+		if (entry != null) {
+			entry.lastAccessTime = now;
+		}
+		return Mono.just(webSession);
+	}
+
+	/**
+	 * Removes expired sessions from the store and notifies listeners. Called periodically.
+	 */
+	public void removeExpiredSessions() {
+		final var now = Instant.now();
+		try {
+			final List<Map.Entry<String, Entry>> expired = new ArrayList<>();
+			synchronized (index) {
+				for (var e : index.entrySet()) {
+					if (e.getValue().isExpired(now)) {
+						expired.add(Map.entry(e.getKey(), e.getValue()));
+					}
+				}
+			}
+			expired.forEach(e -> evict(e.getKey(), e.getValue()));
+		} catch (RuntimeException e) {
+			log.warn("Failed to remove expired sessions", e);
+		}
+	}
+
+	@Override
+	public int getSessionCount() {
+		synchronized (index) {
+			return index.size();
+		}
+	}
+
+	@Override
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	@Override
+	public long getExpiredSessionCount() {
+		return expiredSessionCount.get();
+	}
+
+	/**
+	 * @return the size of the direct buffers currently holding sessions attributes
+	 */
+	public long getOffHeapBytes() {
+		return offHeapBytes.get();
+	}
+
+	/**
+	 * (Re)starts the periodic expired sessions sweep. It is started on construction, and stopped then restarted by Spring around a CRaC checkpoint and restore.
+	 */
+	@Override
+	public void start() {
+		scheduleExpirationSweep();
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (expirationSweep != null) {
+			expirationSweep.dispose();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		final var sweep = expirationSweep;
+		return sweep != null && !sweep.isDisposed();
+	}
+
+	@Override
+	public void close() {
+		stop();
+	}
+
+	private synchronized void scheduleExpirationSweep() {
+		if (!isRunning()) {
+			expirationSweep = Flux.interval(expirationCheckInterval, expirationCheckInterval, Schedulers.parallel()).subscribe(tick -> removeExpiredSessions());
+		}
+	}
+
+	private void evict(String sessionId, Entry entry) {
+		final boolean removed;
+		synchronized (index) {
+			removed = index.remove(sessionId, entry);
+			if (removed) {
+				entries.remove(sessionId);
+			}
+		}
+		if (removed) {
+			release(entry);
+			expiredSessionCount.incrementAndGet();
+			webSessionListeners.forEach(l -> l.sessionRemoved(sessionId));
+		}
+	}
+
+	/**
+	 * @param  session the session to write off-heap
+	 * @return         false if the session was stored before but is not anymore (invalidated or evicted meanwhile), in which case it is not stored again
+	 */
+	private boolean store(OffHeapWebSession session) {
+		final var sessionId = session.getId();
+		while (true) {
+			final Entry current;
+			synchronized (index) {
+				current = entries.get(sessionId);
+			}
+			if (current == null && session.retrievedFrom != null) {
+				return false;
+			}
+			final var attributes = current == null || current == session.retrievedFrom ? session.getAttributes() : merge(session, current);
+			final var bytes = serialize(new HashMap<>(attributes));
+			if (current != null && current.holds(bytes)) {
+				current.lastAccessTime = session.lastAccessTime;
+				current.maxIdleTime = session.maxIdleTime;
+				session.retrievedFrom = current;
+				return true;
+			}
+
+			final var entry = new Entry(allocate(bytes), session.creationTime, session.lastAccessTime, session.maxIdleTime);
+			final List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+			synchronized (index) {
+				if (entries.get(sessionId) != current) {
+					// concurrently saved, invalidated or evicted: start over
+					release(entry);
+					continue;
+				}
+				index.put(sessionId, entry);
+				entries.put(sessionId, entry);
+				if (current == null) {
+					final var it = index.entrySet().iterator();
+					while (index.size() > maxSessions && it.hasNext()) {
+						final var eldest = it.next();
+						if (!eldest.getKey().equals(sessionId)) {
+							evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+							it.remove();
+							entries.remove(eldest.getKey());
+						}
+					}
+				}
+			}
+			session.retrievedFrom = entry;
+			if (current != null) {
+				release(current);
+			}
+			for (var e : evicted) {
+				log.debug("Max sessions limit reached ({}), evicting least recently used session", maxSessions);
+				release(e.getValue());
+				webSessionListeners.forEach(l -> l.sessionRemoved(e.getKey()));
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Applies the attributes a session copy added, replaced or removed since it was retrieved to the attributes of the entry saved meanwhile by another request.
+	 * The session copy is updated with the result, so that it can be saved again.
+	 *
+	 * @param  session the session copy to save
+	 * @param  current the entry currently stored for this session
+	 * @return         the attributes to store
+	 */
+	private Map<String, Object> merge(OffHeapWebSession session, Entry current) {
+		final Map<String, Object> retrieved = session.retrievedFrom == null ? Map.of() : read(session.retrievedFrom.data);
+		final var merged = read(current.data);
+		final var attributes = session.getAttributes();
+		for (var name : retrieved.keySet()) {
+			if (!attributes.containsKey(name)) {
+				merged.remove(name);
+			}
+		}
+		for (var attribute : attributes.entrySet()) {
+			final var previous = retrieved.get(attribute.getKey());
+			if (previous == null || !Arrays.equals(serialize(previous), serialize(attribute.getValue()))) {
+				merged.put(attribute.getKey(), attribute.getValue());
+			}
+		}
+		attributes.putAll(merged);
+		attributes.keySet().retainAll(merged.keySet());
+		session.retrievedFrom = current;
+		return merged;
+	}
+
+	private byte[] serialize(Object value) {
+		try {
+			return serializer.serializeToByteArray(value);
+		} catch (IOException e) {
+			throw new SerializationFailedException("Failed to serialize session attributes", e);
+		}
+	}
+
+	private ByteBuffer allocate(byte[] bytes) {
+		final var buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+		offHeapBytes.addAndGet(buffer.capacity());
+		return buffer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> read(ByteBuffer data) {
+		final var buffer = data.duplicate();
+		final var bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		try {
+			return (Map<String, Object>) deserializer.deserializeFromByteArray(bytes);
+		} catch (IOException e) {
+			throw new SerializationFailedException("Failed to deserialize session attributes", e);
+		}
+	}
+
+	private void release(Entry entry) {
+		offHeapBytes.addAndGet(-entry.data.capacity());
+	}
+
+	/**
+	 * On-heap part of a stored session: attributes are in an off-heap buffer
+	 */
+	private static class Entry {
+		private final ByteBuffer data;
+		private final Instant creationTime;
+		private volatile Instant lastAccessTime;
+		private volatile Duration maxIdleTime;
+
+		Entry(ByteBuffer data, Instant creationTime, Instant lastAccessTime, Duration maxIdleTime) {
+			this.data = data;
+			this.creationTime = creationTime;
+			this.lastAccessTime = lastAccessTime;
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		boolean isExpired(Instant now) {
+			return !maxIdleTime.isNegative() && now.minus(maxIdleTime).isAfter(lastAccessTime);
+		}
+
+		boolean holds(byte[] bytes) {
+			return data.remaining() == bytes.length && data.duplicate().equals(ByteBuffer.wrap(bytes));
+		}
+	}
+
+	/**
+	 * Request scoped copy of a stored session: modifications are written off-heap on {@link #save()}
+	 */
+	private class OffHeapWebSession implements WebSession {
+		private final AtomicReference<String> id;
+		private final Map<String, Object> attributes;
+		private final Instant creationTime;
+		private volatile Instant lastAccessTime;
+		private volatile Duration maxIdleTime;
+		private final AtomicReference<State> state;
+
+		/* the stored entry this copy was read from or last written to (null if never saved): to detect sessions removed while in use and to merge saves from
+		 * other requests */
+		private volatile Entry retrievedFrom;
+
+		OffHeapWebSession(
+				String id,
+				Instant creationTime,
+				Instant lastAccessTime,
+				Duration maxIdleTime,
+				Map<String, Object> attributes,
+				State state,
+				Entry retrievedFrom) {
+			this.id = new AtomicReference<>(id);
+			this.attributes = new ConcurrentHashMap<>(attributes);
+			this.creationTime = creationTime;
+			this.lastAccessTime = lastAccessTime;
+			this.maxIdleTime = maxIdleTime;
+			this.state = new AtomicReference<>(state);
+			this.retrievedFrom = retrievedFrom;
+		}
+
+		@Override
+		public String getId() {
+			return id.get();
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return creationTime;
+		}
+
+		@Override
+		public Instant getLastAccessTime() {
+			return lastAccessTime;
+		}
+
+		@Override
+		public void setMaxIdleTime(Duration maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		@Override
+		public Duration getMaxIdleTime() {
+			return maxIdleTime;
+		}
+
+		@Override
+		public void start() {
+			state.compareAndSet(State.NEW, State.STARTED);
+		}
+
+		@Override
+		public boolean isStarted() {
+			return state.get().equals(State.STARTED) || !attributes.isEmpty();
+		}
+
+		@Override
+		public Mono<Void> changeSessionId() {
+			final var oldSessionId = getId();
+			final var newSessionId = idGenerator.generateId().toString();
+			final Entry entry;
+			synchronized (index) {
+				entry = index.remove(oldSessionId);
+				entries.remove(oldSessionId);
+				if (entry != null) {
+					index.put(newSessionId, entry);
+					entries.put(newSessionId, entry);
+				}
+			}
+			id.set(newSessionId);
+			if (entry != null) {
+				webSessionListeners.forEach(l -> l.sessionIdChanged(oldSessionId, this));
+			}
+			return Mono.empty();
+		}
+
+		@Override
+		public Mono<Void> invalidate() {
+			state.set(State.EXPIRED);
+			attributes.clear();
+			return removeSession(getId());
+		}
+
+		@Override
+		public Mono<Void> save() {
+			// Implicitly started session
+			if (!attributes.isEmpty()) {
+				state.compareAndSet(State.NEW, State.STARTED);
+			}
+			if (state.get().equals(State.EXPIRED)) {
+				return Mono.error(new IllegalStateException("Session was invalidated"));
+			}
+			if (isStarted()) {
+				try {
+					if (!store(this)) {
+						log.debug("Session {} was removed while in use, it is not saved", getId());
+					}
+				} catch (SerializationFailedException e) {
+					return Mono.error(e);
+				}
+			}
+			return Mono.empty();
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state.get().equals(State.EXPIRED) || (isStarted() && !maxIdleTime.isNegative() && Instant.now().minus(maxIdleTime).isAfter(lastAccessTime));
+		}
+	}
+
+	private enum State {
+		NEW, STARTED, EXPIRED
+	}
+}
@@ -0,0 +1,71 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads and writes values in chunked, encrypted, HTTP-only cookies (see {@link EncryptedCookieCodec})
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class ServerEncryptedCookies {
+	private final EncryptedCookieCodec codec;
+	private final boolean secure;
+
+	public ServerEncryptedCookies(EncryptedCookieCodec codec, boolean secure) {
+		this.codec = codec;
+		this.secure = secure;
+	}
+
+	public <T> Optional<T> read(ServerWebExchange exchange, String cookieName, Class<T> type) {
+		final var cookies = exchange.getRequest().getCookies();
+		final var chunks = new ArrayList<String>();
+		for (int i = 0; i < EncryptedCookieCodec.getMaxChunks() && cookies.containsKey(EncryptedCookieCodec.chunkName(cookieName, i)); ++i) {
+			chunks.add(cookies.getFirst(EncryptedCookieCodec.chunkName(cookieName, i)).getValue());
+		}
+		return codec.decode(cookieName, chunks, type);
+	}
+
+	public void write(ServerWebExchange exchange, String cookieName, Serializable value, Duration maxAge) {
+		if (exchange.getResponse().isCommitted()) {
+			log.warn("Response already committed, {} cookie could not be updated", cookieName);
+			return;
+		}
+		final var chunks = codec.encode(cookieName, value);
+		for (int i = 0; i < chunks.size(); ++i) {
+			setCookie(exchange, EncryptedCookieCodec.chunkName(cookieName, i), chunks.get(i), maxAge);
+		}
+		expireChunks(exchange, cookieName, chunks.size());
+	}
+
+	public void delete(ServerWebExchange exchange, String cookieName) {
+		if (exchange.getResponse().isCommitted()) {
+			log.warn("Response already committed, {} cookie could not be deleted", cookieName);
+			return;
+		}
+		expireChunks(exchange, cookieName, 0);
+	}
+
+	private void expireChunks(ServerWebExchange exchange, String cookieName, int from) {
+		final var cookies = exchange.getRequest().getCookies();
+		for (int i = from; i < EncryptedCookieCodec.getMaxChunks() && cookies.containsKey(EncryptedCookieCodec.chunkName(cookieName, i)); ++i) {
+			setCookie(exchange, EncryptedCookieCodec.chunkName(cookieName, i), "", Duration.ZERO);
+		}
+	}
+
+	private void setCookie(ServerWebExchange exchange, String name, String value, Duration maxAge) {
+		// replaces any cookie with the same name already set on this response
+		exchange.getResponse().getCookies()
+				.set(name, ResponseCookie.from(name, value).path("/").httpOnly(true).secure(secure).sameSite("Lax").maxAge(maxAge).build());
+	}
+}
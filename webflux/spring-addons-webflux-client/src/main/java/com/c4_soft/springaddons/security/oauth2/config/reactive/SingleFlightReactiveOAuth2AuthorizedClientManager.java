@@ -0,0 +1,82 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.web.server.ServerWebExchange;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * A {@link ReactiveOAuth2AuthorizedClientManager} coalescing concurrent authorizations for the same (session, client registration) pair: when an SPA fires
+ * several requests just after an access token expired, only the first one subscribes to the delegate (and calls the token endpoint), the others wait for its
+ * result.
+ * </p>
+ * <p>
+ * This avoids duplicate refresh-token grant requests, which with refresh-token rotation would fail for all but the first, and ensures the refreshed authorized
+ * client is saved once.
+ * </p>
+ * <p>
+ * Requests without an exchange (and so without a session) are not coalesced.
+ * </p>
+ * <p>
+ * Background refreshes ({@link AuthorizedClientRefreshAheadScheduler}) go through {@link #singleFlight(String, String, Mono)}, sharing the same in-flight
+ * map: a refresh-ahead and a request-time refresh for the same session and registration never run concurrently.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class SingleFlightReactiveOAuth2AuthorizedClientManager implements ReactiveOAuth2AuthorizedClientManager {
+	private final Map<FlightKey, CompletableFuture<OAuth2AuthorizedClient>> inFlight = new ConcurrentHashMap<>();
+	private final ReactiveOAuth2AuthorizedClientManager delegate;
+
+	@Override
+	public Mono<OAuth2AuthorizedClient> authorize(OAuth2AuthorizeRequest authorizeRequest) {
+		final var exchange = authorizeRequest.<ServerWebExchange>getAttribute(ServerWebExchange.class.getName());
+		if (exchange == null) {
+			return delegate.authorize(authorizeRequest);
+		}
+		return exchange.getSession()
+				.flatMap(session -> singleFlight(session.getId(), authorizeRequest.getClientRegistrationId(), delegate.authorize(authorizeRequest)));
+	}
+
+	/**
+	 * Subscribes to an authorization for a (session, client registration) pair, unless one is already in flight for this pair, in which case its result is
+	 * awaited.
+	 *
+	 * @param  sessionId            the ID of the session holding the authorized client
+	 * @param  clientRegistrationId the client registration of the authorized client
+	 * @param  authorization        the actual authorization (or refresh), subscribed only if no other is in flight
+	 * @return                      the result of the authorization, either the one provided here or the one which was already in flight
+	 */
+	public Mono<OAuth2AuthorizedClient> singleFlight(String sessionId, String clientRegistrationId, Mono<OAuth2AuthorizedClient> authorization) {
+		return singleFlight(new FlightKey(sessionId, clientRegistrationId), authorization);
+	}
+
+	private Mono<OAuth2AuthorizedClient> singleFlight(FlightKey key, Mono<OAuth2AuthorizedClient> authorization) {
+		return Mono.defer(() -> {
+			final var flight = new CompletableFuture<OAuth2AuthorizedClient>();
+			final var pending = inFlight.putIfAbsent(key, flight);
+			if (pending != null) {
+				// if the leading request was cancelled, try again (and maybe lead)
+				return Mono.fromFuture(pending, true).onErrorResume(CancellationException.class, e -> singleFlight(key, authorization));
+			}
+			return authorization.doOnSuccess(flight::complete).doOnError(flight::completeExceptionally).doOnCancel(() -> {
+				// remove the flight before cancelling it, so that waiting requests retrying do not find it
+				inFlight.remove(key, flight);
+				flight.cancel(false);
+			}).doFinally(signal -> inFlight.remove(key, flight));
+		});
+	}
+
+	static record FlightKey(String sessionId, String clientRegistrationId) {
+	}
+}
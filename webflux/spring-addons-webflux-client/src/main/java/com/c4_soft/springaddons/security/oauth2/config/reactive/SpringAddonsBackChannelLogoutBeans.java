@@ -3,16 +3,21 @@ package com.c4_soft.springaddons.security.oauth2.config.reactive;
 import static org.springframework.security.config.Customizer.withDefaults;
 
 import java.net.URL;
+import java.text.ParseException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -22,7 +27,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
@@ -34,7 +41,15 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
 
+import com.c4_soft.springaddons.security.oauth2.config.BackChannelLogoutProcessor;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
+import com.nimbusds.jwt.JWTParser;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 import reactor.core.publisher.Mono;
 
@@ -81,6 +96,82 @@ public class SpringAddonsBackChannelLogoutBeans {
 		return http.build();
 	}
 
+	/**
+	 * @return a registry holding a single {@link ReactiveJwtDecoder} per issuer, shared with the resource-server auto-configuration if any
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	ReactiveJwtDecoderRegistry reactiveJwtDecoderRegistry() {
+		return new ReactiveJwtDecoderRegistry();
+	}
+
+	/**
+	 * @param  authorizedClientRepository invalidates the sessions of a user. Must be a {@link SpringAddonsServerOAuth2AuthorizedClientRepository}, which is not
+	 *                                    the case in stateless mode (there are no server-side sessions to invalidate)
+	 * @param  clientProperties           "com.c4-soft.springaddons.security.client" configuration properties
+	 * @return                            the queue and workers processing back-channel logouts asynchronously
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	BackChannelLogoutProcessor backChannelLogoutProcessor(
+			ServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+			SpringAddonsOAuth2ClientProperties clientProperties) {
+		if (clientProperties.getStateless().isEnabled()) {
+			throw new IllegalStateException(
+					"Back-channel logout requires server-side sessions: com.c4-soft.springaddons.security.client.back-channel-logout-enabled and com.c4-soft.springaddons.security.client.stateless.enabled can't be both true");
+		}
+		if (!(authorizedClientRepository instanceof SpringAddonsServerOAuth2AuthorizedClientRepository addonsRepository)) {
+			throw new IllegalStateException("Back-channel logout requires the authorized client repository to be a SpringAddonsServerOAuth2AuthorizedClientRepository");
+		}
+		return new BackChannelLogoutProcessor(
+				(BackChannelLogoutProcessor.SessionsInvalidator) (issuer, subject) -> addonsRepository.invalidateSessions(issuer, subject).toFuture(),
+				clientProperties.getBackChannelLogout());
+	}
+
+	/**
+	 * <p>
+	 * Exposes {@link BackChannelLogoutProcessor} metrics to Micrometer (when on the classpath):
+	 * </p>
+	 * <ul>
+	 * <li>spring.addons.backchannel.logout.queued: count of logouts waiting for a worker</li>
+	 * <li>spring.addons.backchannel.logout.capacity: maximum number of logouts waiting for a worker</li>
+	 * <li>spring.addons.backchannel.logout.latency: time between logouts submission and sessions invalidation completion</li>
+	 * <li>spring.addons.backchannel.logout.failed: count of logouts for which sessions invalidation failed</li>
+	 * <li>spring.addons.backchannel.logout.replayed: count of logout tokens received more than once</li>
+	 * <li>spring.addons.backchannel.logout.rejected: count of logouts refused because the queue was full</li>
+	 * </ul>
+	 *
+	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(MeterBinder.class)
+	static class BackChannelLogoutMetricsConfiguration {
+
+		@ConditionalOnMissingBean(name = "backChannelLogoutMetrics")
+		@Bean
+		MeterBinder backChannelLogoutMetrics(BackChannelLogoutProcessor logoutProcessor) {
+			return registry -> {
+				Gauge.builder("spring.addons.backchannel.logout.queued", logoutProcessor, BackChannelLogoutProcessor::getQueueSize)
+						.description("Count of back-channel logouts waiting for a worker").register(registry);
+				Gauge.builder("spring.addons.backchannel.logout.capacity", logoutProcessor, BackChannelLogoutProcessor::getQueueCapacity)
+						.description("Maximum number of back-channel logouts waiting for a worker").register(registry);
+				FunctionTimer.builder(
+						"spring.addons.backchannel.logout.latency",
+						logoutProcessor,
+						BackChannelLogoutProcessor::getCompletedCount,
+						lp -> lp.getTotalLatency().toNanos(),
+						TimeUnit.NANOSECONDS).description("Time between back-channel logouts submission and sessions invalidation completion")
+						.register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.failed", logoutProcessor, BackChannelLogoutProcessor::getFailedCount)
+						.description("Count of back-channel logouts for which sessions invalidation failed").register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.replayed", logoutProcessor, BackChannelLogoutProcessor::getReplayedCount)
+						.description("Count of back-channel logout tokens received more than once").register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.rejected", logoutProcessor, BackChannelLogoutProcessor::getRejectedCount)
+						.description("Count of back-channel logouts refused because the queue was full").register(registry);
+			};
+		}
+	}
+
 	/**
 	 * <p>
 	 * Handles a POST request containing a JWT logout token provided as application/x-www-form-urlencoded as specified in
@@ -92,55 +183,88 @@ public class SpringAddonsBackChannelLogoutBeans {
 	 * <li>remove the relevant authorized client (based on issuer URI) for the relevant user (based on the subject)</li>
 	 * <li>maybe invalidate user session: only if the removed authorized client was the last one the user had</li>
 	 * </ul>
+	 * <p>
+	 * Sessions are resolved with the {@link SessionIndex}: if it is shared between the client instances, the logout token can be received by any of it.
+	 * </p>
+	 * <p>
+	 * Once the logout token verified, sessions invalidation is delegated to the {@link BackChannelLogoutProcessor} and the OP is acknowledged immediately. A
+	 * replayed token is acknowledged without further processing, and a 503 is returned if too many logouts are already waiting to be processed.
+	 * </p>
+	 * <p>
+	 * The (unverified) issuer of the logout token is read first to select the decoder of this issuer: the token is verified exactly once, as part of the
+	 * request pipeline. Decoders are taken from the {@link ReactiveJwtDecoderRegistry}, and so share their JWK-set cache with the resource-server configuration
+	 * of the same issuer, if any.
+	 * </p>
 	 *
 	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
 	 */
 	@Component
 	@RestController
 	public static class BackChannelLogoutController {
-		private final SpringAddonsServerOAuth2AuthorizedClientRepository authorizedClientRepository;
+		private final BackChannelLogoutProcessor logoutProcessor;
 		private final Map<String, ReactiveJwtDecoder> jwtDecoders;
 
 		public BackChannelLogoutController(
-				SpringAddonsServerOAuth2AuthorizedClientRepository authorizedClientRepository,
-				InMemoryReactiveClientRegistrationRepository registrationRepo) {
-			this.authorizedClientRepository = authorizedClientRepository;
+				BackChannelLogoutProcessor logoutProcessor,
+				InMemoryReactiveClientRegistrationRepository registrationRepo,
+				ReactiveJwtDecoderRegistry jwtDecoderRegistry) {
+			this.logoutProcessor = logoutProcessor;
 			this.jwtDecoders = StreamSupport.stream(registrationRepo.spliterator(), false)
 					.filter(reg -> AuthorizationGrantType.AUTHORIZATION_CODE.equals(reg.getAuthorizationGrantType()))
 					.map(ClientRegistration::getProviderDetails).collect(
 							Collectors.toMap(
-									provider -> provider.getIssuerUri(),
-									provider -> NimbusReactiveJwtDecoder.withJwkSetUri(provider.getJwkSetUri()).build()));
+									provider -> ReactiveJwtDecoderRegistry.issuerKey(provider.getIssuerUri()),
+									provider -> jwtDecoderRegistry
+											.getOrCreate(provider.getIssuerUri(), () -> NimbusReactiveJwtDecoder.withJwkSetUri(provider.getJwkSetUri()).build()),
+									(a, b) -> a));
 		}
 
 		@PostMapping(path = "/backchannel_logout", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
 		public Mono<ResponseEntity<Void>> backChannelLogout(ServerWebExchange serverWebExchange) {
-			return serverWebExchange.getFormData().map(body -> {
+			return serverWebExchange.getFormData().flatMap(body -> {
 				final var tokenString = body.get("logout_token");
 				if (tokenString == null || tokenString.size() != 1) {
-					throw new BadLogoutRequestException();
+					return Mono.error(new BadLogoutRequestException());
 				}
-				jwtDecoders.forEach((issuer, decoder) -> {
-					decoder.decode(tokenString.get(0)).onErrorComplete().subscribe(jwt -> {
-						final var isLogoutToken = Optional.ofNullable(jwt.getClaims().get("events")).map(Object::toString)
-								.map(evt -> evt.contains("http://schemas.openid.net/event/backchannel-logout")).orElse(false);
-						if (!isLogoutToken) {
-							throw new BadLogoutRequestException();
-						}
-						final var logoutIss = Optional.ofNullable(jwt.getIssuer()).map(URL::toString).orElse(null);
-						if (!Objects.equals(issuer, logoutIss)) {
-							throw new BadLogoutRequestException();
-						}
-						final var logoutSub = jwt.getSubject();
-						authorizedClientRepository.removeAuthorizedClients(logoutIss, logoutSub).subscribe(s -> {
-							s.invalidate();
-						});
-					});
+
+				// Route the token to the decoder of its issuer: the signature is then checked once, with the keys of this issuer only
+				final var issuer = getUnverifiedIssuer(tokenString.get(0));
+				final var decoder = issuer == null ? null : jwtDecoders.get(ReactiveJwtDecoderRegistry.issuerKey(issuer));
+				if (decoder == null) {
+					return Mono.error(new BadLogoutRequestException());
+				}
+
+				return decoder.decode(tokenString.get(0)).onErrorMap(JwtException.class, e -> new BadLogoutRequestException()).map(jwt -> {
+					final var isLogoutToken = Optional.ofNullable(jwt.getClaims().get("events")).map(Object::toString)
+							.map(evt -> evt.contains("http://schemas.openid.net/event/backchannel-logout")).orElse(false);
+					if (!isLogoutToken) {
+						throw new BadLogoutRequestException();
+					}
+					final var logoutIss = Optional.ofNullable(jwt.getIssuer()).map(URL::toString).orElse(null);
+					if (!Objects.equals(issuer, logoutIss)) {
+						throw new BadLogoutRequestException();
+					}
+					if (logoutProcessor.submit(logoutIss, jwt.getSubject(), jwt.getId()) == BackChannelLogoutProcessor.Submission.REJECTED) {
+						throw new LogoutQueueFullException();
+					}
+					return ResponseEntity.ok().<Void>build();
 				});
-				return ResponseEntity.ok().build();
 			});
 		}
 
+		private static String getUnverifiedIssuer(String token) {
+			try {
+				return JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+			} catch (ParseException e) {
+				return null;
+			}
+		}
+
+		@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+		static final class LogoutQueueFullException extends RuntimeException {
+			private static final long serialVersionUID = -2398021786364159170L;
+		}
+
 		@ResponseStatus(HttpStatus.BAD_REQUEST)
 		static final class BadLogoutRequestException extends RuntimeException {
 			private static final long serialVersionUID = -1803794467531166681L;
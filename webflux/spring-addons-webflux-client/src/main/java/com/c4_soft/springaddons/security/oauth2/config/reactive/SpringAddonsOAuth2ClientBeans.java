@@ -1,22 +1,28 @@
 package com.c4_soft.springaddons.security.oauth2.config.reactive;
 
 import java.time.Duration;
-import java.util.Arrays;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -25,7 +31,9 @@ import org.springframework.security.config.annotation.web.reactive.EnableWebFlux
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultReactiveOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
@@ -33,13 +41,12 @@ import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationFailureHandler;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationSuccessHandler;
+import org.springframework.security.web.server.authentication.logout.SecurityContextServerLogoutHandler;
 import org.springframework.security.web.server.authentication.logout.ServerLogoutSuccessHandler;
-import org.springframework.security.web.server.csrf.CsrfToken;
-import org.springframework.security.web.server.util.matcher.OrServerWebExchangeMatcher;
-import org.springframework.security.web.server.util.matcher.PathPatternParserServerWebExchangeMatcher;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.reactive.CorsConfigurationSource;
-import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.security.web.server.savedrequest.NoOpServerRequestCache;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.Assert;
+import org.springframework.util.IdGenerator;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebSession;
 import org.springframework.web.server.session.DefaultWebSessionManager;
@@ -49,15 +56,24 @@ import org.springframework.web.server.session.WebSessionStore;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.c4_soft.springaddons.security.oauth2.config.ConfigurableClaimSet2AuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+import com.c4_soft.springaddons.security.oauth2.config.HasClientSecurityMatchersCondition;
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.LogoutRequestUriBuilder;
 import com.c4_soft.springaddons.security.oauth2.config.OAuth2AuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2LogoutRequestUriBuilder;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
-import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * The following {@link ConditionalOnMissingBean &#64;ConditionalOnMissingBeans} are auto-configured
@@ -74,27 +90,40 @@ import reactor.core.publisher.Mono;
  * spring-addons {@link SpringAddonsSecurityProperties}</li>
  * <li>grantedAuthoritiesMapper: a {@link GrantedAuthoritiesMapper} using the already configured {@link OAuth2AuthoritiesConverter}</li>
  * <li>oAuth2AuthorizedClientRepository: a {@link SpringAddonsServerOAuth2AuthorizedClientRepository} (which is also a session listener) capable of handling
- * multi-tenancy and back-channel logout.</li>
+ * multi-tenancy and back-channel logout. Not defined in stateless mode.</li>
+ * <li>statelessStateRepository and statelessAuthorizationRequestRepository: an {@link EncryptedCookieServerClientStateRepository} and an
+ * {@link EncryptedCookieServerAuthorizationRequestRepository} replacing sessions with encrypted cookies. Only if
+ * "com.c4-soft.springaddons.security.client.stateless.enabled" is true.</li>
+ * <li>sessionIndex: a {@link SessionIndex} keeping track of the sessions of each (issuer, subject) pair for back-channel logout. Default is an
+ * {@link InMemorySessionIndex}</li>
+ * <li>authorizedClientManager: a {@link SingleFlightReactiveOAuth2AuthorizedClientManager} coalescing concurrent authorizations (and so token refreshes) for
+ * the same session and client registration</li>
+ * <li>authorizedClientRefreshAheadScheduler: an {@link AuthorizedClientRefreshAheadScheduler} refreshing access tokens shortly before they expire. Only if
+ * "com.c4-soft.springaddons.security.client.refresh-ahead.enabled" is true.</li>
  * <li>csrfCookieWebFilter: a {@link WebFilter} to set the CSRF cookie if "com.c4-soft.springaddons.security.client.csrf" is set to cookie</li>
  * <li>clientAuthorizePostProcessor: a {@link ClientAuthorizeExchangeSpecPostProcessor} post processor to fine tune access control from java configuration. It
  * applies to all routes not listed in "permit-all" property configuration. Default requires users to be authenticated.</li>
  * <li>clientHttpPostProcessor: a {@link ClientHttpSecurityPostProcessor} to override anything from above auto-configuration. It is called just before the
  * security filter-chain is returned. Default is a no-op.</li>
- * <li>webSessionStore: a {@link SpringAddonsWebSessionStore} which is a proxy for {@link InMemoryWebSessionStore}, also accepting {@link WebSessionListener
- * session listeners} to register themself and be notified of sessions "create" and "remove" events</li>
- * <li>webSessionManager: a {@link WebSessionManager} relying on the above {@link SpringAddonsWebSessionStore}</li>
+ * <li>webSessionStore: a {@link ListenableWebSessionStore}, accepting {@link WebSessionListener session listeners} to register themself and be notified of
+ * sessions "create", "ID change" and "remove" events. Default is a {@link SpringAddonsWebSessionStore} which is a sharded in-memory store with a
+ * configurable size and a periodic expired sessions sweep, or an {@link OffHeapWebSessionStore} if
+ * "com.c4-soft.springaddons.security.client.web-session-store.off-heap" is true</li>
+ * <li>webSessionStoreMetrics: a Micrometer {@link MeterBinder} exposing the {@link ListenableWebSessionStore} state (only if Micrometer is on the
+ * classpath)</li>
+ * <li>webSessionManager: a {@link WebSessionManager} relying on the above {@link ListenableWebSessionStore}</li>
  * </ul>
  *
  * @author Jerome Wacongne ch4mp&#64;c4-soft.com
  */
 @ConditionalOnProperty(matchIfMissing = true, prefix = "com.c4-soft.springaddons.security.client", name = "enabled")
 @EnableWebFluxSecurity
-@AutoConfiguration
+@AutoConfiguration(beforeName = "org.springframework.cloud.gateway.config.GatewayReactiveOAuth2AutoConfiguration")
 @Import({ SpringAddonsOAuth2ClientProperties.class })
 @Slf4j
 public class SpringAddonsOAuth2ClientBeans {
 
-	@ConditionalOnExpression("!(T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers:}') && T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers[0]:}'))")
+	@Conditional(HasClientSecurityMatchersCondition.class)
 	@Order(Ordered.HIGHEST_PRECEDENCE + 1)
 	@Bean
 	SecurityWebFilterChain clientFilterChain(
@@ -103,13 +132,13 @@ public class SpringAddonsOAuth2ClientBeans {
 			SpringAddonsOAuth2ClientProperties clientProperties,
 			ServerLogoutSuccessHandler logoutSuccessHandler,
 			ClientAuthorizeExchangeSpecPostProcessor authorizePostProcessor,
-			ClientHttpSecurityPostProcessor httpPostProcessor)
+			ClientHttpSecurityPostProcessor httpPostProcessor,
+			Optional<EncryptedCookieServerClientStateRepository> statelessStateRepository,
+			Optional<EncryptedCookieServerAuthorizationRequestRepository> statelessAuthorizationRequestRepository)
 			throws Exception {
 
-		final var clientRoutes = Stream.of(clientProperties.getSecurityMatchers()).map(PathPatternParserServerWebExchangeMatcher::new)
-				.toArray(PathPatternParserServerWebExchangeMatcher[]::new);
 		log.info("Applying client OAuth2 configuration for: {}", (Object[]) clientProperties.getSecurityMatchers());
-		http.securityMatcher(new OrServerWebExchangeMatcher(clientRoutes));
+		http.securityMatcher(new PathPatternTrieServerWebExchangeMatcher(clientProperties.getSecurityMatchers()));
 
 		// @formatter:off
         clientProperties.getLoginPath().ifPresent(loginPath -> {
@@ -124,9 +153,23 @@ public class SpringAddonsOAuth2ClientBeans {
             clientProperties.getLoginPath().ifPresent(loginPath -> {
                 oauth2.authenticationFailureHandler(new RedirectServerAuthenticationFailureHandler(UriComponentsBuilder.fromUri(clientProperties.getClientUri()).path(loginPath).build().toString()));
             });
+            statelessAuthorizationRequestRepository.ifPresent(oauth2::authorizationRequestRepository);
+            statelessStateRepository.ifPresent(oauth2::securityContextRepository);
         });
 
-        http.logout(logout -> logout.logoutSuccessHandler(logoutSuccessHandler));
+        http.logout(logout -> {
+            logout.logoutSuccessHandler(logoutSuccessHandler);
+            statelessStateRepository.ifPresent(stateRepository -> {
+                final var logoutHandler = new SecurityContextServerLogoutHandler();
+                logoutHandler.setSecurityContextRepository(stateRepository);
+                logout.logoutHandler(logoutHandler);
+            });
+        });
+
+        statelessStateRepository.ifPresent(stateRepository -> {
+            http.securityContextRepository(stateRepository);
+            http.requestCache(requestCache -> requestCache.requestCache(NoOpServerRequestCache.getInstance()));
+        });
 
         ReactiveConfigurationSupport.configureClient(http, serverProperties, clientProperties, authorizePostProcessor, httpPostProcessor);
 
@@ -210,24 +253,6 @@ public class SpringAddonsOAuth2ClientBeans {
         };
     }
 
-    /**
-     *
-     * @param corsProperties the properties to pick CORS configuration from
-     * @return a CORS configuration built from properties
-     */
-    CorsConfigurationSource corsConfig(CorsProperties[] corsProperties) {
-        final var source = new UrlBasedCorsConfigurationSource();
-        for (final var corsProps : corsProperties) {
-            final var configuration = new CorsConfiguration();
-            configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-            configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-            configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-            configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-            source.registerCorsConfiguration(corsProps.getPath(), configuration);
-        }
-        return source;
-    }
-
     /**
      *
      * @param clientRegistrationRepository the OIDC providers configuration
@@ -236,12 +261,114 @@ public class SpringAddonsOAuth2ClientBeans {
      *         client repository supporting multi-tenancy and exposing the required
      *         API for back-channel logout
      */
+    @ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.stateless", name = "enabled", havingValue = "false", matchIfMissing = true)
     @ConditionalOnMissingBean
     @Bean
     ServerOAuth2AuthorizedClientRepository oAuth2AuthorizedClientRepository(
             ReactiveClientRegistrationRepository clientRegistrationRepository,
-            SpringAddonsWebSessionStore webSessionStore) {
-        return new SpringAddonsServerOAuth2AuthorizedClientRepository(clientRegistrationRepository, webSessionStore);
+            ListenableWebSessionStore webSessionStore,
+            SessionIndex sessionIndex) {
+        return new SpringAddonsServerOAuth2AuthorizedClientRepository(clientRegistrationRepository, webSessionStore, sessionIndex);
+    }
+
+    /**
+     * @param clientRegistrationRepository the OIDC providers configuration
+     * @param authorizedClientRepository   where authorized clients are loaded from and saved to
+     * @return a {@link DefaultReactiveOAuth2AuthorizedClientManager} decorated to refresh an authorized client only once when concurrent requests of the
+     *         same session find it expired
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    ReactiveOAuth2AuthorizedClientManager authorizedClientManager(
+            ReactiveClientRegistrationRepository clientRegistrationRepository,
+            ServerOAuth2AuthorizedClientRepository authorizedClientRepository) {
+        return new SingleFlightReactiveOAuth2AuthorizedClientManager(
+                new DefaultReactiveOAuth2AuthorizedClientManager(clientRegistrationRepository, authorizedClientRepository));
+    }
+
+    /**
+     * @param authorizedClientRepository the repository tracking sessions and the authorized clients they hold, which must be a
+     *                                   {@link SpringAddonsServerOAuth2AuthorizedClientRepository} (not available in stateless mode)
+     * @param authorizedClientManager    the manager used by requests, which must be a {@link SingleFlightReactiveOAuth2AuthorizedClientManager} for
+     *                                   background and request-time refreshes to be coalesced
+     * @param clientProperties           to pick refresh-ahead configuration from
+     * @return a scheduler refreshing access tokens in the background, shortly before they expire
+     */
+    @ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.refresh-ahead", name = "enabled")
+    @ConditionalOnMissingBean
+    @Bean
+    AuthorizedClientRefreshAheadScheduler authorizedClientRefreshAheadScheduler(
+            ServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+            ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+            SpringAddonsOAuth2ClientProperties clientProperties) {
+        if (clientProperties.getStateless().isEnabled()) {
+            throw new IllegalStateException(
+                    "Refresh-ahead requires server-side sessions: com.c4-soft.springaddons.security.client.refresh-ahead.enabled and com.c4-soft.springaddons.security.client.stateless.enabled can't be both true");
+        }
+        if (!(authorizedClientRepository instanceof SpringAddonsServerOAuth2AuthorizedClientRepository addonsRepository)) {
+            throw new IllegalStateException("Refresh-ahead requires the authorized client repository to be a SpringAddonsServerOAuth2AuthorizedClientRepository");
+        }
+        if (!(authorizedClientManager instanceof SingleFlightReactiveOAuth2AuthorizedClientManager singleFlightManager)) {
+            throw new IllegalStateException("Refresh-ahead requires the authorized client manager to be a SingleFlightReactiveOAuth2AuthorizedClientManager");
+        }
+        return new AuthorizedClientRefreshAheadScheduler(addonsRepository, singleFlightManager, clientProperties.getRefreshAhead());
+    }
+
+    /**
+     * Provide with your own {@link SessionIndex} bean (backed by a store shared by all instances) to use back-channel logout with a horizontally scaled client
+     * without sticky sessions. Unlike the servlet client, there is no Spring Session backed default: sessions are held by a node-local
+     * {@link ListenableWebSessionStore} and Spring Session 3.1 has no reactive repository with a principal name index.
+     *
+     * @return an {@link InMemorySessionIndex}
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    SessionIndex sessionIndex() {
+        return new InMemorySessionIndex();
+    }
+
+    /**
+     * Replaces sessions with encrypted cookies to store authorization requests, security context and authorized clients, so that BFF instances hold no
+     * state at all. Only if "com.c4-soft.springaddons.security.client.stateless.enabled" is true.
+     *
+     * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.stateless", name = "enabled")
+    static class StatelessClientConfiguration {
+
+        @ConditionalOnMissingBean
+        @Bean
+        ServerEncryptedCookies serverEncryptedCookies(SpringAddonsOAuth2ClientProperties clientProperties) {
+            final var statelessProperties = clientProperties.getStateless();
+            return new ServerEncryptedCookies(
+                    new EncryptedCookieCodec(statelessProperties.getCookieKey(), statelessProperties.getMaxCookieSize()),
+                    statelessProperties.isCookieSecure());
+        }
+
+        @ConditionalOnMissingBean
+        @Bean
+        EncryptedCookieServerClientStateRepository statelessStateRepository(
+                ReactiveClientRegistrationRepository clientRegistrationRepository,
+                ServerEncryptedCookies encryptedCookies,
+                SpringAddonsOAuth2ClientProperties clientProperties) {
+            return new EncryptedCookieServerClientStateRepository(
+                    clientRegistrationRepository,
+                    encryptedCookies,
+                    clientProperties.getStateless().getCookieName(),
+                    clientProperties.getStateless().getCookieMaxAge());
+        }
+
+        @ConditionalOnMissingBean
+        @Bean
+        EncryptedCookieServerAuthorizationRequestRepository statelessAuthorizationRequestRepository(
+                ServerEncryptedCookies encryptedCookies,
+                SpringAddonsOAuth2ClientProperties clientProperties) {
+            return new EncryptedCookieServerAuthorizationRequestRepository(
+                    encryptedCookies,
+                    clientProperties.getStateless().getAuthorizationRequestCookieName(),
+                    clientProperties.getStateless().getAuthorizationRequestMaxAge());
+        }
     }
 
     /**
@@ -279,11 +406,7 @@ public class SpringAddonsOAuth2ClientBeans {
     @ConditionalOnMissingBean(name = "csrfCookieWebFilter")
     @Bean
     WebFilter csrfCookieWebFilter() {
-        return (exchange, chain) -> {
-            Mono<CsrfToken> csrfToken = exchange.getAttributeOrDefault(CsrfToken.class.getName(), Mono.empty());
-            return csrfToken.doOnSuccess(token -> {
-            }).then(chain.filter(exchange));
-        };
+        return new CsrfCookieWebFilter();
     }
 
     static class CookieCsrf extends AnyNestedCondition {
@@ -312,66 +435,447 @@ public class SpringAddonsOAuth2ClientBeans {
         return webSessionManager;
     }
 
+    /**
+     * @param serverProperties  to pick the sessions timeout from
+     * @param clientProperties  to pick the store type, max size, sharding and expiration check interval from
+     * @return an {@link OffHeapWebSessionStore} if "com.c4-soft.springaddons.security.client.web-session-store.off-heap" is true, a
+     *         {@link SpringAddonsWebSessionStore} otherwise
+     */
     @ConditionalOnMissingBean
     @Bean
-    SpringAddonsWebSessionStore webSessionStore(ServerProperties serverProperties) {
-        return new SpringAddonsWebSessionStore(serverProperties.getReactive().getSession().getTimeout());
+    ListenableWebSessionStore webSessionStore(ServerProperties serverProperties, SpringAddonsOAuth2ClientProperties clientProperties) {
+        final var storeProperties = clientProperties.getWebSessionStore();
+        if (storeProperties.isOffHeap()) {
+            return new OffHeapWebSessionStore(
+                    serverProperties.getReactive().getSession().getTimeout(),
+                    storeProperties.getMaxSessions(),
+                    storeProperties.getExpirationCheckInterval());
+        }
+        return new SpringAddonsWebSessionStore(
+                serverProperties.getReactive().getSession().getTimeout(),
+                storeProperties.getMaxSessions(),
+                storeProperties.getShards(),
+                storeProperties.getExpirationCheckInterval());
+    }
+
+    /**
+     * Exposes {@link ListenableWebSessionStore} state to Micrometer (when on the classpath):
+     * <ul>
+     * <li>spring.addons.web.sessions.active: count of sessions currently in the store</li>
+     * <li>spring.addons.web.sessions.max: maximum number of sessions the store accepts</li>
+     * <li>spring.addons.web.sessions.expired: count of sessions evicted because of idle timeout</li>
+     * </ul>
+     *
+     * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    static class WebSessionStoreMetricsConfiguration {
+
+        @ConditionalOnMissingBean(name = "webSessionStoreMetrics")
+        @Bean
+        MeterBinder webSessionStoreMetrics(ListenableWebSessionStore webSessionStore) {
+            return registry -> {
+                Gauge.builder("spring.addons.web.sessions.active", webSessionStore, ListenableWebSessionStore::getSessionCount)
+                        .description("Count of sessions in the WebSessionStore").register(registry);
+                Gauge.builder("spring.addons.web.sessions.max", webSessionStore, ListenableWebSessionStore::getMaxSessions)
+                        .description("Maximum number of sessions in the WebSessionStore").register(registry);
+                FunctionCounter.builder("spring.addons.web.sessions.expired", webSessionStore, ListenableWebSessionStore::getExpiredSessionCount)
+                        .description("Count of sessions evicted from the WebSessionStore after idle timeout").register(registry);
+                if (webSessionStore instanceof OffHeapWebSessionStore offHeapStore) {
+                    Gauge.builder("spring.addons.web.sessions.off-heap", offHeapStore, OffHeapWebSessionStore::getOffHeapBytes).baseUnit("bytes")
+                            .description("Size of the direct buffers holding sessions attributes").register(registry);
+                }
+            };
+        }
     }
 
     public static interface WebSessionListener {
+        /**
+         * Called when the store creates a session, which is not saved yet (and might never be, if it is not started).
+         *
+         * @param session the new session
+         */
         default void sessionCreated(WebSession session) {
         }
 
+        default void sessionIdChanged(String oldSessionId, WebSession session) {
+        }
+
         default void sessionRemoved(String sessionId) {
         }
     }
 
     /**
-     * A {@link WebSessionStore} using {@link InMemoryWebSessionStore} as delegate
-     * and notifying registered {@link WebSessionListener session listeners} with
-     * sessions "create" and "remove" events.
+     * A {@link WebSessionStore} notifying registered {@link WebSessionListener session listeners} with sessions "create", "ID change" and "remove" events, and
+     * exposing its state for monitoring.
      *
      * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+     */
+    public static interface ListenableWebSessionStore extends WebSessionStore {
+        void addWebSessionListener(WebSessionListener listener);
+
+        /**
+         * For background processing: unlike {@link #retrieveSession(String)}, the last access time of the session is not updated
+         *
+         * @param  sessionId the ID of the session to retrieve
+         * @return           the session, if present and not expired
+         */
+        Mono<WebSession> peekSession(String sessionId);
+
+        /**
+         * @return count of sessions currently in the store
+         */
+        int getSessionCount();
+
+        /**
+         * @return maximum number of sessions in the store
+         */
+        int getMaxSessions();
+
+        /**
+         * @return count of sessions removed from the store because of idle timeout
+         */
+        long getExpiredSessionCount();
+    }
+
+    /**
+     * <p>
+     * An in-memory {@link WebSessionStore} notifying registered {@link WebSessionListener session listeners} with sessions "create", "ID change" and "remove"
+     * events (including invalidations and expirations).
+     * </p>
+     * <p>
+     * Compared to {@link InMemoryWebSessionStore}:
+     * </p>
+     * <ul>
+     * <li>the max number of sessions is configurable</li>
+     * <li>sessions are spread across several maps (shards) to reduce contention</li>
+     * <li>expired sessions are removed by a periodic sweep (and not only lazily when accessed or when the store is full), and listeners are notified of it</li>
+     * <li>sessions are counted on insertion and removal and, when the store is full, it is swept again only if a session might have expired since the last
+     * sweep: saving new sessions in a full store does not scan all the shards each time</li>
+     * </ul>
      *
+     * @author Jerome Wacongne ch4mp&#64;c4-soft.com
      */
-    public static class SpringAddonsWebSessionStore implements WebSessionStore {
-        private final InMemoryWebSessionStore delegate = new InMemoryWebSessionStore();
-        private final ConcurrentLinkedQueue<WebSessionListener> webSessionListeners = new ConcurrentLinkedQueue<WebSessionListener>();
+    public static class SpringAddonsWebSessionStore implements ListenableWebSessionStore, SmartLifecycle, AutoCloseable {
+        private static final IdGenerator idGenerator = new AlternativeJdkIdGenerator();
 
+        private final ConcurrentLinkedQueue<WebSessionListener> webSessionListeners = new ConcurrentLinkedQueue<WebSessionListener>();
+        private final Map<String, SpringAddonsWebSession>[] shards;
+        private final AtomicInteger sessionCount = new AtomicInteger();
+        private final AtomicLong expiredSessionCount = new AtomicLong();
         private final Duration timeout;
+        private final int maxSessions;
+        private final Duration expirationCheckInterval;
+        private volatile Disposable expirationSweep;
+        private volatile Instant nextExpiration = Instant.MIN;
 
         public SpringAddonsWebSessionStore(Duration timeout) {
+            this(timeout, 10000, 16, Duration.ofSeconds(60));
+        }
+
+        @SuppressWarnings("unchecked")
+        public SpringAddonsWebSessionStore(Duration timeout, int maxSessions, int shardCount, Duration expirationCheckInterval) {
+            Assert.isTrue(maxSessions > 0, "maxSessions must be positive");
+            Assert.isTrue(shardCount > 0, "shardCount must be positive");
             this.timeout = timeout;
+            this.maxSessions = maxSessions;
+            this.shards = new Map[shardCount];
+            for (int i = 0; i < shardCount; ++i) {
+                this.shards[i] = new ConcurrentHashMap<>();
+            }
+            this.expirationCheckInterval = expirationCheckInterval;
+            scheduleExpirationSweep();
         }
 
+        @Override
         public void addWebSessionListener(WebSessionListener listener) {
             webSessionListeners.add(listener);
         }
 
         @Override
         public Mono<WebSession> createWebSession() {
-            return delegate.createWebSession().doOnSuccess(this::setMaxIdleTime)
-                    .doOnSuccess(session -> webSessionListeners.forEach(l -> l.sessionCreated(session)));
+            final var session = new SpringAddonsWebSession(Instant.now());
+            session.setMaxIdleTime(this.timeout);
+            webSessionListeners.forEach(l -> l.sessionCreated(session));
+            return Mono.just(session);
         }
 
         @Override
         public Mono<WebSession> retrieveSession(String sessionId) {
-            return delegate.retrieveSession(sessionId);
+            final var now = Instant.now();
+            final var session = shard(sessionId).get(sessionId);
+            if (session == null) {
+                return Mono.empty();
+            }
+            if (session.isExpired(now)) {
+                evict(session);
+                return Mono.empty();
+            }
+            session.updateLastAccessTime(now);
+            return Mono.just(session);
+        }
+
+        @Override
+        public Mono<WebSession> peekSession(String sessionId) {
+            final var session = shard(sessionId).get(sessionId);
+            if (session == null || session.isExpired(Instant.now())) {
+                return Mono.empty();
+            }
+            return Mono.just(session);
         }
 
         @Override
         public Mono<Void> removeSession(String sessionId) {
-            webSessionListeners.forEach(l -> l.sessionRemoved(sessionId));
-            return delegate.removeSession(sessionId);
+            if (shard(sessionId).remove(sessionId) != null) {
+                sessionCount.decrementAndGet();
+                webSessionListeners.forEach(l -> l.sessionRemoved(sessionId));
+            }
+            return Mono.empty();
         }
 
         @Override
         public Mono<WebSession> updateLastAccessTime(WebSession webSession) {
-            return delegate.updateLastAccessTime(webSession);
+            if (webSession instanceof SpringAddonsWebSession session) {
+                session.updateLastAccessTime(Instant.now());
+            }
+            return Mono.just(webSession);
         }
 
-        private void setMaxIdleTime(WebSession session) {
-            session.setMaxIdleTime(this.timeout);
+        /**
+         * Removes expired sessions from the store and notifies listeners. Called periodically, but also when the max number of sessions is reached.
+         */
+        public void removeExpiredSessions() {
+            final var now = Instant.now();
+            // sessions saved during or after this sweep can't expire before now + timeout (shorter idle times reset this)
+            var earliestExpiration = now.plus(timeout);
+            try {
+                for (var shard : shards) {
+                    for (var session : shard.values()) {
+                        if (session.isExpired(now)) {
+                            evict(session);
+                        } else if (!session.getMaxIdleTime().isNegative()) {
+                            final var expiration = session.getLastAccessTime().plus(session.getMaxIdleTime());
+                            if (expiration.isBefore(earliestExpiration)) {
+                                earliestExpiration = expiration;
+                            }
+                        }
+                    }
+                }
+                nextExpiration = earliestExpiration;
+            } catch (RuntimeException e) {
+                log.warn("Failed to remove expired sessions", e);
+            }
+        }
+
+        @Override
+        public int getSessionCount() {
+            return sessionCount.get();
+        }
+
+        @Override
+        public int getMaxSessions() {
+            return maxSessions;
+        }
+
+        @Override
+        public long getExpiredSessionCount() {
+            return expiredSessionCount.get();
+        }
+
+        /**
+         * (Re)starts the periodic expired sessions sweep. It is started on construction, and stopped then restarted by Spring around a CRaC checkpoint and restore.
+         */
+        @Override
+        public void start() {
+            scheduleExpirationSweep();
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (expirationSweep != null) {
+                expirationSweep.dispose();
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            final var sweep = expirationSweep;
+            return sweep != null && !sweep.isDisposed();
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+
+        private synchronized void scheduleExpirationSweep() {
+            if (!isRunning()) {
+                expirationSweep = Flux.interval(expirationCheckInterval, expirationCheckInterval, Schedulers.parallel()).subscribe(tick -> removeExpiredSessions());
+            }
+        }
+
+        private Map<String, SpringAddonsWebSession> shard(String sessionId) {
+            return shards[Math.floorMod(sessionId.hashCode(), shards.length)];
+        }
+
+        private void evict(SpringAddonsWebSession session) {
+            final var sessionId = session.getId();
+            if (shard(sessionId).remove(sessionId, session)) {
+                sessionCount.decrementAndGet();
+                expiredSessionCount.incrementAndGet();
+                webSessionListeners.forEach(l -> l.sessionRemoved(sessionId));
+            }
+        }
+
+        private boolean isMaxSessionsLimitReached() {
+            if (sessionCount.get() < maxSessions) {
+                return false;
+            }
+            if (!Instant.now().isBefore(nextExpiration)) {
+                removeExpiredSessions();
+            }
+            return sessionCount.get() >= maxSessions;
+        }
+
+        private void put(String sessionId, SpringAddonsWebSession session) {
+            if (shard(sessionId).putIfAbsent(sessionId, session) == null) {
+                sessionCount.incrementAndGet();
+            }
+        }
+
+        private boolean remove(String sessionId, SpringAddonsWebSession session) {
+            if (shard(sessionId).remove(sessionId, session)) {
+                sessionCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private class SpringAddonsWebSession implements WebSession {
+            private final AtomicReference<String> id = new AtomicReference<>(idGenerator.generateId().toString());
+            private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+            private final Instant creationTime;
+            private volatile Instant lastAccessTime;
+            private volatile Duration maxIdleTime = Duration.ofMinutes(30);
+            private final AtomicReference<State> state = new AtomicReference<>(State.NEW);
+
+            SpringAddonsWebSession(Instant creationTime) {
+                this.creationTime = creationTime;
+                this.lastAccessTime = creationTime;
+            }
+
+            @Override
+            public String getId() {
+                return id.get();
+            }
+
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+
+            @Override
+            public Instant getCreationTime() {
+                return creationTime;
+            }
+
+            @Override
+            public Instant getLastAccessTime() {
+                return lastAccessTime;
+            }
+
+            @Override
+            public void setMaxIdleTime(Duration maxIdleTime) {
+                this.maxIdleTime = maxIdleTime;
+                if (maxIdleTime.compareTo(timeout) < 0) {
+                    nextExpiration = Instant.MIN;
+                }
+            }
+
+            @Override
+            public Duration getMaxIdleTime() {
+                return maxIdleTime;
+            }
+
+            @Override
+            public void start() {
+                state.compareAndSet(State.NEW, State.STARTED);
+            }
+
+            @Override
+            public boolean isStarted() {
+                return state.get().equals(State.STARTED) || !attributes.isEmpty();
+            }
+
+            @Override
+            public Mono<Void> changeSessionId() {
+                final var oldSessionId = getId();
+                final var newSessionId = idGenerator.generateId().toString();
+                final var wasStored = remove(oldSessionId, this);
+                id.set(newSessionId);
+                if (wasStored) {
+                    put(newSessionId, this);
+                    webSessionListeners.forEach(l -> l.sessionIdChanged(oldSessionId, this));
+                }
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<Void> invalidate() {
+                state.set(State.EXPIRED);
+                attributes.clear();
+                return removeSession(getId());
+            }
+
+            @Override
+            public Mono<Void> save() {
+                final var sessionId = getId();
+
+                // Implicitly started session
+                if (!attributes.isEmpty()) {
+                    state.compareAndSet(State.NEW, State.STARTED);
+                }
+                if (!isStarted()) {
+                    return Mono.empty();
+                }
+
+                if (!shard(sessionId).containsKey(sessionId) && isMaxSessionsLimitReached()) {
+                    return Mono.error(new IllegalStateException("Max sessions limit reached: " + getSessionCount()));
+                }
+                put(sessionId, this);
+                // Unless it was invalidated
+                if (state.get().equals(State.EXPIRED)) {
+                    remove(sessionId, this);
+                    return Mono.error(new IllegalStateException("Session was invalidated"));
+                }
+
+                return Mono.empty();
+            }
+
+            @Override
+            public boolean isExpired() {
+                return isExpired(Instant.now());
+            }
+
+            boolean isExpired(Instant now) {
+                if (state.get().equals(State.EXPIRED)) {
+                    return true;
+                }
+                if (isStarted() && !maxIdleTime.isNegative() && now.minus(maxIdleTime).isAfter(lastAccessTime)) {
+                    state.set(State.EXPIRED);
+                    return true;
+                }
+                return false;
+            }
+
+            void updateLastAccessTime(Instant now) {
+                this.lastAccessTime = now;
+            }
+        }
+
+        private enum State {
+            NEW, STARTED, EXPIRED
         }
     }
-}
\ No newline at end of file
+}
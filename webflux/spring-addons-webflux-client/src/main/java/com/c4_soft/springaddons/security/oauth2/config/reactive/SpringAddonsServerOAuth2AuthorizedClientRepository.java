@@ -1,9 +1,7 @@
 package com.c4_soft.springaddons.security.oauth2.config.reactive;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,10 +18,15 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebSession;
 
-import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.SpringAddonsWebSessionStore;
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.ListenableWebSessionStore;
 import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.WebSessionListener;
 import com.nimbusds.jwt.JWTClaimNames;
 
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -35,42 +38,65 @@ import reactor.core.publisher.Mono;
  * issuer.
  * </p>
  * <p>
- * This repo is also a session listener to keep track of all the (issuer, subject) pairs and their associations with sessions (many to many relation). This
- * enables it to expose the required API for back-channel logout where a request is received to remove an authorized client based on its issuer and subject but
- * without a session token.
+ * This repo is also a session listener to keep track of all the (issuer, subject) pairs and their associations with sessions (many to many relation) in a
+ * {@link SessionIndex}. This enables it to expose the required API for back-channel logout where a request is received to remove an authorized client based on
+ * its issuer and subject but without a session token.
+ * </p>
+ * <p>
+ * To keep sessions small (and cheap to replicate or persist), authorized clients and users are stored as {@link CompactAuthorizedClient} and
+ * {@link CompactOAuth2User}: client registrations are resolved from the {@link ReactiveClientRegistrationRepository} when authorized clients are loaded.
  * </p>
  *
  * @author Jerome Wacongne ch4mp&#64;c4-soft.com
  */
-public class SpringAddonsServerOAuth2AuthorizedClientRepository implements ServerOAuth2AuthorizedClientRepository, WebSessionListener {
-	private static final String OAUTH2_USERS_KEY = "com.c4-soft.spring-addons.OAuth2.client.oauth2-users";
-	private static final String AUTHORIZED_CLIENTS_KEY = "com.c4-soft.spring-addons.OAuth2.client.authorized-clients";
-
-	private static final Map<UserId, Set<WebSession>> sessionsByuserId = new ConcurrentHashMap<>();
-	private static final Map<String, Set<UserId>> userIdsBySessionId = new ConcurrentHashMap<>();
+@Slf4j
+public class SpringAddonsServerOAuth2AuthorizedClientRepository
+		implements
+		ServerOAuth2AuthorizedClientRepository,
+		WebSessionListener,
+		SessionIndex.InvalidationListener {
+	private static final String OAUTH2_USERS_KEY = "com.c4-soft.spring-addons.OAuth2.client.compact-oauth2-users";
+	private static final String AUTHORIZED_CLIENTS_KEY = "com.c4-soft.spring-addons.OAuth2.client.compact-authorized-clients";
 
 	private final ReactiveClientRegistrationRepository clientRegistrationRepository;
 
-	private final SpringAddonsWebSessionStore webSessionStore;
+	/* sessions held by this node are resolved from the store with the IDs in the session index */
+	private final ListenableWebSessionStore webSessionStore;
+
+	/* IDs of the sessions stored by this node (IDs in the session index might be shared with other nodes) */
+	private final Set<String> localSessionIds = ConcurrentHashMap.newKeySet();
+
+	private final SessionIndex sessionIndex;
+
+	public SpringAddonsServerOAuth2AuthorizedClientRepository(
+			ReactiveClientRegistrationRepository clientRegistrationRepository,
+			ListenableWebSessionStore webSessionStore) {
+		this(clientRegistrationRepository, webSessionStore, new InMemorySessionIndex());
+	}
 
 	public SpringAddonsServerOAuth2AuthorizedClientRepository(
 			ReactiveClientRegistrationRepository clientRegistrationRepository,
-			SpringAddonsWebSessionStore webSessionStore) {
+			ListenableWebSessionStore webSessionStore,
+			SessionIndex sessionIndex) {
 		this.clientRegistrationRepository = clientRegistrationRepository;
 		this.webSessionStore = webSessionStore;
+		this.sessionIndex = sessionIndex;
 		this.webSessionStore.addWebSessionListener(this);
+		this.sessionIndex.addInvalidationListener(this);
 	}
 
 	@Override
-	public void sessionRemoved(String sessionId) {
-		final var idsToUpdate = getUserIds(sessionId);
-		for (var id : idsToUpdate) {
-			setSessions(
-					id.iss(),
-					id.sub(),
-					new HashSet<>(getSessions(id.iss(), id.sub()).stream().filter(s -> !(s.getId().equals(sessionId))).collect(Collectors.toSet())));
+	public void sessionIdChanged(String oldSessionId, WebSession session) {
+		if (localSessionIds.remove(oldSessionId)) {
+			localSessionIds.add(session.getId());
 		}
-		userIdsBySessionId.remove(sessionId);
+		sessionIndex.changeSessionId(oldSessionId, session.getId());
+	}
+
+	@Override
+	public void sessionRemoved(String sessionId) {
+		localSessionIds.remove(sessionId);
+		sessionIndex.removeSession(sessionId);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -87,12 +113,43 @@ public class SpringAddonsServerOAuth2AuthorizedClientRepository implements Serve
 
 	public Mono<OAuth2AuthorizedClient> loadAuthorizedClient(WebSession session, String issuer, String subject) {
 		final var authorizedClients = getAuthorizedClients(session);
-		final var client = authorizedClients.stream().filter(
-				ac -> Objects.equals(ac.getClientRegistration().getProviderDetails().getIssuerUri(), issuer) && Objects.equals(ac.getPrincipalName(), subject))
-				.findAny().map(c -> {
-					return Mono.just(c);
-				}).orElse(Mono.empty());
-		return client;
+		return authorizedClients.stream().filter(ac -> ac.matches(issuer, subject)).findAny()
+				.map(ac -> clientRegistrationRepository.findByRegistrationId(ac.registrationId()).map(ac::toAuthorizedClient)).orElse(Mono.empty());
+	}
+
+	/**
+	 * @param  session a user session
+	 * @return         all the authorized clients in this session, with client registration resolved from the {@link ReactiveClientRegistrationRepository}
+	 */
+	public Flux<OAuth2AuthorizedClient> loadAuthorizedClients(WebSession session) {
+		return Flux.fromIterable(getAuthorizedClients(session))
+				.concatMap(ac -> clientRegistrationRepository.findByRegistrationId(ac.registrationId()).map(ac::toAuthorizedClient));
+	}
+
+	/**
+	 * @return the sessions held by this node, retrieved without updating their last access time
+	 */
+	public Flux<WebSession> getLocalSessions() {
+		return Flux.fromIterable(localSessionIds).concatMap(webSessionStore::peekSession);
+	}
+
+	/**
+	 * Replaces the authorized client with the same issuer and principal name in a session (after its tokens were refreshed for instance) and saves the session.
+	 * Does nothing if the session does not contain such an authorized client (anymore).
+	 *
+	 * @param  session          a user session
+	 * @param  authorizedClient the new authorized client state
+	 * @return                  completes when the session is saved
+	 */
+	public Mono<Void> updateAuthorizedClient(WebSession session, OAuth2AuthorizedClient authorizedClient) {
+		final var issuer = authorizedClient.getClientRegistration().getProviderDetails().getIssuerUri();
+		final var authorizedClients = new HashSet<>(getAuthorizedClients(session));
+		if (authorizedClients.removeIf(ac -> ac.matches(issuer, authorizedClient.getPrincipalName()))) {
+			authorizedClients.add(CompactAuthorizedClient.from(authorizedClient));
+			setAuthorizedClients(session, authorizedClients);
+			return session.save();
+		}
+		return Mono.empty();
 	}
 
 	@Override
@@ -109,24 +166,18 @@ public class SpringAddonsServerOAuth2AuthorizedClientRepository implements Serve
 
 		final var oauth2Users = getOAuth2Users(session);
 		if (oauth2Users.containsKey(issuer)) {
-			removeAuthorizedClient(session, issuer, oauth2Users.get(issuer).getName());
+			removeAuthorizedClient(session, issuer, oauth2Users.get(issuer).subject());
 		}
-		oauth2Users.put(issuer, user);
+		oauth2Users.put(issuer, CompactOAuth2User.from(issuer, user));
 		setOAuth2Users(session, oauth2Users);
 
 		final var authorizedClients = getAuthorizedClients(session);
-		authorizedClients.add(authorizedClient);
+		authorizedClients.add(CompactAuthorizedClient.from(authorizedClient));
 		setAuthorizedClients(session, authorizedClients);
 
-		final var sessions = getSessions(issuer, subject);
-		if (!sessions.contains(session)) {
-			sessions.add(session);
-			setSessions(issuer, subject, sessions);
-		}
-
-		final var userIds = getUserIds(session.getId());
-		userIds.add(new UserId(issuer, subject));
-		setUserIds(session.getId(), userIds);
+		sessionIndex.add(issuer, subject, session.getId());
+		// sessions are created for anonymous requests too: only track the ones holding authorized clients
+		localSessionIds.add(session.getId());
 
 		return Mono.empty();
 	}
@@ -148,9 +199,7 @@ public class SpringAddonsServerOAuth2AuthorizedClientRepository implements Serve
 
 	public Mono<Void> removeAuthorizedClient(WebSession session, String issuer, String subject) {
 		final var allAuthorizedClients = getAuthorizedClients(session);
-		final var authorizedClientsToRemove = allAuthorizedClients.stream().filter(
-				ac -> Objects.equals(ac.getClientRegistration().getProviderDetails().getIssuerUri(), issuer) && Objects.equals(ac.getPrincipalName(), subject))
-				.collect(Collectors.toSet());
+		final var authorizedClientsToRemove = allAuthorizedClients.stream().filter(ac -> ac.matches(issuer, subject)).collect(Collectors.toSet());
 		allAuthorizedClients.removeAll(authorizedClientsToRemove);
 		setAuthorizedClients(session, allAuthorizedClients);
 
@@ -160,98 +209,95 @@ public class SpringAddonsServerOAuth2AuthorizedClientRepository implements Serve
 			setOAuth2Users(session, oauth2Users);
 		}
 
-		final var sessions = getSessions(issuer, subject);
-		if (sessions.contains(session)) {
-			sessions.remove(session);
-			setSessions(issuer, subject, sessions);
-		}
-
-		final var userIds = getUserIds(session.getId());
-		userIds.remove(new UserId(issuer, subject));
+		sessionIndex.remove(issuer, subject, session.getId());
 
 		return Mono.empty();
 	}
 
 	/**
-	 * Removes an authorized client and returns a list of sessions to invalidate (those for which the current user has no more authorized client after this one
-	 * was removed)
+	 * Removes an authorized client from the sessions held by this node and returns a list of sessions to invalidate (those for which the user has no more
+	 * authorized client after this one was removed)
 	 *
 	 * @param  issuer  OP issuer URI
 	 * @param  subject current user subject for this OP
 	 * @return         the list of user sessions for which this authorized client was the last one
 	 */
 	public Flux<WebSession> removeAuthorizedClients(String issuer, String subject) {
-		final var sessions = getSessions(issuer, subject);
-
-		for (var session : sessions) {
+		return Flux.fromIterable(sessionIndex.getSessionIds(issuer, subject)).flatMap(webSessionStore::retrieveSession).concatMap(session -> {
 			removeAuthorizedClient(session, issuer, subject);
-		}
+			if (getAuthorizedClients(session).isEmpty()) {
+				return Mono.just(session);
+			}
+			// the store might hold a copy of the session (off-heap store for instance)
+			return session.save().then(Mono.empty());
+		});
+	}
 
-		return Flux.fromStream(sessions.stream().filter(s -> {
-			return getAuthorizedClients(s).stream()
-					.filter(
-							authorizedClient -> authorizedClient.getClientRegistration().getProviderDetails().getIssuerUri().equals(issuer)
-									&& authorizedClient.getPrincipalName().equals(subject))
-					.count() < 1;
-		}));
+	/**
+	 * Removes the authorized clients for the given issuer and subject from all the sessions, including the ones held by other nodes if the {@link SessionIndex}
+	 * is shared. Sessions with no more authorized client are invalidated.
+	 *
+	 * @param  issuer  OP issuer URI
+	 * @param  subject user subject for this OP
+	 * @return         completes when the sessions held by this node are invalidated (and the invalidation broadcasted to the other nodes)
+	 */
+	public Mono<Void> invalidateSessions(String issuer, String subject) {
+		// sessions invalidated here are removed from the index: the broadcast reaching this node has nothing left to do
+		return invalidateLocalSessions(issuer, subject).then(Mono.fromRunnable(() -> sessionIndex.broadcastInvalidation(issuer, subject)));
+	}
+
+	/**
+	 * @param  issuer  OP issuer URI
+	 * @param  subject user subject for this OP
+	 * @return         completes when the authorized clients are removed from the sessions held by this node and the sessions with no more authorized client
+	 *                 are invalidated
+	 */
+	public Mono<Void> invalidateLocalSessions(String issuer, String subject) {
+		return removeAuthorizedClients(issuer, subject).flatMap(WebSession::invalidate).then();
+	}
+
+	/**
+	 * Called when an invalidation is broadcasted (possibly by another node): there is nobody to wait for the result
+	 */
+	@Override
+	public void invalidate(String issuer, String subject) {
+		invalidateLocalSessions(issuer, subject).subscribe(null, e -> log.warn("Failed to invalidate sessions of {} on {}", subject, issuer, e));
 	}
 
 	@SuppressWarnings("unchecked")
-	private Set<OAuth2AuthorizedClient> getAuthorizedClients(WebSession session) {
-		final var sessionAuthorizedClients = (Set<OAuth2AuthorizedClient>) session.getAttribute(AUTHORIZED_CLIENTS_KEY);
+	private Set<CompactAuthorizedClient> getAuthorizedClients(WebSession session) {
+		final var sessionAuthorizedClients = (Set<CompactAuthorizedClient>) session.getAttribute(AUTHORIZED_CLIENTS_KEY);
 		return sessionAuthorizedClients == null ? new HashSet<>() : sessionAuthorizedClients;
 	}
 
-	private void setAuthorizedClients(WebSession session, Set<OAuth2AuthorizedClient> sessionAuthorizedClients) {
+	private void setAuthorizedClients(WebSession session, Set<CompactAuthorizedClient> sessionAuthorizedClients) {
 		session.getAttributes().put(AUTHORIZED_CLIENTS_KEY, sessionAuthorizedClients);
 	}
 
+	/**
+	 * @param  session a user session
+	 * @return         a snapshot of the users authenticated in this session, by issuer: unlike in previous versions, this map is not a live view of the session and
+	 *                 must be read again after an authorized client is removed
+	 */
 	public Map<String, OAuth2User> getOAuth2UsersBySession(WebSession session) {
 		if (session == null) {
 			return null;
 		}
-		return Collections.unmodifiableMap(getOAuth2Users(session));
+		return getOAuth2Users(session).entrySet().stream().collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().toOAuth2User()));
 	}
 
 	@SuppressWarnings("unchecked")
-	private Map<String, OAuth2User> getOAuth2Users(WebSession s) {
-		final var sessionOauth2UsersByIssuer = (Map<String, OAuth2User>) s.getAttribute(OAUTH2_USERS_KEY);
-		return sessionOauth2UsersByIssuer == null ? new ConcurrentHashMap<String, OAuth2User>() : sessionOauth2UsersByIssuer;
+	private Map<String, CompactOAuth2User> getOAuth2Users(WebSession s) {
+		final var sessionOauth2UsersByIssuer = (Map<String, CompactOAuth2User>) s.getAttribute(OAUTH2_USERS_KEY);
+		return sessionOauth2UsersByIssuer == null ? new ConcurrentHashMap<String, CompactOAuth2User>() : sessionOauth2UsersByIssuer;
 	}
 
-	private void setOAuth2Users(WebSession s, Map<String, OAuth2User> sessionOauth2UsersByIssuer) {
+	private void setOAuth2Users(WebSession s, Map<String, CompactOAuth2User> sessionOauth2UsersByIssuer) {
 		s.getAttributes().put(OAUTH2_USERS_KEY, sessionOauth2UsersByIssuer);
 	}
 
-	private Set<WebSession> getSessions(String issuer, String subject) {
-		return sessionsByuserId.getOrDefault(new UserId(issuer, subject), new HashSet<>());
-	}
-
-	private void setSessions(String issuer, String subject, Set<WebSession> sessions) {
-		if (sessions == null || sessions.isEmpty()) {
-			sessionsByuserId.remove(new UserId(issuer, subject));
-		} else {
-			sessionsByuserId.put(new UserId(issuer, subject), sessions);
-		}
-	}
-
-	private Set<UserId> getUserIds(String sessionId) {
-		return userIdsBySessionId.getOrDefault(sessionId, new HashSet<>());
-	}
-
-	private void setUserIds(String sessionId, Set<UserId> userIds) {
-		if (userIds == null || userIds.isEmpty()) {
-			userIdsBySessionId.remove(sessionId);
-		} else {
-			userIdsBySessionId.put(sessionId, userIds);
-		}
-	}
-
 	private Optional<String> getUserSubject(WebSession session, String issuer) {
 		final var oauth2Users = getOAuth2Users(session);
-		return Optional.ofNullable(oauth2Users.get(issuer)).map(u -> u.getAttribute(JWTClaimNames.SUBJECT));
-	}
-
-	private static record UserId(String iss, String sub) {
+		return Optional.ofNullable(oauth2Users.get(issuer)).map(CompactOAuth2User::subject);
 	}
 }
@@ -0,0 +1,135 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProvider;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.server.WebSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties.RefreshAheadProperties;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.SpringAddonsWebSessionStore;
+
+import reactor.core.publisher.Mono;
+
+public class AuthorizedClientRefreshAheadSchedulerTest {
+	private static final String ISSUER = "https://localhost:8443/realms/master";
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak").clientId("spring-addons")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri(ISSUER + "/protocol/openid-connect/auth").tokenUri(ISSUER + "/protocol/openid-connect/token").issuerUri(ISSUER)
+			.userNameAttributeName("sub").build();
+	private final SpringAddonsWebSessionStore sessionStore = new SpringAddonsWebSessionStore(Duration.ofMinutes(30));
+	private final SpringAddonsServerOAuth2AuthorizedClientRepository repository = new SpringAddonsServerOAuth2AuthorizedClientRepository(
+			new InMemoryReactiveClientRegistrationRepository(registration),
+			sessionStore,
+			new InMemorySessionIndex());
+	private final SingleFlightReactiveOAuth2AuthorizedClientManager manager = new SingleFlightReactiveOAuth2AuthorizedClientManager(
+			authorizeRequest -> Mono.empty());
+	private final OAuth2AuthenticationToken auth = new OAuth2AuthenticationToken(
+			new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("USER")), Map.of("sub", "ch4mp"), "sub"),
+			List.of(new SimpleGrantedAuthority("USER")),
+			"keycloak");
+	private final AtomicInteger refreshes = new AtomicInteger();
+	private final ReactiveOAuth2AuthorizedClientProvider refreshTokenProvider = context -> Mono.fromSupplier(() -> {
+		refreshes.incrementAndGet();
+		return authorizedClient("access-2", Duration.ofMinutes(5));
+	});
+
+	@After
+	public void closeSessionStore() {
+		sessionStore.close();
+	}
+
+	@Test
+	public void givenTokenAboutToExpire_whenRefreshAll_thenSessionIsUpdatedOnce() {
+		final var session = login(Duration.ofSeconds(10));
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			scheduler.refreshAll().block();
+			scheduler.refreshAll().block();
+		}
+
+		assertThat(refreshes).hasValue(1);
+		assertThat(accessTokens(session)).containsExactly("access-2");
+	}
+
+	@Test
+	public void givenTokenNotAboutToExpireOrIdleSession_whenRefreshAll_thenNothingIsRefreshed() throws InterruptedException {
+		final var session = login(Duration.ofHours(1));
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			scheduler.refreshAll().block();
+		}
+		assertThat(refreshes).hasValue(0);
+
+		login(Duration.ofSeconds(10));
+		Thread.sleep(10L);
+		try (var scheduler = scheduler(Duration.ZERO)) {
+			scheduler.refreshAll().block();
+		}
+		assertThat(refreshes).hasValue(0);
+		assertThat(accessTokens(session)).containsExactly("access-1");
+	}
+
+	@Test
+	public void givenRequestTimeRefreshInFlight_whenRefreshAll_thenSchedulerJoinsItInsteadOfRefreshingAgain() {
+		final var session = login(Duration.ofSeconds(10));
+		final var requestRefresh = manager
+				.singleFlight(session.getId(), "keycloak", Mono.delay(Duration.ofMillis(300)).thenReturn(authorizedClient("access-from-request", Duration.ofMinutes(5))))
+				.toFuture();
+
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			scheduler.refreshAll().block(Duration.ofSeconds(5));
+		}
+
+		assertThat(requestRefresh.join().getAccessToken().getTokenValue()).isEqualTo("access-from-request");
+		assertThat(refreshes).hasValue(0);
+	}
+
+	private AuthorizedClientRefreshAheadScheduler scheduler(Duration maxIdle) {
+		final var properties = new RefreshAheadProperties();
+		properties.setInterval(Duration.ofHours(1));
+		properties.setAdvance(Duration.ofSeconds(30));
+		properties.setJitter(Duration.ZERO);
+		properties.setMaxIdle(maxIdle);
+		return new AuthorizedClientRefreshAheadScheduler(repository, manager, properties, refreshTokenProvider);
+	}
+
+	private WebSession login(Duration accessTokenValidity) {
+		final var session = sessionStore.createWebSession().block();
+		final var exchange = MockServerWebExchange.builder(MockServerHttpRequest.get("/")).session(session).build();
+		repository.saveAuthorizedClient(authorizedClient("access-1", accessTokenValidity), auth, exchange).block();
+		session.save().block();
+		return session;
+	}
+
+	private OAuth2AuthorizedClient authorizedClient(String accessToken, Duration validity) {
+		final var now = Instant.now();
+		return new OAuth2AuthorizedClient(
+				registration,
+				"ch4mp",
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plus(validity)),
+				new OAuth2RefreshToken("refresh-" + accessToken, now));
+	}
+
+	private List<String> accessTokens(WebSession session) {
+		return repository.loadAuthorizedClients(session).map(ac -> ac.getAccessToken().getTokenValue()).collectList().block();
+	}
+}
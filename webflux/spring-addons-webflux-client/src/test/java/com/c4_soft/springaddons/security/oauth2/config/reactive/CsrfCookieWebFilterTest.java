@@ -0,0 +1,49 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.web.server.csrf.CsrfWebFilter;
+import org.springframework.security.web.server.csrf.XorServerCsrfTokenRequestAttributeHandler;
+import org.springframework.web.server.handler.DefaultWebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+public class CsrfCookieWebFilterTest {
+
+	@Test
+	public void givenRequestHasNoCsrfCookie_whenFilter_thenCookieIsWrittenWithARandomUuid() {
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+
+		filter(exchange);
+
+		final var cookie = exchange.getResponse().getCookies().getFirst(SpringAddonsCookieServerCsrfTokenRepository.CSRF_COOKIE_NAME);
+		assertThat(cookie).isNotNull();
+		assertThat(cookie.isHttpOnly()).isFalse();
+		assertThat(UUID.fromString(cookie.getValue()).version()).isEqualTo(4);
+	}
+
+	@Test
+	public void givenRequestHasCsrfCookie_whenFilter_thenNoCookieIsWritten() {
+		final var exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.get("/").cookie(new HttpCookie(SpringAddonsCookieServerCsrfTokenRepository.CSRF_COOKIE_NAME, UUID.randomUUID().toString())));
+
+		filter(exchange);
+
+		assertThat(exchange.getResponse().getCookies()).isEmpty();
+	}
+
+	private static void filter(MockServerWebExchange exchange) {
+		final var csrfWebFilter = new CsrfWebFilter();
+		csrfWebFilter.setCsrfTokenRepository(new SpringAddonsCookieServerCsrfTokenRepository(false));
+		csrfWebFilter.setRequestHandler(new XorServerCsrfTokenRequestAttributeHandler());
+
+		new DefaultWebFilterChain(e -> Mono.empty(), List.of(csrfWebFilter, new CsrfCookieWebFilter())).filter(exchange).block();
+	}
+}
@@ -0,0 +1,63 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static com.c4_soft.springaddons.security.oauth2.config.reactive.EncryptedCookieServerClientStateRepositoryTest.setCookies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+public class EncryptedCookieServerAuthorizationRequestRepositoryTest {
+	private final EncryptedCookieServerAuthorizationRequestRepository repository = new EncryptedCookieServerAuthorizationRequestRepository(
+			new ServerEncryptedCookies(new EncryptedCookieCodec(EncryptedCookieServerClientStateRepositoryTest.KEY, 3800), true),
+			"BFF_AUTHZ",
+			Duration.ofMinutes(5));
+
+	@Test
+	public void givenAuthorizationRequestWasSaved_whenCallbackHasTheSameState_thenItIsLoadedAndRemoved() {
+		final var cookies = saved();
+
+		final var callback = callback(cookies, "state");
+		final var removed = repository.removeAuthorizationRequest(callback).block();
+
+		assertThat(removed.getState()).isEqualTo("state");
+		assertThat(removed.getScopes()).containsExactlyInAnyOrder("openid", "profile");
+		assertThat(removed.<String>getAttribute("registration_id")).isEqualTo("keycloak");
+		assertThat(callback.getResponse().getCookies()).hasSize(cookies.size());
+		assertThat(callback.getResponse().getCookies().values()).allSatisfy(values -> assertThat(values.get(0).getMaxAge()).isZero());
+	}
+
+	@Test
+	public void givenAuthorizationRequestWasSaved_whenCallbackHasAnotherStateOrNone_thenNothingIsLoaded() {
+		final var cookies = saved();
+
+		assertThat(repository.loadAuthorizationRequest(callback(cookies, "other")).block()).isNull();
+		assertThat(repository.loadAuthorizationRequest(EncryptedCookieServerClientStateRepositoryTest.exchange(cookies)).block()).isNull();
+
+		final var callback = callback(cookies, "other");
+		assertThat(repository.removeAuthorizationRequest(callback).block()).isNull();
+		assertThat(callback.getResponse().getCookies()).isEmpty();
+	}
+
+	private List<HttpCookie> saved() {
+		final var authorizationRequest = OAuth2AuthorizationRequest.authorizationCode().authorizationUri("https://localhost:8443/auth").clientId("bff")
+				.redirectUri("https://localhost:8080/login/oauth2/code/keycloak").scopes(Set.of("openid", "profile")).state("state")
+				.attributes(Map.of("registration_id", "keycloak")).build();
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/oauth2/authorization/keycloak"));
+		repository.saveAuthorizationRequest(authorizationRequest, exchange).block();
+		return setCookies(exchange);
+	}
+
+	private static MockServerWebExchange callback(List<HttpCookie> cookies, String state) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/login/oauth2/code/keycloak").queryParam("state", state).cookie(cookies.toArray(HttpCookie[]::new)));
+	}
+}
@@ -0,0 +1,126 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+public class EncryptedCookieServerClientStateRepositoryTest {
+	static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+	private static final String ISSUER = "https://localhost:8443/realms/master";
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak").clientId("spring-addons")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri(ISSUER + "/protocol/openid-connect/auth").tokenUri(ISSUER + "/protocol/openid-connect/token").issuerUri(ISSUER)
+			.userNameAttributeName("sub").build();
+	private final EncryptedCookieServerClientStateRepository repository = new EncryptedCookieServerClientStateRepository(
+			new InMemoryReactiveClientRegistrationRepository(registration),
+			new ServerEncryptedCookies(new EncryptedCookieCodec(KEY, 1000), true),
+			"BFF",
+			Duration.ofHours(1));
+	private final OAuth2AuthenticationToken auth = new OAuth2AuthenticationToken(
+			new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("NICE")), Map.of("sub", "ch4mp"), "sub"),
+			List.of(new SimpleGrantedAuthority("NICE")),
+			"keycloak");
+
+	@Test
+	public void givenLoginWasSaved_whenNextRequestSendsTheCookies_thenAuthenticationAndAuthorizedClientAreRestored() {
+		final var cookies = login();
+
+		assertThat(cookies).extracting(HttpCookie::getName).isNotEmpty().allMatch(name -> name.startsWith("BFF"));
+		final var exchange = exchange(cookies);
+		final var restored = repository.load(exchange).block().getAuthentication();
+		assertThat(restored.getName()).isEqualTo("ch4mp");
+		assertThat(restored.getAuthorities()).extracting(Object::toString).containsExactly("NICE");
+		final OAuth2AuthorizedClient authorizedClient = repository.loadAuthorizedClient("keycloak", restored, exchange).block();
+		assertThat(authorizedClient.getAccessToken().getTokenValue()).isEqualTo("access-token");
+		assertThat(authorizedClient.getClientRegistration()).isSameAs(registration);
+	}
+
+	@Test
+	public void givenStateDidNotChange_whenSaved_thenNoCookieIsWritten() {
+		final var exchange = exchange(login());
+
+		repository.save(exchange, new SecurityContextImpl(repository.load(exchange).block().getAuthentication())).block();
+
+		assertThat(exchange.getResponse().getCookies()).isEmpty();
+	}
+
+	@Test
+	public void givenTamperedCookie_whenLoadingContext_thenThereIsNoAuthentication() {
+		final var cookies = login();
+		final var value = cookies.get(0).getValue();
+		cookies.set(0, new HttpCookie(cookies.get(0).getName(), value.substring(0, 40) + (value.charAt(40) == 'A' ? 'B' : 'A') + value.substring(41)));
+
+		final var exchange = exchange(cookies);
+
+		assertThat(repository.load(exchange).block()).isNull();
+		assertThat(repository.loadAuthorizedClient("keycloak", auth, exchange).block()).isNull();
+	}
+
+	@Test
+	public void givenLoggedIn_whenEmptyContextIsSaved_thenAllChunksAreExpired() {
+		final var cookies = login();
+		final var exchange = exchange(cookies);
+
+		repository.save(exchange, null).block();
+
+		assertThat(exchange.getResponse().getCookies()).hasSize(cookies.size());
+		assertThat(exchange.getResponse().getCookies().values()).allSatisfy(values -> assertThat(values.get(0).getMaxAge()).isZero());
+		assertThat(repository.load(exchange).block()).isNull();
+	}
+
+	private List<HttpCookie> login() {
+		final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/login/oauth2/code/keycloak"));
+		final var now = Instant.now();
+		repository.saveAuthorizedClient(
+				new OAuth2AuthorizedClient(
+						registration,
+						"ch4mp",
+						new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", now, now.plusSeconds(300))),
+				auth,
+				exchange).block();
+		repository.save(exchange, new SecurityContextImpl(auth)).block();
+		return setCookies(exchange);
+	}
+
+	/**
+	 * @param  exchange an exchange
+	 * @return          the cookies a browser would send back (not the expired ones)
+	 */
+	static List<HttpCookie> setCookies(MockServerWebExchange exchange) {
+		final var cookies = new LinkedHashMap<String, HttpCookie>();
+		exchange.getResponse().getCookies().forEach((name, values) -> {
+			final var cookie = values.get(values.size() - 1);
+			if (!cookie.getMaxAge().isZero()) {
+				cookies.put(name, new HttpCookie(name, cookie.getValue()));
+			}
+		});
+		return new ArrayList<>(cookies.values());
+	}
+
+	static MockServerWebExchange exchange(List<HttpCookie> cookies) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/").cookie(cookies.toArray(HttpCookie[]::new)));
+	}
+}
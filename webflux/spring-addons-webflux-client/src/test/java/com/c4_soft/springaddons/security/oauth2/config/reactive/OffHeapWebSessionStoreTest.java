@@ -0,0 +1,176 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.web.server.WebSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsWebSessionStoreTest.RecordingListener;
+
+public class OffHeapWebSessionStoreTest {
+
+	@Test
+	public void givenSavedSession_whenRetrieved_thenAttributesAreACopyReadFromOffHeap() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+
+			final var session = started(store, "foo", "bar");
+
+			final var retrieved = store.retrieveSession(session.getId()).block();
+			assertThat(retrieved).isNotSameAs(session);
+			assertThat((String) retrieved.getAttribute("foo")).isEqualTo("bar");
+			assertThat(events.created).containsExactly(session.getId());
+			assertThat(store.getSessionCount()).isEqualTo(1);
+			assertThat(store.getOffHeapBytes()).isPositive();
+		}
+	}
+
+	@Test
+	public void givenUnchangedSession_whenSaved_thenNoBufferIsAllocated() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var session = started(store, "foo", "bar");
+			final var bytes = store.getOffHeapBytes();
+
+			final var copy = store.retrieveSession(session.getId()).block();
+			copy.save().block();
+			assertThat(store.getOffHeapBytes()).isEqualTo(bytes);
+
+			copy.getAttributes().put("foo", "a much longer value than bar");
+			copy.save().block();
+			assertThat(store.getOffHeapBytes()).isGreaterThan(bytes);
+			assertThat((String) store.retrieveSession(session.getId()).block().getAttribute("foo")).isEqualTo("a much longer value than bar");
+		}
+	}
+
+	@Test
+	public void givenSessionInvalidatedByAnotherRequest_whenCopyIsSaved_thenSessionIsNotResurrected() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+			final var session = started(store, "foo", "bar");
+			final var copy = store.retrieveSession(session.getId()).block();
+
+			session.invalidate().block();
+			copy.getAttributes().put("bar", "baz");
+			copy.save().block();
+
+			assertThat(store.retrieveSession(session.getId()).block()).isNull();
+			assertThat(store.getSessionCount()).isZero();
+			assertThat(store.getOffHeapBytes()).isZero();
+			assertThat(events.created).containsExactly(session.getId());
+			assertThat(events.removed).containsExactly(session.getId());
+		}
+	}
+
+	@Test
+	public void givenSessionIdChangedByAnotherRequest_whenStaleCopyIsSaved_thenOldIdIsNotResurrected() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var session = started(store, "foo", "bar");
+			final var oldId = session.getId();
+			final var staleCopy = store.retrieveSession(oldId).block();
+
+			session.changeSessionId().block();
+			staleCopy.getAttributes().put("bar", "baz");
+			staleCopy.save().block();
+
+			assertThat(store.retrieveSession(oldId).block()).isNull();
+			assertThat(store.retrieveSession(session.getId()).block()).isNotNull();
+			assertThat(store.getSessionCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void givenTokenRotatedByAnOverlappingRequest_whenUnchangedCopyIsSaved_thenRotatedTokenIsKept() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var session = started(store, "refresh_token", "initial");
+			final var requestA = store.retrieveSession(session.getId()).block();
+			final var requestB = store.retrieveSession(session.getId()).block();
+
+			requestB.getAttributes().put("refresh_token", "rotated");
+			requestB.save().block();
+			requestA.save().block();
+
+			assertThat((String) store.retrieveSession(session.getId()).block().getAttribute("refresh_token")).isEqualTo("rotated");
+		}
+	}
+
+	@Test
+	public void givenTokenRotatedByAnOverlappingRequest_whenCopyWithOtherChangesIsSaved_thenBothChangesAreKept() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 10, Duration.ofMinutes(1))) {
+			final var session = started(store, "refresh_token", "initial");
+			session.getAttributes().put("saved_request", "/greet");
+			session.save().block();
+			final var requestA = store.retrieveSession(session.getId()).block();
+			final var requestB = store.retrieveSession(session.getId()).block();
+
+			requestB.getAttributes().put("refresh_token", "rotated");
+			requestB.save().block();
+			requestA.getAttributes().put("locale", "fr");
+			requestA.getAttributes().remove("saved_request");
+			requestA.save().block();
+
+			final var stored = store.retrieveSession(session.getId()).block();
+			assertThat(stored.getAttributes()).containsOnlyKeys("refresh_token", "locale");
+			assertThat((String) stored.getAttribute("refresh_token")).isEqualTo("rotated");
+			assertThat((String) stored.getAttribute("locale")).isEqualTo("fr");
+			assertThat((String) requestA.getAttribute("refresh_token")).isEqualTo("rotated");
+		}
+	}
+
+	@Test
+	public void givenStoreIsFull_whenSavingNewSession_thenLeastRecentlyUsedIsEvictedAndNotResurrected() {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 2, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+			final var eldest = started(store, "foo", "1");
+			final var eldestCopy = store.retrieveSession(eldest.getId()).block();
+			final var second = started(store, "foo", "2");
+			store.retrieveSession(second.getId()).block();
+
+			final var third = started(store, "foo", "3");
+
+			assertThat(events.removed).containsExactly(eldest.getId());
+			assertThat(store.retrieveSession(eldest.getId()).block()).isNull();
+			assertThat(store.retrieveSession(third.getId()).block()).isNotNull();
+
+			eldestCopy.getAttributes().put("foo", "resurrected");
+			eldestCopy.save().block();
+			assertThat(store.retrieveSession(eldest.getId()).block()).isNull();
+			assertThat(store.getSessionCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void givenManySessionsSaved_whenRequestCopiesAreReleased_thenAttributesAreNotRetainedOnHeap() throws InterruptedException {
+		try (var store = new OffHeapWebSessionStore(Duration.ofMinutes(30), 1000, Duration.ofMinutes(1))) {
+			final List<WeakReference<byte[]>> attributes = new ArrayList<>();
+			for (int i = 0; i < 100; ++i) {
+				final var value = new byte[8 * 1024];
+				attributes.add(new WeakReference<>(value));
+				final var session = store.createWebSession().block();
+				session.getAttributes().put("payload", value);
+				session.save().block();
+			}
+
+			assertThat(store.getOffHeapBytes()).isGreaterThan(100L * 8 * 1024);
+			for (int i = 0; i < 10 && attributes.stream().anyMatch(ref -> ref.get() != null); ++i) {
+				System.gc();
+				Thread.sleep(50L);
+			}
+			assertThat(attributes).allMatch(ref -> ref.get() == null);
+		}
+	}
+
+	private static WebSession started(OffHeapWebSessionStore store, String attribute, String value) {
+		final var session = store.createWebSession().block();
+		session.getAttributes().put(attribute, value);
+		session.save().block();
+		return session;
+	}
+}
@@ -0,0 +1,84 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import reactor.core.publisher.Mono;
+
+public class ReactiveJwtDecoderRegistryTest {
+	static final String ISSUER = "https://localhost:8443/realms/master";
+
+	@Test
+	public void givenRegistryWasStopped_whenRefreshing_thenDecoderIsRebuiltAndSwappedBehindTheSameInstance() {
+		final var registry = new ReactiveJwtDecoderRegistry();
+		final var builds = new AtomicInteger();
+		final var decoder = registry.getOrCreate(ISSUER, countingFactory(builds, false));
+		registry.start();
+		registry.stop();
+		assertThat(registry.isRunning()).isFalse();
+
+		registry.refreshAll().block();
+
+		assertThat(registry.get(ISSUER)).containsSame(decoder);
+		assertThat(decoder.decode("token").block().getClaimAsString("build")).isEqualTo("2");
+	}
+
+	@Test
+	public void givenRebuildFails_whenRefreshing_thenPreviousDecoderIsKept() {
+		final var registry = new ReactiveJwtDecoderRegistry();
+		final var builds = new AtomicInteger();
+		final var decoder = registry.getOrCreate(ISSUER, countingFactory(builds, true));
+
+		registry.refreshAll().block();
+
+		assertThat(builds).hasValue(2);
+		assertThat(decoder.decode("token").block().getClaimAsString("build")).isEqualTo("1");
+	}
+
+	@Test
+	public void givenIssuerWithAndWithoutTrailingSlash_whenGetOrCreate_thenASingleDecoderIsBuilt() {
+		final var registry = new ReactiveJwtDecoderRegistry();
+		final var builds = new AtomicInteger();
+
+		final var decoder = registry.getOrCreate(ISSUER + "/", countingFactory(builds, false));
+
+		assertThat(registry.getOrCreate(ISSUER, countingFactory(builds, false))).isSameAs(decoder);
+		assertThat(registry.get(ISSUER)).containsSame(decoder);
+		assertThat(registry.get(ISSUER + "/")).containsSame(decoder);
+		assertThat(builds).hasValue(1);
+		assertThat(decoder.decode("token").block().getClaimAsString("build")).isEqualTo("1");
+	}
+
+	@Test
+	public void givenFactoryDecoderDoesNotValidateIssuer_whenDecodingTokenFromAnotherIssuer_thenItIsRejected() {
+		final var registry = new ReactiveJwtDecoderRegistry();
+		final var decoder = registry.getOrCreate(
+				ISSUER,
+				() -> token -> Mono.just(Jwt.withTokenValue(token).header("alg", "none").claim("iss", "https://evil.example.com").build()));
+
+		assertThatThrownBy(() -> decoder.decode("token").block()).isInstanceOf(JwtValidationException.class);
+	}
+
+	/**
+	 * @param  builds         incremented each time a decoder is built
+	 * @param  failAfterFirst if true, only the first build succeeds
+	 * @return                a factory for decoders returning tokens with the number of the build which produced the decoder in a "build" claim
+	 */
+	private static Supplier<ReactiveJwtDecoder> countingFactory(AtomicInteger builds, boolean failAfterFirst) {
+		return () -> {
+			final var build = builds.incrementAndGet();
+			if (failAfterFirst && build > 1) {
+				throw new IllegalStateException("authorization server not reachable");
+			}
+			return token -> Mono.just(Jwt.withTokenValue(token).header("alg", "none").claim("iss", ISSUER).claim("build", Integer.toString(build)).build());
+		};
+	}
+}
@@ -0,0 +1,107 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.InMemoryWebSessionStore;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class SingleFlightReactiveOAuth2AuthorizedClientManagerTest {
+	private static final int CONCURRENT_REQUESTS = 256;
+
+	private final InMemoryWebSessionStore sessionStore = new InMemoryWebSessionStore();
+
+	@Test
+	public void givenConcurrentRequestsInSameSession_whenAuthorize_thenDelegateIsSubscribedOnce() {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightReactiveOAuth2AuthorizedClientManager(delegate);
+		final var session = sessionStore.createWebSession().block();
+
+		final var results = Flux.range(0, CONCURRENT_REQUESTS).parallel().runOn(Schedulers.parallel())
+				.flatMap(i -> manager.authorize(authorizeRequest(session))).sequential().collectList().block();
+
+		assertThat(delegate.calls.get()).isEqualTo(1);
+		assertThat(results).hasSize(CONCURRENT_REQUESTS).allMatch(ac -> ac == results.get(0));
+	}
+
+	@Test
+	public void givenConcurrentRequestsInDifferentSessions_whenAuthorize_thenDelegateIsSubscribedForEachSession() {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightReactiveOAuth2AuthorizedClientManager(delegate);
+
+		Flux.range(0, CONCURRENT_REQUESTS).flatMap(i -> sessionStore.createWebSession()).flatMap(session -> manager.authorize(authorizeRequest(session)))
+				.blockLast();
+
+		assertThat(delegate.calls.get()).isEqualTo(CONCURRENT_REQUESTS);
+	}
+
+	@Test
+	public void givenLeadingRequestIsCancelled_whenAuthorize_thenFollowersStillGetAnAuthorizedClient() {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightReactiveOAuth2AuthorizedClientManager(delegate);
+		final var session = sessionStore.createWebSession().block();
+
+		final var leader = manager.authorize(authorizeRequest(session)).subscribe();
+		final var follower = manager.authorize(authorizeRequest(session)).subscribeOn(Schedulers.parallel()).toFuture();
+		leader.dispose();
+
+		assertThat(Mono.fromFuture(follower).block(Duration.ofSeconds(5))).isNotNull();
+	}
+
+	@Test
+	public void givenBackgroundRefreshInFlight_whenRequestAuthorizesSameSessionAndRegistration_thenItJoinsTheBackgroundRefresh() {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightReactiveOAuth2AuthorizedClientManager(delegate);
+		final var session = sessionStore.createWebSession().block();
+
+		final var background = manager.singleFlight(session.getId(), "keycloak", delegate.authorize(authorizeRequest(session))).toFuture();
+		final var authorizedClient = manager.authorize(authorizeRequest(session)).block(Duration.ofSeconds(5));
+
+		assertThat(authorizedClient).isSameAs(background.join());
+		assertThat(delegate.calls.get()).isEqualTo(1);
+	}
+
+	private static OAuth2AuthorizeRequest authorizeRequest(WebSession session) {
+		final var exchange = MockServerWebExchange.builder(MockServerHttpRequest.get("/")).session(session).build();
+		return OAuth2AuthorizeRequest.withClientRegistrationId("keycloak").principal("ch4mp").attribute(ServerWebExchange.class.getName(), exchange).build();
+	}
+
+	/**
+	 * Simulates a round-trip to the token endpoint
+	 */
+	private static class SlowAuthorizedClientManager implements ReactiveOAuth2AuthorizedClientManager {
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public Mono<OAuth2AuthorizedClient> authorize(OAuth2AuthorizeRequest authorizeRequest) {
+			return Mono.defer(() -> {
+				calls.incrementAndGet();
+				final var registration = ClientRegistration.withRegistrationId(authorizeRequest.getClientRegistrationId()).clientId("spring-addons")
+						.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS).tokenUri("https://localhost:8443/token").build();
+				final var now = Instant.now();
+				return Mono.delay(Duration.ofMillis(200)).thenReturn(
+						new OAuth2AuthorizedClient(
+								registration,
+								authorizeRequest.getPrincipal().getName(),
+								new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "refreshed", now, now.plusSeconds(300))));
+			});
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshot;
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+public class SnapshotReactiveJwtDecoderFactoryTest {
+	// nothing listens on this port: the background revalidation fails and the snapshot is kept
+	static final String ISSUER = "https://localhost:1/realms/master";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void givenSnapshotIsPersisted_whenAuthorizationServerIsNotReachable_thenTokensAreDecodedWithSnapshotKeys() throws Exception {
+		final var key = new RSAKeyGenerator(2048).keyID("key-1").algorithm(JWSAlgorithm.RS256).generate();
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath());
+		store.save(snapshot(key));
+
+		final var decoder = new SnapshotReactiveJwtDecoderFactory(store).create(issuer());
+
+		assertThat(decoder.decode(token(key)).block().getSubject()).isEqualTo("ch4mp");
+	}
+
+	@Test
+	public void givenTokensWithUnknownKeys_whenDecodingWithinCooldown_thenJwkSetIsFetchedOnceAndUnchangedSnapshotIsNotSaved() throws Exception {
+		final var key = new RSAKeyGenerator(2048).keyID("key-1").algorithm(JWSAlgorithm.RS256).generate();
+		final var store = new CountingStore(tmp.getRoot().toPath(), new JWKSet(key).toPublicJWKSet().toString());
+		store.save(snapshot(key));
+		store.saves.set(0);
+		final var decoder = new SnapshotReactiveJwtDecoderFactory(store, Duration.ofMinutes(1)).create(issuer());
+
+		for (var i = 0; i < 10; ++i) {
+			final var unknownKey = new RSAKeyGenerator(2048).keyID("unknown-%d".formatted(i)).algorithm(JWSAlgorithm.RS256).generate();
+			assertThatThrownBy(() -> decoder.decode(token(unknownKey)).block()).isInstanceOf(JwtException.class);
+		}
+
+		assertThat(store.jwkSetFetches).hasValue(1);
+		assertThat(store.saves).hasValue(0);
+		assertThat(decoder.decode(token(key)).block().getSubject()).isEqualTo("ch4mp");
+	}
+
+	@Test
+	public void givenKeysWereRotated_whenDecodingTokenWithNewKey_thenSnapshotIsUpdated() throws Exception {
+		final var oldKey = new RSAKeyGenerator(2048).keyID("key-1").algorithm(JWSAlgorithm.RS256).generate();
+		final var newKey = new RSAKeyGenerator(2048).keyID("key-2").algorithm(JWSAlgorithm.RS256).generate();
+		final var store = new CountingStore(tmp.getRoot().toPath(), new JWKSet(newKey).toPublicJWKSet().toString());
+		store.save(snapshot(oldKey));
+		store.saves.set(0);
+		final var decoder = new SnapshotReactiveJwtDecoderFactory(store, Duration.ofMinutes(1)).create(issuer());
+
+		assertThat(decoder.decode(token(newKey)).block().getSubject()).isEqualTo("ch4mp");
+
+		assertThat(store.jwkSetFetches).hasValue(1);
+		assertThat(store.saves).hasValue(1);
+		assertThat(store.load(ISSUER).orElseThrow().parseJwkSet().getKeyByKeyId("key-2")).isNotNull();
+	}
+
+	private static IssuerMetadataSnapshot snapshot(RSAKey key) {
+		return new IssuerMetadataSnapshot(
+				ISSUER,
+				ISSUER + "/protocol/openid-connect/certs",
+				Map.of("issuer", ISSUER),
+				new JWKSet(key).toPublicJWKSet().toString(),
+				Instant.now());
+	}
+
+	private static IssuerProperties issuer() {
+		final var issuer = new IssuerProperties();
+		issuer.setLocation(URI.create(ISSUER));
+		return issuer;
+	}
+
+	private static String token(RSAKey key) throws JOSEException {
+		final var jwt = new SignedJWT(
+				new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+				new JWTClaimsSet.Builder().issuer(ISSUER).subject("ch4mp").expirationTime(new Date(System.currentTimeMillis() + 60_000)).build());
+		jwt.sign(new RSASSASigner(key));
+		return jwt.serialize();
+	}
+
+	/**
+	 * Store serving a fixed JWK set (without network calls) and counting JWK set fetches and saves
+	 */
+	static class CountingStore extends IssuerMetadataSnapshotStore {
+		private final String jwkSet;
+		final AtomicInteger jwkSetFetches = new AtomicInteger();
+		final AtomicInteger saves = new AtomicInteger();
+
+		CountingStore(Path directory, String jwkSet) {
+			super(directory);
+			this.jwkSet = jwkSet;
+		}
+
+		@Override
+		public IssuerMetadataSnapshot fetch(IssuerProperties issuer) {
+			throw new IllegalStateException("authorization server not reachable");
+		}
+
+		@Override
+		public String fetchJwkSet(String jwkSetUri) {
+			jwkSetFetches.incrementAndGet();
+			return jwkSet;
+		}
+
+		@Override
+		public void save(IssuerMetadataSnapshot snapshot) throws IOException {
+			saves.incrementAndGet();
+			super.save(snapshot);
+		}
+	}
+}
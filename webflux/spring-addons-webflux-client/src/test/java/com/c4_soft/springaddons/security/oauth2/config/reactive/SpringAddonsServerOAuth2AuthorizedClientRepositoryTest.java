@@ -0,0 +1,76 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.server.WebSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.SpringAddonsWebSessionStore;
+
+public class SpringAddonsServerOAuth2AuthorizedClientRepositoryTest {
+	private static final String ISSUER = "https://localhost:8443/realms/master";
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak").clientId("spring-addons")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri(ISSUER + "/protocol/openid-connect/auth").tokenUri(ISSUER + "/protocol/openid-connect/token").issuerUri(ISSUER)
+			.userNameAttributeName("sub").build();
+	private final SpringAddonsWebSessionStore sessionStore = new SpringAddonsWebSessionStore(Duration.ofMinutes(30));
+	private final InMemorySessionIndex sessionIndex = new InMemorySessionIndex();
+	private final SpringAddonsServerOAuth2AuthorizedClientRepository repository =
+			new SpringAddonsServerOAuth2AuthorizedClientRepository(new InMemoryReactiveClientRegistrationRepository(registration), sessionStore, sessionIndex);
+
+	@After
+	public void closeSessionStore() {
+		sessionStore.close();
+	}
+
+	@Test
+	public void givenUserLoggedInSeveralSessions_whenInvalidateSessionsCompletes_thenTheSessionsAreAlreadyInvalidated() {
+		final var session1 = login("ch4mp");
+		final var session2 = login("ch4mp");
+		final var otherUserSession = login("tonton-pirate");
+
+		repository.invalidateSessions(ISSUER, "ch4mp").block();
+
+		assertThat(session1.isExpired()).isTrue();
+		assertThat(session2.isExpired()).isTrue();
+		assertThat(sessionStore.retrieveSession(session1.getId()).block()).isNull();
+		assertThat(sessionStore.retrieveSession(session2.getId()).block()).isNull();
+		assertThat(sessionIndex.getSessionIds(ISSUER, "ch4mp")).isEmpty();
+		assertThat(sessionStore.retrieveSession(otherUserSession.getId()).block()).isSameAs(otherUserSession);
+	}
+
+	private WebSession login(String subject) {
+		final var session = sessionStore.createWebSession().block();
+		final var exchange = MockServerWebExchange.builder(MockServerHttpRequest.get("/")).session(session).build();
+		final var auth = new OAuth2AuthenticationToken(
+				new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("USER")), Map.of("sub", subject), "sub"),
+				List.of(new SimpleGrantedAuthority("USER")),
+				"keycloak");
+		final var now = Instant.now();
+		final var authorizedClient = new OAuth2AuthorizedClient(
+				registration,
+				subject,
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-" + subject, now, now.plusSeconds(300)));
+		repository.saveAuthorizedClient(authorizedClient, auth, exchange).block();
+		session.save().block();
+		return session;
+	}
+}
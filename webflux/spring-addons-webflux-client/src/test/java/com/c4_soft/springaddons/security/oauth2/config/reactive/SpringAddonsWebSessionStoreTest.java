@@ -0,0 +1,131 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+import org.springframework.web.server.WebSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.SpringAddonsWebSessionStore;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.SpringAddonsOAuth2ClientBeans.WebSessionListener;
+
+public class SpringAddonsWebSessionStoreTest {
+
+	@Test
+	public void givenNewSession_whenSavedTwice_thenCreationIsNotifiedOnceOnCreation() {
+		try (var store = new SpringAddonsWebSessionStore(Duration.ofMinutes(30), 10, 4, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+
+			final var session = store.createWebSession().block();
+			assertThat(events.created).containsExactly(session.getId());
+			assertThat(store.getSessionCount()).isZero();
+
+			session.getAttributes().put("foo", "bar");
+			session.save().block();
+			session.save().block();
+
+			assertThat(events.created).containsExactly(session.getId());
+			assertThat(store.getSessionCount()).isEqualTo(1);
+			assertThat(store.retrieveSession(session.getId()).block()).isSameAs(session);
+		}
+	}
+
+	@Test
+	public void givenSessionsSpreadOnShards_whenChangingIdAndRemoving_thenCountAndListenersAreUpdated() {
+		try (var store = new SpringAddonsWebSessionStore(Duration.ofMinutes(30), 100, 4, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+			for (int i = 0; i < 20; ++i) {
+				started(store);
+			}
+			final var session = started(store);
+			final var oldId = session.getId();
+
+			session.changeSessionId().block();
+
+			assertThat(store.getSessionCount()).isEqualTo(21);
+			assertThat(events.idChanges).containsExactly(oldId + "->" + session.getId());
+			assertThat(store.retrieveSession(oldId).block()).isNull();
+			assertThat(store.retrieveSession(session.getId()).block()).isSameAs(session);
+
+			session.invalidate().block();
+
+			assertThat(store.getSessionCount()).isEqualTo(20);
+			assertThat(events.removed).containsExactly(session.getId());
+			assertThatThrownBy(() -> {
+				session.getAttributes().put("foo", "bar");
+				session.save().block();
+			}).hasMessageContaining("invalidated");
+			assertThat(store.getSessionCount()).isEqualTo(20);
+		}
+	}
+
+	@Test
+	public void givenStoreIsFullOfActiveSessions_whenSavingNewSession_thenItIsRejected() {
+		try (var store = new SpringAddonsWebSessionStore(Duration.ofMinutes(30), 3, 2, Duration.ofMinutes(1))) {
+			final var sessions = List.of(started(store), started(store), started(store));
+
+			assertThatThrownBy(() -> started(store)).hasMessageContaining("Max sessions limit reached");
+			assertThat(store.getSessionCount()).isEqualTo(3);
+
+			// existing sessions can still be saved
+			sessions.get(0).getAttributes().put("bar", "baz");
+			sessions.get(0).save().block();
+		}
+	}
+
+	@Test
+	public void givenStoreIsFullWithExpiredSessions_whenSavingNewSession_thenExpiredSessionsAreEvicted() throws InterruptedException {
+		try (var store = new SpringAddonsWebSessionStore(Duration.ofMinutes(30), 3, 2, Duration.ofMinutes(1))) {
+			final var events = new RecordingListener();
+			store.addWebSessionListener(events);
+			final var shortLived = store.createWebSession().block();
+			shortLived.setMaxIdleTime(Duration.ofMillis(10));
+			shortLived.getAttributes().put("foo", "bar");
+			shortLived.save().block();
+			started(store);
+			started(store);
+			Thread.sleep(50L);
+
+			final var session = started(store);
+
+			assertThat(store.getSessionCount()).isEqualTo(3);
+			assertThat(store.getExpiredSessionCount()).isEqualTo(1);
+			assertThat(events.removed).containsExactly(shortLived.getId());
+			assertThat(store.retrieveSession(session.getId()).block()).isSameAs(session);
+		}
+	}
+
+	private static WebSession started(SpringAddonsWebSessionStore store) {
+		final var session = store.createWebSession().block();
+		session.getAttributes().put("foo", "bar");
+		session.save().block();
+		return session;
+	}
+
+	static class RecordingListener implements WebSessionListener {
+		final List<String> created = new CopyOnWriteArrayList<>();
+		final List<String> idChanges = new CopyOnWriteArrayList<>();
+		final List<String> removed = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void sessionCreated(WebSession session) {
+			created.add(session.getId());
+		}
+
+		@Override
+		public void sessionIdChanged(String oldSessionId, WebSession session) {
+			idChanges.add(oldSessionId + "->" + session.getId());
+		}
+
+		@Override
+		public void sessionRemoved(String sessionId) {
+			removed.add(sessionId);
+		}
+	}
+}
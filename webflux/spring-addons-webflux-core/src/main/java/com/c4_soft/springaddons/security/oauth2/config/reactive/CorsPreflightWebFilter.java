@@ -0,0 +1,43 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.cors.reactive.CorsUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.c4_soft.springaddons.security.oauth2.config.CorsPolicies;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers accepted CORS preflight requests with the headers precomputed by {@link CorsPolicies}, without going down the rest of the filter chain. Rejected
+ * preflights and requests to paths without CORS configuration continue down the chain.
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class CorsPreflightWebFilter implements WebFilter {
+	private final CorsPolicies corsPolicies;
+
+	public CorsPreflightWebFilter(CorsPolicies corsPolicies) {
+		this.corsPolicies = corsPolicies;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		final var request = exchange.getRequest();
+		if (!CorsUtils.isPreFlightRequest(request)) {
+			return chain.filter(exchange);
+		}
+
+		final var responseHeaders = corsPolicies.preflight(request.getPath().pathWithinApplication(), request.getHeaders());
+		if (responseHeaders == null) {
+			return chain.filter(exchange);
+		}
+
+		final var response = exchange.getResponse();
+		response.getHeaders().addAll(responseHeaders);
+		response.setStatusCode(HttpStatus.OK);
+		return response.setComplete();
+	}
+}
@@ -0,0 +1,40 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import org.springframework.security.web.server.csrf.CsrfToken;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Subscribes to the deferred CSRF token so that a cookie is written, but only when the request does not already have one: for requests with a CSRF cookie,
+ * nothing would be generated nor written and subscribing would only cost the XOR masking of the token value (which draws from a shared SecureRandom).
+ * </p>
+ * https://docs.spring.io/spring-security/reference/5.8/migration/reactive.html#_i_am_using_angularjs_or_another_javascript_framework
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class CsrfCookieWebFilter implements WebFilter {
+	private final String cookieName;
+
+	public CsrfCookieWebFilter() {
+		this(SpringAddonsCookieServerCsrfTokenRepository.CSRF_COOKIE_NAME);
+	}
+
+	public CsrfCookieWebFilter(String cookieName) {
+		this.cookieName = cookieName;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		final var cookie = exchange.getRequest().getCookies().getFirst(cookieName);
+		if (cookie != null && StringUtils.hasText(cookie.getValue())) {
+			return chain.filter(exchange);
+		}
+		Mono<CsrfToken> csrfToken = exchange.getAttributeOrDefault(CsrfToken.class.getName(), Mono.empty());
+		return csrfToken.then(chain.filter(exchange));
+	}
+}
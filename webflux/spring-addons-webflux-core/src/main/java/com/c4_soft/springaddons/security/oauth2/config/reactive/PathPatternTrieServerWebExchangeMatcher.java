@@ -0,0 +1,32 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.c4_soft.springaddons.security.oauth2.config.PathPatternTrie;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ServerWebExchangeMatcher} for a (possibly large) set of path patterns compiled into a {@link PathPatternTrie}: the path within the application is
+ * matched against the patterns sharing its literal prefix only, instead of against each pattern in turn.
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class PathPatternTrieServerWebExchangeMatcher implements ServerWebExchangeMatcher {
+	private final PathPatternTrie trie;
+
+	public PathPatternTrieServerWebExchangeMatcher(String... patterns) {
+		this.trie = new PathPatternTrie(patterns);
+	}
+
+	@Override
+	public Mono<MatchResult> matches(ServerWebExchange exchange) {
+		return trie.matches(exchange.getRequest().getPath().pathWithinApplication()) ? MatchResult.match() : MatchResult.notMatch();
+	}
+
+	@Override
+	public String toString() {
+		return trie.toString();
+	}
+}
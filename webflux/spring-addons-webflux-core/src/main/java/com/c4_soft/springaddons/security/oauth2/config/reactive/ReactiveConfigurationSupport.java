@@ -2,17 +2,15 @@ package com.c4_soft.springaddons.security.oauth2.config.reactive;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
-import java.util.Arrays;
-
 import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.authorization.ServerAccessDeniedHandler;
 import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
-import org.springframework.security.web.server.csrf.CookieServerCsrfTokenRepository;
 import org.springframework.security.web.server.csrf.XorServerCsrfTokenRequestAttributeHandler;
-import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
+import com.c4_soft.springaddons.security.oauth2.config.CorsPolicies;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
@@ -67,7 +65,7 @@ public class ReactiveConfigurationSupport {
 	public static ServerHttpSecurity configureAccess(ServerHttpSecurity http, String[] permitAll) {
 		if (permitAll.length > 0) {
 			http.anonymous(withDefaults());
-			http.authorizeExchange(authorizeExchange -> authorizeExchange.pathMatchers(permitAll).permitAll());
+			http.authorizeExchange(authorizeExchange -> authorizeExchange.matchers(new PathPatternTrieServerWebExchangeMatcher(permitAll)).permitAll());
 		}
 		return http;
 	}
@@ -76,20 +74,24 @@ public class ReactiveConfigurationSupport {
 		if (corsProperties.length == 0) {
 			http.cors(cors -> cors.disable());
 		} else {
-			final var source = new UrlBasedCorsConfigurationSource();
-			for (final var corsProps : corsProperties) {
-				final var configuration = new CorsConfiguration();
-				configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-				configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-				configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-				configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-				source.registerCorsConfiguration(corsProps.getPath(), configuration);
-			}
-			http.cors(cors -> cors.configurationSource(source));
+			final var corsPolicies = new CorsPolicies(corsProperties);
+			http.cors(cors -> cors.configurationSource(corsConfigurationSource(corsPolicies)));
+			// answer accepted preflights before anything else in the security filter chain (security context loading, headers writing, etc.)
+			http.addFilterAt(new CorsPreflightWebFilter(corsPolicies), SecurityWebFiltersOrder.FIRST);
 		}
 		return http;
 	}
 
+	public static UrlBasedCorsConfigurationSource corsConfigurationSource(CorsProperties[] corsProperties) {
+		return corsConfigurationSource(new CorsPolicies(corsProperties));
+	}
+
+	public static UrlBasedCorsConfigurationSource corsConfigurationSource(CorsPolicies corsPolicies) {
+		final var source = new UrlBasedCorsConfigurationSource();
+		source.setCorsConfigurations(corsPolicies.getConfigurations());
+		return source;
+	}
+
 	public static ServerHttpSecurity configureState(ServerHttpSecurity http, boolean isStatless, SpringAddonsSecurityProperties.Csrf csrfEnum) {
 
 		if (isStatless) {
@@ -114,11 +116,11 @@ public class ReactiveConfigurationSupport {
 				break;
 			case COOKIE_HTTP_ONLY:
 				// https://docs.spring.io/spring-security/reference/5.8/migration/reactive.html#_i_am_using_angularjs_or_another_javascript_framework
-				csrf.csrfTokenRepository(new CookieServerCsrfTokenRepository()).csrfTokenRequestHandler(delegate::handle);
+				csrf.csrfTokenRepository(new SpringAddonsCookieServerCsrfTokenRepository(true)).csrfTokenRequestHandler(delegate::handle);
 				break;
 			case COOKIE_ACCESSIBLE_FROM_JS:
 				// https://docs.spring.io/spring-security/reference/5.8/migration/reactive.html#_i_am_using_angularjs_or_another_javascript_framework
-				csrf.csrfTokenRepository(CookieServerCsrfTokenRepository.withHttpOnlyFalse()).csrfTokenRequestHandler(delegate::handle);
+				csrf.csrfTokenRepository(new SpringAddonsCookieServerCsrfTokenRepository(false)).csrfTokenRequestHandler(delegate::handle);
 				break;
 			}
 		});
@@ -0,0 +1,138 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Holds a single {@link ReactiveJwtDecoder} per issuer, so that the resource-server authentication and the client back-channel logout of an application share
+ * the same decoders (and so the same JWK-set caches) instead of each building its own.
+ * </p>
+ * <p>
+ * Decoders are handed out behind a delegate which can be rebuilt: when this registry is started after having been stopped (which is what Spring does around a
+ * CRaC checkpoint and restore), each decoder is rebuilt in the background (OIDC discovery and fresh connections to the JWK-set endpoint), while the decoder
+ * restored from the checkpoint (and its JWK-set cache) keeps serving requests until it is replaced.
+ * </p>
+ * <p>
+ * Stopping the registry does not close any connection: the JWK-set and introspection endpoints are called through WebClients using reactor-netty shared
+ * resources, which this registry does not own, so connections opened before a checkpoint are left open. Pooled connections found closed after restore are
+ * discarded by reactor-netty and replaced with new ones.
+ * </p>
+ * <p>
+ * Whatever the factory which built it, each decoder handed out by this registry validates the "iss" claim against the issuer it is registered for. Issuers are
+ * registered without trailing slash, so that "https://idp.example.com/" and "https://idp.example.com" share a decoder.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class ReactiveJwtDecoderRegistry implements SmartLifecycle {
+	private final Map<String, RefreshableReactiveJwtDecoder> decoders = new ConcurrentHashMap<>();
+	private volatile boolean running = false;
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param  issuer  OP issuer URI
+	 * @param  factory called only if no decoder is registered yet for this issuer (and again, in the background, to rebuild the decoder after a restore)
+	 * @return         the decoder registered for the issuer
+	 */
+	public ReactiveJwtDecoder getOrCreate(String issuer, Supplier<ReactiveJwtDecoder> factory) {
+		return decoders.computeIfAbsent(issuerKey(issuer), iss -> new RefreshableReactiveJwtDecoder(iss, factory));
+	}
+
+	/**
+	 * @param  issuer OP issuer URI
+	 * @return        the decoder registered for the issuer, if any
+	 */
+	public Optional<ReactiveJwtDecoder> get(String issuer) {
+		return issuer == null ? Optional.empty() : Optional.ofNullable(decoders.get(issuerKey(issuer)));
+	}
+
+	/**
+	 * @param  issuer OP issuer URI
+	 * @return        the issuer URI without trailing slash
+	 */
+	public static String issuerKey(String issuer) {
+		return issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer;
+	}
+
+	/**
+	 * Rebuilds all the registered decoders (on the bounded elastic scheduler, discovery being blocking). Decoders which fail to be rebuilt (authorization server
+	 * not reachable, for instance) are kept as is.
+	 *
+	 * @return completes when all decoders were rebuilt or kept
+	 */
+	public Mono<Void> refreshAll() {
+		return Flux.fromIterable(decoders.values()).flatMap(decoder -> decoder.refresh().subscribeOn(Schedulers.boundedElastic())).then();
+	}
+
+	@Override
+	public void start() {
+		if (stopped) {
+			refreshAll().subscribe();
+		}
+		running = true;
+	}
+
+	/**
+	 * Flags the registry as stopped so that decoders are rebuilt on next {@link #start()}. Connections are left open (see class Javadoc).
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		stopped = true;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	private static class RefreshableReactiveJwtDecoder implements ReactiveJwtDecoder {
+		private final String issuer;
+		private final Supplier<ReactiveJwtDecoder> factory;
+		private final OAuth2TokenValidator<Jwt> issuerValidator;
+		private volatile ReactiveJwtDecoder delegate;
+
+		RefreshableReactiveJwtDecoder(String issuer, Supplier<ReactiveJwtDecoder> factory) {
+			this.issuer = issuer;
+			this.factory = factory;
+			this.issuerValidator = new JwtClaimValidator<Object>(JwtClaimNames.ISS, iss -> iss != null && issuer.equals(issuerKey(iss.toString())));
+			this.delegate = factory.get();
+		}
+
+		@Override
+		public Mono<Jwt> decode(String token) throws JwtException {
+			return delegate.decode(token).flatMap(jwt -> {
+				final var result = issuerValidator.validate(jwt);
+				return result.hasErrors() ? Mono.error(new JwtValidationException("Unexpected issuer", result.getErrors())) : Mono.just(jwt);
+			});
+		}
+
+		Mono<Void> refresh() {
+			return Mono.fromRunnable(() -> {
+				try {
+					delegate = factory.get();
+				} catch (RuntimeException e) {
+					log.warn("Failed to rebuild JWT decoder for {}, keeping the previous one", issuer, e);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshot;
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Builds {@link ReactiveJwtDecoder reactive JWT decoders} from the {@link IssuerMetadataSnapshot snapshots} of an {@link IssuerMetadataSnapshotStore}:
+ * </p>
+ * <ul>
+ * <li>if a snapshot exists for the issuer, the decoder is built without any network call and the snapshot is revalidated on the bounded elastic scheduler
+ * (the JWK set of the decoder being replaced with the fresh one)</li>
+ * <li>otherwise, the discovery document and JWK set are fetched synchronously (as Spring Boot does) and saved</li>
+ * </ul>
+ * <p>
+ * When a token is signed with a key which is not in the JWK set (rotation), the JWK set is fetched again and the snapshot is updated with it if it changed.
+ * As with Nimbus JWK set sources, the JWK set is fetched at most once per refetch cooldown: within this delay, tokens with unknown keys share the result of
+ * the last fetch (in flight or not), so that a flood of tokens with random "kid" can't hammer the authorization server or the disk.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotReactiveJwtDecoderFactory {
+	public static final Duration DEFAULT_REFETCH_COOLDOWN = Duration.ofSeconds(30);
+
+	private final IssuerMetadataSnapshotStore store;
+	private final Duration refetchCooldown;
+
+	public SnapshotReactiveJwtDecoderFactory(IssuerMetadataSnapshotStore store) {
+		this(store, DEFAULT_REFETCH_COOLDOWN);
+	}
+
+	/**
+	 * @param  issuer issuer properties
+	 * @return        a decoder for the tokens of this issuer
+	 */
+	public ReactiveJwtDecoder create(IssuerProperties issuer) {
+		final var persisted = store.load(issuer.getLocation().toString());
+		final var snapshot = persisted.orElseGet(() -> {
+			final var fetched = store.fetch(issuer);
+			save(fetched);
+			return fetched;
+		});
+
+		final var jwkSource = new SnapshotJwkSource(snapshot);
+		final var builder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource::get);
+		snapshot.signatureAlgorithms().forEach(builder::jwsAlgorithm);
+		final var decoder = builder.build();
+		decoder.setJwtValidator(
+				issuer.getJwkSetUri() == null || issuer.getJwkSetUri().toString().isEmpty()
+						? JwtValidators.createDefaultWithIssuer(snapshot.issuer())
+						: JwtValidators.createDefault());
+
+		if (persisted.isPresent()) {
+			Mono.fromCallable(() -> store.fetch(issuer)).subscribeOn(Schedulers.boundedElastic()).subscribe(
+					jwkSource::revalidated,
+					e -> log.warn("Failed to revalidate metadata snapshot for {}, keeping the one from {}", issuer.getLocation(), snapshot.fetchedAt(), e));
+		}
+		return decoder;
+	}
+
+	private void save(IssuerMetadataSnapshot snapshot) {
+		try {
+			store.save(snapshot);
+		} catch (IOException e) {
+			log.warn("Failed to save metadata snapshot for {}", snapshot.issuer(), e);
+		}
+	}
+
+	/**
+	 * JWK source serving the keys of a snapshot and fetching the JWK set again (on the bounded elastic scheduler, at most once per cooldown) when no key
+	 * matches a token header
+	 */
+	private class SnapshotJwkSource {
+		private final String jwkSetUri;
+		private volatile IssuerMetadataSnapshot snapshot;
+		private volatile JWKSet jwkSet;
+		private Mono<JWKSet> refetch;
+		private Instant refetchedAt;
+
+		SnapshotJwkSource(IssuerMetadataSnapshot snapshot) {
+			this.jwkSetUri = snapshot.jwkSetUri();
+			this.snapshot = snapshot;
+			this.jwkSet = snapshot.parseJwkSet();
+		}
+
+		Flux<JWK> get(SignedJWT jwt) {
+			final var matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+			if (matcher == null) {
+				return Flux.empty();
+			}
+			final var selector = new JWKSelector(matcher);
+			final var keys = selector.select(jwkSet);
+			if (!keys.isEmpty()) {
+				return Flux.fromIterable(keys);
+			}
+			return refetch().flatMapIterable(selector::select);
+		}
+
+		private synchronized Mono<JWKSet> refetch() {
+			final var now = Instant.now();
+			if (refetch == null || !now.isBefore(refetchedAt.plus(refetchCooldown))) {
+				refetchedAt = now;
+				refetch = Mono.fromCallable(() -> store.fetchJwkSet(jwkSetUri)).subscribeOn(Schedulers.boundedElastic()).map(this::rotated).onErrorResume(e -> {
+					log.warn("Failed to fetch JWK set from {}, keeping the one from {}", jwkSetUri, snapshot.fetchedAt(), e);
+					return Mono.just(jwkSet);
+				}).cache();
+			}
+			return refetch;
+		}
+
+		void revalidated(IssuerMetadataSnapshot fresh) {
+			if (!jwkSetUri.equals(fresh.jwkSetUri())) {
+				log.warn("JWK set URI for {} changed to {}, it will be used when the decoder is rebuilt", fresh.issuer(), fresh.jwkSetUri());
+			}
+			jwkSet = fresh.parseJwkSet();
+			snapshot = fresh;
+			save(fresh);
+		}
+
+		private JWKSet rotated(String fetched) {
+			if (snapshot.hasSameJwkSet(fetched)) {
+				return jwkSet;
+			}
+			final var updated = snapshot.withJwkSet(fetched, Instant.now());
+			jwkSet = updated.parseJwkSet();
+			snapshot = updated;
+			save(updated);
+			return jwkSet;
+		}
+	}
+}
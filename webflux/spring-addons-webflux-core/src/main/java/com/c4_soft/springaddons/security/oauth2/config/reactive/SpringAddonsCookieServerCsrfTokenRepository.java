@@ -0,0 +1,43 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import org.springframework.security.web.server.csrf.CookieServerCsrfTokenRepository;
+import org.springframework.security.web.server.csrf.CsrfToken;
+import org.springframework.security.web.server.csrf.DefaultCsrfToken;
+import org.springframework.security.web.server.csrf.ServerCsrfTokenRepository;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.c4_soft.springaddons.security.oauth2.config.CsrfTokenGenerator;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link CookieServerCsrfTokenRepository} (with default cookie, header and parameter names) generating token values with {@link CsrfTokenGenerator}
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class SpringAddonsCookieServerCsrfTokenRepository implements ServerCsrfTokenRepository {
+	public static final String CSRF_COOKIE_NAME = "XSRF-TOKEN";
+	static final String CSRF_HEADER_NAME = "X-XSRF-TOKEN";
+	static final String CSRF_PARAMETER_NAME = "_csrf";
+
+	private final CookieServerCsrfTokenRepository delegate;
+
+	public SpringAddonsCookieServerCsrfTokenRepository(boolean isCookieHttpOnly) {
+		this.delegate = isCookieHttpOnly ? new CookieServerCsrfTokenRepository() : CookieServerCsrfTokenRepository.withHttpOnlyFalse();
+	}
+
+	@Override
+	public Mono<CsrfToken> generateToken(ServerWebExchange exchange) {
+		return Mono.fromCallable(() -> new DefaultCsrfToken(CSRF_HEADER_NAME, CSRF_PARAMETER_NAME, CsrfTokenGenerator.generate()));
+	}
+
+	@Override
+	public Mono<Void> saveToken(ServerWebExchange exchange, CsrfToken token) {
+		return delegate.saveToken(exchange, token);
+	}
+
+	@Override
+	public Mono<CsrfToken> loadToken(ServerWebExchange exchange) {
+		return delegate.loadToken(exchange);
+	}
+}
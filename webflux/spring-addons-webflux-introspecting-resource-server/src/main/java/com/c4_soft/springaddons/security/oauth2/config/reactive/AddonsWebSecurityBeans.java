@@ -1,7 +1,6 @@
 package com.c4_soft.springaddons.security.oauth2.config.reactive;
 
 import java.nio.charset.Charset;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
@@ -36,15 +35,10 @@ import org.springframework.security.oauth2.server.resource.introspection.Reactiv
 import org.springframework.security.oauth2.server.resource.introspection.ReactiveOpaqueTokenIntrospector;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authorization.ServerAccessDeniedHandler;
-import org.springframework.security.web.server.csrf.CsrfToken;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.reactive.CorsConfigurationSource;
-import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 import org.springframework.web.server.WebFilter;
 
 import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
-import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
@@ -147,19 +141,6 @@ public class AddonsWebSecurityBeans {
 		return serverHttpSecurity -> serverHttpSecurity;
 	}
 
-	CorsConfigurationSource corsConfig(CorsProperties[] corsProperties) {
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : corsProperties) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
-	}
-
 	/**
 	 * Converter bean from successful introspection result to {@link Authentication} instance
 	 *
@@ -227,11 +208,7 @@ public class AddonsWebSecurityBeans {
 	@ConditionalOnMissingBean(name = "csrfCookieWebFilter")
 	@Bean
 	WebFilter csrfCookieWebFilter() {
-		return (exchange, chain) -> {
-			Mono<CsrfToken> csrfToken = exchange.getAttributeOrDefault(CsrfToken.class.getName(), Mono.empty());
-			return csrfToken.doOnSuccess(token -> {
-			}).then(chain.filter(exchange));
-		};
+		return new CsrfCookieWebFilter();
 	}
 
 	static class CookieCsrf extends AnyNestedCondition {
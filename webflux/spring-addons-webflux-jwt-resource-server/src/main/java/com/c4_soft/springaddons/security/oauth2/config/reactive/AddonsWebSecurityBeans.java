@@ -1,7 +1,7 @@
 package com.c4_soft.springaddons.security.oauth2.config.reactive;
 
 import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
@@ -23,6 +23,7 @@ import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
@@ -40,16 +41,12 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtIss
 import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authorization.ServerAccessDeniedHandler;
-import org.springframework.security.web.server.csrf.CsrfToken;
 import org.springframework.util.StringUtils;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.reactive.CorsConfigurationSource;
-import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
-import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
@@ -148,19 +145,6 @@ public class AddonsWebSecurityBeans {
 		return serverHttpSecurity -> serverHttpSecurity;
 	}
 
-	CorsConfigurationSource corsConfig(CorsProperties[] corsProperties) {
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : corsProperties) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
-	}
-
 	public static interface Jwt2AuthenticationConverter extends Converter<Jwt, Mono<AbstractAuthenticationToken>> {
 	}
 
@@ -185,12 +169,34 @@ public class AddonsWebSecurityBeans {
 								jwt.getClaimAsString(addonsProperties.getIssuerProperties(jwt.getIssuer()).getUsernameClaim()))));
 	}
 
+	/**
+	 * @return a registry holding a single {@link ReactiveJwtDecoder} per issuer, shared with the client back-channel logout if any
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	ReactiveJwtDecoderRegistry reactiveJwtDecoderRegistry() {
+		return new ReactiveJwtDecoderRegistry();
+	}
+
+	/**
+	 * @param  addonsProperties "com.c4-soft.springaddons.security" configuration properties
+	 * @return                  a factory building JWT decoders from the issuers metadata snapshots in "issuer-metadata-snapshots-directory"
+	 */
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security", name = "issuer-metadata-snapshots-directory")
+	@ConditionalOnMissingBean
+	@Bean
+	SnapshotReactiveJwtDecoderFactory snapshotReactiveJwtDecoderFactory(SpringAddonsSecurityProperties addonsProperties) {
+		return new SnapshotReactiveJwtDecoderFactory(new IssuerMetadataSnapshotStore(Path.of(addonsProperties.getIssuerMetadataSnapshotsDirectory())));
+	}
+
 	/**
 	 * Provides with multi-tenancy: builds a ReactiveAuthenticationManagerResolver per provided OIDC issuer URI
 	 *
 	 * @param  auth2ResourceServerProperties "spring.security.oauth2.resourceserver" configuration properties
 	 * @param  addonsProperties              "com.c4-soft.springaddons.security" configuration properties
 	 * @param  jwtAuthenticationConverter    converts from a {@link Jwt} to an {@link Authentication} implementation
+	 * @param  jwtDecoderRegistry            where to get (or register) the decoder of each issuer
+	 * @param  snapshotJwtDecoderFactory     if present, decoders are built from issuers metadata snapshots rather than from the authorization servers
 	 * @return                               Multi-tenant {@link ReactiveAuthenticationManagerResolver} (one for each configured issuer)
 	 */
 	@ConditionalOnMissingBean
@@ -198,7 +204,9 @@ public class AddonsWebSecurityBeans {
 	ReactiveAuthenticationManagerResolver<ServerWebExchange> authenticationManagerResolver(
 			OAuth2ResourceServerProperties auth2ResourceServerProperties,
 			SpringAddonsSecurityProperties addonsProperties,
-			Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthenticationConverter) {
+			Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthenticationConverter,
+			ReactiveJwtDecoderRegistry jwtDecoderRegistry,
+			Optional<SnapshotReactiveJwtDecoderFactory> snapshotJwtDecoderFactory) {
 		final var jwtProps = Optional.ofNullable(auth2ResourceServerProperties).map(OAuth2ResourceServerProperties::getJwt);
 		// @formatter:off
 		Optional.ofNullable(jwtProps.map(OAuth2ResourceServerProperties.Jwt::getIssuerUri)).orElse(jwtProps.map(OAuth2ResourceServerProperties.Jwt::getJwkSetUri))
@@ -210,9 +218,13 @@ public class AddonsWebSecurityBeans {
 
 		final Map<String, Mono<ReactiveAuthenticationManager>> jwtManagers =
 				Stream.of(addonsProperties.getIssuers()).collect(Collectors.toMap(issuer -> issuer.getLocation().toString(), issuer -> {
-					ReactiveJwtDecoder decoder = issuer.getJwkSetUri() != null && StringUtils.hasLength(issuer.getJwkSetUri().toString())
-							? NimbusReactiveJwtDecoder.withJwkSetUri(issuer.getJwkSetUri().toString()).build()
-							: ReactiveJwtDecoders.fromIssuerLocation(issuer.getLocation().toString());
+					ReactiveJwtDecoder decoder = jwtDecoderRegistry.getOrCreate(
+							issuer.getLocation().toString(),
+							() -> snapshotJwtDecoderFactory.map(factory -> factory.create(issuer))
+									.orElseGet(
+											() -> issuer.getJwkSetUri() != null && StringUtils.hasLength(issuer.getJwkSetUri().toString())
+													? NimbusReactiveJwtDecoder.withJwkSetUri(issuer.getJwkSetUri().toString()).build()
+													: ReactiveJwtDecoders.fromIssuerLocation(issuer.getLocation().toString())));
 					var provider = new JwtReactiveAuthenticationManager(decoder);
 					provider.setJwtAuthenticationConverter(jwtAuthenticationConverter);
 					return Mono.just(provider);
@@ -225,6 +237,23 @@ public class AddonsWebSecurityBeans {
 		return new JwtIssuerReactiveAuthenticationManagerResolver(issuerLocation -> jwtManagers.getOrDefault(issuerLocation, Mono.empty()));
 	}
 
+	/**
+	 * @param  addonsProperties           "com.c4-soft.springaddons.security" configuration properties
+	 * @param  jwtDecoderRegistry         the decoders used by the authentication manager resolver
+	 * @param  jwtAuthenticationConverter converts from a {@link Jwt} to an {@link Authentication} implementation
+	 * @param  expressionHandler          the method-security expression handler, if the application defines one
+	 * @return                            a runner warming-up security before the application reports it is ready to accept traffic
+	 */
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.warm-up", name = "enabled", havingValue = "true")
+	@Bean
+	ResourceServerWarmUp resourceServerWarmUp(
+			SpringAddonsSecurityProperties addonsProperties,
+			ReactiveJwtDecoderRegistry jwtDecoderRegistry,
+			Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthenticationConverter,
+			Optional<MethodSecurityExpressionHandler> expressionHandler) {
+		return new ResourceServerWarmUp(addonsProperties, jwtDecoderRegistry, jwtAuthenticationConverter, expressionHandler.orElse(null));
+	}
+
 	/**
 	 * Bean to switch from default behavior of redirecting unauthorized users to login (302) to returning 401 (unauthorized)
 	 *
@@ -251,11 +280,7 @@ public class AddonsWebSecurityBeans {
 	@ConditionalOnMissingBean(name = "csrfCookieWebFilter")
 	@Bean
 	WebFilter csrfCookieWebFilter() {
-		return (exchange, chain) -> {
-			Mono<CsrfToken> csrfToken = exchange.getAttributeOrDefault(CsrfToken.class.getName(), Mono.empty());
-			return csrfToken.doOnSuccess(token -> {
-			}).then(chain.filter(exchange));
-		};
+		return new CsrfCookieWebFilter();
 	}
 
 	static class CookieCsrf extends AnyNestedCondition {
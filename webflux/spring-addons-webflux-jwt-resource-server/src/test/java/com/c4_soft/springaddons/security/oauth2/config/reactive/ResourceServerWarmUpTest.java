@@ -0,0 +1,72 @@
+package com.c4_soft.springaddons.security.oauth2.config.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import com.c4_soft.springaddons.security.oauth2.config.ConfigurableClaimSet2AuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.Case;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.SimpleAuthoritiesMappingProperties;
+
+import reactor.core.publisher.Mono;
+
+public class ResourceServerWarmUpTest {
+	static final String ISSUER = "https://localhost:8443/realms/master";
+
+	@Test
+	public void givenWarmUpIsConfigured_whenRun_thenDecoderIsPrefetchedAndConverterAndExpressionsRunForEachIteration() {
+		final var properties = properties(3);
+		final var registry = new ReactiveJwtDecoderRegistry();
+		final var prefetches = new AtomicInteger();
+		registry.getOrCreate(ISSUER, () -> token -> Mono.fromSupplier(() -> {
+			prefetches.incrementAndGet();
+			throw new BadJwtException("no key matching the token header");
+		}));
+		final var authorities = new CopyOnWriteArrayList<List<String>>();
+		final var authoritiesConverter = new ConfigurableClaimSet2AuthoritiesConverter(properties);
+		final var evaluations = new AtomicInteger();
+
+		new ResourceServerWarmUp(properties, registry, jwt -> {
+			final var authentication = new JwtAuthenticationToken(jwt, authoritiesConverter.convert(jwt.getClaims()));
+			authorities.add(authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+			return Mono.just(authentication);
+		}, new DefaultMethodSecurityExpressionHandler() {
+			@Override
+			public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+				evaluations.incrementAndGet();
+				return super.createEvaluationContext(authentication, mi);
+			}
+		}).run(new DefaultApplicationArguments());
+
+		assertThat(prefetches).hasValue(1);
+		assertThat(authorities).hasSize(3).allSatisfy(a -> assertThat(a).containsExactly("ROLE_warm-up"));
+		assertThat(evaluations).hasValue(3 * properties.getWarmUp().getExpressions().length);
+	}
+
+	static SpringAddonsSecurityProperties properties(int iterations) {
+		final var issuer = new IssuerProperties();
+		issuer.setLocation(URI.create(ISSUER));
+		issuer.setAuthorities(new SimpleAuthoritiesMappingProperties[] { new SimpleAuthoritiesMappingProperties("$.resource_access.*.roles", "ROLE_", Case.UNCHANGED) });
+		final var properties = new SpringAddonsSecurityProperties();
+		properties.setIssuers(new IssuerProperties[] { issuer });
+		properties.getWarmUp().setEnabled(true);
+		properties.getWarmUp().setIterations(iterations);
+		return properties;
+	}
+}
@@ -5,7 +5,6 @@ import static org.mockito.Mockito.when;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
@@ -32,13 +31,13 @@ import org.springframework.security.web.server.context.NoOpServerSecurityContext
 import org.springframework.security.web.server.csrf.CookieServerCsrfTokenRepository;
 import org.springframework.security.web.server.csrf.XorServerCsrfTokenRequestAttributeHandler;
 import org.springframework.test.web.reactive.server.WebTestClient;
-import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
-import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.c4_soft.springaddons.security.oauth2.config.OAuth2AuthoritiesConverter;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.PathPatternTrieServerWebExchangeMatcher;
+import com.c4_soft.springaddons.security.oauth2.config.reactive.ReactiveConfigurationSupport;
 import com.c4_soft.springaddons.security.oauth2.config.reactive.ResourceServerAuthorizeExchangeSpecPostProcessor;
 import com.c4_soft.springaddons.security.oauth2.config.reactive.ResourceServerHttpSecurityPostProcessor;
 
@@ -158,7 +157,7 @@ public class AddonsWebfluxTestConf {
 			http.redirectToHttps();
 		}
 
-		authorizePostProcessor.authorizeHttpRequests(http.authorizeExchange().pathMatchers(addonsProperties.getPermitAll()).permitAll());
+		authorizePostProcessor.authorizeHttpRequests(http.authorizeExchange().matchers(new PathPatternTrieServerWebExchangeMatcher(addonsProperties.getPermitAll())).permitAll());
 
 		return httpPostProcessor.process(http).build();
 	}
@@ -178,16 +177,7 @@ public class AddonsWebfluxTestConf {
 	@ConditionalOnMissingBean
 	@Bean
 	CorsConfigurationSource corsConfigurationSource(SpringAddonsSecurityProperties addonsProperties) {
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : addonsProperties.getCors()) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
+		return ReactiveConfigurationSupport.corsConfigurationSource(addonsProperties.getCors());
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.client.OAuth2AuthorizationContext;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProvider;
+import org.springframework.security.oauth2.client.RefreshTokenOAuth2AuthorizedClientProvider;
+
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties.RefreshAheadProperties;
+
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Periodically scans the sessions held by this node (as tracked by {@link SpringAddonsOAuth2AuthorizedClientRepository}) and refreshes the access tokens which
+ * are about to expire, so that user requests do not pay the round-trip to the token endpoint.
+ * </p>
+ * <p>
+ * Each authorized client is refreshed at a stable random time within the "jitter" window before "advance", to spread the load on the authorization server.
+ * Sessions idle for longer than "max-idle" are skipped: the tokens will be refreshed on next user request, as usual.
+ * </p>
+ * <p>
+ * Refreshes go through the {@link SingleFlightOAuth2AuthorizedClientManager} used by requests, so that a refresh-ahead never runs concurrently with a
+ * request-time refresh of the same authorized client. Refreshed authorized clients are handed over to the {@link SpringAddonsOAuth2AuthorizedClientRepository}
+ * which writes them to the {@link SharedSessionStore} right away when sessions are shared by all the client instances (Spring Session), or to the local
+ * session on its next request otherwise.
+ * </p>
+ * <p>
+ * Only the sessions created on this node are scanned: with a shared session store, each session is refreshed by the node which created it, as long as this node
+ * is up.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class AuthorizedClientRefreshAheadScheduler implements SmartLifecycle, AutoCloseable {
+	private final SpringAddonsOAuth2AuthorizedClientRepository authorizedClientRepository;
+	private final SingleFlightOAuth2AuthorizedClientManager authorizedClientManager;
+	private final OAuth2AuthorizedClientProvider refreshTokenProvider;
+	private final RefreshAheadProperties properties;
+	private final ScheduledExecutorService executor;
+	private volatile ScheduledFuture<?> schedule;
+
+	public AuthorizedClientRefreshAheadScheduler(
+			SpringAddonsOAuth2AuthorizedClientRepository authorizedClientRepository,
+			SingleFlightOAuth2AuthorizedClientManager authorizedClientManager,
+			RefreshAheadProperties properties) {
+		this(authorizedClientRepository, authorizedClientManager, properties, refreshTokenProvider(properties));
+	}
+
+	public AuthorizedClientRefreshAheadScheduler(
+			SpringAddonsOAuth2AuthorizedClientRepository authorizedClientRepository,
+			SingleFlightOAuth2AuthorizedClientManager authorizedClientManager,
+			RefreshAheadProperties properties,
+			OAuth2AuthorizedClientProvider refreshTokenProvider) {
+		this.authorizedClientRepository = authorizedClientRepository;
+		this.authorizedClientManager = authorizedClientManager;
+		this.refreshTokenProvider = refreshTokenProvider;
+		this.properties = properties;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final var thread = new Thread(runnable, "spring-addons-refresh-ahead");
+			thread.setDaemon(true);
+			return thread;
+		});
+		schedule();
+	}
+
+	/**
+	 * Refreshes the tokens about to expire in all the non-idle sessions held by this node
+	 */
+	public void refreshAll() {
+		final var now = Instant.now();
+		for (var session : authorizedClientRepository.getLocalSessions()) {
+			try {
+				final var lastAccessedTime = authorizedClientRepository.getLastAccessedTime(session);
+				if (lastAccessedTime.isEmpty() || now.minus(properties.getMaxIdle()).isAfter(lastAccessedTime.get())) {
+					continue;
+				}
+				for (var authorizedClient : authorizedClientRepository.loadAuthorizedClients(session)) {
+					if (isAboutToExpire(session, authorizedClient, now)) {
+						refresh(session, authorizedClient);
+					}
+				}
+			} catch (IllegalStateException e) {
+				log.debug("Session was invalidated concurrently: {}", e.getMessage());
+			} catch (RuntimeException e) {
+				log.warn("Failed to refresh authorized clients ahead of expiry", e);
+			}
+		}
+	}
+
+	private void refresh(HttpSession session, OAuth2AuthorizedClient authorizedClient) {
+		// there is no request, and so no security context: only the principal name is known
+		final var principal = UsernamePasswordAuthenticationToken.unauthenticated(authorizedClient.getPrincipalName(), null);
+		final var context = OAuth2AuthorizationContext.withAuthorizedClient(authorizedClient).principal(principal).build();
+		final var sessionId = session.getId();
+		authorizedClientManager.singleFlight(sessionId, authorizedClient.getClientRegistration().getRegistrationId(), () -> {
+			final var refreshed = refreshTokenProvider.authorize(context);
+			if (refreshed != null) {
+				authorizedClientRepository.updateAuthorizedClient(sessionId, refreshed);
+			}
+			return refreshed;
+		});
+	}
+
+	private boolean isAboutToExpire(HttpSession session, OAuth2AuthorizedClient authorizedClient, Instant now) {
+		final var expiresAt = authorizedClient.getAccessToken().getExpiresAt();
+		if (authorizedClient.getRefreshToken() == null || expiresAt == null) {
+			return false;
+		}
+		final var jitterMillis = properties.getJitter().toMillis();
+		final var jitter = jitterMillis > 0
+				? Duration.ofMillis(Math.floorMod((session.getId() + authorizedClient.getClientRegistration().getRegistrationId()).hashCode(), jitterMillis))
+				: Duration.ZERO;
+		return now.isAfter(expiresAt.minus(properties.getAdvance()).minus(jitter));
+	}
+
+	private static OAuth2AuthorizedClientProvider refreshTokenProvider(RefreshAheadProperties properties) {
+		final var provider = new RefreshTokenOAuth2AuthorizedClientProvider();
+		// tokens selected by this scheduler must be considered as expired by the provider
+		provider.setClockSkew(properties.getAdvance().plus(properties.getJitter()));
+		return provider;
+	}
+
+	/**
+	 * (Re)starts the periodic refresh. It is started on construction, and stopped then restarted by Spring around a CRaC checkpoint and restore.
+	 */
+	@Override
+	public void start() {
+		schedule();
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (schedule != null) {
+			schedule.cancel(false);
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		final var current = schedule;
+		return current != null && !current.isDone();
+	}
+
+	@Override
+	public void close() {
+		stop();
+		executor.shutdownNow();
+	}
+
+	private synchronized void schedule() {
+		if (!isRunning() && !executor.isShutdown()) {
+			final var interval = properties.getInterval().toMillis();
+			schedule = executor.scheduleWithFixedDelay(this::refreshAll, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+}
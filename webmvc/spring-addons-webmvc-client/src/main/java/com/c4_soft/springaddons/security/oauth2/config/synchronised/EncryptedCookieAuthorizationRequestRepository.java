@@ -0,0 +1,62 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * <p>
+ * An {@link AuthorizationRequestRepository} keeping the authorization request in an encrypted cookie rather than in the session: the authorization code
+ * callback can be handled by any instance, and no session is created during login.
+ * </p>
+ * <p>
+ * Only the last authorization request is kept: if a user starts several logins concurrently (in different tabs), only the last one can complete.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class EncryptedCookieAuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+	private final EncryptedCookies cookies;
+	private final String cookieName;
+	private final Duration maxAge;
+
+	public EncryptedCookieAuthorizationRequestRepository(EncryptedCookies cookies, String cookieName, Duration maxAge) {
+		this.cookies = cookies;
+		this.cookieName = cookieName;
+		this.maxAge = maxAge;
+	}
+
+	@Override
+	public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+		final var state = request.getParameter(OAuth2ParameterNames.STATE);
+		if (state == null) {
+			return null;
+		}
+		return cookies.read(request, cookieName, OAuth2AuthorizationRequest.class).filter(authorizationRequest -> Objects.equals(state, authorizationRequest.getState()))
+				.orElse(null);
+	}
+
+	@Override
+	public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest, HttpServletRequest request, HttpServletResponse response) {
+		if (authorizationRequest == null) {
+			cookies.delete(request, response, cookieName);
+			return;
+		}
+		cookies.write(request, response, cookieName, authorizationRequest, maxAge);
+	}
+
+	@Override
+	public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request, HttpServletResponse response) {
+		final var authorizationRequest = loadAuthorizationRequest(request);
+		if (authorizationRequest != null) {
+			cookies.delete(request, response, cookieName);
+		}
+		return authorizationRequest;
+	}
+}
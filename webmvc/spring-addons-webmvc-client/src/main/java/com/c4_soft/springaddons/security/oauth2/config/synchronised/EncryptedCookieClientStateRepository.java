@@ -0,0 +1,155 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.authentication.OAuth2LoginAuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.StatelessClientState;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Keeps a {@link StatelessClientState} (authentication, OAuth2 users and authorized clients) in encrypted cookies, for OAuth2 clients without server-side
+ * sessions. It serves both as {@link OAuth2AuthorizedClientRepository} and {@link SecurityContextRepository}, so that the authentication and the tokens are
+ * written in the same cookie(s).
+ * </p>
+ * <p>
+ * Tokens refreshed by the {@link org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager} are saved here too: the cookies are updated in the
+ * response, which must not be committed yet (authorize clients before writing the response body).
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class EncryptedCookieClientStateRepository implements OAuth2AuthorizedClientRepository, SecurityContextRepository {
+	private static final String STATE_ATTRIBUTE = EncryptedCookieClientStateRepository.class.getName() + ".state";
+
+	private final ClientRegistrationRepository clientRegistrationRepository;
+	private final EncryptedCookies cookies;
+	private final String cookieName;
+	private final Duration cookieMaxAge;
+
+	public EncryptedCookieClientStateRepository(
+			ClientRegistrationRepository clientRegistrationRepository,
+			EncryptedCookies cookies,
+			String cookieName,
+			Duration cookieMaxAge) {
+		this.clientRegistrationRepository = clientRegistrationRepository;
+		this.cookies = cookies;
+		this.cookieName = cookieName;
+		this.cookieMaxAge = cookieMaxAge;
+	}
+
+	/**
+	 * @param  request current request
+	 * @return         the state read from the request cookies (decrypted once per request)
+	 */
+	public StatelessClientState loadState(HttpServletRequest request) {
+		if (request.getAttribute(STATE_ATTRIBUTE) instanceof StatelessClientState state) {
+			return state;
+		}
+		final var state = cookies.read(request, cookieName, StatelessClientState.class).orElse(StatelessClientState.EMPTY);
+		request.setAttribute(STATE_ATTRIBUTE, state);
+		return state;
+	}
+
+	/**
+	 * Writes the state cookies, if it changed
+	 *
+	 * @param request  current request
+	 * @param response current response (must not be committed)
+	 * @param state    the new state
+	 */
+	public void saveState(HttpServletRequest request, HttpServletResponse response, StatelessClientState state) {
+		if (Objects.equals(state, loadState(request))) {
+			return;
+		}
+		request.setAttribute(STATE_ATTRIBUTE, state);
+		if (response.isCommitted()) {
+			log.warn("Response already committed, {} cookie could not be updated", cookieName);
+			return;
+		}
+		if (state.isEmpty()) {
+			cookies.delete(request, response, cookieName);
+		} else {
+			cookies.write(request, response, cookieName, state, cookieMaxAge);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId, Authentication principal, HttpServletRequest request) {
+		return (T) loadState(request).getAuthorizedClient(clientRegistrationId).map(ac -> {
+			final var registration = clientRegistrationRepository.findByRegistrationId(ac.registrationId());
+			return registration == null ? null : ac.toAuthorizedClient(registration);
+		}).orElse(null);
+	}
+
+	@Override
+	public void saveAuthorizedClient(
+			OAuth2AuthorizedClient authorizedClient,
+			Authentication principal,
+			HttpServletRequest request,
+			HttpServletResponse response) {
+		final var registration = authorizedClient.getClientRegistration();
+		final var issuer = registration.getProviderDetails().getIssuerUri();
+		final var isLoginForThisRegistration = principal instanceof OAuth2LoginAuthenticationToken login
+				&& Objects.equals(registration.getRegistrationId(), login.getClientRegistration().getRegistrationId())
+				|| principal instanceof OAuth2AuthenticationToken oauth
+						&& Objects.equals(registration.getRegistrationId(), oauth.getAuthorizedClientRegistrationId());
+		final var user = isLoginForThisRegistration && principal.getPrincipal() instanceof OAuth2User oauth2User ? CompactOAuth2User.from(issuer, oauth2User) : null;
+
+		saveState(request, response, loadState(request).withAuthorizedClient(user, CompactAuthorizedClient.from(authorizedClient)));
+	}
+
+	@Override
+	public void removeAuthorizedClient(String clientRegistrationId, Authentication principal, HttpServletRequest request, HttpServletResponse response) {
+		saveState(request, response, loadState(request).withoutAuthorizedClient(clientRegistrationId));
+	}
+
+	@Override
+	@Deprecated
+	public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+		final var context = SecurityContextHolder.createEmptyContext();
+		loadState(requestResponseHolder.getRequest()).toAuthentication().ifPresent(context::setAuthentication);
+		return context;
+	}
+
+	@Override
+	public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+		final var authentication = context == null ? null : context.getAuthentication();
+		if (authentication instanceof OAuth2AuthenticationToken oauth) {
+			final var registration = clientRegistrationRepository.findByRegistrationId(oauth.getAuthorizedClientRegistrationId());
+			if (registration != null) {
+				saveState(request, response, loadState(request).withAuthentication(oauth, registration.getProviderDetails().getIssuerUri()));
+			}
+		} else if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+			// logout: drop the authorized clients too
+			saveState(request, response, StatelessClientState.EMPTY);
+		} else {
+			log.debug("Only OAuth2AuthenticationToken can be saved in {} cookie, got {}", cookieName, authentication.getClass());
+		}
+	}
+
+	@Override
+	public boolean containsContext(HttpServletRequest request) {
+		return loadState(request).authenticationRegistrationId() != null;
+	}
+}
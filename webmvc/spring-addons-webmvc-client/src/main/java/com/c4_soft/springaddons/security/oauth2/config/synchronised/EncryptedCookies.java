@@ -0,0 +1,76 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Reads and writes values in chunked, encrypted, HTTP-only cookies (see {@link EncryptedCookieCodec})
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class EncryptedCookies {
+	private final EncryptedCookieCodec codec;
+	private final boolean secure;
+
+	public EncryptedCookies(EncryptedCookieCodec codec, boolean secure) {
+		this.codec = codec;
+		this.secure = secure;
+	}
+
+	public <T> Optional<T> read(HttpServletRequest request, String cookieName, Class<T> type) {
+		final var values = getCookieValues(request);
+		final var chunks = new ArrayList<String>();
+		for (int i = 0; i < EncryptedCookieCodec.getMaxChunks() && values.containsKey(EncryptedCookieCodec.chunkName(cookieName, i)); ++i) {
+			chunks.add(values.get(EncryptedCookieCodec.chunkName(cookieName, i)));
+		}
+		return codec.decode(cookieName, chunks, type);
+	}
+
+	public void write(HttpServletRequest request, HttpServletResponse response, String cookieName, Serializable value, Duration maxAge) {
+		final var chunks = codec.encode(cookieName, value);
+		for (int i = 0; i < chunks.size(); ++i) {
+			addCookie(response, EncryptedCookieCodec.chunkName(cookieName, i), chunks.get(i), maxAge);
+		}
+		expireChunks(request, response, cookieName, chunks.size());
+	}
+
+	public void delete(HttpServletRequest request, HttpServletResponse response, String cookieName) {
+		expireChunks(request, response, cookieName, 0);
+	}
+
+	private void expireChunks(HttpServletRequest request, HttpServletResponse response, String cookieName, int from) {
+		final var values = getCookieValues(request);
+		for (int i = from; i < EncryptedCookieCodec.getMaxChunks() && values.containsKey(EncryptedCookieCodec.chunkName(cookieName, i)); ++i) {
+			addCookie(response, EncryptedCookieCodec.chunkName(cookieName, i), "", Duration.ZERO);
+		}
+	}
+
+	private void addCookie(HttpServletResponse response, String name, String value, Duration maxAge) {
+		final var cookie = ResponseCookie.from(name, value).path("/").httpOnly(true).secure(secure).sameSite("Lax").maxAge(maxAge).build();
+		response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+	}
+
+	private static Map<String, String> getCookieValues(HttpServletRequest request) {
+		final var cookies = request.getCookies();
+		final var values = new HashMap<String, String>();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				values.putIfAbsent(cookie.getName(), cookie.getValue());
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,43 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * <p>
+ * Access to sessions from outside of requests, when these sessions are held in a store shared by all the client instances (Spring Session for instance). The
+ * {@link jakarta.servlet.http.HttpSession} instances tracked by a node are then just a snapshot of the session at the time it was created: the state of the
+ * session must be read from, and written to, the shared store.
+ * </p>
+ * <p>
+ * Used by {@link SpringAddonsOAuth2AuthorizedClientRepository} to write the authorized clients refreshed by {@link AuthorizedClientRefreshAheadScheduler}
+ * immediately, so that the next request of the session gets the new tokens whatever the node serving it.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public interface SharedSessionStore {
+
+	/**
+	 * @param  sessionId the ID of a session
+	 * @return           the last time the session was accessed, or empty if the session does not exist anymore
+	 */
+	Optional<Instant> getLastAccessedTime(String sessionId);
+
+	/**
+	 * @param  <T>       the type of the attribute
+	 * @param  sessionId the ID of a session
+	 * @param  name      the attribute name
+	 * @return           the attribute value as currently stored, or null if the session or the attribute does not exist
+	 */
+	<T> T getAttribute(String sessionId, String name);
+
+	/**
+	 * Writes an attribute to the store. Does nothing if the session does not exist anymore.
+	 *
+	 * @param sessionId the ID of a session
+	 * @param name      the attribute name
+	 * @param value     the new attribute value
+	 */
+	void setAttribute(String sessionId, String name, Object value);
+}
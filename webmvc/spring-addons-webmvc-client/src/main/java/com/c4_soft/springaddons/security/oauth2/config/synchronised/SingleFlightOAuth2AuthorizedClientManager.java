@@ -0,0 +1,88 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * <p>
+ * An {@link OAuth2AuthorizedClientManager} coalescing concurrent authorizations for the same (session, client registration) pair: when an SPA fires several
+ * requests just after an access token expired, only the first one calls the delegate (and the token endpoint), the others wait for its result.
+ * </p>
+ * <p>
+ * This avoids duplicate refresh-token grant requests, which with refresh-token rotation would fail for all but the first, and ensures the refreshed authorized
+ * client is saved once.
+ * </p>
+ * <p>
+ * Requests without a session are not coalesced.
+ * </p>
+ * <p>
+ * Background refreshes ({@link AuthorizedClientRefreshAheadScheduler}) go through {@link #singleFlight(String, String, Supplier)}, sharing the same in-flight
+ * map: a refresh-ahead and a request-time refresh for the same session and registration never run concurrently.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@RequiredArgsConstructor
+public class SingleFlightOAuth2AuthorizedClientManager implements OAuth2AuthorizedClientManager {
+	private final Map<FlightKey, CompletableFuture<OAuth2AuthorizedClient>> inFlight = new ConcurrentHashMap<>();
+	private final OAuth2AuthorizedClientManager delegate;
+
+	@Override
+	public OAuth2AuthorizedClient authorize(OAuth2AuthorizeRequest authorizeRequest) {
+		final var request = authorizeRequest.<HttpServletRequest>getAttribute(HttpServletRequest.class.getName());
+		final var session = request == null ? null : request.getSession(false);
+		if (session == null) {
+			return delegate.authorize(authorizeRequest);
+		}
+
+		return singleFlight(session.getId(), authorizeRequest.getClientRegistrationId(), () -> delegate.authorize(authorizeRequest));
+	}
+
+	/**
+	 * Runs an authorization for a (session, client registration) pair, unless one is already in flight for this pair, in which case its result is awaited.
+	 *
+	 * @param  sessionId            the ID of the session holding the authorized client
+	 * @param  clientRegistrationId the client registration of the authorized client
+	 * @param  authorization        the actual authorization (or refresh)
+	 * @return                      the result of the authorization, either the one supplied here or the one which was already in flight
+	 */
+	public OAuth2AuthorizedClient singleFlight(String sessionId, String clientRegistrationId, Supplier<OAuth2AuthorizedClient> authorization) {
+		final var key = new FlightKey(sessionId, clientRegistrationId);
+		final var flight = new CompletableFuture<OAuth2AuthorizedClient>();
+		final var pending = inFlight.putIfAbsent(key, flight);
+		if (pending != null) {
+			try {
+				return pending.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		}
+
+		try {
+			final var authorizedClient = authorization.get();
+			flight.complete(authorizedClient);
+			return authorizedClient;
+		} catch (RuntimeException e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	static record FlightKey(String sessionId, String clientRegistrationId) {
+	}
+}
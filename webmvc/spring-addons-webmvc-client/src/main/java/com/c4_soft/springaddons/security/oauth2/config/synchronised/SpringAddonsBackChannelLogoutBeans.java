@@ -1,16 +1,21 @@
 package com.c4_soft.springaddons.security.oauth2.config.synchronised;
 
 import java.net.URL;
+import java.text.ParseException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -21,7 +26,9 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
@@ -34,7 +41,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.c4_soft.springaddons.security.oauth2.config.BackChannelLogoutProcessor;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
+import com.nimbusds.jwt.JWTParser;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 /**
  * <p>
@@ -79,6 +94,80 @@ public class SpringAddonsBackChannelLogoutBeans {
 		return http.build();
 	}
 
+	/**
+	 * @return a registry holding a single {@link JwtDecoder} per issuer, shared with the resource-server auto-configuration if any
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	JwtDecoderRegistry jwtDecoderRegistry() {
+		return new JwtDecoderRegistry();
+	}
+
+	/**
+	 * @param  authorizedClientRepository invalidates the sessions of a user. Must be a {@link SpringAddonsOAuth2AuthorizedClientRepository}, which is not the
+	 *                                    case in stateless mode (there are no server-side sessions to invalidate)
+	 * @param  clientProperties           "com.c4-soft.springaddons.security.client" configuration properties
+	 * @return                            the queue and workers processing back-channel logouts asynchronously
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	BackChannelLogoutProcessor backChannelLogoutProcessor(
+			OAuth2AuthorizedClientRepository authorizedClientRepository,
+			SpringAddonsOAuth2ClientProperties clientProperties) {
+		if (clientProperties.getStateless().isEnabled()) {
+			throw new IllegalStateException(
+					"Back-channel logout requires server-side sessions: com.c4-soft.springaddons.security.client.back-channel-logout-enabled and com.c4-soft.springaddons.security.client.stateless.enabled can't be both true");
+		}
+		if (!(authorizedClientRepository instanceof SpringAddonsOAuth2AuthorizedClientRepository addonsRepository)) {
+			throw new IllegalStateException("Back-channel logout requires the authorized client repository to be a SpringAddonsOAuth2AuthorizedClientRepository");
+		}
+		return new BackChannelLogoutProcessor(addonsRepository::invalidateSessions, clientProperties.getBackChannelLogout());
+	}
+
+	/**
+	 * <p>
+	 * Exposes {@link BackChannelLogoutProcessor} metrics to Micrometer (when on the classpath):
+	 * </p>
+	 * <ul>
+	 * <li>spring.addons.backchannel.logout.queued: count of logouts waiting for a worker</li>
+	 * <li>spring.addons.backchannel.logout.capacity: maximum number of logouts waiting for a worker</li>
+	 * <li>spring.addons.backchannel.logout.latency: time between logouts submission and sessions invalidation completion</li>
+	 * <li>spring.addons.backchannel.logout.failed: count of logouts for which sessions invalidation failed</li>
+	 * <li>spring.addons.backchannel.logout.replayed: count of logout tokens received more than once</li>
+	 * <li>spring.addons.backchannel.logout.rejected: count of logouts refused because the queue was full</li>
+	 * </ul>
+	 *
+	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(MeterBinder.class)
+	static class BackChannelLogoutMetricsConfiguration {
+
+		@ConditionalOnMissingBean(name = "backChannelLogoutMetrics")
+		@Bean
+		MeterBinder backChannelLogoutMetrics(BackChannelLogoutProcessor logoutProcessor) {
+			return registry -> {
+				Gauge.builder("spring.addons.backchannel.logout.queued", logoutProcessor, BackChannelLogoutProcessor::getQueueSize)
+						.description("Count of back-channel logouts waiting for a worker").register(registry);
+				Gauge.builder("spring.addons.backchannel.logout.capacity", logoutProcessor, BackChannelLogoutProcessor::getQueueCapacity)
+						.description("Maximum number of back-channel logouts waiting for a worker").register(registry);
+				FunctionTimer.builder(
+						"spring.addons.backchannel.logout.latency",
+						logoutProcessor,
+						BackChannelLogoutProcessor::getCompletedCount,
+						lp -> lp.getTotalLatency().toNanos(),
+						TimeUnit.NANOSECONDS).description("Time between back-channel logouts submission and sessions invalidation completion")
+						.register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.failed", logoutProcessor, BackChannelLogoutProcessor::getFailedCount)
+						.description("Count of back-channel logouts for which sessions invalidation failed").register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.replayed", logoutProcessor, BackChannelLogoutProcessor::getReplayedCount)
+						.description("Count of back-channel logout tokens received more than once").register(registry);
+				FunctionCounter.builder("spring.addons.backchannel.logout.rejected", logoutProcessor, BackChannelLogoutProcessor::getRejectedCount)
+						.description("Count of back-channel logouts refused because the queue was full").register(registry);
+			};
+		}
+	}
+
 	/**
 	 * <p>
 	 * Handles a POST request containing a JWT logout token provided as application/x-www-form-urlencoded as specified in
@@ -90,23 +179,39 @@ public class SpringAddonsBackChannelLogoutBeans {
 	 * <li>remove the relevant authorized client (based on issuer URI) for the relevant user (based on the subject)</li>
 	 * <li>maybe invalidate user session: only if the removed authorized client was the last one the user had</li>
 	 * </ul>
+	 * <p>
+	 * Sessions are resolved with the {@link SessionIndex}: if it is shared between the client instances, the logout token can be received by any of it.
+	 * </p>
+	 * <p>
+	 * Once the logout token verified, sessions invalidation is delegated to the {@link BackChannelLogoutProcessor} and the OP is acknowledged immediately. A
+	 * replayed token is acknowledged without further processing, and a 503 is returned if too many logouts are already waiting to be processed.
+	 * </p>
+	 * <p>
+	 * The (unverified) issuer of the logout token is read first to select the decoder of this issuer: the token is verified exactly once. Decoders are taken
+	 * from the {@link JwtDecoderRegistry}, and so share their JWK-set cache with the resource-server configuration of the same issuer, if any.
+	 * </p>
 	 *
 	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
 	 */
 	@Component
 	@RestController
 	public static class BackChannelLogoutController {
-		private final SpringAddonsOAuth2AuthorizedClientRepository authorizedClientRepository;
+		private final BackChannelLogoutProcessor logoutProcessor;
 		private final Map<String, JwtDecoder> jwtDecoders;
 
 		public BackChannelLogoutController(
-				SpringAddonsOAuth2AuthorizedClientRepository authorizedClientRepository,
-				InMemoryClientRegistrationRepository registrationRepo) {
-			this.authorizedClientRepository = authorizedClientRepository;
+				BackChannelLogoutProcessor logoutProcessor,
+				InMemoryClientRegistrationRepository registrationRepo,
+				JwtDecoderRegistry jwtDecoderRegistry) {
+			this.logoutProcessor = logoutProcessor;
 			this.jwtDecoders = StreamSupport.stream(registrationRepo.spliterator(), false)
 					.filter(reg -> AuthorizationGrantType.AUTHORIZATION_CODE.equals(reg.getAuthorizationGrantType()))
 					.map(ClientRegistration::getProviderDetails).collect(
-							Collectors.toMap(provider -> provider.getIssuerUri(), provider -> NimbusJwtDecoder.withJwkSetUri(provider.getJwkSetUri()).build()));
+							Collectors.toMap(
+									provider -> JwtDecoderRegistry.issuerKey(provider.getIssuerUri()),
+									provider -> jwtDecoderRegistry
+											.getOrCreate(provider.getIssuerUri(), () -> NimbusJwtDecoder.withJwkSetUri(provider.getJwkSetUri()).build()),
+									(a, b) -> a));
 		}
 
 		@PostMapping(path = "/backchannel_logout", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
@@ -115,29 +220,48 @@ public class SpringAddonsBackChannelLogoutBeans {
 			if (tokenString == null || tokenString.size() != 1) {
 				throw new BadLogoutRequestException();
 			}
-			jwtDecoders.forEach((issuer, decoder) -> {
-				try {
-					final var jwt = decoder.decode(tokenString.get(0));
-					final var isLogoutToken = Optional.ofNullable(jwt.getClaims().get("events")).map(Object::toString)
-							.map(evt -> evt.contains("http://schemas.openid.net/event/backchannel-logout")).orElse(false);
-					if (!isLogoutToken) {
-						throw new BadLogoutRequestException();
-					}
-					final var logoutIss = Optional.ofNullable(jwt.getIssuer()).map(URL::toString).orElse(null);
-					if (!Objects.equals(issuer, logoutIss)) {
-						throw new BadLogoutRequestException();
-					}
-					final var logoutSub = jwt.getSubject();
-					final var sessionsToInvalidate = authorizedClientRepository.removeAuthorizedClients(logoutIss, logoutSub);
-					sessionsToInvalidate.forEach(s -> {
-						s.invalidate();
-					});
-				} catch (JwtException e) {
-				}
-			});
+
+			// Route the token to the decoder of its issuer: the signature is then checked once, with the keys of this issuer only
+			final var issuer = getUnverifiedIssuer(tokenString.get(0));
+			final var decoder = issuer == null ? null : jwtDecoders.get(JwtDecoderRegistry.issuerKey(issuer));
+			if (decoder == null) {
+				throw new BadLogoutRequestException();
+			}
+
+			final Jwt jwt;
+			try {
+				jwt = decoder.decode(tokenString.get(0));
+			} catch (JwtException e) {
+				throw new BadLogoutRequestException();
+			}
+			final var isLogoutToken = Optional.ofNullable(jwt.getClaims().get("events")).map(Object::toString)
+					.map(evt -> evt.contains("http://schemas.openid.net/event/backchannel-logout")).orElse(false);
+			if (!isLogoutToken) {
+				throw new BadLogoutRequestException();
+			}
+			final var logoutIss = Optional.ofNullable(jwt.getIssuer()).map(URL::toString).orElse(null);
+			if (!Objects.equals(issuer, logoutIss)) {
+				throw new BadLogoutRequestException();
+			}
+			if (logoutProcessor.submit(logoutIss, jwt.getSubject(), jwt.getId()) == BackChannelLogoutProcessor.Submission.REJECTED) {
+				throw new LogoutQueueFullException();
+			}
 			return ResponseEntity.ok().build();
 		}
 
+		private static String getUnverifiedIssuer(String token) {
+			try {
+				return JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+			} catch (ParseException e) {
+				return null;
+			}
+		}
+
+		@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+		static final class LogoutQueueFullException extends RuntimeException {
+			private static final long serialVersionUID = 4457384209745237621L;
+		}
+
 		@ResponseStatus(HttpStatus.BAD_REQUEST)
 		static final class BadLogoutRequestException extends RuntimeException {
 			private static final long serialVersionUID = -8703279699142477824L;
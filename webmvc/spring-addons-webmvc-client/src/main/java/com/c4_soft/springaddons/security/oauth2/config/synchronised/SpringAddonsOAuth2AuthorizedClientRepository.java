@@ -1,14 +1,18 @@
 package com.c4_soft.springaddons.security.oauth2.config.synchronised;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
@@ -19,6 +23,10 @@ import org.springframework.security.oauth2.client.registration.InMemoryReactiveC
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
 import com.nimbusds.jwt.JWTClaimNames;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,7 +35,7 @@ import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.http.HttpSessionEvent;
 import jakarta.servlet.http.HttpSessionIdListener;
 import jakarta.servlet.http.HttpSessionListener;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * <p>
@@ -37,73 +45,164 @@ import lombok.RequiredArgsConstructor;
  * issuer.
  * </p>
  * <p>
- * This repo is also a session listener to keep track of all the (issuer, subject) pairs and their associations with sessions (many to many relation). This
- * enables it to expose the required API for back-channel logout where a request is received to remove an authorized client based on its issuer and subject but
- * without a session token.
+ * This repo is also a session listener to keep track of all the (issuer, subject) pairs and their associations with sessions (many to many relation) in a
+ * {@link SessionIndex}. This enables it to expose the required API for back-channel logout where a request is received to remove an authorized client based on
+ * its issuer and subject but without a session token.
+ * </p>
+ * <p>
+ * To keep sessions small (and cheap to replicate or persist), authorized clients and users are stored as {@link CompactAuthorizedClient} and
+ * {@link CompactOAuth2User}: client registrations are resolved from the {@link ClientRegistrationRepository} when authorized clients are loaded.
+ * </p>
+ * <p>
+ * Authorized clients refreshed outside of a request are written to the {@link SharedSessionStore} if one is provided (sessions shared by all the client
+ * instances with Spring Session), and kept on this node until the next request of the session otherwise (sessions local to the servlet container).
  * </p>
  *
  * @author Jerome Wacongne ch4mp&#64;c4-soft.com
  */
-@RequiredArgsConstructor
-public class SpringAddonsOAuth2AuthorizedClientRepository implements OAuth2AuthorizedClientRepository, HttpSessionListener, HttpSessionIdListener {
-	private static final String OAUTH2_USERS_KEY = "com.c4-soft.spring-addons.OAuth2.client.oauth2-users";
-	private static final String AUTHORIZED_CLIENTS_KEY = "com.c4-soft.spring-addons.OAuth2.client.authorized-clients";
-
-	private static final Map<UserId, Set<HttpSession>> sessionsByuserId = new ConcurrentHashMap<>();
-	private static final Map<String, Set<UserId>> userIdsBySessionId = new ConcurrentHashMap<>();
+@Slf4j
+public class SpringAddonsOAuth2AuthorizedClientRepository
+		implements
+		OAuth2AuthorizedClientRepository,
+		HttpSessionListener,
+		HttpSessionIdListener,
+		SessionIndex.InvalidationListener {
+	static final String OAUTH2_USERS_KEY = "com.c4-soft.spring-addons.OAuth2.client.compact-oauth2-users";
+	static final String AUTHORIZED_CLIENTS_KEY = "com.c4-soft.spring-addons.OAuth2.client.compact-authorized-clients";
+
+	/* sessions held by this node, to be resolved from the IDs stored in the session index */
+	private final Map<String, HttpSession> localSessions = new ConcurrentHashMap<>();
+
+	/* authorized clients refreshed outside of a request, by session ID and registration ID: they are written to the session by the next request. Used only
+	 * when sessions are local to this node */
+	private final Map<String, Map<String, OAuth2AuthorizedClient>> refreshedAuthorizedClients = new ConcurrentHashMap<>();
 
 	private final ClientRegistrationRepository clientRegistrationRepository;
 
+	private final SessionIndex sessionIndex;
+
+	/* null when sessions are local to this node */
+	private final SharedSessionStore sharedSessionStore;
+
+	public SpringAddonsOAuth2AuthorizedClientRepository(ClientRegistrationRepository clientRegistrationRepository) {
+		this(clientRegistrationRepository, new InMemorySessionIndex());
+	}
+
+	public SpringAddonsOAuth2AuthorizedClientRepository(ClientRegistrationRepository clientRegistrationRepository, SessionIndex sessionIndex) {
+		this(clientRegistrationRepository, sessionIndex, null);
+	}
+
+	/**
+	 * @param clientRegistrationRepository the OIDC providers configuration
+	 * @param sessionIndex                 the (issuer, subject) to sessions index
+	 * @param sharedSessionStore           where to read and write sessions from outside of requests when these are shared by all the client instances. Null if
+	 *                                     sessions are local to this node.
+	 */
+	public SpringAddonsOAuth2AuthorizedClientRepository(
+			ClientRegistrationRepository clientRegistrationRepository,
+			SessionIndex sessionIndex,
+			SharedSessionStore sharedSessionStore) {
+		this.clientRegistrationRepository = clientRegistrationRepository;
+		this.sessionIndex = sessionIndex;
+		this.sharedSessionStore = sharedSessionStore;
+		this.sessionIndex.addInvalidationListener(this);
+	}
+
 	@Override
 	public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
-		if (userIdsBySessionId.containsKey(oldSessionId) && !Objects.equals(event.getSession().getId(), oldSessionId)) {
-			userIdsBySessionId.put(event.getSession().getId(), userIdsBySessionId.get(oldSessionId));
-			userIdsBySessionId.remove(oldSessionId);
+		final var newSessionId = event.getSession().getId();
+		if (!Objects.equals(newSessionId, oldSessionId)) {
+			localSessions.remove(oldSessionId);
+			localSessions.put(newSessionId, event.getSession());
+			final var refreshed = refreshedAuthorizedClients.remove(oldSessionId);
+			if (refreshed != null) {
+				refreshedAuthorizedClients.put(newSessionId, refreshed);
+			}
+			sessionIndex.changeSessionId(oldSessionId, newSessionId);
 		}
 	}
 
 	@Override
 	public void sessionCreated(HttpSessionEvent se) {
+		localSessions.put(se.getSession().getId(), se.getSession());
 	}
 
 	@Override
 	public void sessionDestroyed(HttpSessionEvent se) {
-		final var idsToUpdate = getUserIds(se.getSession().getId());
-		for (var id : idsToUpdate) {
-			setSessions(
-					id.iss(),
-					id.sub(),
-					new HashSet<>(
-							getSessions(id.iss(), id.sub()).stream().filter(s -> !(s.getId().equals(se.getSession().getId()))).collect(Collectors.toSet())));
-		}
-		userIdsBySessionId.remove(se.getSession().getId());
+		localSessions.remove(se.getSession().getId());
+		refreshedAuthorizedClients.remove(se.getSession().getId());
+		sessionIndex.removeSession(se.getSession().getId());
 	}
 
 	private Optional<String> getUserSubject(HttpSession session, String issuer) {
 		final var oauth2Users = getOAuth2Users(session);
-		return Optional.ofNullable(oauth2Users.get(issuer)).map(u -> u.getAttribute(JWTClaimNames.SUBJECT));
+		return Optional.ofNullable(oauth2Users.get(issuer)).map(CompactOAuth2User::subject);
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId, Authentication auth, HttpServletRequest request) {
 		final var issuer = clientRegistrationRepository.findByRegistrationId(clientRegistrationId).getProviderDetails().getIssuerUri();
-		final var subject = getUserSubject(request.getSession(), issuer).orElse(auth.getName());
+		final var session = request.getSession();
+		applyRefreshedAuthorizedClients(session);
+		final var subject = getUserSubject(session, issuer).orElse(auth.getName());
 
-		return (T) loadAuthorizedClient(request.getSession(), issuer, subject);
+		return (T) loadAuthorizedClient(session, issuer, subject);
 	}
 
 	public OAuth2AuthorizedClient loadAuthorizedClient(HttpSession session, String issuer, String subject) {
 		final var authorizedClients = getAuthorizedClients(session);
-		return authorizedClients.stream().filter(
-				ac -> Objects.equals(ac.getClientRegistration().getProviderDetails().getIssuerUri(), issuer) && Objects.equals(ac.getPrincipalName(), subject))
-				.findAny().orElse(null);
+		return authorizedClients.stream().filter(ac -> ac.matches(issuer, subject)).findAny().map(ac -> {
+			final var registration = clientRegistrationRepository.findByRegistrationId(ac.registrationId());
+			return registration == null ? null : ac.toAuthorizedClient(registration);
+		}).orElse(null);
+	}
+
+	/**
+	 * Reads a session without modifying it: usable outside of a request.
+	 *
+	 * @param  session a user session
+	 * @return         all the authorized clients in this session (as currently stored in the {@link SharedSessionStore} if there is one), with client
+	 *                 registration resolved from the {@link ClientRegistrationRepository}, and those refreshed outside of a request but not written to the
+	 *                 session yet
+	 */
+	public List<OAuth2AuthorizedClient> loadAuthorizedClients(HttpSession session) {
+		final var refreshed = refreshedAuthorizedClients.getOrDefault(session.getId(), Map.of());
+		final var authorizedClients = sharedSessionStore == null ? getAuthorizedClients(session) : getSharedAuthorizedClients(session.getId());
+		return authorizedClients.stream().flatMap(ac -> {
+			final var refreshedClient = refreshed.get(ac.registrationId());
+			if (refreshedClient != null && Objects.equals(refreshedClient.getPrincipalName(), ac.principalName())) {
+				return Stream.of(refreshedClient);
+			}
+			return Optional.ofNullable(clientRegistrationRepository.findByRegistrationId(ac.registrationId())).map(ac::toAuthorizedClient).stream();
+		}).toList();
+	}
+
+	/**
+	 * @return the sessions held by this node
+	 */
+	public Collection<HttpSession> getLocalSessions() {
+		return Collections.unmodifiableCollection(localSessions.values());
+	}
+
+	/**
+	 * @param  session a user session
+	 * @return         the last time the session was accessed (as currently stored in the {@link SharedSessionStore} if there is one), or empty if it does not
+	 *                 exist anymore
+	 */
+	public Optional<Instant> getLastAccessedTime(HttpSession session) {
+		if (sharedSessionStore != null) {
+			return sharedSessionStore.getLastAccessedTime(session.getId());
+		}
+		return Optional.of(Instant.ofEpochMilli(session.getLastAccessedTime()));
 	}
 
 	@Override
 	public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication auth, HttpServletRequest request, HttpServletResponse response) {
 		if (auth instanceof OAuth2LoginAuthenticationToken || auth instanceof OAuth2AuthenticationToken) {
-			saveAuthorizedClient(request.getSession(), authorizedClient, (OAuth2User) auth.getPrincipal());
+			final var session = request.getSession();
+			applyRefreshedAuthorizedClients(session);
+			saveAuthorizedClient(session, authorizedClient, (OAuth2User) auth.getPrincipal());
 		}
 	}
 
@@ -113,41 +212,84 @@ public class SpringAddonsOAuth2AuthorizedClientRepository implements OAuth2Autho
 
 		final var oauth2Users = getOAuth2Users(session);
 		if (oauth2Users.containsKey(issuer)) {
-			removeAuthorizedClient(session, issuer, oauth2Users.get(issuer).getName());
+			removeAuthorizedClient(session, issuer, oauth2Users.get(issuer).subject());
 		}
-		oauth2Users.put(issuer, user);
+		oauth2Users.put(issuer, CompactOAuth2User.from(issuer, user));
 		setOAuth2Users(session, oauth2Users);
 
 		final var authorizedClients = getAuthorizedClients(session);
-		authorizedClients.add(authorizedClient);
+		authorizedClients.add(CompactAuthorizedClient.from(authorizedClient));
 		setAuthorizedClients(session, authorizedClients);
 
-		final var sessions = getSessions(issuer, subject);
-		if (!sessions.contains(session)) {
-			sessions.add(session);
-			setSessions(issuer, subject, sessions);
+		sessionIndex.add(issuer, subject, session.getId());
+	}
+
+	/**
+	 * Saves an authorized client refreshed outside of a request (by {@link AuthorizedClientRefreshAheadScheduler}):
+	 * <ul>
+	 * <li>if sessions are shared by all the client instances, it is written to the {@link SharedSessionStore} immediately: the next request of the session can
+	 * reach another node, which must not use a refresh token the authorization server just rotated out</li>
+	 * <li>otherwise, it is kept until the next request of its session, which writes it: the {@link HttpSession} is not written from a background thread</li>
+	 * </ul>
+	 *
+	 * @param sessionId        the ID of the session holding the authorized client
+	 * @param authorizedClient the new authorized client state
+	 */
+	public void updateAuthorizedClient(String sessionId, OAuth2AuthorizedClient authorizedClient) {
+		if (sharedSessionStore != null) {
+			final var issuer = authorizedClient.getClientRegistration().getProviderDetails().getIssuerUri();
+			final var authorizedClients = new HashSet<>(getSharedAuthorizedClients(sessionId));
+			if (authorizedClients.removeIf(ac -> ac.matches(issuer, authorizedClient.getPrincipalName()))) {
+				authorizedClients.add(CompactAuthorizedClient.from(authorizedClient));
+				sharedSessionStore.setAttribute(sessionId, AUTHORIZED_CLIENTS_KEY, authorizedClients);
+			}
+			return;
+		}
+		refreshedAuthorizedClients.compute(sessionId, (id, refreshed) -> {
+			final var updated = refreshed == null ? new HashMap<String, OAuth2AuthorizedClient>() : new HashMap<>(refreshed);
+			updated.put(authorizedClient.getClientRegistration().getRegistrationId(), authorizedClient);
+			return Map.copyOf(updated);
+		});
+	}
+
+	private void applyRefreshedAuthorizedClients(HttpSession session) {
+		final var refreshed = refreshedAuthorizedClients.remove(session.getId());
+		if (refreshed != null) {
+			refreshed.values().forEach(authorizedClient -> updateAuthorizedClient(session, authorizedClient));
 		}
+	}
 
-		final var userIds = getUserIds(session.getId());
-		userIds.add(new UserId(issuer, subject));
-		setUserIds(session.getId(), userIds);
+	/**
+	 * Replaces the authorized client with the same issuer and principal name in a session (after its tokens were refreshed for instance). Does nothing if the
+	 * session does not contain such an authorized client (anymore).
+	 *
+	 * @param session          a user session
+	 * @param authorizedClient the new authorized client state
+	 */
+	private void updateAuthorizedClient(HttpSession session, OAuth2AuthorizedClient authorizedClient) {
+		final var issuer = authorizedClient.getClientRegistration().getProviderDetails().getIssuerUri();
+		final var authorizedClients = new HashSet<>(getAuthorizedClients(session));
+		if (authorizedClients.removeIf(ac -> ac.matches(issuer, authorizedClient.getPrincipalName()))) {
+			authorizedClients.add(CompactAuthorizedClient.from(authorizedClient));
+			setAuthorizedClients(session, authorizedClients);
+		}
 	}
 
 	@Override
 	public void removeAuthorizedClient(String clientRegistrationId, Authentication auth, HttpServletRequest request, HttpServletResponse response) {
 		if (auth instanceof OAuth2LoginAuthenticationToken || auth instanceof OAuth2AuthenticationToken) {
 			final var issuer = clientRegistrationRepository.findByRegistrationId(clientRegistrationId).getProviderDetails().getIssuerUri();
-			final var subject = getUserSubject(request.getSession(), issuer).orElse(auth.getName());
+			final var session = request.getSession();
+			refreshedAuthorizedClients.remove(session.getId());
+			final var subject = getUserSubject(session, issuer).orElse(auth.getName());
 
-			removeAuthorizedClient(request.getSession(), issuer, subject);
+			removeAuthorizedClient(session, issuer, subject);
 		}
 	}
 
 	public void removeAuthorizedClient(HttpSession session, String issuer, String subject) {
 		final var allAuthorizedClients = getAuthorizedClients(session);
-		final var authorizedClientsToRemove = allAuthorizedClients.stream().filter(
-				ac -> Objects.equals(ac.getClientRegistration().getProviderDetails().getIssuerUri(), issuer) && Objects.equals(ac.getPrincipalName(), subject))
-				.collect(Collectors.toSet());
+		final var authorizedClientsToRemove = allAuthorizedClients.stream().filter(ac -> ac.matches(issuer, subject)).collect(Collectors.toSet());
 		allAuthorizedClients.removeAll(authorizedClientsToRemove);
 		setAuthorizedClients(session, allAuthorizedClients);
 
@@ -157,93 +299,81 @@ public class SpringAddonsOAuth2AuthorizedClientRepository implements OAuth2Autho
 			setOAuth2Users(session, oauth2Users);
 		}
 
-		final var sessions = getSessions(issuer, subject);
-		if (sessions.contains(session)) {
-			sessions.remove(session);
-			setSessions(issuer, subject, sessions);
-		}
-
-		final var userIds = getUserIds(session.getId());
-		userIds.remove(new UserId(issuer, subject));
+		sessionIndex.remove(issuer, subject, session.getId());
 	}
 
 	/**
-	 * Removes an authorized client and returns a list of sessions to invalidate (those for which the current user has no more authorized client after this one
-	 * was removed)
+	 * Removes an authorized client from the sessions held by this node and returns a list of sessions to invalidate (those for which the user has no more
+	 * authorized client after this one was removed)
 	 *
 	 * @param  issuer  OP issuer URI
 	 * @param  subject current user subject for this OP
 	 * @return         the list of user sessions for which this authorized client was the last one
 	 */
 	public Collection<HttpSession> removeAuthorizedClients(String issuer, String subject) {
-		final var sessions = getSessions(issuer, subject);
-
-		final var sessionsToInvalidate = sessions.stream().filter(s -> {
-			return getAuthorizedClients(s).stream()
-					.filter(
-							authorizedClient -> authorizedClient.getClientRegistration().getProviderDetails().getIssuerUri().equals(issuer)
-									&& authorizedClient.getPrincipalName().equals(subject))
-					.count() < 1;
-		}).toList();
+		final var sessions = sessionIndex.getSessionIds(issuer, subject).stream().map(localSessions::get).filter(Objects::nonNull).toList();
 
 		for (var session : sessions) {
 			removeAuthorizedClient(session, issuer, subject);
 		}
 
-		return sessionsToInvalidate;
+		return sessions.stream().filter(s -> getAuthorizedClients(s).isEmpty()).toList();
 	}
 
-	@SuppressWarnings("unchecked")
-	private Set<OAuth2AuthorizedClient> getAuthorizedClients(HttpSession session) {
-		final var sessionAuthorizedClients = (Set<OAuth2AuthorizedClient>) session.getAttribute(AUTHORIZED_CLIENTS_KEY);
-		return sessionAuthorizedClients == null ? new HashSet<>() : sessionAuthorizedClients;
-	}
-
-	private void setAuthorizedClients(HttpSession session, Set<OAuth2AuthorizedClient> sessionAuthorizedClients) {
-		session.setAttribute(AUTHORIZED_CLIENTS_KEY, sessionAuthorizedClients);
+	/**
+	 * Removes the authorized clients for the given issuer and subject from all the sessions, including the ones held by other nodes if the {@link SessionIndex}
+	 * is shared. Sessions with no more authorized client are invalidated.
+	 *
+	 * @param issuer  OP issuer URI
+	 * @param subject user subject for this OP
+	 */
+	public void invalidateSessions(String issuer, String subject) {
+		sessionIndex.broadcastInvalidation(issuer, subject);
 	}
 
-	public Map<String, OAuth2User> getOAuth2UsersBySession(HttpSession session) {
-		if (session == null) {
-			return null;
+	@Override
+	public void invalidate(String issuer, String subject) {
+		try {
+			removeAuthorizedClients(issuer, subject).forEach(HttpSession::invalidate);
+		} catch (IllegalStateException e) {
+			log.debug("Session was invalidated concurrently: {}", e.getMessage());
 		}
-		return Collections.unmodifiableMap(getOAuth2Users(session));
 	}
 
 	@SuppressWarnings("unchecked")
-	private Map<String, OAuth2User> getOAuth2Users(HttpSession s) {
-		final var sessionOauth2UsersByIssuer = (Map<String, OAuth2User>) s.getAttribute(OAUTH2_USERS_KEY);
-		return sessionOauth2UsersByIssuer == null ? new ConcurrentHashMap<String, OAuth2User>() : sessionOauth2UsersByIssuer;
+	private Set<CompactAuthorizedClient> getAuthorizedClients(HttpSession session) {
+		final var sessionAuthorizedClients = (Set<CompactAuthorizedClient>) session.getAttribute(AUTHORIZED_CLIENTS_KEY);
+		return sessionAuthorizedClients == null ? new HashSet<>() : sessionAuthorizedClients;
 	}
 
-	private void setOAuth2Users(HttpSession s, Map<String, OAuth2User> sessionOauth2UsersByIssuer) {
-		s.setAttribute(OAUTH2_USERS_KEY, sessionOauth2UsersByIssuer);
+	private Set<CompactAuthorizedClient> getSharedAuthorizedClients(String sessionId) {
+		final Set<CompactAuthorizedClient> sessionAuthorizedClients = sharedSessionStore.getAttribute(sessionId, AUTHORIZED_CLIENTS_KEY);
+		return sessionAuthorizedClients == null ? Set.of() : sessionAuthorizedClients;
 	}
 
-	private Set<HttpSession> getSessions(String issuer, String subject) {
-		return sessionsByuserId.getOrDefault(new UserId(issuer, subject), new HashSet<>());
+	private void setAuthorizedClients(HttpSession session, Set<CompactAuthorizedClient> sessionAuthorizedClients) {
+		session.setAttribute(AUTHORIZED_CLIENTS_KEY, sessionAuthorizedClients);
 	}
 
-	private void setSessions(String issuer, String subject, Set<HttpSession> sessions) {
-		if (sessions == null || sessions.isEmpty()) {
-			sessionsByuserId.remove(new UserId(issuer, subject));
-		} else {
-			sessionsByuserId.put(new UserId(issuer, subject), sessions);
+	/**
+	 * @param  session a user session
+	 * @return         a snapshot of the users authenticated in this session, by issuer: unlike in previous versions, this map is not a live view of the session and
+	 *                 must be read again after an authorized client is removed (by {@link #removeAuthorizedClient(HttpSession, String, String)} for instance)
+	 */
+	public Map<String, OAuth2User> getOAuth2UsersBySession(HttpSession session) {
+		if (session == null) {
+			return null;
 		}
+		return getOAuth2Users(session).entrySet().stream().collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().toOAuth2User()));
 	}
 
-	private Set<UserId> getUserIds(String sessionId) {
-		return userIdsBySessionId.getOrDefault(sessionId, new HashSet<>());
-	}
-
-	private void setUserIds(String sessionId, Set<UserId> userIds) {
-		if (userIds == null || userIds.isEmpty()) {
-			userIdsBySessionId.remove(sessionId);
-		} else {
-			userIdsBySessionId.put(sessionId, userIds);
-		}
+	@SuppressWarnings("unchecked")
+	private Map<String, CompactOAuth2User> getOAuth2Users(HttpSession s) {
+		final var sessionOauth2UsersByIssuer = (Map<String, CompactOAuth2User>) s.getAttribute(OAUTH2_USERS_KEY);
+		return sessionOauth2UsersByIssuer == null ? new ConcurrentHashMap<String, CompactOAuth2User>() : sessionOauth2UsersByIssuer;
 	}
 
-	private static record UserId(String iss, String sub) {
+	private void setOAuth2Users(HttpSession s, Map<String, CompactOAuth2User> sessionOauth2UsersByIssuer) {
+		s.setAttribute(OAUTH2_USERS_KEY, sessionOauth2UsersByIssuer);
 	}
 }
@@ -1,45 +1,59 @@
 package com.c4_soft.springaddons.security.oauth2.config.synchronised;
 
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
-import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestResolver;
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
 import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.logout.LogoutSuccessHandler;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.security.web.savedrequest.NullRequestCache;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.StringUtils;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.c4_soft.springaddons.security.oauth2.config.ConfigurableClaimSet2AuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+import com.c4_soft.springaddons.security.oauth2.config.HasClientSecurityMatchersCondition;
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.LogoutRequestUriBuilder;
 import com.c4_soft.springaddons.security.oauth2.config.OAuth2AuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2LogoutRequestUriBuilder;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
-import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
+import com.c4_soft.springaddons.security.oauth2.config.StatelessClientState;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -61,7 +75,19 @@ import lombok.extern.slf4j.Slf4j;
  * spring-addons {@link SpringAddonsSecurityProperties}</li>
  * <li>grantedAuthoritiesMapper: a {@link GrantedAuthoritiesMapper} using the already configured {@link OAuth2AuthoritiesConverter}</li>
  * <li>oAuth2AuthorizedClientRepository: a {@link SpringAddonsOAuth2AuthorizedClientRepository} (which is also a session listener) capable of handling
- * multi-tenancy and back-channel logout.</li>
+ * multi-tenancy and back-channel logout. Not defined in stateless mode.</li>
+ * <li>statelessStateRepository and statelessAuthorizationRequestRepository: an {@link EncryptedCookieClientStateRepository} and an
+ * {@link EncryptedCookieAuthorizationRequestRepository} replacing sessions with encrypted cookies. Only if
+ * "com.c4-soft.springaddons.security.client.stateless.enabled" is true.</li>
+ * <li>sessionIndex: a {@link SessionIndex} keeping track of the sessions of each (issuer, subject) pair for back-channel logout. Default is a
+ * {@link SpringSessionIndex} if Spring Session is configured with a {@link FindByIndexNameSessionRepository} and an {@link InMemorySessionIndex}
+ * otherwise.</li>
+ * <li>sharedSessionStore: a {@link SpringSessionStore} if Spring Session is configured, for the authorized clients refreshed ahead of expiry to be written to
+ * the shared session store right away. Not defined otherwise.</li>
+ * <li>authorizedClientManager: a {@link SingleFlightOAuth2AuthorizedClientManager} coalescing concurrent authorizations (and so token refreshes) for the same
+ * session and client registration</li>
+ * <li>authorizedClientRefreshAheadScheduler: an {@link AuthorizedClientRefreshAheadScheduler} refreshing access tokens shortly before they expire. Only if
+ * "com.c4-soft.springaddons.security.client.refresh-ahead.enabled" is true.</li>
  * <li>clientAuthorizePostProcessor: a {@link ClientExpressionInterceptUrlRegistryPostProcessor} post processor to fine tune access control from java
  * configuration. It applies to all routes not listed in "permit-all" property configuration. Default requires users to be authenticated.</li>
  * <li>clientHttpPostProcessor: a {@link ClientHttpSecurityPostProcessor} to override anything from above auto-configuration. It is called just before the
@@ -72,7 +98,7 @@ import lombok.extern.slf4j.Slf4j;
  */
 @ConditionalOnProperty(matchIfMissing = true, prefix = "com.c4-soft.springaddons.security.client", name = "enabled")
 @EnableWebSecurity
-@AutoConfiguration
+@AutoConfiguration(afterName = "org.springframework.boot.autoconfigure.session.SessionAutoConfiguration")
 @Import({ SpringAddonsOAuth2ClientProperties.class })
 @Slf4j
 public class SpringAddonsOAuth2ClientBeans {
@@ -103,10 +129,13 @@ public class SpringAddonsOAuth2ClientBeans {
 	 *                                      everything that was not matched)
 	 * @param  httpPostProcessor            post process the "http" builder just before it is returned (enables to override anything from the
 	 *                                      auto-configuration) spring-addons client properties}
+	 * @param  statelessStateRepository     defined only in stateless mode: where the security context and authorized clients are kept (instead of the
+	 *                                      session)
+	 * @param  statelessAuthorizationRequestRepository defined only in stateless mode: where authorization requests are kept (instead of the session)
 	 * @return                              a security filter-chain scoped to specified security-matchers and adapted to OAuth2 clients
 	 * @throws Exception                    in case of miss-configuration
 	 */
-	@ConditionalOnExpression("!(T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers:}') && T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers[0]:}'))")
+	@Conditional(HasClientSecurityMatchersCondition.class)
 	@Order(Ordered.HIGHEST_PRECEDENCE + 1)
 	@Bean
 	SecurityFilterChain springAddonsClientFilterChain(
@@ -116,11 +145,13 @@ public class SpringAddonsOAuth2ClientBeans {
 			LogoutSuccessHandler logoutSuccessHandler,
 			SpringAddonsOAuth2ClientProperties clientProps,
 			ClientExpressionInterceptUrlRegistryPostProcessor authorizePostProcessor,
-			ClientHttpSecurityPostProcessor httpPostProcessor)
+			ClientHttpSecurityPostProcessor httpPostProcessor,
+			Optional<EncryptedCookieClientStateRepository> statelessStateRepository,
+			Optional<EncryptedCookieAuthorizationRequestRepository> statelessAuthorizationRequestRepository)
 			throws Exception {
 		// @formatter:off
         log.info("Applying client OAuth2 configuration for: {}", (Object[]) clientProps.getSecurityMatchers());
-        http.securityMatcher(clientProps.getSecurityMatchers());
+        http.securityMatcher(new PathPatternTrieRequestMatcher(clientProps.getSecurityMatchers()));
 
         http.oauth2Login(login -> {
             clientProps.getLoginPath().ifPresent(loginPath -> {
@@ -130,11 +161,23 @@ public class SpringAddonsOAuth2ClientBeans {
             clientProps.getPostLoginRedirectPath().ifPresent(postLoginRedirectPath -> {
                 login.defaultSuccessUrl(UriComponentsBuilder.fromUri(clientProps.getClientUri()).path(postLoginRedirectPath).build().toString(), true);
             });
+            statelessAuthorizationRequestRepository.ifPresent(authorizationRequestRepository -> {
+                login.authorizationEndpoint(endpoint -> endpoint.authorizationRequestRepository(authorizationRequestRepository));
+            });
         });
 
         http.logout(logout -> {
             logout.logoutSuccessHandler(logoutSuccessHandler);
+            statelessStateRepository.ifPresent(stateRepository -> {
+                logout.addLogoutHandler((request, response, authentication) -> stateRepository.saveState(request, response, StatelessClientState.EMPTY));
+            });
         });
+
+        if (statelessStateRepository.isPresent()) {
+            http.securityContext(securityContext -> securityContext.securityContextRepository(statelessStateRepository.get()));
+            http.sessionManagement(sessions -> sessions.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+            http.requestCache(requestCache -> requestCache.requestCache(new NullRequestCache()));
+        }
         // @formatter:on
 
 		ServletConfigurationSupport.configureClient(http, serverProperties, clientProps, authorizePostProcessor, httpPostProcessor);
@@ -223,68 +266,178 @@ public class SpringAddonsOAuth2ClientBeans {
 	}
 
 	/**
-	 * @param  corsProperties the properties to pick CORS configuration from
-	 * @return                a CORS configuration built from properties
+	 * @param  clientRegistrationRepository the OIDC providers configuration
+	 * @param  sessionIndex                 the (issuer, subject) to sessions index
+	 * @param  sharedSessionStore           defined only if sessions are shared by all the client instances (Spring Session)
+	 * @return                              {@link SpringAddonsOAuth2AuthorizedClientRepository}, an authorized client repository supporting multi-tenancy and
+	 *                                      exposing the required API for back-channel logout
 	 */
-	CorsConfigurationSource corsConfig(CorsProperties[] corsProperties) {
-		log.debug("Building default CorsConfigurationSource with: {}", Stream.of(corsProperties).toList());
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : corsProperties) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.stateless", name = "enabled", havingValue = "false", matchIfMissing = true)
+	@ConditionalOnMissingBean
+	@Bean
+	SpringAddonsOAuth2AuthorizedClientRepository oAuth2AuthorizedClientRepository(
+			ClientRegistrationRepository clientRegistrationRepository,
+			SessionIndex sessionIndex,
+			Optional<SharedSessionStore> sharedSessionStore) {
+		return new SpringAddonsOAuth2AuthorizedClientRepository(clientRegistrationRepository, sessionIndex, sharedSessionStore.orElse(null));
 	}
 
 	/**
 	 * @param  clientRegistrationRepository the OIDC providers configuration
-	 * @return                              {@link SpringAddonsOAuth2AuthorizedClientRepository}, an authorized client repository supporting multi-tenancy and
-	 *                                      exposing the required API for back-channel logout
+	 * @param  authorizedClientRepository   where authorized clients are loaded from and saved to
+	 * @return                              a {@link DefaultOAuth2AuthorizedClientManager} decorated to refresh an authorized client only once when concurrent
+	 *                                      requests of the same session find it expired
 	 */
 	@ConditionalOnMissingBean
 	@Bean
-	SpringAddonsOAuth2AuthorizedClientRepository oAuth2AuthorizedClientRepository(ClientRegistrationRepository clientRegistrationRepository) {
-		return new SpringAddonsOAuth2AuthorizedClientRepository(clientRegistrationRepository);
+	OAuth2AuthorizedClientManager authorizedClientManager(
+			ClientRegistrationRepository clientRegistrationRepository,
+			OAuth2AuthorizedClientRepository authorizedClientRepository) {
+		return new SingleFlightOAuth2AuthorizedClientManager(new DefaultOAuth2AuthorizedClientManager(clientRegistrationRepository, authorizedClientRepository));
 	}
 
 	/**
-	 * @return a Post processor for access control in Java configuration which requires users to be authenticated. It is called after "permit-all" configuration
-	 *         property was applied.
+	 * @param  authorizedClientRepository the repository tracking sessions and the authorized clients they hold, which must be a
+	 *                                    {@link SpringAddonsOAuth2AuthorizedClientRepository} (not available in stateless mode)
+	 * @param  authorizedClientManager    the manager used by requests, which must be a {@link SingleFlightOAuth2AuthorizedClientManager} for background and
+	 *                                    request-time refreshes to be coalesced
+	 * @param  clientProperties           to pick refresh-ahead configuration from
+	 * @return                            a scheduler refreshing access tokens in the background, shortly before they expire
 	 */
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.refresh-ahead", name = "enabled")
 	@ConditionalOnMissingBean
 	@Bean
-	ClientExpressionInterceptUrlRegistryPostProcessor clientAuthorizePostProcessor() {
-		return registry -> registry.anyRequest().authenticated();
+	AuthorizedClientRefreshAheadScheduler authorizedClientRefreshAheadScheduler(
+			OAuth2AuthorizedClientRepository authorizedClientRepository,
+			OAuth2AuthorizedClientManager authorizedClientManager,
+			SpringAddonsOAuth2ClientProperties clientProperties) {
+		if (clientProperties.getStateless().isEnabled()) {
+			throw new IllegalStateException(
+					"Refresh-ahead requires server-side sessions: com.c4-soft.springaddons.security.client.refresh-ahead.enabled and com.c4-soft.springaddons.security.client.stateless.enabled can't be both true");
+		}
+		if (!(authorizedClientRepository instanceof SpringAddonsOAuth2AuthorizedClientRepository addonsRepository)) {
+			throw new IllegalStateException("Refresh-ahead requires the authorized client repository to be a SpringAddonsOAuth2AuthorizedClientRepository");
+		}
+		if (!(authorizedClientManager instanceof SingleFlightOAuth2AuthorizedClientManager singleFlightManager)) {
+			throw new IllegalStateException("Refresh-ahead requires the authorized client manager to be a SingleFlightOAuth2AuthorizedClientManager");
+		}
+		return new AuthorizedClientRefreshAheadScheduler(addonsRepository, singleFlightManager, clientProperties.getRefreshAhead());
 	}
 
 	/**
-	 * @return a no-op post processor
+	 * @return an {@link InMemorySessionIndex}, which is fine as long as the client is not scaled horizontally (or uses sticky sessions). Used only if Spring
+	 *         Session is not configured.
 	 */
 	@ConditionalOnMissingBean
 	@Bean
-	ClientHttpSecurityPostProcessor clientHttpPostProcessor() {
-		return http -> http;
+	SessionIndex sessionIndex() {
+		return new InMemorySessionIndex();
 	}
 
-	static class HasClientSecurityMatcher extends AnyNestedCondition {
+	/**
+	 * Defines a {@link SpringSessionIndex} when Spring Session is configured with a {@link FindByIndexNameSessionRepository} (Redis, JDBC, Hazelcast,
+	 * MongoDB, ...), so that back-channel logout works whatever the node receiving the logout token, and a {@link SpringSessionStore} so that authorized clients
+	 * refreshed ahead of expiry are visible to all the nodes.
+	 *
+	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(FindByIndexNameSessionRepository.class)
+	static class SpringSessionIndexConfiguration {
+
+		/**
+		 * @param  sessionRepository            the Spring Session repository shared by all instances
+		 * @param  clientRegistrationRepository to resolve, for each issuer, the user name attribute which Spring Session uses as principal name
+		 * @return                              a {@link SpringSessionIndex}
+		 */
+		@ConditionalOnBean(FindByIndexNameSessionRepository.class)
+		@ConditionalOnMissingBean
+		@Bean
+		<S extends Session> SessionIndex
+				sessionIndex(FindByIndexNameSessionRepository<S> sessionRepository, ClientRegistrationRepository clientRegistrationRepository) {
+			final var principalClaims = new HashMap<String, String>();
+			if (clientRegistrationRepository instanceof Iterable<?> registrations) {
+				for (var registration : registrations) {
+					final var providerDetails = ((ClientRegistration) registration).getProviderDetails();
+					if (providerDetails.getIssuerUri() != null && StringUtils.hasText(providerDetails.getUserInfoEndpoint().getUserNameAttributeName())) {
+						principalClaims.putIfAbsent(providerDetails.getIssuerUri(), providerDetails.getUserInfoEndpoint().getUserNameAttributeName());
+					}
+				}
+			}
+			return new SpringSessionIndex<>(sessionRepository, issuer -> principalClaims.getOrDefault(issuer, StandardClaimNames.SUB));
+		}
 
-		public HasClientSecurityMatcher() {
-			super(ConfigurationPhase.PARSE_CONFIGURATION);
+		/**
+		 * @param  sessionRepository the Spring Session repository shared by all instances
+		 * @return                   a {@link SpringSessionStore}, for authorized clients refreshed ahead of expiry to be written to the shared sessions right away
+		 */
+		@ConditionalOnBean(SessionRepository.class)
+		@ConditionalOnMissingBean
+		@Bean
+		<S extends Session> SharedSessionStore sharedSessionStore(SessionRepository<S> sessionRepository) {
+			return new SpringSessionStore<>(sessionRepository);
 		}
+	}
 
-		@ConditionalOnExpression("!(T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers:}') && T(org.springframework.util.StringUtils).isEmpty('${com.c4-soft.springaddons.security.client.security-matchers[0]:}'))")
-		static class Value1Condition {
+	/**
+	 * Replaces sessions with encrypted cookies to store authorization requests, security context and authorized clients, so that BFF instances hold no state
+	 * at all. Only if "com.c4-soft.springaddons.security.client.stateless.enabled" is true.
+	 *
+	 * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.client.stateless", name = "enabled")
+	static class StatelessClientConfiguration {
 
+		@ConditionalOnMissingBean
+		@Bean
+		EncryptedCookies encryptedCookies(SpringAddonsOAuth2ClientProperties clientProperties) {
+			final var statelessProperties = clientProperties.getStateless();
+			return new EncryptedCookies(
+					new EncryptedCookieCodec(statelessProperties.getCookieKey(), statelessProperties.getMaxCookieSize()),
+					statelessProperties.isCookieSecure());
 		}
 
-		@ConditionalOnProperty(name = "com.c4-soft.springaddons.security.client.security-matchers[0]")
-		static class Value2Condition {
+		@ConditionalOnMissingBean
+		@Bean
+		EncryptedCookieClientStateRepository statelessStateRepository(
+				ClientRegistrationRepository clientRegistrationRepository,
+				EncryptedCookies encryptedCookies,
+				SpringAddonsOAuth2ClientProperties clientProperties) {
+			return new EncryptedCookieClientStateRepository(
+					clientRegistrationRepository,
+					encryptedCookies,
+					clientProperties.getStateless().getCookieName(),
+					clientProperties.getStateless().getCookieMaxAge());
+		}
 
+		@ConditionalOnMissingBean
+		@Bean
+		EncryptedCookieAuthorizationRequestRepository
+				statelessAuthorizationRequestRepository(EncryptedCookies encryptedCookies, SpringAddonsOAuth2ClientProperties clientProperties) {
+			return new EncryptedCookieAuthorizationRequestRepository(
+					encryptedCookies,
+					clientProperties.getStateless().getAuthorizationRequestCookieName(),
+					clientProperties.getStateless().getAuthorizationRequestMaxAge());
 		}
+	}
 
+	/**
+	 * @return a Post processor for access control in Java configuration which requires users to be authenticated. It is called after "permit-all" configuration
+	 *         property was applied.
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	ClientExpressionInterceptUrlRegistryPostProcessor clientAuthorizePostProcessor() {
+		return registry -> registry.anyRequest().authenticated();
+	}
+
+	/**
+	 * @return a no-op post processor
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	ClientHttpSecurityPostProcessor clientHttpPostProcessor() {
+		return http -> http;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * A {@link SessionIndex} backed by <a href="https://spring.io/projects/spring-session">Spring Session</a>: as sessions are stored in a place shared by all the
+ * client instances (Redis, JDBC, Hazelcast, ...), the index is not duplicated, it is resolved from the sessions themselves:
+ * </p>
+ * <ul>
+ * <li>the sessions of a user are retrieved with the principal name index maintained by the {@link FindByIndexNameSessionRepository}. This index holds the
+ * authentication name, which is the subject only if the user name attribute of the client registrations for the issuer is "sub" (the default for OIDC
+ * providers): logout tokens containing nothing but the subject, sessions of issuers using another principal claim can't be resolved and a custom
+ * {@link SessionIndex} is required for these</li>
+ * <li>these sessions are then filtered on the issuer of the OAuth2 users stored by {@link SpringAddonsOAuth2AuthorizedClientRepository}</li>
+ * </ul>
+ * <p>
+ * Broadcasting an invalidation is achieved by updating (or deleting) the sessions in the shared store, which makes it visible to all the nodes: a logout
+ * token can be received by any instance behind a plain round-robin load-balancer.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class SpringSessionIndex<S extends Session> implements SessionIndex {
+	private final FindByIndexNameSessionRepository<S> sessionRepository;
+	private final Function<String, String> principalClaimByIssuer;
+	private final Set<String> warnedIssuers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param sessionRepository      the Spring Session repository shared by all the client instances
+	 * @param principalClaimByIssuer the claim used as principal name (user name attribute of the client registrations) for a given issuer
+	 */
+	public SpringSessionIndex(FindByIndexNameSessionRepository<S> sessionRepository, Function<String, String> principalClaimByIssuer) {
+		this.sessionRepository = sessionRepository;
+		this.principalClaimByIssuer = principalClaimByIssuer;
+	}
+
+	/**
+	 * @param sessionRepository the Spring Session repository shared by all the client instances, all issuers using "sub" as principal name
+	 */
+	public SpringSessionIndex(FindByIndexNameSessionRepository<S> sessionRepository) {
+		this(sessionRepository, issuer -> StandardClaimNames.SUB);
+	}
+
+	@Override
+	public void add(String issuer, String subject, String sessionId) {
+		// nothing to do: the session itself is the index entry
+	}
+
+	@Override
+	public void remove(String issuer, String subject, String sessionId) {
+		// nothing to do: the session itself is the index entry
+	}
+
+	@Override
+	public Set<String> getSessionIds(String issuer, String subject) {
+		return findSessions(issuer, subject).map(Session::getId).collect(Collectors.toSet());
+	}
+
+	@Override
+	public Set<UserId> getUserIds(String sessionId) {
+		final var session = sessionRepository.findById(sessionId);
+		if (session == null) {
+			return Set.of();
+		}
+		return getOAuth2Users(session).entrySet().stream().map(e -> new UserId(e.getKey(), e.getValue().subject())).collect(Collectors.toSet());
+	}
+
+	@Override
+	public void removeSession(String sessionId) {
+		// nothing to do: the session itself is the index entry
+	}
+
+	@Override
+	public void changeSessionId(String oldSessionId, String newSessionId) {
+		// nothing to do: Spring Session keeps attributes and indexes when changing session ID
+	}
+
+	/**
+	 * Sessions being shared, there is no node-local state to clean: listeners are not notified.
+	 */
+	@Override
+	public void addInvalidationListener(InvalidationListener listener) {
+	}
+
+	@Override
+	public void broadcastInvalidation(String issuer, String subject) {
+		findSessions(issuer, subject).forEach(session -> {
+			final var oauth2Users = new ConcurrentHashMap<>(getOAuth2Users(session));
+			oauth2Users.remove(issuer);
+			if (oauth2Users.isEmpty()) {
+				sessionRepository.deleteById(session.getId());
+			} else {
+				final var authorizedClients = getAuthorizedClients(session).stream().filter(ac -> !ac.matches(issuer, subject)).collect(Collectors.toSet());
+				session.setAttribute(SpringAddonsOAuth2AuthorizedClientRepository.OAUTH2_USERS_KEY, oauth2Users);
+				session.setAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY, authorizedClients);
+				sessionRepository.save(session);
+			}
+		});
+	}
+
+	private Stream<S> findSessions(String issuer, String subject) {
+		final var principalClaim = principalClaimByIssuer.apply(issuer);
+		if (!StandardClaimNames.SUB.equals(principalClaim)) {
+			if (warnedIssuers.add(issuer)) {
+				log.warn(
+						"Sessions of {} are indexed by {}, which is not in logout tokens: back-channel logout needs a custom SessionIndex for this issuer",
+						issuer,
+						principalClaim);
+			}
+			return Stream.empty();
+		}
+		return sessionRepository.findByPrincipalName(subject).values().stream().filter(session -> isLoggedIn(session, issuer, subject));
+	}
+
+	private boolean isLoggedIn(S session, String issuer, String subject) {
+		final var user = getOAuth2Users(session).get(issuer);
+		return user != null && Objects.equals(subject, user.subject());
+	}
+
+	private Map<String, CompactOAuth2User> getOAuth2Users(S session) {
+		final Map<String, CompactOAuth2User> users = session.getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.OAUTH2_USERS_KEY);
+		return users == null ? Map.of() : users;
+	}
+
+	private Set<CompactAuthorizedClient> getAuthorizedClients(S session) {
+		final Set<CompactAuthorizedClient> authorizedClients = session.getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY);
+		return authorizedClients == null ? Set.of() : authorizedClients;
+	}
+}
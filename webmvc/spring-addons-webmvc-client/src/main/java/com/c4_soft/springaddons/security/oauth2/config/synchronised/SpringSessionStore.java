@@ -0,0 +1,44 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * A {@link SharedSessionStore} backed by a <a href="https://spring.io/projects/spring-session">Spring Session</a> {@link SessionRepository}: sessions are
+ * (re)loaded from the repository on each access and saved right after an attribute is written.
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class SpringSessionStore<S extends Session> implements SharedSessionStore {
+	private final SessionRepository<S> sessionRepository;
+
+	/**
+	 * @param sessionRepository the Spring Session repository shared by all the client instances
+	 */
+	public SpringSessionStore(SessionRepository<S> sessionRepository) {
+		this.sessionRepository = sessionRepository;
+	}
+
+	@Override
+	public Optional<Instant> getLastAccessedTime(String sessionId) {
+		return Optional.ofNullable(sessionRepository.findById(sessionId)).map(Session::getLastAccessedTime);
+	}
+
+	@Override
+	public <T> T getAttribute(String sessionId, String name) {
+		final var session = sessionRepository.findById(sessionId);
+		return session == null ? null : session.getAttribute(name);
+	}
+
+	@Override
+	public void setAttribute(String sessionId, String name, Object value) {
+		final var session = sessionRepository.findById(sessionId);
+		if (session != null) {
+			session.setAttribute(name, value);
+			sessionRepository.save(session);
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProvider;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.session.MapSessionRepository;
+
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.InMemorySessionIndex;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties.RefreshAheadProperties;
+
+import jakarta.servlet.http.HttpSessionEvent;
+
+public class AuthorizedClientRefreshAheadSchedulerTest {
+	private static final String ISSUER = "https://localhost:8443/realms/master";
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak").clientId("spring-addons")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri(ISSUER + "/protocol/openid-connect/auth").tokenUri(ISSUER + "/protocol/openid-connect/token").issuerUri(ISSUER)
+			.userNameAttributeName("sub").build();
+	private final SpringAddonsOAuth2AuthorizedClientRepository repository =
+			new SpringAddonsOAuth2AuthorizedClientRepository(new InMemoryClientRegistrationRepository(registration));
+	private final SingleFlightOAuth2AuthorizedClientManager manager = new SingleFlightOAuth2AuthorizedClientManager(authorizeRequest -> null);
+	private final OAuth2AuthenticationToken auth = new OAuth2AuthenticationToken(
+			new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("USER")), Map.of("sub", "ch4mp"), "sub"),
+			List.of(new SimpleGrantedAuthority("USER")),
+			"keycloak");
+	private final AtomicInteger refreshes = new AtomicInteger();
+	private final OAuth2AuthorizedClientProvider refreshTokenProvider = context -> {
+		refreshes.incrementAndGet();
+		return authorizedClient("access-2", Duration.ofMinutes(5));
+	};
+
+	@Test
+	public void givenTokenAboutToExpire_whenRefreshAll_thenRefreshedClientIsWrittenToTheSessionByItsNextRequest() {
+		final var session = login(Duration.ofSeconds(10));
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			scheduler.refreshAll();
+
+			assertThat(refreshes).hasValue(1);
+			assertThat(sessionAccessTokens(session)).containsExactly("access-1");
+			assertThat(repository.loadAuthorizedClients(session)).extracting(ac -> ac.getAccessToken().getTokenValue()).containsExactly("access-2");
+
+			// already refreshed, even if not written to the session yet
+			scheduler.refreshAll();
+			assertThat(refreshes).hasValue(1);
+
+			final OAuth2AuthorizedClient loaded = repository.loadAuthorizedClient("keycloak", auth, request(session));
+			assertThat(loaded.getAccessToken().getTokenValue()).isEqualTo("access-2");
+			assertThat(sessionAccessTokens(session)).containsExactly("access-2");
+		}
+	}
+
+	@Test
+	public void givenSharedSessionStore_whenRefreshAll_thenRefreshedClientIsWrittenToTheStoreRightAway() {
+		final var sessionRepository = new MapSessionRepository(new ConcurrentHashMap<>());
+		final var sharedStore = new SpringSessionStore<>(sessionRepository);
+		final var sharedRepository = new SpringAddonsOAuth2AuthorizedClientRepository(
+				new InMemoryClientRegistrationRepository(registration),
+				new InMemorySessionIndex(),
+				sharedStore);
+		final var storedSession = sessionRepository.createSession();
+		sessionRepository.save(storedSession);
+
+		// login request served by this node: the session is tracked on it, and the authorized client written to the shared store
+		final var localSession = new MockHttpSession(null, storedSession.getId());
+		sharedRepository.sessionCreated(new HttpSessionEvent(localSession));
+		sharedRepository.saveAuthorizedClient(authorizedClient("access-1", Duration.ofSeconds(10)), auth, request(localSession), new MockHttpServletResponse());
+		sharedStore.setAttribute(
+				storedSession.getId(),
+				SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY,
+				localSession.getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY));
+		localSession.removeAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY);
+
+		final var properties = new RefreshAheadProperties();
+		properties.setInterval(Duration.ofHours(1));
+		properties.setAdvance(Duration.ofSeconds(30));
+		properties.setJitter(Duration.ZERO);
+		try (var scheduler = new AuthorizedClientRefreshAheadScheduler(sharedRepository, manager, properties, refreshTokenProvider)) {
+			scheduler.refreshAll();
+		}
+
+		// the next request can be served by another node: the refreshed client must already be in the shared session
+		assertThat(refreshes).hasValue(1);
+		final Set<CompactAuthorizedClient> stored =
+				sessionRepository.findById(storedSession.getId()).getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY);
+		assertThat(stored).extracting(CompactAuthorizedClient::accessTokenValue).containsExactly("access-2");
+	}
+
+	@Test
+	public void givenTokenNotAboutToExpireOrIdleSession_whenRefreshAll_thenNothingIsRefreshed() throws InterruptedException {
+		final var session = login(Duration.ofHours(1));
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			scheduler.refreshAll();
+		}
+		assertThat(refreshes).hasValue(0);
+
+		login(Duration.ofSeconds(10));
+		Thread.sleep(10L);
+		try (var scheduler = scheduler(Duration.ZERO)) {
+			scheduler.refreshAll();
+		}
+		assertThat(refreshes).hasValue(0);
+		assertThat(sessionAccessTokens(session)).containsExactly("access-1");
+	}
+
+	@Test
+	public void givenRequestTimeRefreshInFlight_whenRefreshAll_thenSchedulerJoinsItInsteadOfRefreshingAgain() throws Exception {
+		final var session = login(Duration.ofSeconds(10));
+		final var requestRefreshStarted = new CountDownLatch(1);
+		final var releaseRequestRefresh = new CountDownLatch(1);
+		final var executor = Executors.newFixedThreadPool(2);
+		try (var scheduler = scheduler(Duration.ofMinutes(5))) {
+			final var requestRefresh = executor.submit(() -> manager.singleFlight(session.getId(), "keycloak", () -> {
+				requestRefreshStarted.countDown();
+				try {
+					releaseRequestRefresh.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return authorizedClient("access-from-request", Duration.ofMinutes(5));
+			}));
+			requestRefreshStarted.await();
+			final var refreshAhead = executor.submit(scheduler::refreshAll);
+			Thread.sleep(200L);
+			releaseRequestRefresh.countDown();
+			requestRefresh.get();
+			refreshAhead.get();
+
+			assertThat(refreshes).hasValue(0);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private AuthorizedClientRefreshAheadScheduler scheduler(Duration maxIdle) {
+		final var properties = new RefreshAheadProperties();
+		properties.setInterval(Duration.ofHours(1));
+		properties.setAdvance(Duration.ofSeconds(30));
+		properties.setJitter(Duration.ZERO);
+		properties.setMaxIdle(maxIdle);
+		return new AuthorizedClientRefreshAheadScheduler(repository, manager, properties, refreshTokenProvider);
+	}
+
+	private MockHttpSession login(Duration accessTokenValidity) {
+		final var session = new MockHttpSession();
+		repository.sessionCreated(new HttpSessionEvent(session));
+		repository.saveAuthorizedClient(authorizedClient("access-1", accessTokenValidity), auth, request(session), new MockHttpServletResponse());
+		return session;
+	}
+
+	private OAuth2AuthorizedClient authorizedClient(String accessToken, Duration validity) {
+		final var now = Instant.now();
+		return new OAuth2AuthorizedClient(
+				registration,
+				"ch4mp",
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plus(validity)),
+				new OAuth2RefreshToken("refresh-" + accessToken, now));
+	}
+
+	private static MockHttpServletRequest request(MockHttpSession session) {
+		final var request = new MockHttpServletRequest();
+		request.setSession(session);
+		return request;
+	}
+
+	private static List<String> sessionAccessTokens(MockHttpSession session) {
+		@SuppressWarnings("unchecked")
+		final var authorizedClients = (Set<CompactAuthorizedClient>) session.getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY);
+		return authorizedClients.stream().map(CompactAuthorizedClient::accessTokenValue).toList();
+	}
+}
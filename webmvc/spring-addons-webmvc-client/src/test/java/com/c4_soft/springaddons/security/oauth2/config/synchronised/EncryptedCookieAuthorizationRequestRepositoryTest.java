@@ -0,0 +1,68 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static com.c4_soft.springaddons.security.oauth2.config.synchronised.EncryptedCookieClientStateRepositoryTest.request;
+import static com.c4_soft.springaddons.security.oauth2.config.synchronised.EncryptedCookieClientStateRepositoryTest.setCookies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+import jakarta.servlet.http.Cookie;
+
+public class EncryptedCookieAuthorizationRequestRepositoryTest {
+	private final EncryptedCookieAuthorizationRequestRepository repository = new EncryptedCookieAuthorizationRequestRepository(
+			new EncryptedCookies(new EncryptedCookieCodec(EncryptedCookieClientStateRepositoryTest.KEY, 3800), true),
+			"BFF_AUTHZ",
+			Duration.ofMinutes(5));
+
+	@Test
+	public void givenAuthorizationRequestWasSaved_whenCallbackHasTheSameState_thenItIsLoadedAndRemoved() {
+		final var cookies = saved();
+
+		final var callback = callback(cookies, "state");
+		final var response = new MockHttpServletResponse();
+		final var removed = repository.removeAuthorizationRequest(callback, response);
+
+		assertThat(removed.getState()).isEqualTo("state");
+		assertThat(removed.getScopes()).containsExactlyInAnyOrder("openid", "profile");
+		assertThat(removed.<String>getAttribute("registration_id")).isEqualTo("keycloak");
+		assertThat(response.getHeaders(HttpHeaders.SET_COOKIE)).hasSize(cookies.size()).allMatch(header -> header.contains("Max-Age=0"));
+	}
+
+	@Test
+	public void givenAuthorizationRequestWasSaved_whenCallbackHasAnotherStateOrNone_thenNothingIsLoaded() {
+		final var cookies = saved();
+
+		assertThat(repository.loadAuthorizationRequest(callback(cookies, "other"))).isNull();
+		assertThat(repository.loadAuthorizationRequest(request(cookies))).isNull();
+
+		final var response = new MockHttpServletResponse();
+		assertThat(repository.removeAuthorizationRequest(callback(cookies, "other"), response)).isNull();
+		assertThat(response.getHeaders(HttpHeaders.SET_COOKIE)).isEmpty();
+	}
+
+	private List<Cookie> saved() {
+		final var authorizationRequest = OAuth2AuthorizationRequest.authorizationCode().authorizationUri("https://localhost:8443/auth").clientId("bff")
+				.redirectUri("https://localhost:8080/login/oauth2/code/keycloak").scopes(Set.of("openid", "profile")).state("state")
+				.attributes(Map.of("registration_id", "keycloak")).build();
+		final var response = new MockHttpServletResponse();
+		repository.saveAuthorizationRequest(authorizationRequest, new MockHttpServletRequest(), response);
+		return setCookies(response);
+	}
+
+	private static MockHttpServletRequest callback(List<Cookie> cookies, String state) {
+		final var request = request(cookies);
+		request.setParameter("state", state);
+		return request;
+	}
+}
@@ -0,0 +1,138 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+
+import com.c4_soft.springaddons.security.oauth2.config.EncryptedCookieCodec;
+
+import jakarta.servlet.http.Cookie;
+
+public class EncryptedCookieClientStateRepositoryTest {
+	static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+	private static final String ISSUER = "https://localhost:8443/realms/master";
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("keycloak").clientId("spring-addons")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE).redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri(ISSUER + "/protocol/openid-connect/auth").tokenUri(ISSUER + "/protocol/openid-connect/token").issuerUri(ISSUER)
+			.userNameAttributeName("sub").build();
+	private final EncryptedCookieClientStateRepository repository = new EncryptedCookieClientStateRepository(
+			new InMemoryClientRegistrationRepository(registration),
+			new EncryptedCookies(new EncryptedCookieCodec(KEY, 1000), true),
+			"BFF",
+			Duration.ofHours(1));
+	private final OAuth2AuthenticationToken auth = new OAuth2AuthenticationToken(
+			new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("NICE")), Map.of("sub", "ch4mp"), "sub"),
+			List.of(new SimpleGrantedAuthority("NICE")),
+			"keycloak");
+
+	@Test
+	public void givenLoginWasSaved_whenNextRequestSendsTheCookies_thenAuthenticationAndAuthorizedClientAreRestored() {
+		final var cookies = login();
+
+		assertThat(cookies).extracting(Cookie::getName).isNotEmpty().allMatch(name -> name.startsWith("BFF"));
+		final var request = request(cookies);
+		assertThat(repository.containsContext(request)).isTrue();
+		final var restored = repository.loadContext(new HttpRequestResponseHolder(request, new MockHttpServletResponse())).getAuthentication();
+		assertThat(restored.getName()).isEqualTo("ch4mp");
+		assertThat(restored.getAuthorities()).extracting(Object::toString).containsExactly("NICE");
+		final OAuth2AuthorizedClient authorizedClient = repository.loadAuthorizedClient("keycloak", restored, request);
+		assertThat(authorizedClient.getAccessToken().getTokenValue()).isEqualTo("access-token");
+		assertThat(authorizedClient.getClientRegistration()).isSameAs(registration);
+	}
+
+	@Test
+	public void givenStateDidNotChange_whenSaved_thenNoCookieIsWritten() {
+		final var request = request(login());
+		final var response = new MockHttpServletResponse();
+
+		repository.saveContext(new SecurityContextImpl(repository.loadState(request).toAuthentication().get()), request, response);
+
+		assertThat(response.getHeaders(HttpHeaders.SET_COOKIE)).isEmpty();
+	}
+
+	@Test
+	public void givenTamperedCookie_whenLoadingContext_thenThereIsNoAuthentication() {
+		final var cookies = login();
+		final var value = cookies.get(0).getValue();
+		cookies.set(0, new Cookie(cookies.get(0).getName(), value.substring(0, 40) + (value.charAt(40) == 'A' ? 'B' : 'A') + value.substring(41)));
+
+		final var request = request(cookies);
+
+		assertThat(repository.containsContext(request)).isFalse();
+		assertThat((OAuth2AuthorizedClient) repository.loadAuthorizedClient("keycloak", auth, request)).isNull();
+	}
+
+	@Test
+	public void givenLoggedIn_whenEmptyContextIsSaved_thenAllChunksAreExpired() {
+		final var cookies = login();
+		final var request = request(cookies);
+		final var response = new MockHttpServletResponse();
+
+		repository.saveContext(SecurityContextHolder.createEmptyContext(), request, response);
+
+		assertThat(response.getHeaders(HttpHeaders.SET_COOKIE)).hasSize(cookies.size()).allMatch(header -> header.contains("Max-Age=0"));
+		assertThat(repository.containsContext(request)).isFalse();
+	}
+
+	private List<Cookie> login() {
+		final var request = new MockHttpServletRequest();
+		final var response = new MockHttpServletResponse();
+		final var now = Instant.now();
+		repository.saveAuthorizedClient(
+				new OAuth2AuthorizedClient(
+						registration,
+						"ch4mp",
+						new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", now, now.plusSeconds(300))),
+				auth,
+				request,
+				response);
+		repository.saveContext(new SecurityContextImpl(auth), request, response);
+		return setCookies(response);
+	}
+
+	/**
+	 * @param  response a response
+	 * @return          the cookies a browser would send back (only the last value for each name, and not the expired ones)
+	 */
+	static List<Cookie> setCookies(MockHttpServletResponse response) {
+		final var cookies = new LinkedHashMap<String, Cookie>();
+		for (var header : response.getHeaders(HttpHeaders.SET_COOKIE)) {
+			final var nameValue = header.split(";")[0].split("=", 2);
+			if (header.contains("Max-Age=0")) {
+				cookies.remove(nameValue[0]);
+			} else {
+				cookies.put(nameValue[0], new Cookie(nameValue[0], nameValue[1]));
+			}
+		}
+		return new ArrayList<>(cookies.values());
+	}
+
+	static MockHttpServletRequest request(List<Cookie> cookies) {
+		final var request = new MockHttpServletRequest();
+		request.setCookies(cookies.toArray(Cookie[]::new));
+		return request;
+	}
+}
@@ -0,0 +1,34 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class PathPatternTrieRequestMatcherTest {
+
+	@Test
+	public void givenPathPatterns_whenMatching_thenPathWithinApplicationIsUsed() {
+		final var matcher = new PathPatternTrieRequestMatcher("/api/public/**", "/actuator/health/{probe}");
+
+		assertThat(matcher.matches(request("/app", "/app/api/public/greet"))).isTrue();
+		assertThat(matcher.matches(request("/app", "/app/actuator/health/liveness"))).isTrue();
+		assertThat(matcher.matches(request("/app", "/app/api/private/greet"))).isFalse();
+	}
+
+	@Test
+	public void givenAntPatternsWhichAreNotValidPathPatterns_whenMatching_thenTheyAreStillMatchedAsAntPatterns() {
+		final var matcher = new PathPatternTrieRequestMatcher("/api/public/**", "/**/*.css");
+
+		assertThat(matcher.matches(request("", "/ui/styles/main.css"))).isTrue();
+		assertThat(matcher.matches(request("", "/api/public/greet"))).isTrue();
+		assertThat(matcher.matches(request("", "/ui/index.html"))).isFalse();
+	}
+
+	private static MockHttpServletRequest request(String contextPath, String requestUri) {
+		final var request = new MockHttpServletRequest("GET", requestUri);
+		request.setContextPath(contextPath);
+		request.setServletPath(requestUri.substring(contextPath.length()));
+		return request;
+	}
+}
@@ -0,0 +1,144 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public class SingleFlightOAuth2AuthorizedClientManagerTest {
+	private static final int CONCURRENT_REQUESTS = 64;
+
+	@Test
+	public void givenConcurrentRequestsInSameSession_whenAuthorize_thenDelegateIsCalledOnce() throws Exception {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightOAuth2AuthorizedClientManager(delegate);
+		final var session = new MockHttpSession();
+
+		final var results = authorizeConcurrently(manager, i -> session);
+
+		assertThat(delegate.calls.get()).isEqualTo(1);
+		assertThat(results).hasSize(CONCURRENT_REQUESTS).allMatch(ac -> ac == results.get(0));
+	}
+
+	@Test
+	public void givenConcurrentRequestsInDifferentSessions_whenAuthorize_thenDelegateIsCalledForEachSession() throws Exception {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightOAuth2AuthorizedClientManager(delegate);
+
+		authorizeConcurrently(manager, i -> new MockHttpSession());
+
+		assertThat(delegate.calls.get()).isEqualTo(CONCURRENT_REQUESTS);
+	}
+
+	@Test
+	public void givenSequentialRequestsInSameSession_whenAuthorize_thenDelegateIsCalledEachTime() {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightOAuth2AuthorizedClientManager(delegate);
+		final var session = new MockHttpSession();
+
+		manager.authorize(authorizeRequest(session));
+		manager.authorize(authorizeRequest(session));
+
+		assertThat(delegate.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void givenBackgroundRefreshInFlight_whenRequestAuthorizesSameSessionAndRegistration_thenItJoinsTheBackgroundRefresh() throws Exception {
+		final var delegate = new SlowAuthorizedClientManager();
+		final var manager = new SingleFlightOAuth2AuthorizedClientManager(delegate);
+		final var session = new MockHttpSession();
+		final var backgroundRefreshes = new AtomicInteger();
+		final var refreshStarted = new CountDownLatch(1);
+		final var executor = Executors.newSingleThreadExecutor();
+		try {
+			final var background = executor.submit(() -> manager.singleFlight(session.getId(), "keycloak", () -> {
+				backgroundRefreshes.incrementAndGet();
+				refreshStarted.countDown();
+				return delegate.authorize(authorizeRequest(session));
+			}));
+			refreshStarted.await();
+
+			final var authorizedClient = manager.authorize(authorizeRequest(session));
+
+			assertThat(authorizedClient).isSameAs(background.get());
+			assertThat(backgroundRefreshes).hasValue(1);
+			assertThat(delegate.calls).hasValue(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static ArrayList<OAuth2AuthorizedClient> authorizeConcurrently(OAuth2AuthorizedClientManager manager, SessionFactory sessions) throws Exception {
+		final var executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+		try {
+			final var start = new CountDownLatch(1);
+			final var futures = new ArrayList<Future<OAuth2AuthorizedClient>>();
+			for (int i = 0; i < CONCURRENT_REQUESTS; ++i) {
+				final var authorizeRequest = authorizeRequest(sessions.get(i));
+				futures.add(executor.submit((Callable<OAuth2AuthorizedClient>) () -> {
+					start.await();
+					return manager.authorize(authorizeRequest);
+				}));
+			}
+			start.countDown();
+			final var results = new ArrayList<OAuth2AuthorizedClient>();
+			for (var future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static OAuth2AuthorizeRequest authorizeRequest(MockHttpSession session) {
+		final var request = new MockHttpServletRequest();
+		request.setSession(session);
+		return OAuth2AuthorizeRequest.withClientRegistrationId("keycloak").principal("ch4mp").attribute(HttpServletRequest.class.getName(), request).build();
+	}
+
+	private static interface SessionFactory {
+		MockHttpSession get(int i);
+	}
+
+	/**
+	 * Simulates a round-trip to the token endpoint
+	 */
+	private static class SlowAuthorizedClientManager implements OAuth2AuthorizedClientManager {
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public OAuth2AuthorizedClient authorize(OAuth2AuthorizeRequest authorizeRequest) {
+			calls.incrementAndGet();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			final var registration = ClientRegistration.withRegistrationId(authorizeRequest.getClientRegistrationId()).clientId("spring-addons")
+					.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS).tokenUri("https://localhost:8443/token").build();
+			final var now = Instant.now();
+			return new OAuth2AuthorizedClient(
+					registration,
+					authorizeRequest.getPrincipal().getName(),
+					new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "refreshed", now, now.plusSeconds(300)));
+		}
+	}
+}
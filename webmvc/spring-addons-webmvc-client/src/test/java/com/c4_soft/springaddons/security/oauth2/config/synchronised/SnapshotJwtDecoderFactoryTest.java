@@ -0,0 +1,54 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshot;
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+public class SnapshotJwtDecoderFactoryTest {
+	// nothing listens on this port: the background revalidation fails and the snapshot is kept
+	static final String ISSUER = "https://localhost:1/realms/master";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void givenSnapshotIsPersisted_whenAuthorizationServerIsNotReachable_thenTokensAreDecodedWithSnapshotKeys() throws Exception {
+		final var key = new RSAKeyGenerator(2048).keyID("key-1").algorithm(JWSAlgorithm.RS256).generate();
+		final var store = new IssuerMetadataSnapshotStore(tmp.getRoot().toPath());
+		store.save(
+				new IssuerMetadataSnapshot(
+						ISSUER,
+						ISSUER + "/protocol/openid-connect/certs",
+						Map.of("issuer", ISSUER),
+						new JWKSet(key).toPublicJWKSet().toString(),
+						Instant.now()));
+		final var issuer = new IssuerProperties();
+		issuer.setLocation(URI.create(ISSUER));
+
+		final var decoder = new SnapshotJwtDecoderFactory(store).create(issuer);
+
+		final var jwt = new SignedJWT(
+				new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("key-1").build(),
+				new JWTClaimsSet.Builder().issuer(ISSUER).subject("ch4mp").expirationTime(new Date(System.currentTimeMillis() + 60_000)).build());
+		jwt.sign(new RSASSASigner(key));
+		assertThat(decoder.decode(jwt.serialize()).getSubject()).isEqualTo("ch4mp");
+	}
+}
@@ -0,0 +1,51 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.csrf.CsrfFilter;
+import org.springframework.security.web.csrf.DeferredCsrfToken;
+import org.springframework.security.web.csrf.XorCsrfTokenRequestAttributeHandler;
+
+import jakarta.servlet.http.Cookie;
+
+public class SpringAddonsCookieCsrfTokenRepositoryTest {
+
+	@Test
+	public void givenRequestHasNoCsrfCookie_whenDeferredTokenIsLoaded_thenCookieIsWrittenWithARandomUuid() throws Exception {
+		final var request = new MockHttpServletRequest("GET", "/");
+		final var response = new MockHttpServletResponse();
+
+		loadDeferredToken(request, response);
+
+		final var cookie = response.getCookie("XSRF-TOKEN");
+		assertThat(cookie).isNotNull();
+		assertThat(cookie.isHttpOnly()).isTrue();
+		assertThat(UUID.fromString(cookie.getValue()).version()).isEqualTo(4);
+	}
+
+	@Test
+	public void givenRequestHasCsrfCookie_whenDeferredTokenIsLoaded_thenNoCookieIsWritten() throws Exception {
+		final var request = new MockHttpServletRequest("GET", "/");
+		request.setCookies(new Cookie("XSRF-TOKEN", UUID.randomUUID().toString()));
+		final var response = new MockHttpServletResponse();
+
+		loadDeferredToken(request, response);
+
+		assertThat(response.getCookies()).isEmpty();
+	}
+
+	private static void loadDeferredToken(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+		final var csrfFilter = new CsrfFilter(new SpringAddonsCookieCsrfTokenRepository(true));
+		csrfFilter.setRequestHandler(new XorCsrfTokenRequestAttributeHandler());
+		final var chain = new MockFilterChain();
+
+		csrfFilter.doFilter(request, response, chain);
+		((DeferredCsrfToken) chain.getRequest().getAttribute(DeferredCsrfToken.class.getName())).get();
+	}
+}
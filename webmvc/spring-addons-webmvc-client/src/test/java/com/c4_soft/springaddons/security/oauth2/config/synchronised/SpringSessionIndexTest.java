@@ -0,0 +1,133 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+
+import com.c4_soft.springaddons.security.oauth2.config.CompactAuthorizedClient;
+import com.c4_soft.springaddons.security.oauth2.config.CompactOAuth2User;
+import com.c4_soft.springaddons.security.oauth2.config.SessionIndex.UserId;
+
+public class SpringSessionIndexTest {
+	private static final String KEYCLOAK = "https://localhost:8443/realms/master";
+	private static final String AUTH0 = "https://dev-ch4mpy.eu.auth0.com/";
+
+	@Test
+	public void givenSessionsOfSeveralUsers_whenGetSessionIds_thenOnlySessionsOfThatUserWithThatIssuerAreReturned() {
+		final var store = new SharedSessionStore();
+		final var index = new SpringSessionIndex<>(store);
+		final var session1 = store.login("ch4mp", KEYCLOAK);
+		final var session2 = store.login("ch4mp", KEYCLOAK, AUTH0);
+		store.login("ch4mp", AUTH0);
+		store.login("tonton-pirate", KEYCLOAK);
+
+		assertThat(index.getSessionIds(KEYCLOAK, "ch4mp")).containsExactlyInAnyOrder(session1, session2);
+		assertThat(index.getSessionIds(KEYCLOAK, "machin")).isEmpty();
+		assertThat(index.getUserIds(session2)).containsExactlyInAnyOrder(new UserId(KEYCLOAK, "ch4mp"), new UserId(AUTH0, "ch4mp"));
+		assertThat(index.getUserIds("missing")).isEmpty();
+	}
+
+	@Test
+	public void givenTwoNodesSharingTheStore_whenOneBroadcastsInvalidation_thenTheOtherNoLongerFindsTheSessions() {
+		final var store = new SharedSessionStore();
+		final var node1 = new SpringSessionIndex<>(store);
+		final var node2 = new SpringSessionIndex<>(store);
+		final var singleIssuerSession = store.login("ch4mp", KEYCLOAK);
+		final var multiIssuerSession = store.login("ch4mp", KEYCLOAK, AUTH0);
+		final var otherUserSession = store.login("tonton-pirate", KEYCLOAK);
+
+		node1.broadcastInvalidation(KEYCLOAK, "ch4mp");
+
+		assertThat(node2.getSessionIds(KEYCLOAK, "ch4mp")).isEmpty();
+		assertThat(store.findById(singleIssuerSession)).isNull();
+		assertThat(node2.getUserIds(multiIssuerSession)).containsExactly(new UserId(AUTH0, "ch4mp"));
+		final Set<CompactAuthorizedClient> remainingClients = store
+				.findById(multiIssuerSession)
+				.getAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY);
+		assertThat(remainingClients).extracting(CompactAuthorizedClient::issuer).containsExactly(AUTH0);
+		assertThat(node2.getSessionIds(KEYCLOAK, "tonton-pirate")).containsExactly(otherUserSession);
+	}
+
+	@Test
+	public void givenIssuerWithPrincipalClaimOtherThanSub_whenGetSessionIds_thenNoSessionIsResolved() {
+		final var store = new SharedSessionStore();
+		final var index = new SpringSessionIndex<>(store, issuer -> KEYCLOAK.equals(issuer) ? "preferred_username" : "sub");
+		store.login("ch4mp", KEYCLOAK);
+		final var auth0Session = store.login("ch4mp", AUTH0);
+
+		assertThat(index.getSessionIds(KEYCLOAK, "ch4mp")).isEmpty();
+		assertThat(index.getSessionIds(AUTH0, "ch4mp")).containsExactly(auth0Session);
+	}
+
+	/**
+	 * Stand-in for a Spring Session repository shared by several nodes (Redis, JDBC, ...)
+	 */
+	static class SharedSessionStore implements FindByIndexNameSessionRepository<MapSession> {
+		private final Map<String, MapSession> sessions = new ConcurrentHashMap<>();
+
+		String login(String subject, String... issuers) {
+			final var session = createSession();
+			final var users = new ConcurrentHashMap<String, CompactOAuth2User>();
+			final var clients = ConcurrentHashMap.<CompactAuthorizedClient>newKeySet();
+			for (var issuer : issuers) {
+				users.put(issuer, new CompactOAuth2User(issuer, subject, null, subject, "id-token", Instant.now(), Instant.now().plusSeconds(300)));
+				clients.add(
+						new CompactAuthorizedClient(
+								issuer,
+								issuer,
+								subject,
+								"access-token",
+								Instant.now(),
+								Instant.now().plusSeconds(300),
+								Set.of(),
+								null,
+								null,
+								null));
+			}
+			session.setAttribute(PRINCIPAL_NAME_INDEX_NAME, subject);
+			session.setAttribute(SpringAddonsOAuth2AuthorizedClientRepository.OAUTH2_USERS_KEY, users);
+			session.setAttribute(SpringAddonsOAuth2AuthorizedClientRepository.AUTHORIZED_CLIENTS_KEY, clients);
+			save(session);
+			return session.getId();
+		}
+
+		@Override
+		public MapSession createSession() {
+			return new MapSession();
+		}
+
+		@Override
+		public void save(MapSession session) {
+			sessions.put(session.getId(), new MapSession(session));
+		}
+
+		@Override
+		public MapSession findById(String id) {
+			final var session = sessions.get(id);
+			return session == null ? null : new MapSession(session);
+		}
+
+		@Override
+		public void deleteById(String id) {
+			sessions.remove(id);
+		}
+
+		@Override
+		public Map<String, MapSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+			return sessions
+					.values()
+					.stream()
+					.filter(session -> Objects.equals(indexValue, session.getAttribute(indexName)))
+					.collect(Collectors.toMap(MapSession::getId, MapSession::new));
+		}
+	}
+}
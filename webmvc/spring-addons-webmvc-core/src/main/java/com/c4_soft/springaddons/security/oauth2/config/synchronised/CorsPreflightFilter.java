@@ -0,0 +1,52 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.RequestPath;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.c4_soft.springaddons.security.oauth2.config.CorsPolicies;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers accepted CORS preflight requests with the headers precomputed by {@link CorsPolicies}, without going down the rest of the filter chain. Rejected
+ * preflights and requests to paths without CORS configuration continue down the chain.
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class CorsPreflightFilter extends OncePerRequestFilter {
+	private final CorsPolicies corsPolicies;
+
+	public CorsPreflightFilter(CorsPolicies corsPolicies) {
+		this.corsPolicies = corsPolicies;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		if (!CorsUtils.isPreFlightRequest(request)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		final var requestHeaders = new HttpHeaders();
+		for (var name : new String[] { HttpHeaders.ORIGIN, HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS }) {
+			requestHeaders.addAll(name, Collections.list(request.getHeaders(name)));
+		}
+		final var path = RequestPath.parse(request.getRequestURI(), request.getContextPath()).pathWithinApplication();
+		final var responseHeaders = corsPolicies.preflight(path, requestHeaders);
+		if (responseHeaders == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		responseHeaders.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+		response.setStatus(HttpServletResponse.SC_OK);
+	}
+}
@@ -0,0 +1,146 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Holds a single {@link JwtDecoder} per issuer, so that the resource-server authentication and the client back-channel logout of an application share the same
+ * decoders (and so the same JWK-set caches) instead of each building its own.
+ * </p>
+ * <p>
+ * Decoders are handed out behind a delegate which can be rebuilt: when this registry is started after having been stopped (which is what Spring does around a
+ * CRaC checkpoint and restore), each decoder is rebuilt in the background (OIDC discovery and fresh connections to the JWK-set endpoint), while the decoder
+ * restored from the checkpoint (and its JWK-set cache) keeps serving requests until it is replaced.
+ * </p>
+ * <p>
+ * Stopping the registry does not close any connection: the JWK-set and introspection endpoints are called through HTTP clients this registry does not own
+ * (JDK HttpURLConnection keep-alive cache used by the decoders RestTemplate), so connections opened before a checkpoint are left open. Run the JVM with
+ * -Dhttp.keepAlive=false if no connection must be part of the checkpoint.
+ * </p>
+ * <p>
+ * Whatever the factory which built it, each decoder handed out by this registry validates the "iss" claim against the issuer it is registered for. Issuers are
+ * registered without trailing slash, so that "https://idp.example.com/" and "https://idp.example.com" share a decoder.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class JwtDecoderRegistry implements SmartLifecycle {
+	private final Map<String, RefreshableJwtDecoder> decoders = new ConcurrentHashMap<>();
+	private volatile boolean running = false;
+	private volatile boolean stopped = false;
+	private volatile Thread restartRefresh;
+
+	/**
+	 * @param  issuer  OP issuer URI
+	 * @param  factory called only if no decoder is registered yet for this issuer (and again, in the background, to rebuild the decoder after a restore)
+	 * @return         the decoder registered for the issuer
+	 */
+	public JwtDecoder getOrCreate(String issuer, Supplier<JwtDecoder> factory) {
+		return decoders.computeIfAbsent(issuerKey(issuer), iss -> new RefreshableJwtDecoder(iss, factory));
+	}
+
+	/**
+	 * @param  issuer OP issuer URI
+	 * @return        the decoder registered for the issuer, if any
+	 */
+	public Optional<JwtDecoder> get(String issuer) {
+		return issuer == null ? Optional.empty() : Optional.ofNullable(decoders.get(issuerKey(issuer)));
+	}
+
+	/**
+	 * @param  issuer OP issuer URI
+	 * @return        the issuer URI without trailing slash
+	 */
+	public static String issuerKey(String issuer) {
+		return issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer;
+	}
+
+	/**
+	 * Rebuilds all the registered decoders in a background thread. Decoders which fail to be rebuilt (authorization server not reachable, for instance) are
+	 * kept as is.
+	 *
+	 * @return the background thread
+	 */
+	public Thread refreshAll() {
+		final var thread = new Thread(() -> decoders.values().forEach(RefreshableJwtDecoder::refresh), "spring-addons-jwt-decoders-refresh");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	@Override
+	public void start() {
+		if (stopped) {
+			restartRefresh = refreshAll();
+		}
+		running = true;
+	}
+
+	/**
+	 * Flags the registry as stopped so that decoders are rebuilt on next {@link #start()}. Connections are left open (see class Javadoc).
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		stopped = true;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the thread rebuilding decoders started by the last restart, if any
+	 */
+	Optional<Thread> getRestartRefresh() {
+		return Optional.ofNullable(restartRefresh);
+	}
+
+	private static class RefreshableJwtDecoder implements JwtDecoder {
+		private final String issuer;
+		private final Supplier<JwtDecoder> factory;
+		private final OAuth2TokenValidator<Jwt> issuerValidator;
+		private volatile JwtDecoder delegate;
+
+		RefreshableJwtDecoder(String issuer, Supplier<JwtDecoder> factory) {
+			this.issuer = issuer;
+			this.factory = factory;
+			this.issuerValidator = new JwtClaimValidator<Object>(JwtClaimNames.ISS, iss -> iss != null && issuer.equals(issuerKey(iss.toString())));
+			this.delegate = factory.get();
+		}
+
+		@Override
+		public Jwt decode(String token) throws JwtException {
+			final var jwt = delegate.decode(token);
+			final var result = issuerValidator.validate(jwt);
+			if (result.hasErrors()) {
+				throw new JwtValidationException("Unexpected issuer", result.getErrors());
+			}
+			return jwt;
+		}
+
+		void refresh() {
+			try {
+				delegate = factory.get();
+			} catch (RuntimeException e) {
+				log.warn("Failed to rebuild JWT decoder for {}, keeping the previous one", issuer, e);
+			}
+		}
+	}
+}
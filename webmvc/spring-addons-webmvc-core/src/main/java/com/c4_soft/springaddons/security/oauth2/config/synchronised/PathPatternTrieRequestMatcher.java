@@ -0,0 +1,67 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.server.RequestPath;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.springframework.web.util.pattern.PatternParseException;
+
+import com.c4_soft.springaddons.security.oauth2.config.PathPatternTrie;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * {@link RequestMatcher} for a (possibly large) set of path patterns compiled into a {@link PathPatternTrie}: the path within the application is matched
+ * against the patterns sharing its literal prefix only, instead of against each pattern in turn.
+ * </p>
+ * <p>
+ * Servlet permit-all and security-matchers used to be Ant patterns: the ones which are not valid {@link PathPatternParser} patterns (like /**&#47;*.css,
+ * with "**" elsewhere than at the end) are still matched with an {@link AntPathRequestMatcher}, after the trie, and a warning is logged at startup.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+public class PathPatternTrieRequestMatcher implements RequestMatcher {
+	private final PathPatternTrie trie;
+	private final List<AntPathRequestMatcher> antMatchers;
+
+	public PathPatternTrieRequestMatcher(String... patterns) {
+		final var pathPatterns = new ArrayList<String>();
+		final var antPatterns = new ArrayList<AntPathRequestMatcher>();
+		for (final var pattern : patterns == null ? new String[] {} : patterns) {
+			try {
+				PathPatternParser.defaultInstance.parse(pattern);
+				pathPatterns.add(pattern);
+			} catch (PatternParseException e) {
+				log.warn("{} is not a valid path pattern ({}), it is matched as an Ant pattern. Please migrate it to PathPattern syntax.", pattern, e.getMessage());
+				antPatterns.add(new AntPathRequestMatcher(pattern));
+			}
+		}
+		this.trie = new PathPatternTrie(pathPatterns.toArray(String[]::new));
+		this.antMatchers = List.copyOf(antPatterns);
+	}
+
+	@Override
+	public boolean matches(HttpServletRequest request) {
+		if (trie.matches(RequestPath.parse(request.getRequestURI(), request.getContextPath()).pathWithinApplication())) {
+			return true;
+		}
+		for (final var antMatcher : antMatchers) {
+			if (antMatcher.matches(request)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return antMatchers.isEmpty() ? trie.toString() : "%s, Ant %s".formatted(trie, antMatchers);
+	}
+}
@@ -3,7 +3,6 @@ package com.c4_soft.springaddons.security.oauth2.config.synchronised;
 import static org.springframework.security.config.Customizer.withDefaults;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.http.HttpHeaders;
@@ -11,13 +10,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
-import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DeferredCsrfToken;
 import org.springframework.security.web.csrf.XorCsrfTokenRequestAttributeHandler;
-import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.security.web.session.DisableEncodeUrlFilter;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.c4_soft.springaddons.security.oauth2.config.CorsPolicies;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsOAuth2ClientProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
@@ -78,7 +78,7 @@ public class ServletConfigurationSupport {
 			throws Exception {
 		if (permitAll.length > 0) {
 			http.anonymous(withDefaults());
-			http.authorizeHttpRequests(registry -> authorizePostProcessor.authorizeHttpRequests(registry.requestMatchers(permitAll).permitAll()));
+			http.authorizeHttpRequests(registry -> authorizePostProcessor.authorizeHttpRequests(registry.requestMatchers(new PathPatternTrieRequestMatcher(permitAll)).permitAll()));
 		} else {
 			http.authorizeHttpRequests(registry -> authorizePostProcessor.authorizeHttpRequests(registry));
 		}
@@ -89,20 +89,24 @@ public class ServletConfigurationSupport {
 		if (corsProperties.length == 0) {
 			http.cors(cors -> cors.disable());
 		} else {
-			final var source = new UrlBasedCorsConfigurationSource();
-			for (final var corsProps : corsProperties) {
-				final var configuration = new CorsConfiguration();
-				configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-				configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-				configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-				configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-				source.registerCorsConfiguration(corsProps.getPath(), configuration);
-			}
-			http.cors(cors -> cors.configurationSource(source));
+			final var corsPolicies = new CorsPolicies(corsProperties);
+			http.cors(cors -> cors.configurationSource(corsConfigurationSource(corsPolicies)));
+			// answer accepted preflights before anything else in the security filter chain (security context loading, headers writing, etc.)
+			http.addFilterBefore(new CorsPreflightFilter(corsPolicies), DisableEncodeUrlFilter.class);
 		}
 		return http;
 	}
 
+	public static UrlBasedCorsConfigurationSource corsConfigurationSource(CorsProperties[] corsProperties) {
+		return corsConfigurationSource(new CorsPolicies(corsProperties));
+	}
+
+	public static UrlBasedCorsConfigurationSource corsConfigurationSource(CorsPolicies corsPolicies) {
+		final var source = new UrlBasedCorsConfigurationSource();
+		source.setCorsConfigurations(corsPolicies.getConfigurations());
+		return source;
+	}
+
 	public static HttpSecurity configureState(HttpSecurity http, boolean isStatless, SpringAddonsSecurityProperties.Csrf csrfEnum) throws Exception {
 
 		if (isStatless) {
@@ -124,13 +128,13 @@ public class ServletConfigurationSupport {
 			case SESSION:
 				break;
 			case COOKIE_HTTP_ONLY:
-				configurer.csrfTokenRepository(new CookieCsrfTokenRepository()).csrfTokenRequestHandler(delegate::handle);
+				configurer.csrfTokenRepository(new SpringAddonsCookieCsrfTokenRepository(true)).csrfTokenRequestHandler(delegate::handle);
 				http.addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class);
 				break;
 			case COOKIE_ACCESSIBLE_FROM_JS:
 				// Adapted from
 				// https://docs.spring.io/spring-security/reference/5.8/migration/servlet/exploits.html#_i_am_using_angularjs_or_another_javascript_framework
-				configurer.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse()).csrfTokenRequestHandler(delegate::handle);
+				configurer.csrfTokenRepository(new SpringAddonsCookieCsrfTokenRepository(false)).csrfTokenRequestHandler(delegate::handle);
 				http.addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class);
 				break;
 			}
@@ -141,6 +145,10 @@ public class ServletConfigurationSupport {
 
 	/**
 	 * https://docs.spring.io/spring-security/reference/5.8/migration/servlet/exploits.html#_i_am_using_a_single_page_application_with_cookiecsrftokenrepository
+	 * <p>
+	 * Loads the deferred token rather than calling {@link CsrfToken#getToken()}: a token is generated and a cookie written only if the request has none (or if
+	 * it was cleared, on login for instance), and the XOR masking of the token value (which draws from a shared SecureRandom) is skipped.
+	 * </p>
 	 */
 	private static final class CsrfCookieFilter extends OncePerRequestFilter {
 
@@ -148,9 +156,16 @@ public class ServletConfigurationSupport {
 		protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 				throws ServletException,
 				IOException {
-			CsrfToken csrfToken = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
 			// Render the token value to a cookie by causing the deferred token to be loaded
-			csrfToken.getToken();
+			final var deferredCsrfToken = (DeferredCsrfToken) request.getAttribute(DeferredCsrfToken.class.getName());
+			if (deferredCsrfToken != null) {
+				deferredCsrfToken.get();
+			} else {
+				final var csrfToken = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+				if (csrfToken != null) {
+					csrfToken.getToken();
+				}
+			}
 
 			filterChain.doFilter(request, response);
 		}
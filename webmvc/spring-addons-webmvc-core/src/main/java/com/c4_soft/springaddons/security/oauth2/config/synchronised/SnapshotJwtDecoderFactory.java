@@ -0,0 +1,115 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshot;
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.IssuerProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Builds {@link JwtDecoder JWT decoders} from the {@link IssuerMetadataSnapshot snapshots} of an {@link IssuerMetadataSnapshotStore}:
+ * </p>
+ * <ul>
+ * <li>if a snapshot exists for the issuer, the decoder is built without any network call and the snapshot is revalidated in a background thread (the JWK set
+ * of the decoder being replaced with the fresh one)</li>
+ * <li>otherwise, the discovery document and JWK set are fetched synchronously (as Spring Boot does) and saved</li>
+ * </ul>
+ * <p>
+ * The JWK set is held in the cache of the {@link NimbusJwtDecoder}: when a token is signed with an unknown key (rotation), the decoder fetches the JWK set
+ * again and the snapshot is updated with it.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotJwtDecoderFactory {
+	private final IssuerMetadataSnapshotStore store;
+
+	/**
+	 * @param  issuer issuer properties
+	 * @return        a decoder for the tokens of this issuer
+	 */
+	public JwtDecoder create(IssuerProperties issuer) {
+		final var persisted = store.load(issuer.getLocation().toString());
+		final var snapshot = persisted.orElseGet(() -> {
+			final var fetched = store.fetch(issuer);
+			save(fetched);
+			return fetched;
+		});
+
+		final var cache = new SnapshotCache(snapshot);
+		final var decoder = NimbusJwtDecoder.withJwkSetUri(snapshot.jwkSetUri()).cache(cache)
+				.jwsAlgorithms(algorithms -> algorithms.addAll(snapshot.signatureAlgorithms())).build();
+		decoder.setJwtValidator(
+				issuer.getJwkSetUri() == null || issuer.getJwkSetUri().toString().isEmpty()
+						? JwtValidators.createDefaultWithIssuer(snapshot.issuer())
+						: JwtValidators.createDefault());
+
+		if (persisted.isPresent()) {
+			final var thread = new Thread(() -> revalidate(issuer, cache), "spring-addons-issuer-metadata-revalidation");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return decoder;
+	}
+
+	private void revalidate(IssuerProperties issuer, SnapshotCache cache) {
+		try {
+			cache.revalidated(store.fetch(issuer));
+		} catch (RuntimeException e) {
+			log.warn("Failed to revalidate metadata snapshot for {}, keeping the one from {}", issuer.getLocation(), cache.snapshot.fetchedAt(), e);
+		}
+	}
+
+	private void save(IssuerMetadataSnapshot snapshot) {
+		try {
+			store.save(snapshot);
+		} catch (IOException e) {
+			log.warn("Failed to save metadata snapshot for {}", snapshot.issuer(), e);
+		}
+	}
+
+	/**
+	 * Cache for the JWK set of a {@link NimbusJwtDecoder}, pre-populated with a snapshot and saving the JWK set each time it is fetched again.
+	 */
+	private class SnapshotCache extends ConcurrentMapCache {
+		private final String jwkSetUri;
+		private volatile IssuerMetadataSnapshot snapshot;
+
+		SnapshotCache(IssuerMetadataSnapshot snapshot) {
+			super(snapshot.issuer());
+			this.jwkSetUri = snapshot.jwkSetUri();
+			this.snapshot = snapshot;
+			super.put(jwkSetUri, snapshot.jwkSet());
+		}
+
+		void revalidated(IssuerMetadataSnapshot fresh) {
+			if (!jwkSetUri.equals(fresh.jwkSetUri())) {
+				log.warn("JWK set URI for {} changed to {}, it will be used when the decoder is rebuilt", fresh.issuer(), fresh.jwkSetUri());
+			}
+			snapshot = fresh;
+			save(fresh);
+			super.put(jwkSetUri, fresh.jwkSet());
+		}
+
+		@Override
+		public void put(Object key, Object value) {
+			super.put(key, value);
+			if (value instanceof String jwkSet && !snapshot.hasSameJwkSet(jwkSet)) {
+				snapshot = snapshot.withJwkSet(jwkSet, Instant.now());
+				save(snapshot);
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+
+import com.c4_soft.springaddons.security.oauth2.config.CsrfTokenGenerator;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * {@link CookieCsrfTokenRepository} (with default cookie, header and parameter names) generating token values with {@link CsrfTokenGenerator}
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+public class SpringAddonsCookieCsrfTokenRepository implements CsrfTokenRepository {
+	static final String CSRF_HEADER_NAME = "X-XSRF-TOKEN";
+	static final String CSRF_PARAMETER_NAME = "_csrf";
+
+	private final CookieCsrfTokenRepository delegate;
+
+	public SpringAddonsCookieCsrfTokenRepository(boolean isCookieHttpOnly) {
+		this.delegate = isCookieHttpOnly ? new CookieCsrfTokenRepository() : CookieCsrfTokenRepository.withHttpOnlyFalse();
+	}
+
+	@Override
+	public CsrfToken generateToken(HttpServletRequest request) {
+		return new DefaultCsrfToken(CSRF_HEADER_NAME, CSRF_PARAMETER_NAME, CsrfTokenGenerator.generate());
+	}
+
+	@Override
+	public void saveToken(CsrfToken token, HttpServletRequest request, HttpServletResponse response) {
+		delegate.saveToken(token, request, response);
+	}
+
+	@Override
+	public CsrfToken loadToken(HttpServletRequest request) {
+		return delegate.loadToken(request);
+	}
+}
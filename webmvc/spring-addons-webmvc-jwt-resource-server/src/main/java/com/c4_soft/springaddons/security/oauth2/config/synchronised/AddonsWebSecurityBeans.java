@@ -1,6 +1,6 @@
 package com.c4_soft.springaddons.security.oauth2.config.synchronised;
 
-import java.util.Arrays;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
@@ -17,6 +17,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
@@ -34,13 +35,10 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtIss
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.util.StringUtils;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
+import com.c4_soft.springaddons.security.oauth2.config.IssuerMetadataSnapshotStore;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
-import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties.CorsProperties;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -140,20 +138,6 @@ public class AddonsWebSecurityBeans {
 		return httpSecurity -> httpSecurity;
 	}
 
-	CorsConfigurationSource corsConfig(CorsProperties[] corsProperties) {
-		log.debug("Building default CorsConfigurationSource with: {}", Stream.of(corsProperties).toList());
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : corsProperties) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
-	}
-
 	public static interface Jwt2AuthenticationConverter<T extends AbstractAuthenticationToken> extends Converter<Jwt, T> {
 	}
 
@@ -178,12 +162,34 @@ public class AddonsWebSecurityBeans {
 						new OpenidClaimSet(jwt.getClaims(), addonsProperties.getIssuerProperties(jwt.getIssuer()).getUsernameClaim()).getName()));
 	}
 
+	/**
+	 * @return a registry holding a single {@link JwtDecoder} per issuer, shared with the client back-channel logout if any
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	JwtDecoderRegistry jwtDecoderRegistry() {
+		return new JwtDecoderRegistry();
+	}
+
+	/**
+	 * @param  addonsProperties "com.c4-soft.springaddons.security" configuration properties
+	 * @return                  a factory building JWT decoders from the issuers metadata snapshots in "issuer-metadata-snapshots-directory"
+	 */
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security", name = "issuer-metadata-snapshots-directory")
+	@ConditionalOnMissingBean
+	@Bean
+	SnapshotJwtDecoderFactory snapshotJwtDecoderFactory(SpringAddonsSecurityProperties addonsProperties) {
+		return new SnapshotJwtDecoderFactory(new IssuerMetadataSnapshotStore(Path.of(addonsProperties.getIssuerMetadataSnapshotsDirectory())));
+	}
+
 	/**
 	 * Provides with multi-tenancy: builds a AuthenticationManagerResolver<HttpServletRequest> per provided OIDC issuer URI
 	 *
 	 * @param  auth2ResourceServerProperties "spring.security.oauth2.resourceserver" configuration properties
 	 * @param  addonsProperties              "com.c4-soft.springaddons.security" configuration properties
 	 * @param  jwtAuthenticationConverter    converts from a {@link Jwt} to an {@link Authentication} implementation
+	 * @param  jwtDecoderRegistry            where to get (or register) the decoder of each issuer
+	 * @param  snapshotJwtDecoderFactory     if present, decoders are built from issuers metadata snapshots rather than from the authorization servers
 	 * @return                               Multi-tenant {@link AuthenticationManagerResolver<HttpServletRequest>} (one for each configured issuer)
 	 */
 	@ConditionalOnMissingBean
@@ -191,7 +197,9 @@ public class AddonsWebSecurityBeans {
 	AuthenticationManagerResolver<HttpServletRequest> authenticationManagerResolver(
 			OAuth2ResourceServerProperties auth2ResourceServerProperties,
 			SpringAddonsSecurityProperties addonsProperties,
-			Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter) {
+			Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter,
+			JwtDecoderRegistry jwtDecoderRegistry,
+			Optional<SnapshotJwtDecoderFactory> snapshotJwtDecoderFactory) {
 		final var jwtProps = Optional.ofNullable(auth2ResourceServerProperties).map(OAuth2ResourceServerProperties::getJwt);
 		// @formatter:off
 		Optional.ofNullable(jwtProps.map(OAuth2ResourceServerProperties.Jwt::getIssuerUri)).orElse(jwtProps.map(OAuth2ResourceServerProperties.Jwt::getJwkSetUri))
@@ -203,9 +211,13 @@ public class AddonsWebSecurityBeans {
 
 		final Map<String, AuthenticationManager> jwtManagers =
 				Stream.of(addonsProperties.getIssuers()).collect(Collectors.toMap(issuer -> issuer.getLocation().toString(), issuer -> {
-					JwtDecoder decoder = issuer.getJwkSetUri() != null && StringUtils.hasLength(issuer.getJwkSetUri().toString())
-							? NimbusJwtDecoder.withJwkSetUri(issuer.getJwkSetUri().toString()).build()
-							: JwtDecoders.fromIssuerLocation(issuer.getLocation().toString());
+					JwtDecoder decoder = jwtDecoderRegistry.getOrCreate(
+							issuer.getLocation().toString(),
+							() -> snapshotJwtDecoderFactory.map(factory -> factory.create(issuer))
+									.orElseGet(
+											() -> issuer.getJwkSetUri() != null && StringUtils.hasLength(issuer.getJwkSetUri().toString())
+													? NimbusJwtDecoder.withJwkSetUri(issuer.getJwkSetUri().toString()).build()
+													: JwtDecoders.fromIssuerLocation(issuer.getLocation().toString())));
 					var provider = new JwtAuthenticationProvider(decoder);
 					provider.setJwtAuthenticationConverter(jwtAuthenticationConverter);
 					return provider::authenticate;
@@ -218,4 +230,21 @@ public class AddonsWebSecurityBeans {
 
 		return new JwtIssuerAuthenticationManagerResolver((AuthenticationManagerResolver<String>) jwtManagers::get);
 	}
+
+	/**
+	 * @param  addonsProperties           "com.c4-soft.springaddons.security" configuration properties
+	 * @param  jwtDecoderRegistry         the decoders used by the authentication manager resolver
+	 * @param  jwtAuthenticationConverter converts from a {@link Jwt} to an {@link Authentication} implementation
+	 * @param  expressionHandler          the method-security expression handler, if the application defines one
+	 * @return                            a runner warming-up security before the application reports it is ready to accept traffic
+	 */
+	@ConditionalOnProperty(prefix = "com.c4-soft.springaddons.security.warm-up", name = "enabled", havingValue = "true")
+	@Bean
+	ResourceServerWarmUp resourceServerWarmUp(
+			SpringAddonsSecurityProperties addonsProperties,
+			JwtDecoderRegistry jwtDecoderRegistry,
+			Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter,
+			Optional<MethodSecurityExpressionHandler> expressionHandler) {
+		return new ResourceServerWarmUp(addonsProperties, jwtDecoderRegistry, jwtAuthenticationConverter, expressionHandler.orElse(null));
+	}
 }
\ No newline at end of file
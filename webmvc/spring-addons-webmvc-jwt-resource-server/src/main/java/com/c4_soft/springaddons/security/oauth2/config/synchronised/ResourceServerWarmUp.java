@@ -0,0 +1,72 @@
+package com.c4_soft.springaddons.security.oauth2.config.synchronised;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import com.c4_soft.springaddons.security.oauth2.config.SecurityWarmUp;
+import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Warms-up the security of a servlet resource server. As any {@link ApplicationRunner}, it runs before Spring Boot switches the application
+ * {@link ReadinessState} to ACCEPTING_TRAFFIC, so readiness probes report the application ready only once it is done:
+ * </p>
+ * <ul>
+ * <li>the JWK set of each issuer is fetched by its decoder in the {@link JwtDecoderRegistry} (the one used by the authentication manager resolver)</li>
+ * <li>synthetic tokens are decoded (with the JWT processing of the decoders, but the ephemeral key of the {@link SecurityWarmUp}), converted to
+ * authentications with the application authentication converter (and so authorities converter) and used to evaluate method-security expressions. These
+ * tokens have the claims referenced by the issuer authorities and username-claim JSON paths.</li>
+ * </ul>
+ * <p>
+ * Failures are logged and never prevent the application from starting.
+ * </p>
+ *
+ * @author Jerome Wacongne ch4mp&#64;c4-soft.com
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ResourceServerWarmUp implements ApplicationRunner {
+	private final SpringAddonsSecurityProperties addonsProperties;
+	private final JwtDecoderRegistry jwtDecoderRegistry;
+	private final Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter;
+	private final MethodSecurityExpressionHandler expressionHandler;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		final var start = System.nanoTime();
+		try {
+			final var warmUp = new SecurityWarmUp(addonsProperties.getWarmUp(), expressionHandler);
+			final var syntheticDecoder = NimbusJwtDecoder.withPublicKey(warmUp.getPublicKey()).build();
+			for (final var issuer : addonsProperties.getIssuers()) {
+				final var token = warmUp.syntheticToken(issuer);
+				jwtDecoderRegistry.get(issuer.getLocation().toString()).ifPresent(decoder -> prefetchJwkSet(decoder, token));
+				for (var i = 0; i < warmUp.getIterations(); ++i) {
+					warmUp.evaluateExpressions(jwtAuthenticationConverter.convert(syntheticDecoder.decode(token)));
+				}
+			}
+			log.info("Security warm-up completed in {}ms", (System.nanoTime() - start) / 1_000_000);
+		} catch (RuntimeException e) {
+			log.warn("Security warm-up failed after {}ms", (System.nanoTime() - start) / 1_000_000, e);
+		}
+	}
+
+	private static void prefetchJwkSet(JwtDecoder decoder, String syntheticToken) {
+		try {
+			decoder.decode(syntheticToken);
+		} catch (JwtException e) {
+			// expected: the synthetic token is not signed with one of the issuer keys
+			log.debug("Synthetic token rejected as expected: {}", e.getMessage());
+		}
+	}
+}
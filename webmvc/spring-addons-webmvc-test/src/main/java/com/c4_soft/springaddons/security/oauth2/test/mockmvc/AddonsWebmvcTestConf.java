@@ -15,7 +15,6 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -40,14 +39,14 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.XorCsrfTokenRequestAttributeHandler;
 import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.c4_soft.springaddons.security.oauth2.config.OAuth2AuthoritiesConverter;
 import com.c4_soft.springaddons.security.oauth2.config.SpringAddonsSecurityProperties;
 import com.c4_soft.springaddons.security.oauth2.config.synchronised.ExpressionInterceptUrlRegistryPostProcessor;
+import com.c4_soft.springaddons.security.oauth2.config.synchronised.PathPatternTrieRequestMatcher;
 import com.c4_soft.springaddons.security.oauth2.config.synchronised.ResourceServerHttpSecurityPostProcessor;
+import com.c4_soft.springaddons.security.oauth2.config.synchronised.ServletConfigurationSupport;
 import com.c4_soft.springaddons.test.support.web.SerializationHelper;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -161,7 +160,7 @@ public class AddonsWebmvcTestConf {
 			http.requiresChannel().anyRequest().requiresSecure();
 		}
 
-		authorizePostProcessor.authorizeHttpRequests(http.authorizeHttpRequests().requestMatchers(addonsProperties.getPermitAll()).permitAll());
+		authorizePostProcessor.authorizeHttpRequests(http.authorizeHttpRequests().requestMatchers(new PathPatternTrieRequestMatcher(addonsProperties.getPermitAll())).permitAll());
 
 		return httpPostProcessor.process(http).build();
 	}
@@ -181,16 +180,7 @@ public class AddonsWebmvcTestConf {
 	@ConditionalOnMissingBean
 	@Bean
 	CorsConfigurationSource corsConfigurationSource(SpringAddonsSecurityProperties addonsProperties) {
-		final var source = new UrlBasedCorsConfigurationSource();
-		for (final var corsProps : addonsProperties.getCors()) {
-			final var configuration = new CorsConfiguration();
-			configuration.setAllowedOrigins(Arrays.asList(corsProps.getAllowedOrigins()));
-			configuration.setAllowedMethods(Arrays.asList(corsProps.getAllowedMethods()));
-			configuration.setAllowedHeaders(Arrays.asList(corsProps.getAllowedHeaders()));
-			configuration.setExposedHeaders(Arrays.asList(corsProps.getExposedHeaders()));
-			source.registerCorsConfiguration(corsProps.getPath(), configuration);
-		}
-		return source;
+		return ServletConfigurationSupport.corsConfigurationSource(addonsProperties.getCors());
 	}
 
 }